@@ -0,0 +1,5 @@
+package org.graphast.enums;
+
+public enum LandmarkSelectionType {
+	FARTHEST, AVOID;
+}
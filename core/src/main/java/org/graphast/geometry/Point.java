@@ -49,7 +49,14 @@ public class Point {
 	    }
 	    
 	    return false;
-		
+
+	}
+
+	@Override
+	public int hashCode() {
+		// adding 0.0 turns -0.0 into 0.0, which are equal for equals()
+		long bits = Double.doubleToLongBits(latitude + 0.0) * 31 + Double.doubleToLongBits(longitude + 0.0);
+		return (int) (bits ^ (bits >>> 32));
 	}
 
 }
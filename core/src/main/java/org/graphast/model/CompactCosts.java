@@ -0,0 +1,97 @@
+package org.graphast.model;
+
+/**
+ * Read-only copy of the time-dependent costs of all edges in flat arrays. Evaluating
+ * {@link #getCost(int, int)} is the same as {@link Graph#getEdgeCost(Edge, int)}, without
+ * building an {@link Edge} (and reading its label and geometry) on every relaxation.
+ */
+public class CompactCosts {
+
+	private int maxTime;
+	// costs of edge e are costs[offsets[e]] ... costs[offsets[e + 1] - 1]
+	private int[] offsets;
+	private int[] costs;
+
+	public CompactCosts(Graph graph) {
+		int numberOfEdges = (int) graph.getNumberOfEdges();
+		maxTime = graph.getMaxTime();
+		offsets = new int[numberOfEdges + 1];
+
+		int[][] edgeCosts = new int[numberOfEdges][];
+		for (int e = 0; e < numberOfEdges; e++) {
+			edgeCosts[e] = graph.getEdgeCosts(e);
+			offsets[e + 1] = offsets[e] + (edgeCosts[e] == null ? 0 : edgeCosts[e].length);
+		}
+
+		costs = new int[offsets[numberOfEdges]];
+		for (int e = 0; e < numberOfEdges; e++) {
+			if (edgeCosts[e] != null) {
+				System.arraycopy(edgeCosts[e], 0, costs, offsets[e], edgeCosts[e].length);
+			}
+		}
+	}
+
+	/**
+	 * Cost of the edge when it is entered at the given time (in milliseconds),
+	 * 0 if the edge has no costs.
+	 */
+	public int getCost(int edgeId, int time) {
+		int begin = offsets[edgeId];
+		int size = offsets[edgeId + 1] - begin;
+		if (size == 0) {
+			return 0;
+		}
+		return costs[begin + time / (maxTime / size)];
+	}
+
+	/**
+	 * Latest time to enter the edge and still leave it by the given arrival time. Times are
+	 * in milliseconds and are not wrapped, so the result may be negative (the day before).
+	 */
+	public int getLatestDeparture(int edgeId, int arrivalTime) {
+		int begin = offsets[edgeId];
+		int size = offsets[edgeId + 1] - begin;
+		if (size == 0) {
+			return arrivalTime;
+		}
+		int intervalSize = maxTime / size;
+
+		// walk back over the intervals, starting from the one that contains the arrival time
+		long interval = arrivalTime >= 0 ? arrivalTime / intervalSize : (arrivalTime + 1L) / intervalSize - 1;
+		int maxCost = 0;
+		for (int i = 0; i <= size; i++, interval--) {
+			int cost = costs[begin + (int) (((interval % size) + size) % size)];
+			long start = interval * intervalSize;
+			long latest = Math.min(start + intervalSize - 1, (long) arrivalTime - cost);
+			if (latest >= start) {
+				return (int) latest;
+			}
+			maxCost = Math.max(maxCost, cost);
+		}
+		return arrivalTime - maxCost;
+	}
+
+	/**
+	 * Length of the time intervals of the costs of the edge; maxTime if the edge has no costs.
+	 */
+	public int getIntervalSize(int edgeId) {
+		int size = offsets[edgeId + 1] - offsets[edgeId];
+		return size == 0 ? maxTime : maxTime / size;
+	}
+
+	public boolean hasCosts(int edgeId) {
+		return offsets[edgeId + 1] > offsets[edgeId];
+	}
+
+	/**
+	 * Same as {@link Graph#getArrival(int, int)}.
+	 */
+	public int getArrival(int departureTime, int travelTime) {
+		return (departureTime + travelTime) % maxTime;
+	}
+
+	public int getMaxTime() {
+		return maxTime;
+	}
+
+}
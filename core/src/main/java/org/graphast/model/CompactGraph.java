@@ -0,0 +1,154 @@
+package org.graphast.model;
+
+import it.unimi.dsi.fastutil.BigArrays;
+import it.unimi.dsi.fastutil.ints.IntBigArrayBigList;
+
+import org.graphast.enums.GraphBoundsType;
+
+/**
+ * Read-only snapshot of the topology of a {@link Graph} in compressed sparse row
+ * form. The linked edge lists of the graph are walked only once, so preprocessing
+ * algorithms that sweep the whole network many times do not rebuild an {@link Edge}
+ * on every relaxation. Edge and node ids are the same ids used by the graph.
+ *
+ * The snapshot does not follow later changes in the graph (e.g. {@link Graph#reverseGraph()}).
+ */
+public class CompactGraph {
+
+	private int numberOfNodes;
+	private int numberOfEdges;
+
+	private int[] fromNode;
+	private int[] toNode;
+
+	private int[] outOffsets;
+	private int[] outEdges;
+	private int[] inOffsets;
+	private int[] inEdges;
+
+	public CompactGraph(Graph graph) {
+		numberOfNodes = (int) graph.getNumberOfNodes();
+		numberOfEdges = (int) graph.getNumberOfEdges();
+		fromNode = new int[numberOfEdges];
+		toNode = new int[numberOfEdges];
+		outOffsets = new int[numberOfNodes + 1];
+		inOffsets = new int[numberOfNodes + 1];
+
+		IntBigArrayBigList edges = graph.getEdges();
+		for (int e = 0; e < numberOfEdges; e++) {
+			long position = (long) e * Edge.EDGE_BLOCKSIZE;
+			fromNode[e] = (int) BigArrays.index(edges.getInt(position + 2), edges.getInt(position + 3));
+			toNode[e] = (int) BigArrays.index(edges.getInt(position + 4), edges.getInt(position + 5));
+			outOffsets[fromNode[e] + 1]++;
+			inOffsets[toNode[e] + 1]++;
+		}
+
+		for (int v = 0; v < numberOfNodes; v++) {
+			outOffsets[v + 1] += outOffsets[v];
+			inOffsets[v + 1] += inOffsets[v];
+		}
+
+		outEdges = new int[numberOfEdges];
+		inEdges = new int[numberOfEdges];
+		int[] outNext = new int[numberOfNodes];
+		int[] inNext = new int[numberOfNodes];
+		System.arraycopy(outOffsets, 0, outNext, 0, numberOfNodes);
+		System.arraycopy(inOffsets, 0, inNext, 0, numberOfNodes);
+		for (int e = 0; e < numberOfEdges; e++) {
+			outEdges[outNext[fromNode[e]]++] = e;
+			inEdges[inNext[toNode[e]]++] = e;
+		}
+	}
+
+	/**
+	 * Distance of every edge, indexed by edge id.
+	 */
+	public static int[] getDistances(Graph graph) {
+		int numberOfEdges = (int) graph.getNumberOfEdges();
+		int[] costs = new int[numberOfEdges];
+		IntBigArrayBigList edges = graph.getEdges();
+		for (int e = 0; e < numberOfEdges; e++) {
+			costs[e] = edges.getInt((long) e * Edge.EDGE_BLOCKSIZE + 10);
+		}
+		return costs;
+	}
+
+	/**
+	 * Cost of every edge for the given bound type: NORMAL is the edge distance,
+	 * LOWER and UPPER are the bounds created by {@link GraphBounds#createBounds()}.
+	 * Edges without time-dependent costs get cost 0 on the bound graphs.
+	 */
+	public static int[] getEdgeCosts(GraphBounds graph, GraphBoundsType type) {
+		if (type == GraphBoundsType.NORMAL) {
+			return getDistances(graph);
+		}
+		int numberOfEdges = (int) graph.getNumberOfEdges();
+		int[] costs = new int[numberOfEdges];
+		for (int e = 0; e < numberOfEdges; e++) {
+			int cost = type == GraphBoundsType.LOWER ? graph.getEdgeLowerCost(e) : graph.getEdgeUpperCost(e);
+			costs[e] = Math.max(cost, 0);
+		}
+		return costs;
+	}
+
+	/**
+	 * Time-dependent cost of every edge at the given time (in milliseconds).
+	 * Edges without costs get cost 0.
+	 */
+	public static int[] getEdgeCosts(Graph graph, int time) {
+		int numberOfEdges = (int) graph.getNumberOfEdges();
+		int[] costs = new int[numberOfEdges];
+		for (int e = 0; e < numberOfEdges; e++) {
+			Integer cost = graph.getEdgeCost(graph.getEdge(e), time);
+			costs[e] = cost == null ? 0 : cost;
+		}
+		return costs;
+	}
+
+	public int getNumberOfNodes() {
+		return numberOfNodes;
+	}
+
+	public int getNumberOfEdges() {
+		return numberOfEdges;
+	}
+
+	public int getFromNode(int edgeId) {
+		return fromNode[edgeId];
+	}
+
+	public int getToNode(int edgeId) {
+		return toNode[edgeId];
+	}
+
+	/**
+	 * Out edges of v are {@code getOutEdge(i)} for i in [getOutBegin(v), getOutEnd(v)).
+	 */
+	public int getOutBegin(int v) {
+		return outOffsets[v];
+	}
+
+	public int getOutEnd(int v) {
+		return outOffsets[v + 1];
+	}
+
+	public int getOutEdge(int i) {
+		return outEdges[i];
+	}
+
+	/**
+	 * In edges of v are {@code getInEdge(i)} for i in [getInBegin(v), getInEnd(v)).
+	 */
+	public int getInBegin(int v) {
+		return inOffsets[v];
+	}
+
+	public int getInEnd(int v) {
+		return inOffsets[v + 1];
+	}
+
+	public int getInEdge(int i) {
+		return inEdges[i];
+	}
+
+}
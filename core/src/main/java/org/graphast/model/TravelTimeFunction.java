@@ -0,0 +1,219 @@
+package org.graphast.model;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.util.Arrays;
+
+/**
+ * Travel time as a function of the departure time over one period ([0, maxTime)).
+ *
+ * Edge costs are constant inside each time interval (see {@link Graph#getEdgeCost(Edge, int)}),
+ * so the travel time of any path, as a function of the departure, is also piecewise constant.
+ * The function is kept as the departure times where the travel time changes and the travel
+ * time from each of them up to the next one. Adjacent pieces with the same travel time are
+ * always merged.
+ */
+public class TravelTimeFunction {
+
+	private int maxTime;
+	private int[] departures;
+	private int[] travelTimes;
+
+	private TravelTimeFunction(int maxTime, int[] departures, int[] travelTimes) {
+		this.maxTime = maxTime;
+		this.departures = departures;
+		this.travelTimes = travelTimes;
+	}
+
+	public static TravelTimeFunction constant(int maxTime, int travelTime) {
+		return new TravelTimeFunction(maxTime, new int[] { 0 }, new int[] { travelTime });
+	}
+
+	/**
+	 * Travel time when leaving at the given time (wrapped into the period).
+	 */
+	public int getTravelTime(int departureTime) {
+		int time = ((departureTime % maxTime) + maxTime) % maxTime;
+		int i = Arrays.binarySearch(departures, time);
+		return travelTimes[i >= 0 ? i : -i - 2];
+	}
+
+	/**
+	 * Travel time of the path that follows this function and then the given edge.
+	 */
+	public TravelTimeFunction link(CompactCosts costs, int edgeId) {
+		Builder builder = new Builder();
+		for (int i = 0; i < departures.length; i++) {
+			int end = getEnd(i);
+			int travelTime = travelTimes[i];
+			long departure = departures[i];
+			while (departure < end) {
+				long arrival = departure + travelTime;
+				int clock = (int) (arrival % maxTime);
+				int intervalSize = costs.getIntervalSize(edgeId);
+				// next arrival time in which the cost of the edge changes
+				long next = arrival - clock + Math.min(((long) clock / intervalSize + 1) * intervalSize, maxTime);
+				builder.add((int) departure, travelTime + costs.getCost(edgeId, clock));
+				departure = Math.min(end, next - travelTime);
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Pointwise minimum of the two functions.
+	 */
+	public TravelTimeFunction min(TravelTimeFunction other) {
+		Builder builder = new Builder();
+		int i = 0;
+		int j = 0;
+		int departure = 0;
+		while (departure < maxTime) {
+			builder.add(departure, Math.min(travelTimes[i], other.travelTimes[j]));
+			int end = Math.min(getEnd(i), other.getEnd(j));
+			if (getEnd(i) == end) {
+				i++;
+			}
+			if (other.getEnd(j) == end) {
+				j++;
+			}
+			departure = end;
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Merges adjacent pieces whose travel times differ by at most the tolerance, keeping the
+	 * largest travel time of each merged run. The result never underestimates this function.
+	 */
+	public TravelTimeFunction simplify(int tolerance) {
+		if (tolerance <= 0) {
+			return this;
+		}
+		Builder builder = new Builder();
+		int start = 0;
+		int min = travelTimes[0];
+		int max = travelTimes[0];
+		for (int i = 1; i < departures.length; i++) {
+			int newMin = Math.min(min, travelTimes[i]);
+			int newMax = Math.max(max, travelTimes[i]);
+			if (newMax - newMin > tolerance) {
+				builder.add(departures[start], max);
+				start = i;
+				newMin = travelTimes[i];
+				newMax = travelTimes[i];
+			}
+			min = newMin;
+			max = newMax;
+		}
+		builder.add(departures[start], max);
+		return builder.build();
+	}
+
+	private int getEnd(int i) {
+		return i + 1 < departures.length ? departures[i + 1] : maxTime;
+	}
+
+	public int getMinimum() {
+		int min = Integer.MAX_VALUE;
+		for (int travelTime : travelTimes) {
+			min = Math.min(min, travelTime);
+		}
+		return min;
+	}
+
+	public int getMaximum() {
+		int max = Integer.MIN_VALUE;
+		for (int travelTime : travelTimes) {
+			max = Math.max(max, travelTime);
+		}
+		return max;
+	}
+
+	/**
+	 * Earliest departure time with the minimum travel time.
+	 */
+	public int getBestDepartureTime() {
+		int best = 0;
+		for (int i = 1; i < travelTimes.length; i++) {
+			if (travelTimes[i] < travelTimes[best]) {
+				best = i;
+			}
+		}
+		return departures[best];
+	}
+
+	/**
+	 * Number of pieces of the function.
+	 */
+	public int size() {
+		return departures.length;
+	}
+
+	public int[] getDepartures() {
+		return departures;
+	}
+
+	public int[] getTravelTimes() {
+		return travelTimes;
+	}
+
+	public int getMaxTime() {
+		return maxTime;
+	}
+
+	/**
+	 * The pieces of the function as {@link LinearFunction}s (all of them with slope 0).
+	 */
+	public LinearFunction[] toLinearFunctions() {
+		LinearFunction[] functions = new LinearFunction[departures.length];
+		for (int i = 0; i < departures.length; i++) {
+			functions[i] = new LinearFunction(departures[i], travelTimes[i], getEnd(i), travelTimes[i]);
+		}
+		return functions;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * Arrays.hashCode(departures) + Arrays.hashCode(travelTimes);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null || getClass() != obj.getClass())
+			return false;
+		TravelTimeFunction other = (TravelTimeFunction) obj;
+		return maxTime == other.maxTime && Arrays.equals(departures, other.departures)
+				&& Arrays.equals(travelTimes, other.travelTimes);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < departures.length; i++) {
+			builder.append(i == 0 ? "" : ",").append(departures[i]).append(":").append(travelTimes[i]);
+		}
+		return builder.toString();
+	}
+
+	private class Builder {
+
+		private IntArrayList departures = new IntArrayList();
+		private IntArrayList travelTimes = new IntArrayList();
+
+		private void add(int departure, int travelTime) {
+			if (!travelTimes.isEmpty() && travelTimes.getInt(travelTimes.size() - 1) == travelTime) {
+				return;
+			}
+			departures.add(departure);
+			travelTimes.add(travelTime);
+		}
+
+		private TravelTimeFunction build() {
+			return new TravelTimeFunction(maxTime, departures.toIntArray(), travelTimes.toIntArray());
+		}
+	}
+
+}
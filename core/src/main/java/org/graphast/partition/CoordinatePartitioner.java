@@ -0,0 +1,68 @@
+package org.graphast.partition;
+
+import it.unimi.dsi.fastutil.ints.AbstractIntComparator;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntBigArrayBigList;
+
+import org.graphast.model.Graph;
+import org.graphast.model.Node;
+
+/**
+ * Recursive coordinate bisection: the nodes are sorted by latitude or longitude (the
+ * dimension with the largest extent) and split at the median, until the requested number
+ * of cells is reached. Cells get contiguous regions of the map and similar sizes.
+ */
+public class CoordinatePartitioner implements Partitioner {
+
+	@Override
+	public int[] partition(Graph graph, int[] nodes, int numberOfCells) {
+		IntBigArrayBigList graphNodes = graph.getNodes();
+		final int[] latitudes = new int[nodes.length];
+		final int[] longitudes = new int[nodes.length];
+		int[] order = new int[nodes.length];
+		for (int i = 0; i < nodes.length; i++) {
+			long position = (long) nodes[i] * Node.NODE_BLOCKSIZE;
+			latitudes[i] = graphNodes.getInt(position + 3);
+			longitudes[i] = graphNodes.getInt(position + 4);
+			order[i] = i;
+		}
+
+		int[] cells = new int[nodes.length];
+		split(order, 0, nodes.length, 0, Math.max(1, numberOfCells), latitudes, longitudes, cells);
+		return cells;
+	}
+
+	private void split(int[] order, int from, int to, int firstCell, int numberOfCells,
+			final int[] latitudes, final int[] longitudes, int[] cells) {
+
+		if (numberOfCells == 1 || to - from <= 1) {
+			for (int i = from; i < to; i++) {
+				cells[order[i]] = firstCell;
+			}
+			return;
+		}
+
+		int minLatitude = Integer.MAX_VALUE, maxLatitude = Integer.MIN_VALUE;
+		int minLongitude = Integer.MAX_VALUE, maxLongitude = Integer.MIN_VALUE;
+		for (int i = from; i < to; i++) {
+			minLatitude = Math.min(minLatitude, latitudes[order[i]]);
+			maxLatitude = Math.max(maxLatitude, latitudes[order[i]]);
+			minLongitude = Math.min(minLongitude, longitudes[order[i]]);
+			maxLongitude = Math.max(maxLongitude, longitudes[order[i]]);
+		}
+
+		final int[] key = (long) maxLatitude - minLatitude >= (long) maxLongitude - minLongitude ? latitudes : longitudes;
+		IntArrays.quickSort(order, from, to, new AbstractIntComparator() {
+			@Override
+			public int compare(int a, int b) {
+				return Integer.compare(key[a], key[b]);
+			}
+		});
+
+		int leftCells = numberOfCells / 2;
+		int middle = from + (int) ((long) (to - from) * leftCells / numberOfCells);
+		split(order, from, middle, firstCell, leftCells, latitudes, longitudes, cells);
+		split(order, middle, to, firstCell + leftCells, numberOfCells - leftCells, latitudes, longitudes, cells);
+	}
+
+}
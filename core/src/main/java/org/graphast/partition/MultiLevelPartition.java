@@ -0,0 +1,100 @@
+package org.graphast.partition;
+
+import org.graphast.enums.CompressionType;
+import org.graphast.model.Graph;
+
+/**
+ * Nested partitions of a graph: every cell of a level is the union of cells of the level
+ * below. Level 0 is the finest one and level {@link #getNumberOfLevels()} - 1 the coarsest.
+ */
+public class MultiLevelPartition {
+
+	private Partition[] levels;
+
+	public MultiLevelPartition(Partition[] levels) {
+		this.levels = levels;
+	}
+
+	/**
+	 * @param branching branching[0] is the number of cells of the coarsest level and
+	 * 					branching[i] the number of sub cells each cell of the previous level is split into
+	 */
+	public static MultiLevelPartition create(Graph graph, Partitioner partitioner, int... branching) {
+		int numberOfNodes = (int) graph.getNumberOfNodes();
+		int numberOfLevels = branching.length;
+		int[][] cells = new int[numberOfLevels][numberOfNodes];
+
+		int[] nodes = new int[numberOfNodes];
+		for (int i = 0; i < numberOfNodes; i++) {
+			nodes[i] = i;
+		}
+		split(graph, partitioner, branching, 0, nodes, 0, cells);
+
+		Partition[] levels = new Partition[numberOfLevels];
+		int numberOfCells = 1;
+		for (int i = 0; i < numberOfLevels; i++) {
+			numberOfCells *= branching[i];
+			levels[numberOfLevels - 1 - i] = new Partition(cells[numberOfLevels - 1 - i], numberOfCells);
+		}
+		return new MultiLevelPartition(levels);
+	}
+
+	private static void split(Graph graph, Partitioner partitioner, int[] branching, int depth, int[] nodes,
+			int parentCell, int[][] cells) {
+		if (depth == branching.length || nodes.length == 0) {
+			return;
+		}
+		int level = branching.length - 1 - depth;
+		int[] subCells = partitioner.partition(graph, nodes, branching[depth]);
+
+		int[] sizes = new int[branching[depth]];
+		for (int i = 0; i < nodes.length; i++) {
+			cells[level][nodes[i]] = parentCell * branching[depth] + subCells[i];
+			sizes[subCells[i]]++;
+		}
+		for (int sub = 0; sub < branching[depth]; sub++) {
+			int[] subNodes = new int[sizes[sub]];
+			int size = 0;
+			for (int i = 0; i < nodes.length; i++) {
+				if (subCells[i] == sub) {
+					subNodes[size++] = nodes[i];
+				}
+			}
+			split(graph, partitioner, branching, depth + 1, subNodes, parentCell * branching[depth] + sub, cells);
+		}
+	}
+
+	public int getNumberOfLevels() {
+		return levels.length;
+	}
+
+	public Partition getLevel(int level) {
+		return levels[level];
+	}
+
+	public int getCell(int level, long nodeId) {
+		return levels[level].getCell(nodeId);
+	}
+
+	public int getNumberOfCells(int level) {
+		return levels[level].getNumberOfCells();
+	}
+
+	/**
+	 * Saves each level in the file {@code <directory>/level<i>}.
+	 */
+	public void save(String directory, CompressionType compressionType) {
+		for (int i = 0; i < levels.length; i++) {
+			levels[i].save(directory + "/level" + i, compressionType);
+		}
+	}
+
+	public static MultiLevelPartition load(String directory, int numberOfLevels, CompressionType compressionType) {
+		Partition[] levels = new Partition[numberOfLevels];
+		for (int i = 0; i < numberOfLevels; i++) {
+			levels[i] = Partition.load(directory + "/level" + i, compressionType);
+		}
+		return new MultiLevelPartition(levels);
+	}
+
+}
@@ -0,0 +1,60 @@
+package org.graphast.partition;
+
+import java.util.Arrays;
+
+import org.graphast.enums.CompressionType;
+import org.graphast.model.Graph;
+import org.graphast.util.FileUtils;
+
+/**
+ * Assignment of every node of a graph to a cell.
+ */
+public class Partition {
+
+	private static final int BLOCK_SIZE = 4096;
+
+	private int[] cells;
+	private int numberOfCells;
+
+	public Partition(int[] cells, int numberOfCells) {
+		this.cells = cells;
+		this.numberOfCells = numberOfCells;
+	}
+
+	public static Partition create(Graph graph, Partitioner partitioner, int numberOfCells) {
+		int[] nodes = new int[(int) graph.getNumberOfNodes()];
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i] = i;
+		}
+		return new Partition(partitioner.partition(graph, nodes, numberOfCells), numberOfCells);
+	}
+
+	public int getCell(long nodeId) {
+		return cells[(int) nodeId];
+	}
+
+	public int getNumberOfCells() {
+		return numberOfCells;
+	}
+
+	public int getNumberOfNodes() {
+		return cells.length;
+	}
+
+	public int[] getCells() {
+		return cells;
+	}
+
+	public void save(String path, CompressionType compressionType) {
+		int[] data = new int[cells.length + 1];
+		data[0] = numberOfCells;
+		System.arraycopy(cells, 0, data, 1, cells.length);
+		FileUtils.saveIntArray(path, data, BLOCK_SIZE, compressionType);
+	}
+
+	public static Partition load(String path, CompressionType compressionType) {
+		int[] data = FileUtils.loadIntArray(path, BLOCK_SIZE, compressionType);
+		return new Partition(Arrays.copyOfRange(data, 1, data.length), data[0]);
+	}
+
+}
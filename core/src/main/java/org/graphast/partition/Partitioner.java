@@ -0,0 +1,17 @@
+package org.graphast.partition;
+
+import org.graphast.model.Graph;
+
+public interface Partitioner {
+
+	/**
+	 * Splits a set of nodes into cells of similar size.
+	 * 
+	 * @param graph graph that contains the nodes
+	 * @param nodes ids of the nodes that will be split
+	 * @param numberOfCells number of cells
+	 * @return the cell, between 0 and numberOfCells - 1, of each node in the same order of nodes
+	 */
+	public int[] partition(Graph graph, int[] nodes, int numberOfCells);
+
+}
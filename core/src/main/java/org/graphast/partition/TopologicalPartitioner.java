@@ -0,0 +1,80 @@
+package org.graphast.partition;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayFIFOQueue;
+
+import java.util.Arrays;
+
+import org.graphast.model.CompactGraph;
+import org.graphast.model.Graph;
+
+/**
+ * Region growing partitioner: each cell is grown by a breadth-first search over the
+ * edges (in both directions) until it has its share of the nodes. Cells follow the
+ * connectivity of the network instead of the coordinates, so they rarely split a
+ * component that is only linked through a few roads.
+ */
+public class TopologicalPartitioner implements Partitioner {
+
+	private Graph graph;
+	private CompactGraph compactGraph;
+
+	@Override
+	public int[] partition(Graph graph, int[] nodes, int numberOfCells) {
+		if (this.graph != graph) {
+			this.graph = graph;
+			this.compactGraph = new CompactGraph(graph);
+		}
+
+		Int2IntOpenHashMap positions = new Int2IntOpenHashMap(nodes.length);
+		positions.defaultReturnValue(-1);
+		for (int i = 0; i < nodes.length; i++) {
+			positions.put(nodes[i], i);
+		}
+
+		int[] cells = new int[nodes.length];
+		Arrays.fill(cells, -1);
+		int numberOfCellsUsed = Math.max(1, numberOfCells);
+		int capacity = (nodes.length + numberOfCellsUsed - 1) / numberOfCellsUsed;
+
+		int cell = 0;
+		int size = 0;
+		IntArrayFIFOQueue queue = new IntArrayFIFOQueue();
+		for (int seed = 0; seed < nodes.length; seed++) {
+			if (cells[seed] >= 0) {
+				continue;
+			}
+			// the last cell takes every node left
+			int limit = cell < numberOfCellsUsed - 1 ? capacity : Integer.MAX_VALUE;
+			cells[seed] = cell;
+			size++;
+			queue.enqueue(nodes[seed]);
+			while (!queue.isEmpty()) {
+				int u = queue.dequeueInt();
+				for (int i = compactGraph.getOutBegin(u); i < compactGraph.getOutEnd(u); i++) {
+					size = visit(compactGraph.getToNode(compactGraph.getOutEdge(i)), positions, cells, cell, size, limit, queue);
+				}
+				for (int i = compactGraph.getInBegin(u); i < compactGraph.getInEnd(u); i++) {
+					size = visit(compactGraph.getFromNode(compactGraph.getInEdge(i)), positions, cells, cell, size, limit, queue);
+				}
+			}
+			if (size >= limit) {
+				cell++;
+				size = 0;
+			}
+		}
+		return cells;
+	}
+
+	private int visit(int v, Int2IntOpenHashMap positions, int[] cells, int cell, int size, int limit,
+			IntArrayFIFOQueue queue) {
+		int position = positions.get(v);
+		if (position < 0 || cells[position] >= 0 || size >= limit) {
+			return size;
+		}
+		cells[position] = cell;
+		queue.enqueue(v);
+		return size + 1;
+	}
+
+}
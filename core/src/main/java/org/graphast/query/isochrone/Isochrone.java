@@ -0,0 +1,70 @@
+package org.graphast.query.isochrone;
+
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of an isochrone query: everything reachable from (or, when reverse, able to
+ * reach) the origin within the maximum travel time.
+ */
+public class Isochrone {
+
+	private long origin;
+	private int maxTravelTime;
+	private boolean reverse;
+
+	private Long2IntMap travelTimes;
+	private List<PartialEdge> partialEdges;
+	private Map<Integer, List<Long>> poisByCategory;
+
+	public Isochrone(long origin, int maxTravelTime, boolean reverse, Long2IntMap travelTimes,
+			List<PartialEdge> partialEdges, Map<Integer, List<Long>> poisByCategory) {
+		this.origin = origin;
+		this.maxTravelTime = maxTravelTime;
+		this.reverse = reverse;
+		this.travelTimes = travelTimes;
+		this.partialEdges = partialEdges;
+		this.poisByCategory = poisByCategory;
+	}
+
+	public long getOrigin() {
+		return origin;
+	}
+
+	public int getMaxTravelTime() {
+		return maxTravelTime;
+	}
+
+	public boolean isReverse() {
+		return reverse;
+	}
+
+	/**
+	 * Travel time, in milliseconds, of every reached node.
+	 */
+	public Long2IntMap getTravelTimes() {
+		return travelTimes;
+	}
+
+	public boolean isReached(long nodeId) {
+		return travelTimes.containsKey(nodeId);
+	}
+
+	public int getNumberOfReachedNodes() {
+		return travelTimes.size();
+	}
+
+	public List<PartialEdge> getPartialEdges() {
+		return partialEdges;
+	}
+
+	/**
+	 * Reached PoIs grouped by category, in order of travel time.
+	 */
+	public Map<Integer, List<Long>> getPoisByCategory() {
+		return poisByCategory;
+	}
+
+}
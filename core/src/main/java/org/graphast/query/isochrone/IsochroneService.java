@@ -0,0 +1,146 @@
+package org.graphast.query.isochrone;
+
+import static org.graphast.util.NumberUtils.convertToInt;
+import it.unimi.dsi.fastutil.ints.IntBigArrayBigList;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+
+import org.graphast.model.CompactCosts;
+import org.graphast.model.CompactGraph;
+import org.graphast.model.Graph;
+import org.graphast.model.Node;
+import org.graphast.query.model.QueueEntry;
+import org.graphast.util.DateUtils;
+import org.graphast.util.ThreadUtils;
+
+/**
+ * Time-dependent isochrones: the nodes, edges and PoIs reachable from an origin within a
+ * maximum travel time when leaving at a given time.
+ *
+ * A reverse isochrone answers the opposite question: from where the origin can be reached
+ * within the maximum travel time, arriving by the given time. It follows the in edges and
+ * takes, for each edge, the latest departure that still arrives in time.
+ */
+public class IsochroneService {
+
+	private Graph graph;
+	private CompactGraph compactGraph;
+	private CompactCosts compactCosts;
+	private int[] categories;
+	private int numberOfThreads;
+
+	public IsochroneService(Graph graph) {
+		this(graph, Runtime.getRuntime().availableProcessors());
+	}
+
+	public IsochroneService(Graph graph, int numberOfThreads) {
+		this.graph = graph;
+		this.compactGraph = new CompactGraph(graph);
+		this.compactCosts = new CompactCosts(graph);
+		this.numberOfThreads = Math.max(1, numberOfThreads);
+
+		categories = new int[compactGraph.getNumberOfNodes()];
+		IntBigArrayBigList nodes = graph.getNodes();
+		for (int v = 0; v < categories.length; v++) {
+			categories[v] = nodes.getInt((long) v * Node.NODE_BLOCKSIZE + 2);
+		}
+	}
+
+	/**
+	 * @param origin node where the isochrone starts (or ends, if reverse)
+	 * @param time departure time (arrival time, if reverse)
+	 * @param maxTravelTime maximum travel time in milliseconds
+	 * @param reverse if true, computes the nodes that can reach the origin
+	 */
+	public Isochrone isochrone(long origin, Date time, int maxTravelTime, boolean reverse) {
+		int o = convertToInt(origin);
+		int t0 = DateUtils.dateToMilli(time);
+
+		Long2IntMap travelTimes = new Long2IntOpenHashMap();
+		Long2IntMap tentative = new Long2IntOpenHashMap();
+		tentative.defaultReturnValue(Integer.MAX_VALUE);
+		List<PartialEdge> partialEdges = new ArrayList<PartialEdge>();
+		Map<Integer, List<Long>> pois = new HashMap<Integer, List<Long>>();
+		PriorityQueue<QueueEntry> queue = new PriorityQueue<QueueEntry>();
+
+		tentative.put(o, 0);
+		queue.offer(new QueueEntry(o, 0));
+
+		while (!queue.isEmpty()) {
+			QueueEntry removed = queue.poll();
+			int u = (int) removed.getId();
+			int travelTime = removed.getTravelTime();
+			if (travelTimes.containsKey(u) || travelTime > tentative.get(u)) {
+				continue;
+			}
+			travelTimes.put(u, travelTime);
+
+			if (categories[u] >= 0) {
+				if (!pois.containsKey(categories[u])) {
+					pois.put(categories[u], new ArrayList<Long>());
+				}
+				pois.get(categories[u]).add((long) u);
+			}
+
+			int begin = reverse ? compactGraph.getInBegin(u) : compactGraph.getOutBegin(u);
+			int end = reverse ? compactGraph.getInEnd(u) : compactGraph.getOutEnd(u);
+			for (int i = begin; i < end; i++) {
+				int e = reverse ? compactGraph.getInEdge(i) : compactGraph.getOutEdge(i);
+				int v = reverse ? compactGraph.getFromNode(e) : compactGraph.getToNode(e);
+
+				int cost;
+				if (reverse) {
+					int arrival = t0 - travelTime;
+					cost = arrival - compactCosts.getLatestDeparture(e, arrival);
+				} else {
+					cost = compactCosts.getCost(e, (int) (((long) t0 + travelTime) % compactCosts.getMaxTime()));
+				}
+
+				long newTravelTime = (long) travelTime + cost;
+				if (newTravelTime > maxTravelTime) {
+					partialEdges.add(new PartialEdge(e, (double) (maxTravelTime - travelTime) / cost));
+				} else if (!travelTimes.containsKey(v) && newTravelTime < tentative.get(v)) {
+					tentative.put(v, (int) newTravelTime);
+					queue.offer(new QueueEntry(v, (int) newTravelTime));
+				}
+			}
+		}
+
+		return new Isochrone(origin, maxTravelTime, reverse, travelTimes, partialEdges, pois);
+	}
+
+	public Isochrone isochrone(Node origin, Date time, int maxTravelTime, boolean reverse) {
+		return isochrone(origin.getId(), time, maxTravelTime, reverse);
+	}
+
+	/**
+	 * Isochrones of many origins, computed in parallel.
+	 *
+	 * @return the isochrones in the same order of origins
+	 */
+	public List<Isochrone> isochrones(long[] origins, final Date time, final int maxTravelTime, final boolean reverse) {
+		List<Callable<Isochrone>> tasks = new ArrayList<Callable<Isochrone>>(origins.length);
+		for (final long origin : origins) {
+			tasks.add(new Callable<Isochrone>() {
+				@Override
+				public Isochrone call() {
+					return isochrone(origin, time, maxTravelTime, reverse);
+				}
+			});
+		}
+		return ThreadUtils.runAll(tasks, numberOfThreads);
+	}
+
+	public Graph getGraph() {
+		return graph;
+	}
+
+}
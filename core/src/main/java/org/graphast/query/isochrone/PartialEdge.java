@@ -0,0 +1,33 @@
+package org.graphast.query.isochrone;
+
+/**
+ * Edge that is only partially covered by an isochrone.
+ */
+public class PartialEdge {
+
+	private long edgeId;
+	private double fraction;
+
+	public PartialEdge(long edgeId, double fraction) {
+		this.edgeId = edgeId;
+		this.fraction = fraction;
+	}
+
+	public long getEdgeId() {
+		return edgeId;
+	}
+
+	/**
+	 * Fraction of the edge covered, between 0 and 1. It is measured from the from node in
+	 * forward isochrones and from the to node in reverse isochrones.
+	 */
+	public double getFraction() {
+		return fraction;
+	}
+
+	@Override
+	public String toString() {
+		return "PartialEdge [edgeId=" + edgeId + ", fraction=" + fraction + "]";
+	}
+
+}
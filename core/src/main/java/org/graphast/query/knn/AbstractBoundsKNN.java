@@ -0,0 +1,295 @@
+package org.graphast.query.knn;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.graphast.enums.GraphBoundsType;
+import org.graphast.exception.GraphastException;
+import org.graphast.model.CompactGraph;
+import org.graphast.model.GraphBounds;
+import org.graphast.model.Node;
+import org.graphast.query.model.AbstractBoundsSearchPoI;
+import org.graphast.query.model.Bound;
+import org.graphast.query.model.QueueEntry;
+import org.graphast.query.route.shortestpath.dijkstra.DijkstraCompact;
+import org.graphast.util.FileUtils;
+
+/**
+ * Cost from every node to its nearest PoI, used as lower (or upper) bounds by the KNN
+ * searches. All nodes are labeled by a single multi-source Dijkstra that starts at the PoIs
+ * and follows the edges backwards, instead of one search per node. The result is kept in
+ * two arrays indexed by node id.
+ *
+ * When PoIs are added, removed or moved, the bounds are repaired by a search limited to
+ * the nodes whose nearest PoI changes, so a moving fleet does not require a rebuild.
+ */
+public abstract class AbstractBoundsKNN extends AbstractBoundsSearchPoI {
+
+	private static final int BLOCK_SIZE = 4096;
+	private static final int INFINITY = DijkstraCompact.INFINITY;
+
+	protected GraphBounds graph;
+	protected GraphBoundsType type;
+
+	// nearest PoI of each node and the cost to reach it; -1 and Integer.MAX_VALUE if there is none
+	protected int[] poiIds;
+	protected int[] costs;
+
+	// kept for the repairs, created on the first one if the bounds were loaded
+	private CompactGraph compactGraph;
+	private int[] edgeCosts;
+
+	protected AbstractBoundsKNN(GraphBounds graph, GraphBoundsType type) {
+		super();
+		this.graph = graph;
+		this.type = type;
+	}
+
+	/**
+	 * @param compactGraph topology of the graph
+	 * @param edgeCosts cost of each edge for the bound type
+	 * @param sources PoIs where the search starts
+	 * @param initialCosts cost added to the path to each PoI
+	 */
+	protected void createBounds(CompactGraph compactGraph, int[] edgeCosts, int[] sources, int[] initialCosts) {
+		DijkstraCompact dijkstra = new DijkstraCompact(compactGraph, edgeCosts);
+		costs = dijkstra.run(sources, initialCosts, true, DijkstraCompact.INFINITY);
+		poiIds = dijkstra.getOrigins();
+		bounds = null;
+		this.compactGraph = compactGraph;
+		this.edgeCosts = edgeCosts;
+	}
+
+	/**
+	 * Whether the node is one of the PoIs the bounds are made of.
+	 */
+	protected abstract boolean isSource(int vid);
+
+	/**
+	 * Cost added to the path to the PoI.
+	 */
+	protected abstract int getInitialCost(int poi);
+
+	/**
+	 * Updates the bounds after the node became a PoI of the graph. The search from the new
+	 * PoI only goes on through nodes that are strictly nearer to it than to their PoI.
+	 * Nodes that are not PoIs of these bounds are ignored. To change the initial cost of a
+	 * PoI, remove it and add it again.
+	 */
+	public void addPoI(long nodeId) {
+		int poi = (int) nodeId;
+		if (!isSource(poi)) {
+			return;
+		}
+		prepareRepair();
+		Int2IntOpenHashMap distances = new Int2IntOpenHashMap();
+		distances.defaultReturnValue(INFINITY);
+		IntOpenHashSet settled = new IntOpenHashSet();
+		PriorityQueue<QueueEntry> queue = new PriorityQueue<QueueEntry>();
+		int initialCost = getInitialCost(poi);
+		if (initialCost < costs[poi]) {
+			distances.put(poi, initialCost);
+			queue.offer(new QueueEntry(poi, initialCost));
+		}
+
+		while (!queue.isEmpty()) {
+			QueueEntry removed = queue.poll();
+			int u = (int) removed.getId();
+			int cost = distances.get(u);
+			if (settled.contains(u) || removed.getTravelTime() != cost) {
+				continue;
+			}
+			settled.add(u);
+			poiIds[u] = poi;
+			costs[u] = cost;
+
+			for (int i = compactGraph.getInBegin(u); i < compactGraph.getInEnd(u); i++) {
+				int e = compactGraph.getInEdge(i);
+				int v = compactGraph.getFromNode(e);
+				long newCost = (long) cost + edgeCosts[e];
+				if (!settled.contains(v) && newCost < costs[v] && newCost < distances.get(v)) {
+					distances.put(v, (int) newCost);
+					queue.offer(new QueueEntry(v, (int) newCost));
+				}
+			}
+		}
+		bounds = null;
+	}
+
+	/**
+	 * Updates the bounds after the node stopped being a PoI. Only the nodes that had it as
+	 * their nearest PoI are searched again, starting from the nodes around them and from
+	 * the other PoIs among them. It does not matter whether the graph was already changed.
+	 */
+	public void removePoI(long nodeId) {
+		int poi = (int) nodeId;
+		if (poiIds[poi] != poi) {
+			// no node has it as its nearest PoI
+			return;
+		}
+		prepareRepair();
+
+		// the nodes of a PoI are connected to it by their shortest paths
+		IntArrayList zone = new IntArrayList();
+		IntOpenHashSet inZone = new IntOpenHashSet();
+		zone.add(poi);
+		inZone.add(poi);
+		for (int z = 0; z < zone.size(); z++) {
+			int u = zone.getInt(z);
+			for (int i = compactGraph.getInBegin(u); i < compactGraph.getInEnd(u); i++) {
+				int v = compactGraph.getFromNode(compactGraph.getInEdge(i));
+				if (poiIds[v] == poi && inZone.add(v)) {
+					zone.add(v);
+				}
+			}
+		}
+		for (int v : zone) {
+			poiIds[v] = -1;
+			costs[v] = INFINITY;
+		}
+
+		PriorityQueue<QueueEntry> queue = new PriorityQueue<QueueEntry>();
+		for (int v : zone) {
+			if (v != poi && isSource(v)) {
+				poiIds[v] = v;
+				costs[v] = getInitialCost(v);
+			}
+			for (int i = compactGraph.getOutBegin(v); i < compactGraph.getOutEnd(v); i++) {
+				int e = compactGraph.getOutEdge(i);
+				int w = compactGraph.getToNode(e);
+				if (!inZone.contains(w) && poiIds[w] != -1) {
+					long cost = (long) costs[w] + edgeCosts[e];
+					if (cost < costs[v]) {
+						costs[v] = (int) cost;
+						poiIds[v] = poiIds[w];
+					}
+				}
+			}
+			if (poiIds[v] != -1) {
+				queue.offer(new QueueEntry(v, costs[v]));
+			}
+		}
+
+		IntOpenHashSet settled = new IntOpenHashSet();
+		while (!queue.isEmpty()) {
+			QueueEntry removed = queue.poll();
+			int u = (int) removed.getId();
+			if (settled.contains(u) || removed.getTravelTime() != costs[u]) {
+				continue;
+			}
+			settled.add(u);
+
+			for (int i = compactGraph.getInBegin(u); i < compactGraph.getInEnd(u); i++) {
+				int e = compactGraph.getInEdge(i);
+				int v = compactGraph.getFromNode(e);
+				long newCost = (long) costs[u] + edgeCosts[e];
+				if (inZone.contains(v) && !settled.contains(v) && newCost < costs[v]) {
+					costs[v] = (int) newCost;
+					poiIds[v] = poiIds[u];
+					queue.offer(new QueueEntry(v, costs[v]));
+				}
+			}
+		}
+		bounds = null;
+	}
+
+	/**
+	 * Updates the bounds after a PoI moved from one node to another, e.g. a taxi.
+	 */
+	public void movePoI(long from, long to) {
+		removePoI(from);
+		addPoI(to);
+	}
+
+	private void prepareRepair() {
+		if (compactGraph == null) {
+			if (type != GraphBoundsType.NORMAL && graph.getEdgesLowerBound().isEmpty()) {
+				graph.createBounds();
+			}
+			compactGraph = new CompactGraph(graph);
+			edgeCosts = CompactGraph.getEdgeCosts(graph, type);
+		}
+	}
+
+	/**
+	 * PoIs of the graph, or only those of the given category if it is not -1.
+	 */
+	protected static int[] getPoIs(GraphBounds graph, int category) {
+		IntArrayList pois = new IntArrayList();
+		for (int i = 0; i < graph.getNumberOfNodes(); i++) {
+			int c = graph.getNodes().getInt((long) i * Node.NODE_BLOCKSIZE + 2);
+			if (c >= 0 && (category == -1 || c == category)) {
+				pois.add(i);
+			}
+		}
+		return pois.toIntArray();
+	}
+
+	/**
+	 * Nearest PoI of the node, -1 if no PoI can be reached.
+	 */
+	public long getPoI(long vid) {
+		return poiIds[(int) vid];
+	}
+
+	/**
+	 * Cost from the node to its nearest PoI, Integer.MAX_VALUE if no PoI can be reached.
+	 */
+	public int getCost(long vid) {
+		return costs[(int) vid];
+	}
+
+	public Bound getBound(long vid) {
+		return poiIds[(int) vid] == -1 ? new Bound() : new Bound(poiIds[(int) vid], costs[(int) vid]);
+	}
+
+	/**
+	 * Bounds in the form of {@link AbstractBoundsSearchPoI}. The map is only created
+	 * when this method is called.
+	 */
+	@Override
+	public Map<Long, List<Bound>> getBounds() {
+		if (bounds == null) {
+			bounds = new HashMap<Long, List<Bound>>();
+			for (int v = 0; v < costs.length; v++) {
+				List<Bound> oc = new ArrayList<Bound>();
+				oc.add(getBound(v));
+				bounds.put((long) v, oc);
+			}
+		}
+		return bounds;
+	}
+
+	public void save() {
+		String dir = getDirectory();
+		FileUtils.saveIntArray(dir + "/pois", poiIds, BLOCK_SIZE, graph.getCompressionType());
+		FileUtils.saveIntArray(dir + "/costs", costs, BLOCK_SIZE, graph.getCompressionType());
+	}
+
+	protected void load() {
+		String dir = getDirectory();
+		poiIds = FileUtils.loadIntArray(dir + "/pois", BLOCK_SIZE, graph.getCompressionType());
+		costs = FileUtils.loadIntArray(dir + "/costs", BLOCK_SIZE, graph.getCompressionType());
+		if (poiIds.length != graph.getNumberOfNodes() || costs.length != graph.getNumberOfNodes()) {
+			throw new GraphastException("The bounds in " + dir + " were not created for this graph.");
+		}
+		bounds = null;
+	}
+
+	/**
+	 * Directory, inside the graph directory, where the bounds are saved.
+	 */
+	protected abstract String getDirectory();
+
+	public GraphBoundsType getType() {
+		return type;
+	}
+
+}
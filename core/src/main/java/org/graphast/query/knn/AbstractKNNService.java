@@ -6,20 +6,18 @@ import java.util.HashMap;
 import java.util.PriorityQueue;
 
 import org.graphast.model.Graph;
-import org.graphast.query.model.AbstractBoundsSearchPoI;
-import org.graphast.query.model.Bound;
 import org.graphast.query.model.LowerBoundEntry;
 
 import it.unimi.dsi.fastutil.longs.Long2IntMap;
 
 public abstract class AbstractKNNService implements KNNService{
 	protected Graph network;
-	protected AbstractBoundsSearchPoI minBounds;
-	protected AbstractBoundsSearchPoI maxBounds;
+	protected AbstractBoundsKNN minBounds;
+	protected AbstractBoundsKNN maxBounds;
 	
 	protected static int wasRemoved = -1;
 	
-	public AbstractKNNService(Graph network, AbstractBoundsSearchPoI minBounds, AbstractBoundsSearchPoI maxBounds){
+	public AbstractKNNService(Graph network, AbstractBoundsKNN minBounds, AbstractBoundsKNN maxBounds){
 		this.network = network;
 		this.minBounds = minBounds;
 		this.maxBounds = maxBounds;
@@ -27,15 +25,13 @@ public abstract class AbstractKNNService implements KNNService{
 	
 	protected void init(long vid, int t, int k, int kth, PriorityQueue<LowerBoundEntry> queue, PriorityQueue<UpperEntry> upperCandidates, 
 			HashMap<Long, Integer> isIn, HashMap<Long, Long> parents){
-		Bound bMin = minBounds.getBounds().get(vid).iterator().next();
-		Bound bMax = maxBounds.getBounds().get(vid).iterator().next();
-		long unn = bMax.getId();
-		int utdd = t + bMax.getCost();
+		long unn = maxBounds.getPoI(vid);
+		int utdd = t + maxBounds.getCost(vid);
 		queue.offer(new LowerBoundEntry(	vid, 
 									0, 
 									t, 
 									-1,
-									t + bMin.getCost()));
+									t + minBounds.getCost(vid)));
 		
 		includeCandidate(k, unn, utdd, kth, upperCandidates, isIn);	
 		parents.put(vid, null);
@@ -97,12 +93,11 @@ public abstract class AbstractKNNService implements KNNService{
 		for (long v : neig.keySet()) {
 			int at = network.getArrival(removed.getArrivalTime(), neig.get(v));
 			int tt = removed.getTravelTime() + neig.get(v);
-			Bound bMin = minBounds.getBounds().get(v).iterator().next();
 			LowerBoundEntry newEntry = new LowerBoundEntry(	v, 
 													tt, 
 													at, 
 													removed.getId(),
-													tt + bMin.getCost());
+													tt + minBounds.getCost(v));
 			if(kth >= newEntry.getLowerBound()){
 				if(!wasTraversed.containsKey(v)){					
 					queue.offer(newEntry);
@@ -118,8 +113,7 @@ public abstract class AbstractKNNService implements KNNService{
 						}
 					}
 				}
-				Bound bMax = maxBounds.getBounds().get(v).iterator().next();
-				includeCandidate(k, bMax.getId(), tt + bMax.getCost(), kth, upperCandidates, isIn);
+				includeCandidate(k, maxBounds.getPoI(v), tt + maxBounds.getCost(v), kth, upperCandidates, isIn);
 			}
 		}
 	}
@@ -1,29 +1,108 @@
 package org.graphast.query.knn;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
 import org.graphast.enums.GraphBoundsType;
+import org.graphast.model.CompactGraph;
 import org.graphast.model.GraphBounds;
-import org.graphast.model.Node;
-import org.graphast.query.model.AbstractBoundsSearchPoI;
-import org.graphast.query.model.Bound;
-import org.graphast.query.route.shortestpath.dijkstra.DijkstraGeneric;
-
-import it.unimi.dsi.fastutil.BigArrays;
-
-public class BoundsKNN extends AbstractBoundsSearchPoI{
-	
-
-	public BoundsKNN(GraphBounds graph,GraphBoundsType type){
-			DijkstraGeneric d = new DijkstraGeneric(graph);
-			for(int i = 0; i < graph.getNumberOfNodes(); i++){
-				long position = i*Node.NODE_BLOCKSIZE;
-				long vid = BigArrays.index(graph.getNodes().getInt(position), graph.getNodes().getInt(position + 1));
-				Bound b = new Bound(vid,  d.shortestPathPoi(vid, -1, type).getCost());
-				List<Bound> oc = new ArrayList<Bound>();
-				oc.add(b);
-				bounds.put(vid, oc);
-			}	
+import org.graphast.util.ThreadUtils;
+
+/**
+ * Cost from each node to its nearest PoI of any category, or of a single category.
+ */
+public class BoundsKNN extends AbstractBoundsKNN {
+
+	private int category;
+
+	public BoundsKNN(GraphBounds graph, GraphBoundsType type) {
+		this(graph, type, -1);
+	}
+
+	/**
+	 * @param category only PoIs of this category are considered, -1 for all of them
+	 */
+	public BoundsKNN(GraphBounds graph, GraphBoundsType type, int category) {
+		this(graph, type, category, new CompactGraph(graph), costs(graph, type));
+	}
+
+	private BoundsKNN(GraphBounds graph, GraphBoundsType type, int category, CompactGraph compactGraph, int[] edgeCosts) {
+		super(graph, type);
+		this.category = category;
+		if (compactGraph != null) {
+			int[] sources = getPoIs(graph, category);
+			createBounds(compactGraph, edgeCosts, sources, new int[sources.length]);
+		}
+	}
+
+	private static int[] costs(GraphBounds graph, GraphBoundsType type) {
+		if (type != GraphBoundsType.NORMAL && graph.getEdgesLowerBound().isEmpty()) {
+			graph.createBounds();
+		}
+		return CompactGraph.getEdgeCosts(graph, type);
+	}
+
+	/**
+	 * Creates the bounds of each category of the graph, one category per thread.
+	 */
+	public static Map<Integer, BoundsKNN> createBounds(final GraphBounds graph, final GraphBoundsType type, int numberOfThreads) {
+		final CompactGraph compactGraph = new CompactGraph(graph);
+		final int[] edgeCosts = costs(graph, type);
+
+		int[] categories = graph.getCategories().toIntArray();
+		List<Callable<BoundsKNN>> tasks = new ArrayList<Callable<BoundsKNN>>();
+		for (final int category : categories) {
+			tasks.add(new Callable<BoundsKNN>() {
+				@Override
+				public BoundsKNN call() {
+					return new BoundsKNN(graph, type, category, compactGraph, edgeCosts);
+				}
+			});
+		}
+
+		List<BoundsKNN> bounds = ThreadUtils.runAll(tasks, numberOfThreads);
+		Map<Integer, BoundsKNN> result = new HashMap<Integer, BoundsKNN>();
+		for (int i = 0; i < categories.length; i++) {
+			result.put(categories[i], bounds.get(i));
+		}
+		return result;
 	}
+
+	/**
+	 * Loads the bounds saved by {@link #save()}.
+	 */
+	public static BoundsKNN load(GraphBounds graph, GraphBoundsType type, int category) {
+		BoundsKNN bounds = new BoundsKNN(graph, type, category, null, null);
+		bounds.load();
+		return bounds;
+	}
+
+	public static BoundsKNN load(GraphBounds graph, GraphBoundsType type) {
+		return load(graph, type, -1);
+	}
+
+	@Override
+	protected boolean isSource(int vid) {
+		int c = graph.getNode(vid).getCategory();
+		return c >= 0 && (category == -1 || c == category);
+	}
+
+	@Override
+	protected int getInitialCost(int poi) {
+		return 0;
+	}
+
+	@Override
+	protected String getDirectory() {
+		return graph.getAbsoluteDirectory() + "/knn/nearest/" + type.name().toLowerCase()
+				+ (category == -1 ? "" : "/" + category);
+	}
+
+	public int getCategory() {
+		return category;
+	}
+
 }
@@ -1,28 +1,56 @@
 package org.graphast.query.knn;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import org.graphast.enums.GraphBoundsType;
+import org.graphast.model.CompactGraph;
 import org.graphast.model.GraphBounds;
-import org.graphast.model.Node;
-import org.graphast.query.model.AbstractBoundsSearchPoI;
-import org.graphast.query.model.Bound;
-import org.graphast.query.route.shortestpath.dijkstra.DijkstraGeneric;
-
-import it.unimi.dsi.fastutil.BigArrays;
-
-public class BoundsKNNTC extends AbstractBoundsSearchPoI{
-	
-	public BoundsKNNTC(GraphBounds graph, GraphBoundsType type){
-			DijkstraGeneric d = new DijkstraGeneric(graph);
-			for(int i = 0; i < graph.getNumberOfNodes(); i++){
-				long position = i*Node.NODE_BLOCKSIZE;
-				long vid = BigArrays.index(graph.getNodes().getInt(position), graph.getNodes().getInt(position + 1));
-				Bound b = new Bound(vid,  d.shortestTS(vid, type).getCost());
-				List<Bound> oc = new ArrayList<>();
-				oc.add(b);
-				bounds.put(vid, oc);	
+
+/**
+ * Least time to service from each node: the cost to a PoI plus the waiting time at the
+ * PoI, over all PoIs. The waiting times are the initial costs of the search.
+ */
+public class BoundsKNNTC extends AbstractBoundsKNN {
+
+	public BoundsKNNTC(GraphBounds graph, GraphBoundsType type) {
+		this(graph, type, true);
+	}
+
+	private BoundsKNNTC(GraphBounds graph, GraphBoundsType type, boolean create) {
+		super(graph, type);
+		if (create) {
+			if (type != GraphBoundsType.NORMAL && graph.getEdgesLowerBound().isEmpty()) {
+				graph.createBounds();
+			}
+			int[] sources = getPoIs(graph, -1);
+			int[] waitingTimes = new int[sources.length];
+			for (int i = 0; i < sources.length; i++) {
+				waitingTimes[i] = graph.poiGetCost(sources[i]);
 			}
-	}		
+			createBounds(new CompactGraph(graph), CompactGraph.getEdgeCosts(graph, type), sources, waitingTimes);
+		}
+	}
+
+	/**
+	 * Loads the bounds saved by {@link #save()}.
+	 */
+	public static BoundsKNNTC load(GraphBounds graph, GraphBoundsType type) {
+		BoundsKNNTC bounds = new BoundsKNNTC(graph, type, false);
+		bounds.load();
+		return bounds;
+	}
+
+	@Override
+	protected boolean isSource(int vid) {
+		return graph.isPoi(vid);
+	}
+
+	@Override
+	protected int getInitialCost(int poi) {
+		return graph.poiGetCost(poi);
+	}
+
+	@Override
+	protected String getDirectory() {
+		return graph.getAbsoluteDirectory() + "/knn/timeToService/" + type.name().toLowerCase();
+	}
+
 }
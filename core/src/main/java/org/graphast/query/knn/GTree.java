@@ -0,0 +1,535 @@
+package org.graphast.query.knn;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.graphast.enums.GraphBoundsType;
+import org.graphast.exception.GraphastException;
+import org.graphast.model.CompactGraph;
+import org.graphast.model.GraphBounds;
+import org.graphast.partition.Partitioner;
+import org.graphast.query.route.shortestpath.dijkstra.DijkstraCompact;
+import org.graphast.util.FileUtils;
+import org.graphast.util.ThreadUtils;
+
+/**
+ * G-tree index (Zhong et al.): the graph is split recursively into a balanced tree of
+ * cells. A node of the graph is a border of a cell when it has an edge to a node outside
+ * of it, and every path that enters or leaves a cell goes through one of its borders.
+ *
+ * Each internal tree node keeps the costs between the borders of its children, and each
+ * leaf keeps the costs between its borders and its nodes, so the cost from a node to any
+ * cell is assembled from these matrices without searching the graph. The matrices hold
+ * the costs on the whole graph (not only inside the cell) of the chosen
+ * {@link GraphBoundsType}.
+ */
+public class GTree {
+
+	private static final int INFINITY = DijkstraCompact.INFINITY;
+	private static final int BLOCK_SIZE = 4096;
+
+	private GraphBounds graph;
+	private GraphBoundsType type;
+	private CompactGraph compactGraph;
+	private int[] edgeCosts;
+
+	// tree nodes, the root is 0
+	private int[] parents;
+	private int[] depths;
+	private int[][] children;
+	// leaves: nodes of the graph in the cell. Internal nodes: borders of the children, in order
+	private int[][] vertices;
+	// positions of the borders of the tree node in its vertices
+	private int[][] borders;
+	// position of the borders of the tree node in the vertices of its parent
+	private int[] offsets;
+	// internal nodes: vertices x vertices. Leaves: borders x vertices and then vertices x borders
+	private int[][] matrices;
+
+	private int[] leaves;
+	private int[] leafPositions;
+
+	private GTree(GraphBounds graph, GraphBoundsType type) {
+		this.graph = graph;
+		this.type = type;
+		if (type != GraphBoundsType.NORMAL && graph.getEdgesLowerBound().isEmpty()) {
+			graph.createBounds();
+		}
+		this.compactGraph = new CompactGraph(graph);
+		this.edgeCosts = CompactGraph.getEdgeCosts(graph, type);
+	}
+
+	/**
+	 * @param partitioner splits the cells
+	 * @param fanout number of children of each internal tree node
+	 * @param leafSize cells with up to this number of nodes are not split
+	 * @param numberOfThreads threads used to compute the matrices
+	 */
+	public static GTree create(GraphBounds graph, GraphBoundsType type, Partitioner partitioner, int fanout,
+			int leafSize, int numberOfThreads) {
+		if (fanout < 2 || leafSize < 1) {
+			throw new GraphastException("The fanout must be at least 2 and the leaf size at least 1.");
+		}
+		GTree tree = new GTree(graph, type);
+		tree.createTree(partitioner, fanout, leafSize);
+		tree.createMatrices(numberOfThreads);
+		return tree;
+	}
+
+	private void createTree(Partitioner partitioner, int fanout, int leafSize) {
+		int numberOfNodes = compactGraph.getNumberOfNodes();
+		IntArrayList parentList = new IntArrayList();
+		List<int[]> childList = new ArrayList<int[]>();
+		List<int[]> cells = new ArrayList<int[]>();
+
+		int[] all = new int[numberOfNodes];
+		for (int v = 0; v < numberOfNodes; v++) {
+			all[v] = v;
+		}
+		parentList.add(-1);
+		childList.add(new int[0]);
+		cells.add(all);
+
+		// tree nodes are created in breadth-first order, so parents come before their children
+		for (int t = 0; t < cells.size(); t++) {
+			int[] nodes = cells.get(t);
+			if (nodes.length <= leafSize) {
+				continue;
+			}
+			int[] subCells = partitioner.partition(graph, nodes, fanout);
+			int[] sizes = new int[fanout];
+			for (int cell : subCells) {
+				sizes[cell]++;
+			}
+			if (max(sizes) == nodes.length) {
+				continue;
+			}
+			IntArrayList created = new IntArrayList();
+			for (int cell = 0; cell < fanout; cell++) {
+				if (sizes[cell] == 0) {
+					continue;
+				}
+				int[] subNodes = new int[sizes[cell]];
+				int size = 0;
+				for (int i = 0; i < nodes.length; i++) {
+					if (subCells[i] == cell) {
+						subNodes[size++] = nodes[i];
+					}
+				}
+				created.add(cells.size());
+				parentList.add(t);
+				childList.add(new int[0]);
+				cells.add(subNodes);
+			}
+			childList.set(t, created.toIntArray());
+		}
+
+		int size = cells.size();
+		parents = parentList.toIntArray();
+		children = childList.toArray(new int[size][]);
+		depths = new int[size];
+		for (int t = 1; t < size; t++) {
+			depths[t] = depths[parents[t]] + 1;
+		}
+
+		leaves = new int[numberOfNodes];
+		leafPositions = new int[numberOfNodes];
+		vertices = new int[size][];
+		for (int t = 0; t < size; t++) {
+			if (isLeaf(t)) {
+				vertices[t] = cells.get(t);
+				for (int i = 0; i < vertices[t].length; i++) {
+					leaves[vertices[t][i]] = t;
+					leafPositions[vertices[t][i]] = i;
+				}
+			}
+		}
+
+		// borders of the cells, from the leaves to the root
+		int[][] borderNodes = new int[size][];
+		borders = new int[size][];
+		offsets = new int[size];
+		for (int t = size - 1; t >= 0; t--) {
+			if (!isLeaf(t)) {
+				IntArrayList union = new IntArrayList();
+				for (int c : children[t]) {
+					offsets[c] = union.size();
+					union.addAll(IntArrayList.wrap(borderNodes[c]));
+				}
+				vertices[t] = union.toIntArray();
+			}
+			IntArrayList positions = new IntArrayList();
+			for (int i = 0; i < vertices[t].length; i++) {
+				if (t != 0 && isBorder(vertices[t][i], t)) {
+					positions.add(i);
+				}
+			}
+			borders[t] = positions.toIntArray();
+			borderNodes[t] = new int[borders[t].length];
+			for (int i = 0; i < borders[t].length; i++) {
+				borderNodes[t][i] = vertices[t][borders[t][i]];
+			}
+		}
+	}
+
+	private static int max(int[] values) {
+		int max = 0;
+		for (int v : values) {
+			max = Math.max(max, v);
+		}
+		return max;
+	}
+
+	private boolean isBorder(int v, int treeNode) {
+		for (int i = compactGraph.getOutBegin(v); i < compactGraph.getOutEnd(v); i++) {
+			if (!contains(treeNode, compactGraph.getToNode(compactGraph.getOutEdge(i)))) {
+				return true;
+			}
+		}
+		for (int i = compactGraph.getInBegin(v); i < compactGraph.getInEnd(v); i++) {
+			if (!contains(treeNode, compactGraph.getFromNode(compactGraph.getInEdge(i)))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Whether the node of the graph is in the cell of the tree node.
+	 */
+	public boolean contains(int treeNode, int v) {
+		int t = leaves[v];
+		while (depths[t] > depths[treeNode]) {
+			t = parents[t];
+		}
+		return t == treeNode;
+	}
+
+	/**
+	 * Every node in the matrices is a border of its leaf, so one search from each border in
+	 * each direction fills all of them.
+	 */
+	private void createMatrices(int numberOfThreads) {
+		matrices = new int[parents.length][];
+		for (int t = 0; t < parents.length; t++) {
+			int n = vertices[t].length;
+			matrices[t] = isLeaf(t) ? new int[2 * borders[t].length * n] : new int[n * n];
+		}
+
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int t = 0; t < parents.length; t++) {
+			if (!isLeaf(t)) {
+				continue;
+			}
+			for (int i = 0; i < borders[t].length; i++) {
+				final int leaf = t;
+				final int border = i;
+				tasks.add(new Callable<Void>() {
+					@Override
+					public Void call() {
+						fillMatrices(leaf, border, new DijkstraCompact(compactGraph, edgeCosts));
+						return null;
+					}
+				});
+			}
+		}
+		ThreadUtils.runAll(tasks, numberOfThreads);
+	}
+
+	/**
+	 * Fills the rows and columns of the matrices that belong to one border of a leaf. Each
+	 * task writes to its own positions, so the tasks share the matrices without locks.
+	 */
+	private void fillMatrices(int leaf, int border, DijkstraCompact dijkstra) {
+		int b = vertices[leaf][borders[leaf][border]];
+		int n = vertices[leaf].length;
+		int numberOfBorders = borders[leaf].length;
+
+		int[] from = dijkstra.run(b, false);
+		for (int i = 0; i < n; i++) {
+			matrices[leaf][border * n + i] = from[vertices[leaf][i]];
+		}
+
+		// the border is also a vertex of every ancestor up to the one where it is inside
+		int child = leaf;
+		int position = borders[leaf][border];
+		while (child != 0 && (position = borderIndex(child, position)) >= 0) {
+			int t = parents[child];
+			int row = offsets[child] + position;
+			int size = vertices[t].length;
+			for (int i = 0; i < size; i++) {
+				matrices[t][row * size + i] = from[vertices[t][i]];
+			}
+			child = t;
+			position = row;
+		}
+
+		int[] to = dijkstra.run(b, true);
+		for (int i = 0; i < n; i++) {
+			matrices[leaf][numberOfBorders * n + i * numberOfBorders + border] = to[vertices[leaf][i]];
+		}
+
+		// columns of the internal matrices
+		child = leaf;
+		position = borders[leaf][border];
+		while (child != 0 && (position = borderIndex(child, position)) >= 0) {
+			int t = parents[child];
+			int column = offsets[child] + position;
+			int size = vertices[t].length;
+			for (int i = 0; i < size; i++) {
+				matrices[t][i * size + column] = to[vertices[t][i]];
+			}
+			child = t;
+			position = column;
+		}
+	}
+
+	/**
+	 * Index in the borders of the tree node of the vertex at the given position, -1 if the
+	 * vertex is not a border.
+	 */
+	private int borderIndex(int treeNode, int position) {
+		return Math.max(-1, Arrays.binarySearch(borders[treeNode], position));
+	}
+
+	/**
+	 * Costs from the node of the graph to the borders of its leaf.
+	 */
+	int[] getCostsToBorders(int v) {
+		int leaf = leaves[v];
+		int n = vertices[leaf].length;
+		int numberOfBorders = borders[leaf].length;
+		int begin = numberOfBorders * n + leafPositions[v] * numberOfBorders;
+		return Arrays.copyOfRange(matrices[leaf], begin, begin + numberOfBorders);
+	}
+
+	/**
+	 * Cost from the given border of the leaf to the vertex at the given position of the leaf.
+	 */
+	int getCostFromBorder(int leaf, int border, int position) {
+		return matrices[leaf][border * vertices[leaf].length + position];
+	}
+
+	/**
+	 * Cost between two vertices of an internal tree node, given by their positions.
+	 */
+	int getCost(int treeNode, int from, int to) {
+		return matrices[treeNode][from * vertices[treeNode].length + to];
+	}
+
+	/**
+	 * Costs from the node of the graph to every vertex of its leaf, including the paths that
+	 * leave the leaf and come back through its borders.
+	 */
+	int[] getCostsInLeaf(int v) {
+		int leaf = leaves[v];
+		int n = vertices[leaf].length;
+		int[] costs = new int[n];
+		Arrays.fill(costs, INFINITY);
+		boolean[] settled = new boolean[n];
+		costs[leafPositions[v]] = 0;
+
+		// n is small, so the next node is found by a linear scan
+		for (int round = 0; round < n; round++) {
+			int u = -1;
+			for (int i = 0; i < n; i++) {
+				if (!settled[i] && costs[i] != INFINITY && (u == -1 || costs[i] < costs[u])) {
+					u = i;
+				}
+			}
+			if (u == -1) {
+				break;
+			}
+			settled[u] = true;
+			int node = vertices[leaf][u];
+			for (int i = compactGraph.getOutBegin(node); i < compactGraph.getOutEnd(node); i++) {
+				int e = compactGraph.getOutEdge(i);
+				int w = compactGraph.getToNode(e);
+				if (leaves[w] == leaf && costs[u] + (long) edgeCosts[e] < costs[leafPositions[w]]) {
+					costs[leafPositions[w]] = costs[u] + edgeCosts[e];
+				}
+			}
+		}
+
+		int[] toBorders = getCostsToBorders(v);
+		for (int b = 0; b < toBorders.length; b++) {
+			if (toBorders[b] == INFINITY) {
+				continue;
+			}
+			for (int i = 0; i < n; i++) {
+				int cost = getCostFromBorder(leaf, b, i);
+				if (cost != INFINITY && toBorders[b] + (long) cost < costs[i]) {
+					costs[i] = toBorders[b] + cost;
+				}
+			}
+		}
+		return costs;
+	}
+
+	/**
+	 * Lists, for each tree node, where the given PoIs are: the children whose cells have at
+	 * least one of them for internal nodes, and the positions of the PoIs for leaves.
+	 */
+	public int[][] createOccurrenceLists(int[] pois) {
+		boolean[] hasPoI = new boolean[parents.length];
+		IntArrayList[] lists = new IntArrayList[parents.length];
+		for (int t = 0; t < parents.length; t++) {
+			lists[t] = new IntArrayList();
+		}
+		for (int poi : pois) {
+			int t = leaves[poi];
+			lists[t].add(leafPositions[poi]);
+			while (!hasPoI[t]) {
+				hasPoI[t] = true;
+				if (t == 0) {
+					break;
+				}
+				lists[parents[t]].add(t);
+				t = parents[t];
+			}
+		}
+		int[][] occurrences = new int[parents.length][];
+		for (int t = 0; t < parents.length; t++) {
+			occurrences[t] = lists[t].toIntArray();
+			Arrays.sort(occurrences[t]);
+		}
+		return occurrences;
+	}
+
+	public void save() {
+		IntArrayList tree = new IntArrayList();
+		tree.add(parents.length);
+		tree.addAll(IntArrayList.wrap(parents));
+		tree.addAll(IntArrayList.wrap(offsets));
+		write(tree, children);
+		write(tree, vertices);
+		write(tree, borders);
+
+		IntArrayList costs = new IntArrayList();
+		write(costs, matrices);
+
+		String dir = getDirectory();
+		FileUtils.saveIntArray(dir + "/tree", tree.toIntArray(), BLOCK_SIZE, graph.getCompressionType());
+		FileUtils.saveIntArray(dir + "/matrices", costs.toIntArray(), BLOCK_SIZE, graph.getCompressionType());
+	}
+
+	private static void write(IntArrayList out, int[][] arrays) {
+		for (int[] array : arrays) {
+			out.add(array.length);
+			out.addAll(IntArrayList.wrap(array));
+		}
+	}
+
+	private static int read(int[] in, int position, int[][] arrays) {
+		for (int t = 0; t < arrays.length; t++) {
+			int length = in[position++];
+			arrays[t] = Arrays.copyOfRange(in, position, position + length);
+			position += length;
+		}
+		return position;
+	}
+
+	/**
+	 * Loads the index saved by {@link #save()}.
+	 */
+	public static GTree load(GraphBounds graph, GraphBoundsType type) {
+		GTree tree = new GTree(graph, type);
+		String dir = tree.getDirectory();
+		int[] in = FileUtils.loadIntArray(dir + "/tree", BLOCK_SIZE, graph.getCompressionType());
+		int size = in[0];
+		tree.parents = Arrays.copyOfRange(in, 1, 1 + size);
+		tree.offsets = Arrays.copyOfRange(in, 1 + size, 1 + 2 * size);
+		tree.children = new int[size][];
+		tree.vertices = new int[size][];
+		tree.borders = new int[size][];
+		int position = read(in, 1 + 2 * size, tree.children);
+		position = read(in, position, tree.vertices);
+		read(in, position, tree.borders);
+		tree.matrices = new int[size][];
+		read(FileUtils.loadIntArray(dir + "/matrices", BLOCK_SIZE, graph.getCompressionType()), 0, tree.matrices);
+
+		int numberOfNodes = tree.compactGraph.getNumberOfNodes();
+		tree.depths = new int[size];
+		tree.leaves = new int[numberOfNodes];
+		tree.leafPositions = new int[numberOfNodes];
+		int covered = 0;
+		for (int t = 0; t < size; t++) {
+			if (t > 0) {
+				tree.depths[t] = tree.depths[tree.parents[t]] + 1;
+			}
+			if (tree.isLeaf(t)) {
+				for (int i = 0; i < tree.vertices[t].length; i++) {
+					tree.leaves[tree.vertices[t][i]] = t;
+					tree.leafPositions[tree.vertices[t][i]] = i;
+				}
+				covered += tree.vertices[t].length;
+			}
+		}
+		if (covered != numberOfNodes) {
+			throw new GraphastException("The index in " + dir + " was not created for this graph.");
+		}
+		return tree;
+	}
+
+	private String getDirectory() {
+		return graph.getAbsoluteDirectory() + "/gtree/" + type.name().toLowerCase();
+	}
+
+	public boolean isLeaf(int treeNode) {
+		return children[treeNode].length == 0;
+	}
+
+	public int getNumberOfTreeNodes() {
+		return parents.length;
+	}
+
+	public int getParent(int treeNode) {
+		return parents[treeNode];
+	}
+
+	public int[] getChildren(int treeNode) {
+		return children[treeNode];
+	}
+
+	/**
+	 * Nodes of the graph in the leaf, or borders of the children of an internal tree node.
+	 */
+	public int[] getVertices(int treeNode) {
+		return vertices[treeNode];
+	}
+
+	/**
+	 * Positions, in {@link #getVertices(int)}, of the borders of the tree node.
+	 */
+	public int[] getBorders(int treeNode) {
+		return borders[treeNode];
+	}
+
+	/**
+	 * Position of the borders of the tree node in the vertices of its parent.
+	 */
+	public int getOffset(int treeNode) {
+		return offsets[treeNode];
+	}
+
+	public int getLeaf(long vid) {
+		return leaves[(int) vid];
+	}
+
+	public int getLeafPosition(long vid) {
+		return leafPositions[(int) vid];
+	}
+
+	public GraphBounds getGraph() {
+		return graph;
+	}
+
+	public GraphBoundsType getType() {
+		return type;
+	}
+
+}
@@ -0,0 +1,195 @@
+package org.graphast.query.knn;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.graphast.model.Node;
+import org.graphast.query.route.shortestpath.dijkstra.DijkstraCompact;
+
+/**
+ * KNN and range searches over a {@link GTree}. Cells are visited best-first by the
+ * lowest cost to one of their borders, and cells without PoIs are never opened, so the
+ * search does not depend on how far apart the PoIs are.
+ *
+ * The costs are the static costs of the tree ({@link GTree#getType()}): the departure
+ * time is ignored, and the neighbors have no path.
+ */
+public class GTreeKNNSearch implements KNNService {
+
+	private static final int INFINITY = DijkstraCompact.INFINITY;
+
+	private GTree tree;
+	private int[][] occurrences;
+
+	public GTreeKNNSearch(GTree tree) {
+		this(tree, -1);
+	}
+
+	/**
+	 * @param category only PoIs of this category are searched, -1 for all of them
+	 */
+	public GTreeKNNSearch(GTree tree, int category) {
+		this.tree = tree;
+		this.occurrences = tree.createOccurrenceLists(AbstractBoundsKNN.getPoIs(tree.getGraph(), category));
+	}
+
+	@Override
+	public List<NearestNeighbor> search(Node v, Date time, int k) {
+		return search(v.getId(), k, INFINITY);
+	}
+
+	/**
+	 * PoIs that can be reached from the node within the given cost, nearest first.
+	 */
+	public List<NearestNeighbor> rangeSearch(Node v, int maxCost) {
+		return search(v.getId(), Integer.MAX_VALUE, maxCost);
+	}
+
+	private List<NearestNeighbor> search(long vid, int k, int maxCost) {
+		List<NearestNeighbor> result = new ArrayList<NearestNeighbor>();
+		if (k <= 0 || occurrences[0].length == 0) {
+			return result;
+		}
+		PriorityQueue<Entry> queue = new PriorityQueue<Entry>();
+		int leaf = tree.getLeaf(vid);
+
+		// PoIs in the leaf of the node
+		int[] costs = tree.getCostsInLeaf((int) vid);
+		for (int position : occurrences[leaf]) {
+			offer(queue, new Entry(-1, tree.getVertices(leaf)[position], costs[position], null), maxCost);
+		}
+
+		// going up, the costs to the borders of each cell give the costs to the vertices of
+		// the parent, and so to the borders of the siblings
+		int[] toBorders = tree.getCostsToBorders((int) vid);
+		for (int child = leaf; child != 0; child = tree.getParent(child)) {
+			int parent = tree.getParent(child);
+			int[] toVertices = costsFromBorders(parent, child, toBorders);
+			for (int sibling : occurrences[parent]) {
+				if (sibling != child) {
+					offer(queue, cellEntry(sibling, toVertices, tree.getOffset(sibling)), maxCost);
+				}
+			}
+			toBorders = select(toVertices, tree.getBorders(parent));
+		}
+
+		while (!queue.isEmpty() && result.size() < k) {
+			Entry entry = queue.poll();
+			if (entry.treeNode == -1) {
+				result.add(new NearestNeighbor(entry.id, entry.cost));
+			} else if (tree.isLeaf(entry.treeNode)) {
+				openLeaf(queue, entry, maxCost);
+			} else {
+				int[] toVertices = costsFromBorders(entry.treeNode, entry.toBorders);
+				for (int child : occurrences[entry.treeNode]) {
+					offer(queue, cellEntry(child, toVertices, tree.getOffset(child)), maxCost);
+				}
+			}
+		}
+		return result;
+	}
+
+	private void openLeaf(PriorityQueue<Entry> queue, Entry entry, int maxCost) {
+		int leaf = entry.treeNode;
+		for (int position : occurrences[leaf]) {
+			int cost = INFINITY;
+			for (int b = 0; b < entry.toBorders.length; b++) {
+				cost = min(cost, entry.toBorders[b], tree.getCostFromBorder(leaf, b, position));
+			}
+			offer(queue, new Entry(-1, tree.getVertices(leaf)[position], cost, null), maxCost);
+		}
+	}
+
+	/**
+	 * Costs to the vertices of the parent from the costs to the borders of one of its children.
+	 */
+	private int[] costsFromBorders(int parent, int child, int[] toBorders) {
+		int size = tree.getVertices(parent).length;
+		int offset = tree.getOffset(child);
+		int[] costs = new int[size];
+		Arrays.fill(costs, INFINITY);
+		for (int b = 0; b < toBorders.length; b++) {
+			for (int i = 0; i < size; i++) {
+				costs[i] = min(costs[i], toBorders[b], tree.getCost(parent, offset + b, i));
+			}
+		}
+		return costs;
+	}
+
+	/**
+	 * Costs to the vertices of an internal tree node from the costs to its own borders.
+	 */
+	private int[] costsFromBorders(int treeNode, int[] toBorders) {
+		int size = tree.getVertices(treeNode).length;
+		int[] borders = tree.getBorders(treeNode);
+		int[] costs = new int[size];
+		Arrays.fill(costs, INFINITY);
+		for (int b = 0; b < toBorders.length; b++) {
+			for (int i = 0; i < size; i++) {
+				costs[i] = min(costs[i], toBorders[b], tree.getCost(treeNode, borders[b], i));
+			}
+		}
+		return costs;
+	}
+
+	private Entry cellEntry(int treeNode, int[] parentCosts, int offset) {
+		int[] toBorders = Arrays.copyOfRange(parentCosts, offset, offset + tree.getBorders(treeNode).length);
+		int cost = INFINITY;
+		for (int c : toBorders) {
+			cost = Math.min(cost, c);
+		}
+		return new Entry(treeNode, -1, cost, toBorders);
+	}
+
+	private static int[] select(int[] values, int[] positions) {
+		int[] selected = new int[positions.length];
+		for (int i = 0; i < positions.length; i++) {
+			selected[i] = values[positions[i]];
+		}
+		return selected;
+	}
+
+	private static int min(int current, int a, int b) {
+		if (a == INFINITY || b == INFINITY) {
+			return current;
+		}
+		return (long) a + b < current ? a + b : current;
+	}
+
+	private static void offer(PriorityQueue<Entry> queue, Entry entry, int maxCost) {
+		if (entry.cost != INFINITY && entry.cost <= maxCost) {
+			queue.offer(entry);
+		}
+	}
+
+	/**
+	 * A cell, with the costs to its borders, or a PoI (treeNode -1) with its exact cost.
+	 */
+	private static class Entry implements Comparable<Entry> {
+
+		private int treeNode;
+		private int id;
+		private int cost;
+		private int[] toBorders;
+
+		private Entry(int treeNode, int id, int cost, int[] toBorders) {
+			this.treeNode = treeNode;
+			this.id = id;
+			this.cost = cost;
+			this.toBorders = toBorders;
+		}
+
+		@Override
+		public int compareTo(Entry o) {
+			if (cost != o.cost) {
+				return cost < o.cost ? -1 : 1;
+			}
+			// PoIs before cells with the same cost
+			return treeNode == o.treeNode ? 0 : treeNode == -1 ? -1 : o.treeNode == -1 ? 1 : 0;
+		}
+	}
+
+}
@@ -0,0 +1,173 @@
+package org.graphast.query.knn;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.graphast.exception.PathNotFoundException;
+import org.graphast.model.Graph;
+import org.graphast.model.Node;
+import org.graphast.query.route.shortestpath.ShortestPathService;
+import org.graphast.query.route.shortestpath.model.Path;
+import org.graphast.util.DistanceUtils;
+
+import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.RTree;
+import com.github.davidmoten.rtree.geometry.Geometries;
+import com.github.davidmoten.rtree.geometry.Point;
+
+/**
+ * Incremental Euclidean Restriction (Papadias et al.): the PoIs are taken from an R-tree in
+ * order of straight line distance, and the network cost of each one is computed by a point
+ * to point search. The straight line distance at the maximum speed is a lower bound of the
+ * cost, so the search stops when the k-th cost found is not greater than the bound of the
+ * next PoI. With many PoIs only a few searches are needed, each one much smaller than the
+ * expansion of the network around the query.
+ */
+public class IERKNNSearch implements KNNService {
+
+	// radius of the earth in meters, times a margin for the flat approximation of the distance
+	private static final double METERS_PER_RADIAN = 6371000 * 0.99;
+
+	private Graph graph;
+	private ShortestPathService service;
+	private double maxSpeed;
+
+	private RTree<Long, Point> tree;
+	private int numberOfPoIs;
+	private double maxLatitude;
+
+	public IERKNNSearch(Graph graph, ShortestPathService service) {
+		this(graph, service, -1, DistanceUtils.MAX_SPEED);
+	}
+
+	/**
+	 * @param service point to point search used to compute the costs to the PoIs
+	 * @param category only PoIs of this category are searched, -1 for all of them
+	 * @param maxSpeed meters per unit of cost. Dividing any distance in meters by it must not
+	 * 				   give more than the cost of a path over that distance
+	 */
+	public IERKNNSearch(Graph graph, ShortestPathService service, int category, double maxSpeed) {
+		this.graph = graph;
+		this.service = service;
+		this.maxSpeed = maxSpeed;
+
+		tree = RTree.create();
+		for (long poi : graph.getPoiIds()) {
+			Node node = graph.getNode(poi);
+			if (category == -1 || node.getCategory() == category) {
+				tree = tree.add(poi, Geometries.point(node.getLatitude(), node.getLongitude()));
+				maxLatitude = Math.max(maxLatitude, Math.abs(node.getLatitude()));
+				numberOfPoIs++;
+			}
+		}
+	}
+
+	@Override
+	public List<NearestNeighbor> search(Node v, Date time, int k) {
+		List<NearestNeighbor> result = new ArrayList<NearestNeighbor>();
+		if (k <= 0 || numberOfPoIs == 0) {
+			return result;
+		}
+
+		Point query = Geometries.point(v.getLatitude(), v.getLongitude());
+		double cosine = Math.cos(Math.toRadians(Math.min(90, Math.max(maxLatitude, Math.abs(v.getLatitude())))));
+		PriorityQueue<Candidate> candidates = new PriorityQueue<Candidate>();
+		LongOpenHashSet fetched = new LongOpenHashSet();
+		// lower bound of the PoIs not taken from the tree yet
+		int remainingBound = 0;
+		int batch = k;
+
+		PriorityQueue<NearestNeighbor> best = new PriorityQueue<NearestNeighbor>(k, Collections.reverseOrder());
+		int visited = 0;
+
+		while (true) {
+			if (fetched.size() < numberOfPoIs && (candidates.isEmpty() || candidates.peek().bound > remainingBound)) {
+				remainingBound = fetch(query, v, cosine, fetched.size() + batch, fetched, candidates);
+				batch *= 2;
+				continue;
+			}
+			if (candidates.isEmpty()) {
+				break;
+			}
+			if (best.size() == k && best.peek().getDistance() <= candidates.peek().bound) {
+				break;
+			}
+
+			Candidate candidate = candidates.poll();
+			try {
+				Path path = service.shortestPath(v, graph.getNode(candidate.id), time);
+				visited += path.getNumberVisitedNodes();
+				int cost = (int) path.getTotalCost();
+				if (best.size() < k || cost < best.peek().getDistance()) {
+					best.offer(new NearestNeighbor(candidate.id, cost, nodes(v.getId(), path), visited));
+					if (best.size() > k) {
+						best.poll();
+					}
+				}
+			} catch (PathNotFoundException e) {
+				// the PoI cannot be reached from the query
+			}
+		}
+
+		result.addAll(best);
+		Collections.sort(result);
+		return result;
+	}
+
+	/**
+	 * Takes from the tree the PoIs among the given number of nearest ones that were not
+	 * taken before.
+	 *
+	 * @return lower bound of the cost to every PoI still in the tree
+	 */
+	private int fetch(Point query, Node v, double cosine, int count, LongOpenHashSet fetched,
+			PriorityQueue<Candidate> candidates) {
+		List<Entry<Long, Point>> nearest = tree.nearest(query, Double.MAX_VALUE, count).toList().toBlocking().single();
+		double radius = 0;
+		for (Entry<Long, Point> entry : nearest) {
+			radius = Math.max(radius, entry.geometry().distance(query));
+			if (fetched.add(entry.value())) {
+				double meters = DistanceUtils.distanceLatLong(v, graph.getNode(entry.value()));
+				candidates.offer(new Candidate(entry.value(), (int) (meters / maxSpeed)));
+			}
+		}
+		if (fetched.size() == numberOfPoIs) {
+			return Integer.MAX_VALUE;
+		}
+		// points farther than the radius, in degrees, are at least this far in meters
+		return (int) (Math.toRadians(radius) * cosine * METERS_PER_RADIAN / maxSpeed);
+	}
+
+	private ArrayList<Long> nodes(long source, Path path) {
+		ArrayList<Long> nodes = new ArrayList<Long>();
+		nodes.add(source);
+		if (path.getEdges() != null) {
+			for (long e : path.getEdges()) {
+				nodes.add(graph.getEdge(e).getToNode());
+			}
+		}
+		return nodes;
+	}
+
+	private static class Candidate implements Comparable<Candidate> {
+
+		private long id;
+		private int bound;
+
+		private Candidate(long id, int bound) {
+			this.id = id;
+			this.bound = bound;
+		}
+
+		@Override
+		public int compareTo(Candidate o) {
+			return Integer.compare(bound, o.bound);
+		}
+	}
+
+}
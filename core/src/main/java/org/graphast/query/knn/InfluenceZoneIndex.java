@@ -0,0 +1,389 @@
+package org.graphast.query.knn;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+import org.graphast.enums.GraphBoundsType;
+import org.graphast.exception.GraphastException;
+import org.graphast.model.CompactGraph;
+import org.graphast.model.GraphBounds;
+import org.graphast.query.model.QueueEntry;
+import org.graphast.query.route.shortestpath.dijkstra.DijkstraCompact;
+import org.graphast.util.GeoUtils;
+
+/**
+ * Influence zone of each PoI: the nodes that have it as their nearest PoI, under the
+ * lower and under the upper bound costs. The zone of a PoI answers its reverse nearest
+ * neighbors, and its size its share of the network, in time proportional to the zone.
+ *
+ * The nodes are ranked along a Hilbert curve and each zone is kept as runs of consecutive
+ * ranks. Adding or removing a PoI only searches the nodes whose nearest PoI changes.
+ */
+public class InfluenceZoneIndex {
+
+	private static final int INFINITY = DijkstraCompact.INFINITY;
+
+	private GraphBounds graph;
+	private int category;
+	private CompactGraph compactGraph;
+
+	private int[] ranks;
+	private int[] nodes;
+
+	private Zones lower;
+	private Zones upper;
+
+	public InfluenceZoneIndex(GraphBounds graph) {
+		this(graph, -1);
+	}
+
+	/**
+	 * @param category only PoIs of this category have zones, -1 for all of them
+	 */
+	public InfluenceZoneIndex(GraphBounds graph, int category) {
+		this.graph = graph;
+		this.category = category;
+		if (graph.getEdgesLowerBound().isEmpty()) {
+			graph.createBounds();
+		}
+		compactGraph = new CompactGraph(graph);
+
+		nodes = GeoUtils.hilbertOrder(graph);
+		ranks = new int[nodes.length];
+		for (int r = 0; r < nodes.length; r++) {
+			ranks[nodes[r]] = r;
+		}
+
+		int[] pois = AbstractBoundsKNN.getPoIs(graph, category);
+		lower = new Zones(CompactGraph.getEdgeCosts(graph, GraphBoundsType.LOWER), pois);
+		upper = new Zones(CompactGraph.getEdgeCosts(graph, GraphBoundsType.UPPER), pois);
+	}
+
+	/**
+	 * Makes the node a PoI of the category (with {@link GraphBounds#setNodeCategory}) and
+	 * moves to its zone the nodes that are now nearer to it than to their PoI. A PoI of the
+	 * indexed category that changes to another category loses its zone, as in
+	 * {@link #removePoI(long)}.
+	 */
+	public void addPoI(long nodeId, int category) {
+		if (category < 0) {
+			throw new GraphastException("The category of a PoI must not be negative.");
+		}
+		graph.setNodeCategory(nodeId, category);
+		if (this.category == -1 || this.category == category) {
+			lower.add((int) nodeId);
+			upper.add((int) nodeId);
+		} else {
+			lower.remove((int) nodeId);
+			upper.remove((int) nodeId);
+		}
+	}
+
+	/**
+	 * Makes the node a regular node again and splits its zone among the other PoIs.
+	 */
+	public void removePoI(long nodeId) {
+		graph.setNodeCategory(nodeId, -1);
+		lower.remove((int) nodeId);
+		upper.remove((int) nodeId);
+	}
+
+	/**
+	 * Nodes that have the PoI as their nearest PoI: its reverse nearest neighbors.
+	 */
+	public int[] getZone(long poi, GraphBoundsType type) {
+		return getZones(type).getZone((int) poi);
+	}
+
+	public int getZoneSize(long poi, GraphBoundsType type) {
+		int[] runs = getZones(type).runs.get((int) poi);
+		int size = 0;
+		if (runs != null) {
+			for (int i = 0; i < runs.length; i += 2) {
+				size += runs[i + 1] - runs[i];
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Fraction of the nodes that reach a PoI which have the given PoI as the nearest one.
+	 */
+	public double getMarketShare(long poi, GraphBoundsType type) {
+		Zones zones = getZones(type);
+		return zones.covered == 0 ? 0 : (double) getZoneSize(poi, type) / zones.covered;
+	}
+
+	/**
+	 * Nearest PoI of the node, -1 if it reaches no PoI.
+	 */
+	public int getNearestPoI(long vid, GraphBoundsType type) {
+		return getZones(type).generators[(int) vid];
+	}
+
+	public int getCost(long vid, GraphBoundsType type) {
+		return getZones(type).costs[(int) vid];
+	}
+
+	/**
+	 * Runs of the zone of the PoI: pairs of first rank (inclusive) and last rank (exclusive).
+	 */
+	public int[] getRuns(long poi, GraphBoundsType type) {
+		int[] runs = getZones(type).runs.get((int) poi);
+		return runs == null ? new int[0] : runs;
+	}
+
+	/**
+	 * Rank of the node in the Hilbert order used by the runs.
+	 */
+	public int getRank(long vid) {
+		return ranks[(int) vid];
+	}
+
+	private Zones getZones(GraphBoundsType type) {
+		if (type == GraphBoundsType.LOWER) {
+			return lower;
+		} else if (type == GraphBoundsType.UPPER) {
+			return upper;
+		}
+		throw new GraphastException("The influence zones are only kept for the lower and upper bound costs.");
+	}
+
+	public int getCategory() {
+		return category;
+	}
+
+	private class Zones {
+
+		private int[] edgeCosts;
+		private int[] generators;
+		private int[] costs;
+		private Int2ObjectOpenHashMap<int[]> runs = new Int2ObjectOpenHashMap<int[]>();
+		private int covered;
+
+		private Zones(int[] edgeCosts, int[] pois) {
+			this.edgeCosts = edgeCosts;
+			VoronoiDiagram diagram = VoronoiDiagram.create(compactGraph, edgeCosts, pois);
+			generators = diagram.getGenerators();
+			costs = diagram.getCosts();
+
+			Int2ObjectOpenHashMap<IntArrayList> members = new Int2ObjectOpenHashMap<IntArrayList>();
+			for (int r = 0; r < nodes.length; r++) {
+				int generator = generators[nodes[r]];
+				if (generator != -1) {
+					IntArrayList list = members.get(generator);
+					if (list == null) {
+						list = new IntArrayList();
+						members.put(generator, list);
+					}
+					list.add(r);
+					covered++;
+				}
+			}
+			for (int generator : members.keySet()) {
+				runs.put(generator, toRuns(members.get(generator).toIntArray()));
+			}
+		}
+
+		private int[] getZone(int poi) {
+			int[] zoneRuns = runs.get(poi);
+			if (zoneRuns == null) {
+				return new int[0];
+			}
+			IntArrayList zone = new IntArrayList();
+			for (int i = 0; i < zoneRuns.length; i += 2) {
+				for (int r = zoneRuns[i]; r < zoneRuns[i + 1]; r++) {
+					zone.add(nodes[r]);
+				}
+			}
+			return zone.toIntArray();
+		}
+
+		/**
+		 * Search from the new PoI that only goes on through nodes it is strictly nearer to.
+		 */
+		private void add(int poi) {
+			if (generators[poi] == poi) {
+				return;
+			}
+			IntArrayList moved = new IntArrayList();
+			IntOpenHashSet losers = new IntOpenHashSet();
+			IntOpenHashSet settled = new IntOpenHashSet();
+			Int2IntOpenHashMap distances = new Int2IntOpenHashMap();
+			distances.defaultReturnValue(INFINITY);
+			PriorityQueue<QueueEntry> queue = new PriorityQueue<QueueEntry>();
+			distances.put(poi, 0);
+			queue.offer(new QueueEntry(poi, 0));
+
+			while (!queue.isEmpty()) {
+				QueueEntry removed = queue.poll();
+				int u = (int) removed.getId();
+				int cost = distances.get(u);
+				if (settled.contains(u) || removed.getTravelTime() != cost) {
+					continue;
+				}
+				settled.add(u);
+				if (generators[u] != -1) {
+					losers.add(generators[u]);
+				} else {
+					covered++;
+				}
+				generators[u] = poi;
+				costs[u] = cost;
+				moved.add(ranks[u]);
+
+				for (int i = compactGraph.getInBegin(u); i < compactGraph.getInEnd(u); i++) {
+					int e = compactGraph.getInEdge(i);
+					int v = compactGraph.getFromNode(e);
+					long newCost = (long) cost + edgeCosts[e];
+					if (!settled.contains(v) && newCost < costs[v] && newCost < distances.get(v)) {
+						distances.put(v, (int) newCost);
+						queue.offer(new QueueEntry(v, (int) newCost));
+					}
+				}
+			}
+
+			runs.put(poi, toRuns(sorted(moved)));
+			for (int loser : losers) {
+				rebuildRuns(loser);
+			}
+		}
+
+		/**
+		 * Search restricted to the zone of the removed PoI, started from the costs of the
+		 * nodes around the zone.
+		 */
+		private void remove(int poi) {
+			int[] zone = getZone(poi);
+			runs.remove(poi);
+			if (zone.length == 0) {
+				return;
+			}
+			IntOpenHashSet inZone = new IntOpenHashSet(zone);
+			PriorityQueue<QueueEntry> queue = new PriorityQueue<QueueEntry>();
+			for (int v : zone) {
+				generators[v] = -1;
+				costs[v] = INFINITY;
+			}
+			covered -= zone.length;
+
+			for (int v : zone) {
+				for (int i = compactGraph.getOutBegin(v); i < compactGraph.getOutEnd(v); i++) {
+					int e = compactGraph.getOutEdge(i);
+					int w = compactGraph.getToNode(e);
+					if (!inZone.contains(w) && generators[w] != -1) {
+						long cost = (long) costs[w] + edgeCosts[e];
+						if (cost < costs[v]) {
+							costs[v] = (int) cost;
+							generators[v] = generators[w];
+						}
+					}
+				}
+				if (generators[v] != -1) {
+					queue.offer(new QueueEntry(v, costs[v]));
+				}
+			}
+
+			IntOpenHashSet settled = new IntOpenHashSet();
+			while (!queue.isEmpty()) {
+				QueueEntry removed = queue.poll();
+				int u = (int) removed.getId();
+				if (settled.contains(u) || removed.getTravelTime() != costs[u]) {
+					continue;
+				}
+				settled.add(u);
+				covered++;
+
+				for (int i = compactGraph.getInBegin(u); i < compactGraph.getInEnd(u); i++) {
+					int e = compactGraph.getInEdge(i);
+					int v = compactGraph.getFromNode(e);
+					long newCost = (long) costs[u] + edgeCosts[e];
+					if (inZone.contains(v) && !settled.contains(v) && newCost < costs[v]) {
+						costs[v] = (int) newCost;
+						generators[v] = generators[u];
+						queue.offer(new QueueEntry(v, costs[v]));
+					}
+				}
+			}
+
+			// the nodes of the zone join the runs of their new PoIs
+			Int2ObjectOpenHashMap<IntArrayList> members = new Int2ObjectOpenHashMap<IntArrayList>();
+			for (int v : zone) {
+				if (generators[v] == -1) {
+					continue;
+				}
+				IntArrayList list = members.get(generators[v]);
+				if (list == null) {
+					list = new IntArrayList(getZoneRanks(generators[v]));
+					members.put(generators[v], list);
+				}
+				list.add(ranks[v]);
+			}
+			for (int winner : members.keySet()) {
+				runs.put(winner, toRuns(sorted(members.get(winner))));
+			}
+		}
+
+		private int[] getZoneRanks(int poi) {
+			int[] zoneRuns = runs.get(poi);
+			IntArrayList zoneRanks = new IntArrayList();
+			if (zoneRuns != null) {
+				for (int i = 0; i < zoneRuns.length; i += 2) {
+					for (int r = zoneRuns[i]; r < zoneRuns[i + 1]; r++) {
+						zoneRanks.add(r);
+					}
+				}
+			}
+			return zoneRanks.toIntArray();
+		}
+
+		/**
+		 * Drops from the runs of the PoI the nodes that moved to other zones.
+		 */
+		private void rebuildRuns(int poi) {
+			IntArrayList kept = new IntArrayList();
+			for (int r : getZoneRanks(poi)) {
+				if (generators[nodes[r]] == poi) {
+					kept.add(r);
+				}
+			}
+			if (kept.isEmpty()) {
+				runs.remove(poi);
+			} else {
+				runs.put(poi, toRuns(kept.toIntArray()));
+			}
+		}
+	}
+
+	private static int[] sorted(IntArrayList list) {
+		int[] array = list.toIntArray();
+		IntArrays.quickSort(array);
+		return array;
+	}
+
+	/**
+	 * Runs of consecutive values of a sorted array.
+	 */
+	private static int[] toRuns(int[] sortedRanks) {
+		IntArrayList runs = new IntArrayList();
+		for (int i = 0; i < sortedRanks.length; i++) {
+			if (i == 0 || sortedRanks[i] != sortedRanks[i - 1] + 1) {
+				if (i > 0) {
+					runs.add(sortedRanks[i - 1] + 1);
+				}
+				runs.add(sortedRanks[i]);
+			}
+		}
+		if (sortedRanks.length > 0) {
+			runs.add(sortedRanks[sortedRanks.length - 1] + 1);
+		}
+		return Arrays.copyOf(runs.elements(), runs.size());
+	}
+
+}
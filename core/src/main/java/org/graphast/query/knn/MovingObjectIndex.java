@@ -0,0 +1,144 @@
+package org.graphast.query.knn;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.graphast.exception.GraphastException;
+import org.graphast.model.Graph;
+
+/**
+ * Positions of moving objects, e.g. taxis, as an edge and an offset along it, kept apart
+ * from the graph: updating a position does not change any node or edge. Each position is
+ * packed in a single long, so updates from many threads need no lock and a search always
+ * sees whole positions.
+ *
+ * Objects are identified by numbers from 0 to the capacity of the index.
+ */
+public class MovingObjectIndex {
+
+	private static final long EMPTY = -1;
+
+	private Graph graph;
+	private AtomicLongArray positions;
+
+	public MovingObjectIndex(Graph graph, int capacity) {
+		this.graph = graph;
+		this.positions = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; i++) {
+			positions.set(i, EMPTY);
+		}
+	}
+
+	/**
+	 * @param offset fraction of the edge already traveled, from 0 (at the from node) to 1
+	 * 				 (at the to node)
+	 */
+	public void update(int objectId, long edgeId, double offset) {
+		if (edgeId < 0 || edgeId >= graph.getNumberOfEdges()) {
+			throw new GraphastException("Invalid edge " + edgeId + ".");
+		}
+		if (offset < 0 || offset > 1) {
+			throw new GraphastException("The offset must be between 0 and 1.");
+		}
+		positions.set(objectId, (edgeId << 32) | (Float.floatToIntBits((float) offset) & 0xFFFFFFFFL));
+	}
+
+	public void remove(int objectId) {
+		positions.set(objectId, EMPTY);
+	}
+
+	public boolean contains(int objectId) {
+		return positions.get(objectId) != EMPTY;
+	}
+
+	/**
+	 * Edge of the object, -1 if it is not in the index.
+	 */
+	public int getEdge(int objectId) {
+		return getEdge(positions.get(objectId));
+	}
+
+	public double getOffset(int objectId) {
+		return getOffset(positions.get(objectId));
+	}
+
+	public int getCapacity() {
+		return positions.length();
+	}
+
+	public Graph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * Objects by edge, at the moment of the call. Later updates do not change it.
+	 */
+	public Snapshot snapshot() {
+		Snapshot snapshot = new Snapshot();
+		for (int i = 0; i < positions.length(); i++) {
+			long position = positions.get(i);
+			if (position == EMPTY) {
+				continue;
+			}
+			int edge = getEdge(position);
+			IntArrayList objects = snapshot.objects.get(edge);
+			if (objects == null) {
+				objects = new IntArrayList();
+				snapshot.objects.put(edge, objects);
+			}
+			objects.add(i);
+			objects.add(Float.floatToIntBits((float) getOffset(position)));
+			snapshot.size++;
+		}
+		return snapshot;
+	}
+
+	private static int getEdge(long position) {
+		return position == EMPTY ? -1 : (int) (position >>> 32);
+	}
+
+	private static double getOffset(long position) {
+		return position == EMPTY ? 0 : Float.intBitsToFloat((int) position);
+	}
+
+	/**
+	 * Objects and offsets of each edge.
+	 */
+	public static class Snapshot {
+
+		// object ids and offset bits, interleaved
+		private Int2ObjectOpenHashMap<IntArrayList> objects = new Int2ObjectOpenHashMap<IntArrayList>();
+		private int size;
+
+		public boolean hasObjects(int edgeId) {
+			return objects.containsKey(edgeId);
+		}
+
+		public int getNumberOfObjects(int edgeId) {
+			IntArrayList list = objects.get(edgeId);
+			return list == null ? 0 : list.size() / 2;
+		}
+
+		/**
+		 * @param i position of the object among the objects of the edge
+		 */
+		public int getObject(int edgeId, int i) {
+			return objects.get(edgeId).getInt(2 * i);
+		}
+
+		public double getOffset(int edgeId, int i) {
+			return Float.intBitsToFloat(objects.get(edgeId).getInt(2 * i + 1));
+		}
+
+		public int[] getEdges() {
+			return objects.keySet().toIntArray();
+		}
+
+		public int size() {
+			return size;
+		}
+	}
+
+}
@@ -0,0 +1,117 @@
+package org.graphast.query.knn;
+
+import static org.graphast.util.NumberUtils.convertToInt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.graphast.model.CompactCosts;
+import org.graphast.model.CompactGraph;
+import org.graphast.model.Node;
+import org.graphast.query.model.QueueEntry;
+import org.graphast.query.route.shortestpath.dijkstra.DijkstraCompact;
+import org.graphast.util.DateUtils;
+
+/**
+ * KNN over the objects of a {@link MovingObjectIndex}. A time-dependent search from the
+ * query node reaches an object when it crosses its edge, at the cost to the start of the
+ * edge plus the traveled part of the edge cost. The search stops when the k-th object is
+ * nearer than the next node. The ids of the neighbors are object ids.
+ */
+public class MovingObjectKNNSearch implements KNNService {
+
+	private static final int INFINITY = DijkstraCompact.INFINITY;
+
+	private MovingObjectIndex index;
+	private CompactGraph compactGraph;
+	private CompactCosts compactCosts;
+
+	public MovingObjectKNNSearch(MovingObjectIndex index) {
+		this.index = index;
+		this.compactGraph = new CompactGraph(index.getGraph());
+		this.compactCosts = new CompactCosts(index.getGraph());
+	}
+
+	@Override
+	public List<NearestNeighbor> search(Node v, Date time, int k) {
+		List<NearestNeighbor> result = new ArrayList<NearestNeighbor>();
+		MovingObjectIndex.Snapshot objects = index.snapshot();
+		if (k <= 0 || objects.size() == 0) {
+			return result;
+		}
+		int source = convertToInt(v.getId());
+		int departure = DateUtils.dateToMilli(time);
+		int n = compactGraph.getNumberOfNodes();
+
+		int[] travelTimes = new int[n];
+		int[] parentEdges = new int[n];
+		boolean[] settled = new boolean[n];
+		Arrays.fill(travelTimes, INFINITY);
+		Arrays.fill(parentEdges, -1);
+
+		PriorityQueue<QueueEntry> queue = new PriorityQueue<QueueEntry>();
+		travelTimes[source] = 0;
+		queue.offer(new QueueEntry(source, 0));
+
+		PriorityQueue<NearestNeighbor> best = new PriorityQueue<NearestNeighbor>(k, Collections.reverseOrder());
+		int visited = 0;
+		while (!queue.isEmpty()) {
+			QueueEntry removed = queue.poll();
+			int u = (int) removed.getId();
+			if (settled[u] || removed.getTravelTime() != travelTimes[u]) {
+				continue;
+			}
+			if (best.size() == k && best.peek().getDistance() <= travelTimes[u]) {
+				break;
+			}
+			settled[u] = true;
+			visited++;
+
+			int arrival = compactCosts.getArrival(departure, travelTimes[u]);
+			for (int i = compactGraph.getOutBegin(u); i < compactGraph.getOutEnd(u); i++) {
+				int e = compactGraph.getOutEdge(i);
+				int w = compactGraph.getToNode(e);
+				int cost = compactCosts.getCost(e, arrival);
+
+				for (int o = 0; o < objects.getNumberOfObjects(e); o++) {
+					int travelTime = travelTimes[u] + (int) Math.round(objects.getOffset(e, o) * cost);
+					if (best.size() < k || travelTime < best.peek().getDistance()) {
+						best.offer(new NearestNeighbor(objects.getObject(e, o), travelTime, path(u, parentEdges), visited));
+						if (best.size() > k) {
+							best.poll();
+						}
+					}
+				}
+
+				long travelTime = (long) travelTimes[u] + cost;
+				if (!settled[w] && travelTime < travelTimes[w]) {
+					travelTimes[w] = (int) travelTime;
+					parentEdges[w] = e;
+					queue.offer(new QueueEntry(w, travelTimes[w]));
+				}
+			}
+		}
+
+		result.addAll(best);
+		Collections.sort(result);
+		return result;
+	}
+
+	/**
+	 * Nodes from the query to the start of the edge of the object.
+	 */
+	private ArrayList<Long> path(int u, int[] parentEdges) {
+		ArrayList<Long> path = new ArrayList<Long>();
+		path.add((long) u);
+		for (int e = parentEdges[u]; e != -1; e = parentEdges[compactGraph.getFromNode(e)]) {
+			path.add((long) compactGraph.getFromNode(e));
+		}
+		Collections.reverse(path);
+		return path;
+	}
+
+}
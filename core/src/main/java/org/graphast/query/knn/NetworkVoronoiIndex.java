@@ -0,0 +1,228 @@
+package org.graphast.query.knn;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.graphast.enums.GraphBoundsType;
+import org.graphast.exception.GraphastException;
+import org.graphast.model.CompactCosts;
+import org.graphast.model.CompactGraph;
+import org.graphast.model.GraphBounds;
+import org.graphast.util.FileUtils;
+import org.graphast.util.ThreadUtils;
+
+/**
+ * Network Voronoi diagrams of the PoIs of each category (and of all PoIs together, as
+ * category -1) under the lower bound costs, the upper bound costs and the costs of each
+ * time slot of the day. Once the index is created the nearest PoI of a node is a lookup
+ * in an array, and the diagrams give the candidates of a KNN search ({@link VoronoiKNNSearch}).
+ *
+ * The costs of a time slot are those of an edge entered at the beginning of the slot, so
+ * the diagram of a slot does not follow the change of costs along the path.
+ */
+public class NetworkVoronoiIndex {
+
+	private static final int BLOCK_SIZE = 4096;
+	private static final int ALL_CATEGORIES = -1;
+	private static final int LOWER = 0;
+	private static final int UPPER = 1;
+
+	private GraphBounds graph;
+	private int numberOfTimeSlots;
+
+	// diagrams of each category: lower bound, upper bound and then one per time slot
+	private Map<Integer, VoronoiDiagram[]> diagrams = new HashMap<Integer, VoronoiDiagram[]>();
+
+	public NetworkVoronoiIndex(GraphBounds graph, int numberOfTimeSlots) {
+		if (numberOfTimeSlots < 0) {
+			throw new GraphastException("The number of time slots must not be negative.");
+		}
+		this.graph = graph;
+		this.numberOfTimeSlots = numberOfTimeSlots;
+	}
+
+	public void createIndex() {
+		createIndex(1);
+	}
+
+	/**
+	 * Creates the diagrams, one pair of category and costs per task.
+	 */
+	public void createIndex(int numberOfThreads) {
+		if (graph.getEdgesLowerBound().isEmpty()) {
+			graph.createBounds();
+		}
+
+		final CompactGraph compactGraph = new CompactGraph(graph);
+		final int[][] edgeCosts = new int[2 + numberOfTimeSlots][];
+		edgeCosts[LOWER] = CompactGraph.getEdgeCosts(graph, GraphBoundsType.LOWER);
+		edgeCosts[UPPER] = CompactGraph.getEdgeCosts(graph, GraphBoundsType.UPPER);
+		if (numberOfTimeSlots > 0) {
+			CompactCosts compactCosts = new CompactCosts(graph);
+			for (int s = 0; s < numberOfTimeSlots; s++) {
+				int time = getSlotStart(s);
+				int[] costs = new int[compactGraph.getNumberOfEdges()];
+				for (int e = 0; e < costs.length; e++) {
+					costs[e] = Math.max(compactCosts.getCost(e, time), 0);
+				}
+				edgeCosts[2 + s] = costs;
+			}
+		}
+
+		List<Integer> categories = getCategories();
+		List<Callable<VoronoiDiagram>> tasks = new ArrayList<Callable<VoronoiDiagram>>();
+		for (int category : categories) {
+			final int[] pois = AbstractBoundsKNN.getPoIs(graph, category);
+			for (int m = 0; m < edgeCosts.length; m++) {
+				final int[] costs = edgeCosts[m];
+				tasks.add(new Callable<VoronoiDiagram>() {
+					@Override
+					public VoronoiDiagram call() {
+						return VoronoiDiagram.create(compactGraph, costs, pois);
+					}
+				});
+			}
+		}
+
+		List<VoronoiDiagram> created = ThreadUtils.runAll(tasks, numberOfThreads);
+		Map<Integer, VoronoiDiagram[]> result = new HashMap<Integer, VoronoiDiagram[]>();
+		for (int c = 0; c < categories.size(); c++) {
+			VoronoiDiagram[] categoryDiagrams = new VoronoiDiagram[edgeCosts.length];
+			for (int m = 0; m < edgeCosts.length; m++) {
+				categoryDiagrams[m] = created.get(c * edgeCosts.length + m);
+			}
+			result.put(categories.get(c), categoryDiagrams);
+		}
+		diagrams = result;
+	}
+
+	private List<Integer> getCategories() {
+		List<Integer> categories = new ArrayList<Integer>();
+		categories.add(ALL_CATEGORIES);
+		for (int category : graph.getCategories()) {
+			categories.add(category);
+		}
+		return categories;
+	}
+
+	private int getSlotStart(int slot) {
+		return slot * (graph.getMaxTime() / numberOfTimeSlots);
+	}
+
+	/**
+	 * Diagram of the PoIs of the category (-1 for all PoIs) under the lower or upper bound costs.
+	 */
+	public VoronoiDiagram getDiagram(int category, GraphBoundsType type) {
+		if (type == GraphBoundsType.LOWER) {
+			return getDiagram(category)[LOWER];
+		} else if (type == GraphBoundsType.UPPER) {
+			return getDiagram(category)[UPPER];
+		}
+		throw new GraphastException("The index has no diagram for the bound type " + type + ".");
+	}
+
+	/**
+	 * Diagram of the PoIs of the category (-1 for all PoIs) for the time slot that
+	 * contains the given time (in milliseconds).
+	 */
+	public VoronoiDiagram getDiagram(int category, int time) {
+		if (numberOfTimeSlots == 0) {
+			throw new GraphastException("The index was created without time slots.");
+		}
+		int slot = Math.min(time / (graph.getMaxTime() / numberOfTimeSlots), numberOfTimeSlots - 1);
+		return getDiagram(category)[2 + slot];
+	}
+
+	private VoronoiDiagram[] getDiagram(int category) {
+		VoronoiDiagram[] categoryDiagrams = diagrams.get(category);
+		if (categoryDiagrams == null) {
+			throw new GraphastException("The index has no diagram for the category " + category + ".");
+		}
+		return categoryDiagrams;
+	}
+
+	/**
+	 * Nearest PoI of the category to the node, -1 if there is none.
+	 */
+	public int getNearestPoI(int category, long vid, GraphBoundsType type) {
+		return getDiagram(category, type).getGenerator(vid);
+	}
+
+	public int getNearestPoI(int category, long vid, int time) {
+		return getDiagram(category, time).getGenerator(vid);
+	}
+
+	public int getCost(int category, long vid, GraphBoundsType type) {
+		return getDiagram(category, type).getCost(vid);
+	}
+
+	public int getCost(int category, long vid, int time) {
+		return getDiagram(category, time).getCost(vid);
+	}
+
+	public void save() {
+		String dir = getDirectory();
+		int[] info = new int[1 + diagrams.size()];
+		info[0] = numberOfTimeSlots;
+		int i = 1;
+		for (Map.Entry<Integer, VoronoiDiagram[]> entry : diagrams.entrySet()) {
+			info[i++] = entry.getKey();
+			for (int m = 0; m < entry.getValue().length; m++) {
+				String path = getDirectory(entry.getKey(), m);
+				VoronoiDiagram diagram = entry.getValue()[m];
+				FileUtils.saveIntArray(path + "/generators", diagram.getGenerators(), BLOCK_SIZE, graph.getCompressionType());
+				FileUtils.saveIntArray(path + "/costs", diagram.getCosts(), BLOCK_SIZE, graph.getCompressionType());
+				FileUtils.saveIntArray(path + "/border", diagram.getBorderEdges(), BLOCK_SIZE, graph.getCompressionType());
+			}
+		}
+		FileUtils.saveIntArray(dir + "/info", info, BLOCK_SIZE, graph.getCompressionType());
+	}
+
+	/**
+	 * Loads the index saved by {@link #save()}. The adjacency of the cells is not saved and
+	 * is created again from the border edges.
+	 */
+	public static NetworkVoronoiIndex load(GraphBounds graph) {
+		NetworkVoronoiIndex index = new NetworkVoronoiIndex(graph, 0);
+		int[] info = FileUtils.loadIntArray(index.getDirectory() + "/info", BLOCK_SIZE, graph.getCompressionType());
+		index.numberOfTimeSlots = info[0];
+
+		CompactGraph compactGraph = new CompactGraph(graph);
+		for (int i = 1; i < info.length; i++) {
+			VoronoiDiagram[] categoryDiagrams = new VoronoiDiagram[2 + index.numberOfTimeSlots];
+			for (int m = 0; m < categoryDiagrams.length; m++) {
+				String path = index.getDirectory(info[i], m);
+				int[] generators = FileUtils.loadIntArray(path + "/generators", BLOCK_SIZE, graph.getCompressionType());
+				int[] costs = FileUtils.loadIntArray(path + "/costs", BLOCK_SIZE, graph.getCompressionType());
+				int[] border = FileUtils.loadIntArray(path + "/border", BLOCK_SIZE, graph.getCompressionType());
+				if (generators.length != graph.getNumberOfNodes() || costs.length != graph.getNumberOfNodes()) {
+					throw new GraphastException("The index in " + path + " was not created for this graph.");
+				}
+				categoryDiagrams[m] = new VoronoiDiagram(generators, costs, border, compactGraph);
+			}
+			index.diagrams.put(info[i], categoryDiagrams);
+		}
+		return index;
+	}
+
+	private String getDirectory() {
+		return graph.getAbsoluteDirectory() + "/voronoi";
+	}
+
+	private String getDirectory(int category, int costs) {
+		String name = costs == LOWER ? "lower" : costs == UPPER ? "upper" : "slot" + (costs - 2);
+		return getDirectory() + "/" + (category == ALL_CATEGORIES ? "all" : category) + "/" + name;
+	}
+
+	public int getNumberOfTimeSlots() {
+		return numberOfTimeSlots;
+	}
+
+	public GraphBounds getGraph() {
+		return graph;
+	}
+
+}
@@ -0,0 +1,158 @@
+package org.graphast.query.knn;
+
+import it.unimi.dsi.fastutil.ints.IntArrayFIFOQueue;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+
+import java.util.Arrays;
+
+import org.graphast.model.CompactGraph;
+import org.graphast.query.route.shortestpath.dijkstra.DijkstraCompact;
+
+/**
+ * Network Voronoi diagram of a set of PoIs under one static cost per edge: every node
+ * belongs to the cell of the PoI it reaches at the lowest cost. Edges between nodes of
+ * different cells are border edges, and two PoIs are adjacent when a border edge links
+ * their cells.
+ */
+public class VoronoiDiagram {
+
+	// PoI of the cell of each node (-1 if no PoI is reached) and the cost to reach it
+	private int[] generators;
+	private int[] costs;
+	private int[] borderEdges;
+
+	// sorted pairs (generator << 32 | adjacent generator), both directions
+	private long[] adjacency;
+
+	VoronoiDiagram(int[] generators, int[] costs, int[] borderEdges, CompactGraph graph) {
+		this.generators = generators;
+		this.costs = costs;
+		this.borderEdges = borderEdges;
+		createAdjacency(graph);
+	}
+
+	/**
+	 * @param graph topology of the graph
+	 * @param edgeCosts cost of each edge, indexed by edge id
+	 * @param pois generators of the cells
+	 */
+	public static VoronoiDiagram create(CompactGraph graph, int[] edgeCosts, int[] pois) {
+		DijkstraCompact dijkstra = new DijkstraCompact(graph, edgeCosts);
+		int[] costs = dijkstra.run(pois, new int[pois.length], true, DijkstraCompact.INFINITY);
+		int[] generators = dijkstra.getOrigins();
+
+		IntArrayList borderEdges = new IntArrayList();
+		for (int e = 0; e < graph.getNumberOfEdges(); e++) {
+			int from = generators[graph.getFromNode(e)];
+			int to = generators[graph.getToNode(e)];
+			if (from != to && from != -1 && to != -1) {
+				borderEdges.add(e);
+			}
+		}
+		return new VoronoiDiagram(generators, costs, borderEdges.toIntArray(), graph);
+	}
+
+	private void createAdjacency(CompactGraph graph) {
+		long[] pairs = new long[borderEdges.length * 2];
+		for (int i = 0; i < borderEdges.length; i++) {
+			long from = generators[graph.getFromNode(borderEdges[i])];
+			long to = generators[graph.getToNode(borderEdges[i])];
+			pairs[2 * i] = from << 32 | to;
+			pairs[2 * i + 1] = to << 32 | from;
+		}
+		LongArrays.quickSort(pairs);
+
+		int size = 0;
+		for (int i = 0; i < pairs.length; i++) {
+			if (i == 0 || pairs[i] != pairs[i - 1]) {
+				pairs[size++] = pairs[i];
+			}
+		}
+		adjacency = Arrays.copyOf(pairs, size);
+	}
+
+	/**
+	 * PoI nearest to the node, -1 if the node reaches no PoI.
+	 */
+	public int getGenerator(long vid) {
+		return generators[(int) vid];
+	}
+
+	/**
+	 * Cost from the node to the PoI of its cell, Integer.MAX_VALUE if it reaches no PoI.
+	 */
+	public int getCost(long vid) {
+		return costs[(int) vid];
+	}
+
+	public int[] getBorderEdges() {
+		return borderEdges;
+	}
+
+	/**
+	 * PoIs whose cells share a border edge with the cell of the given PoI.
+	 */
+	public int[] getAdjacentGenerators(int poi) {
+		long first = (long) poi << 32;
+		int begin = LongArrays.binarySearch(adjacency, first);
+		if (begin < 0) {
+			begin = -begin - 1;
+		}
+		int end = begin;
+		while (end < adjacency.length && (int) (adjacency[end] >>> 32) == poi) {
+			end++;
+		}
+		int[] adjacent = new int[end - begin];
+		for (int i = begin; i < end; i++) {
+			adjacent[i - begin] = (int) adjacency[i];
+		}
+		return adjacent;
+	}
+
+	/**
+	 * PoIs that may be among the k nearest to the node: the PoI of its cell and the cells
+	 * reached from it over at most k - 1 adjacencies. The shortest path to one of the k
+	 * nearest PoIs only crosses cells of PoIs that are not farther, so the k nearest PoIs
+	 * are always in this set and a KNN search only needs to look at them.
+	 */
+	public int[] getCandidates(long vid, int k) {
+		int generator = generators[(int) vid];
+		if (generator == -1 || k <= 0) {
+			return new int[0];
+		}
+
+		IntOpenHashSet visited = new IntOpenHashSet();
+		IntArrayList candidates = new IntArrayList();
+		IntArrayFIFOQueue queue = new IntArrayFIFOQueue();
+		visited.add(generator);
+		candidates.add(generator);
+		queue.enqueue(generator);
+
+		for (int depth = 1; depth < k && !queue.isEmpty(); depth++) {
+			for (int i = queue.size(); i > 0; i--) {
+				for (int adjacent : getAdjacentGenerators(queue.dequeueInt())) {
+					if (visited.add(adjacent)) {
+						candidates.add(adjacent);
+						queue.enqueue(adjacent);
+					}
+				}
+			}
+		}
+		return candidates.toIntArray();
+	}
+
+	int[] getGenerators() {
+		return generators;
+	}
+
+	int[] getCosts() {
+		return costs;
+	}
+
+	public int getNumberOfNodes() {
+		return generators.length;
+	}
+
+}
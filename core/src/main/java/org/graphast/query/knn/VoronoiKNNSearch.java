@@ -0,0 +1,97 @@
+package org.graphast.query.knn;
+
+import static org.graphast.util.NumberUtils.convertToInt;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.graphast.enums.GraphBoundsType;
+import org.graphast.model.CompactGraph;
+import org.graphast.model.Node;
+import org.graphast.query.model.QueueEntry;
+import org.graphast.query.route.shortestpath.dijkstra.DijkstraCompact;
+
+/**
+ * KNN search over a {@link NetworkVoronoiIndex}. The nearest PoI is the generator of the
+ * cell of the node. For more neighbors, the candidates are the PoIs whose cells are at most
+ * k - 1 adjacencies away from that cell ({@link VoronoiDiagram#getCandidates(long, int)}):
+ * the shortest path to each of the k nearest PoIs only crosses cells of PoIs that are not
+ * farther, so a search that only enters the cells of the candidates finds their exact costs.
+ *
+ * The costs are the lower or upper bound costs of the diagram: the departure time is
+ * ignored, and the neighbors have no path.
+ */
+public class VoronoiKNNSearch implements KNNService {
+
+	private static final int INFINITY = DijkstraCompact.INFINITY;
+
+	private VoronoiDiagram diagram;
+	private CompactGraph compactGraph;
+	private int[] edgeCosts;
+
+	public VoronoiKNNSearch(NetworkVoronoiIndex index, GraphBoundsType type) {
+		this(index, -1, type);
+	}
+
+	/**
+	 * @param category only PoIs of this category are searched, -1 for all of them
+	 * @param type LOWER or UPPER, the costs of the diagram that is used
+	 */
+	public VoronoiKNNSearch(NetworkVoronoiIndex index, int category, GraphBoundsType type) {
+		this.diagram = index.getDiagram(category, type);
+		this.compactGraph = new CompactGraph(index.getGraph());
+		this.edgeCosts = CompactGraph.getEdgeCosts(index.getGraph(), type);
+	}
+
+	@Override
+	public List<NearestNeighbor> search(Node v, Date time, int k) {
+		List<NearestNeighbor> result = new ArrayList<NearestNeighbor>();
+		int source = convertToInt(v.getId());
+		int generator = diagram.getGenerator(source);
+		if (k <= 0 || generator == -1) {
+			return result;
+		}
+		if (k == 1) {
+			result.add(new NearestNeighbor(generator, diagram.getCost(source)));
+			return result;
+		}
+
+		IntOpenHashSet candidates = new IntOpenHashSet(diagram.getCandidates(source, k));
+		Int2IntOpenHashMap distances = new Int2IntOpenHashMap();
+		distances.defaultReturnValue(INFINITY);
+		IntOpenHashSet settled = new IntOpenHashSet();
+		PriorityQueue<QueueEntry> queue = new PriorityQueue<QueueEntry>();
+		distances.put(source, 0);
+		queue.offer(new QueueEntry(source, 0));
+
+		while (!queue.isEmpty() && result.size() < k) {
+			QueueEntry removed = queue.poll();
+			int u = (int) removed.getId();
+			int cost = distances.get(u);
+			if (settled.contains(u) || removed.getTravelTime() != cost) {
+				continue;
+			}
+			settled.add(u);
+			if (diagram.getGenerator(u) == u) {
+				result.add(new NearestNeighbor(u, cost));
+			}
+
+			for (int i = compactGraph.getOutBegin(u); i < compactGraph.getOutEnd(u); i++) {
+				int e = compactGraph.getOutEdge(i);
+				int w = compactGraph.getToNode(e);
+				long newCost = (long) cost + edgeCosts[e];
+				if (candidates.contains(diagram.getGenerator(w)) && !settled.contains(w) && newCost < distances.get(w)) {
+					distances.put(w, (int) newCost);
+					queue.offer(new QueueEntry(w, (int) newCost));
+				}
+			}
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,167 @@
+package org.graphast.query.rnn;
+
+import static org.graphast.util.NumberUtils.convertToInt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.graphast.model.CompactCosts;
+import org.graphast.model.CompactGraph;
+import org.graphast.model.GraphBounds;
+import org.graphast.model.Node;
+import org.graphast.query.knn.NearestNeighbor;
+import org.graphast.query.route.shortestpath.dijkstra.DijkstraCompact;
+import org.graphast.util.DateUtils;
+
+/**
+ * Nearest PoI of many customers at once. All PoIs leave at the same time, so one
+ * time-dependent search that starts at every PoI labels each node with the PoI that
+ * arrives there first, which is the answer of {@link IRNNTimeDependent#search} for that
+ * node. The search stops when every customer is labeled or the timeout is reached, so a
+ * dispatch cycle costs one sweep of the graph instead of one search per customer.
+ *
+ * PoIs that arrive at the same time are ranked as in {@link RNNBacktrackingSearch}, where
+ * the last one in the order of {@link GraphBounds#getPoiIds()} wins: a node keeps the PoI
+ * with the greater position among those that reach it first, and nodes reached at the same
+ * time leave the queue in that order too.
+ */
+public class BatchRNNSearch {
+
+	private static final int INFINITY = DijkstraCompact.INFINITY;
+
+	private GraphBounds graph;
+	private CompactGraph compactGraph;
+	private CompactCosts compactCosts;
+
+	public BatchRNNSearch(GraphBounds graph) {
+		this.graph = graph;
+		this.compactGraph = new CompactGraph(graph);
+		this.compactCosts = new CompactCosts(graph);
+	}
+
+	/**
+	 * @return the nearest PoI of each customer, by customer id. Customers that no PoI
+	 * 		   reaches within the timeout are not in the map
+	 */
+	public Map<Long, NearestNeighbor> search(Collection<Node> customers, Date timeout, Date timestamp) {
+		int maxTravelTime = DateUtils.dateToMilli(timeout);
+		int departure = DateUtils.dateToMilli(timestamp);
+		int n = compactGraph.getNumberOfNodes();
+
+		boolean[] isCustomer = new boolean[n];
+		int remaining = 0;
+		for (Node customer : customers) {
+			int c = convertToInt(customer.getId());
+			if (!isCustomer[c]) {
+				isCustomer[c] = true;
+				remaining++;
+			}
+		}
+
+		int[] travelTimes = new int[n];
+		int[] parentEdges = new int[n];
+		int[] origins = new int[n];
+		// position of the origin of each node in the order of graph.getPoiIds()
+		int[] orders = new int[n];
+		boolean[] settled = new boolean[n];
+		Arrays.fill(travelTimes, INFINITY);
+		Arrays.fill(parentEdges, -1);
+		Arrays.fill(origins, -1);
+
+		PriorityQueue<Entry> queue = new PriorityQueue<Entry>();
+		int order = 0;
+		for (long poi : graph.getPoiIds()) {
+			int p = convertToInt(poi);
+			travelTimes[p] = 0;
+			origins[p] = p;
+			orders[p] = order++;
+			queue.offer(new Entry(p, 0, orders[p]));
+		}
+
+		Map<Long, NearestNeighbor> result = new HashMap<Long, NearestNeighbor>();
+		int visited = 0;
+		while (!queue.isEmpty() && remaining > 0) {
+			Entry removed = queue.poll();
+			int u = removed.node;
+			if (settled[u] || removed.travelTime != travelTimes[u] || removed.order != orders[u]) {
+				continue;
+			}
+			if (travelTimes[u] > maxTravelTime) {
+				break;
+			}
+			settled[u] = true;
+			visited++;
+
+			if (isCustomer[u]) {
+				result.put((long) u, createNN(u, origins[u], travelTimes[u], parentEdges));
+				remaining--;
+			}
+
+			int arrival = compactCosts.getArrival(departure, travelTimes[u]);
+			for (int i = compactGraph.getOutBegin(u); i < compactGraph.getOutEnd(u); i++) {
+				int e = compactGraph.getOutEdge(i);
+				int v = compactGraph.getToNode(e);
+				long travelTime = (long) travelTimes[u] + compactCosts.getCost(e, arrival);
+				if (!settled[v] && (travelTime < travelTimes[v] || travelTime == travelTimes[v] && orders[u] > orders[v])) {
+					travelTimes[v] = (int) travelTime;
+					parentEdges[v] = e;
+					origins[v] = origins[u];
+					orders[v] = orders[u];
+					queue.offer(new Entry(v, travelTimes[v], orders[v]));
+				}
+			}
+		}
+
+		for (NearestNeighbor nn : result.values()) {
+			nn.setNumberVisitedNodes(visited);
+		}
+		return result;
+	}
+
+	private NearestNeighbor createNN(int customer, int poi, int travelTime, int[] parentEdges) {
+		ArrayList<Long> path = new ArrayList<Long>();
+		path.add((long) customer);
+		for (int e = parentEdges[customer]; e != -1; e = parentEdges[compactGraph.getFromNode(e)]) {
+			path.add((long) compactGraph.getFromNode(e));
+		}
+		Collections.reverse(path);
+
+		NearestNeighbor nearestNeighbor = new NearestNeighbor();
+		nearestNeighbor.setId(poi);
+		nearestNeighbor.setTravelTime(travelTime * Math.pow(10, 6));
+		nearestNeighbor.setPath(path);
+		return nearestNeighbor;
+	}
+
+	/**
+	 * Node in the queue, ordered by travel time and then by the greater position of its
+	 * origin.
+	 */
+	private static class Entry implements Comparable<Entry> {
+
+		private int node;
+		private int travelTime;
+		private int order;
+
+		private Entry(int node, int travelTime, int order) {
+			this.node = node;
+			this.travelTime = travelTime;
+			this.order = order;
+		}
+
+		@Override
+		public int compareTo(Entry another) {
+			if (travelTime != another.travelTime) {
+				return travelTime < another.travelTime ? -1 : 1;
+			}
+			return order > another.order ? -1 : order < another.order ? 1 : 0;
+		}
+	}
+
+}
@@ -0,0 +1,121 @@
+package org.graphast.query.rnn;
+
+import static org.graphast.util.NumberUtils.convertToInt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.PriorityQueue;
+
+import org.graphast.exception.PathNotFoundException;
+import org.graphast.model.CompactCosts;
+import org.graphast.model.CompactGraph;
+import org.graphast.model.Node;
+import org.graphast.query.knn.MovingObjectIndex;
+import org.graphast.query.knn.NearestNeighbor;
+import org.graphast.query.model.QueueEntry;
+import org.graphast.query.route.shortestpath.dijkstra.DijkstraCompact;
+import org.graphast.util.DateUtils;
+
+/**
+ * Nearest object of a {@link MovingObjectIndex} to a customer, e.g. the taxi that arrives
+ * first. Each object starts at the end of its edge, after the part of the edge it still has
+ * to travel, and a single time-dependent search from all of them stops at the customer.
+ * The id of the neighbor is the object id and its path starts at the end of its edge.
+ */
+public class MovingObjectRNNSearch implements IRNNTimeDependent {
+
+	private static final int INFINITY = DijkstraCompact.INFINITY;
+
+	private MovingObjectIndex index;
+	private CompactGraph compactGraph;
+	private CompactCosts compactCosts;
+
+	public MovingObjectRNNSearch(MovingObjectIndex index) {
+		this.index = index;
+		this.compactGraph = new CompactGraph(index.getGraph());
+		this.compactCosts = new CompactCosts(index.getGraph());
+	}
+
+	@Override
+	public NearestNeighbor search(Node root, Date timeout, Date timestamp) throws PathNotFoundException {
+		int customer = convertToInt(root.getId());
+		int maxTravelTime = DateUtils.dateToMilli(timeout);
+		int departure = DateUtils.dateToMilli(timestamp);
+		int n = compactGraph.getNumberOfNodes();
+
+		int[] travelTimes = new int[n];
+		int[] parentEdges = new int[n];
+		int[] origins = new int[n];
+		boolean[] settled = new boolean[n];
+		Arrays.fill(travelTimes, INFINITY);
+		Arrays.fill(parentEdges, -1);
+
+		PriorityQueue<QueueEntry> queue = new PriorityQueue<QueueEntry>();
+		MovingObjectIndex.Snapshot objects = index.snapshot();
+		for (int e : objects.getEdges()) {
+			int cost = compactCosts.getCost(e, departure);
+			for (int o = 0; o < objects.getNumberOfObjects(e); o++) {
+				double offset = objects.getOffset(e, o);
+				// at the start of the edge, the object is also at its from node
+				int start = offset == 0 ? compactGraph.getFromNode(e) : compactGraph.getToNode(e);
+				int travelTime = offset == 0 ? 0 : (int) Math.round((1 - offset) * cost);
+				if (travelTime < travelTimes[start]) {
+					travelTimes[start] = travelTime;
+					origins[start] = objects.getObject(e, o);
+					queue.offer(new QueueEntry(start, travelTime));
+				}
+			}
+		}
+
+		int visited = 0;
+		while (!queue.isEmpty()) {
+			QueueEntry removed = queue.poll();
+			int u = (int) removed.getId();
+			if (settled[u] || removed.getTravelTime() != travelTimes[u]) {
+				continue;
+			}
+			if (travelTimes[u] > maxTravelTime) {
+				break;
+			}
+			settled[u] = true;
+			visited++;
+
+			if (u == customer) {
+				return createNN(u, origins[u], travelTimes[u], parentEdges, visited);
+			}
+
+			int arrival = compactCosts.getArrival(departure, travelTimes[u]);
+			for (int i = compactGraph.getOutBegin(u); i < compactGraph.getOutEnd(u); i++) {
+				int e = compactGraph.getOutEdge(i);
+				int v = compactGraph.getToNode(e);
+				long travelTime = (long) travelTimes[u] + compactCosts.getCost(e, arrival);
+				if (!settled[v] && travelTime < travelTimes[v]) {
+					travelTimes[v] = (int) travelTime;
+					parentEdges[v] = e;
+					origins[v] = origins[u];
+					queue.offer(new QueueEntry(v, travelTimes[v]));
+				}
+			}
+		}
+		throw new PathNotFoundException("target not found for root and set timestamp");
+	}
+
+	private NearestNeighbor createNN(int customer, int object, int travelTime, int[] parentEdges, int visited) {
+		ArrayList<Long> path = new ArrayList<Long>();
+		path.add((long) customer);
+		for (int e = parentEdges[customer]; e != -1; e = parentEdges[compactGraph.getFromNode(e)]) {
+			path.add((long) compactGraph.getFromNode(e));
+		}
+		Collections.reverse(path);
+
+		NearestNeighbor nearestNeighbor = new NearestNeighbor();
+		nearestNeighbor.setId(object);
+		nearestNeighbor.setTravelTime(travelTime * Math.pow(10, 6));
+		nearestNeighbor.setPath(path);
+		nearestNeighbor.setNumberVisitedNodes(visited);
+		return nearestNeighbor;
+	}
+
+}
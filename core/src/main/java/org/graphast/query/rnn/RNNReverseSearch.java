@@ -0,0 +1,222 @@
+package org.graphast.query.rnn;
+
+import static org.graphast.util.NumberUtils.convertToInt;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.graphast.enums.GraphBoundsType;
+import org.graphast.exception.PathNotFoundException;
+import org.graphast.model.CompactCosts;
+import org.graphast.model.CompactGraph;
+import org.graphast.model.GraphBounds;
+import org.graphast.model.Node;
+import org.graphast.query.knn.NearestNeighbor;
+import org.graphast.query.model.QueueEntry;
+import org.graphast.query.route.shortestpath.dijkstra.DijkstraCompact;
+import org.graphast.util.DateUtils;
+
+/**
+ * Same answer as {@link RNNBacktrackingSearch} without a search from every PoI. A single
+ * search from the customer over the reversed edges, with the lower bound costs and limited
+ * by the timeout, finds the only PoIs that can arrive in time and gives, for every node
+ * around the customer, a lower bound of its travel time to the customer. Each candidate is
+ * then checked, in order of lower bound, by a time-dependent A* that only moves inside
+ * that region, and the candidates stop as soon as their lower bound is greater than the
+ * travel times already found. The work depends on the timeout, not on the number of PoIs.
+ *
+ * PoIs with the same travel time are ranked as in {@link RNNBacktrackingSearch}, where the
+ * last one in the order of {@link GraphBounds#getPoiIds()} wins.
+ */
+public class RNNReverseSearch implements IRNNTimeDependent {
+
+	private static final int INFINITY = DijkstraCompact.INFINITY;
+
+	private GraphBounds graph;
+	private CompactGraph compactGraph;
+	private CompactCosts compactCosts;
+	private int[] lowerCosts;
+
+	// position of each PoI in the order of graph.getPoiIds(), to break ties
+	private Long2IntOpenHashMap poiOrder;
+
+	public RNNReverseSearch(GraphBounds graph) {
+		this.graph = graph;
+		if (graph.getEdgesLowerBound().isEmpty()) {
+			graph.createBounds();
+		}
+		this.compactGraph = new CompactGraph(graph);
+		this.compactCosts = new CompactCosts(graph);
+		this.lowerCosts = CompactGraph.getEdgeCosts(graph, GraphBoundsType.LOWER);
+	}
+
+	@Override
+	public NearestNeighbor search(Node root, Date timeout, Date timestamp) throws PathNotFoundException {
+		List<NearestNeighbor> result = search(root, timeout, timestamp, 1);
+		if (result.isEmpty()) {
+			throw new PathNotFoundException("target not found for root and set timestamp");
+		}
+		return result.get(0);
+	}
+
+	/**
+	 * The k PoIs with the lowest travel times to the customer, leaving at the timestamp and
+	 * arriving within the timeout, from the nearest one.
+	 */
+	public List<NearestNeighbor> search(Node root, Date timeout, Date timestamp, int k) {
+		int customer = convertToInt(root.getId());
+		int maxTravelTime = DateUtils.dateToMilli(timeout);
+		int departure = DateUtils.dateToMilli(timestamp);
+
+		// lower bound of the travel time from each node to the customer, up to the timeout
+		DijkstraCompact reverse = new DijkstraCompact(compactGraph, lowerCosts);
+		int[] lowerBounds = reverse.run(new int[] { customer }, new int[] { 0 }, true, maxTravelTime);
+		int[] order = reverse.getSettledOrder();
+		int visited = reverse.getNumberOfSettledNodes();
+
+		List<NearestNeighbor> result = new ArrayList<NearestNeighbor>();
+		List<Candidate> best = new ArrayList<Candidate>();
+		for (int i = 0; i < reverse.getNumberOfSettledNodes() && k > 0; i++) {
+			int poi = order[i];
+			if (!graph.isPoi(poi)) {
+				continue;
+			}
+			// PoIs are settled in order of lower bound
+			if (best.size() == k && best.get(k - 1).travelTime < lowerBounds[poi]) {
+				break;
+			}
+			Candidate candidate = travelTime(poi, customer, departure, maxTravelTime, lowerBounds);
+			candidate.order = getPoiOrder(poi);
+			visited += candidate.visited;
+			if (candidate.travelTime <= maxTravelTime) {
+				best.add(candidate);
+				Collections.sort(best, BY_TRAVEL_TIME);
+				if (best.size() > k) {
+					best.remove(k);
+				}
+			}
+		}
+
+		for (Candidate candidate : best) {
+			result.add(createNN(candidate, visited));
+		}
+		return result;
+	}
+
+	private int getPoiOrder(int poi) {
+		if (poiOrder == null || !poiOrder.containsKey(poi)) {
+			// created again when the PoIs of the graph change
+			poiOrder = new Long2IntOpenHashMap();
+			for (long id : graph.getPoiIds()) {
+				poiOrder.put(id, poiOrder.size());
+			}
+		}
+		return poiOrder.get(poi);
+	}
+
+	/**
+	 * Time-dependent A* from the PoI to the customer, with the lower bounds as potentials.
+	 * Nodes without a lower bound are farther than the timeout and are not reached.
+	 */
+	private Candidate travelTime(int poi, int customer, int departure, int maxTravelTime, int[] lowerBounds) {
+		Int2IntOpenHashMap travelTimes = new Int2IntOpenHashMap();
+		travelTimes.defaultReturnValue(INFINITY);
+		Int2IntOpenHashMap parentEdges = new Int2IntOpenHashMap();
+		IntOpenHashSet settled = new IntOpenHashSet();
+
+		PriorityQueue<QueueEntry> queue = new PriorityQueue<QueueEntry>();
+		travelTimes.put(poi, 0);
+		parentEdges.put(poi, -1);
+		queue.offer(new QueueEntry(poi, lowerBounds[poi]));
+
+		Candidate candidate = new Candidate(poi);
+		while (!queue.isEmpty()) {
+			QueueEntry removed = queue.poll();
+			int u = (int) removed.getId();
+			int travelTime = travelTimes.get(u);
+			if (settled.contains(u) || removed.getTravelTime() != travelTime + lowerBounds[u]) {
+				continue;
+			}
+			if (removed.getTravelTime() > maxTravelTime) {
+				break;
+			}
+			settled.add(u);
+			candidate.visited++;
+
+			if (u == customer) {
+				candidate.travelTime = travelTime;
+				candidate.path = path(customer, parentEdges);
+				return candidate;
+			}
+
+			int arrival = compactCosts.getArrival(departure, travelTime);
+			for (int i = compactGraph.getOutBegin(u); i < compactGraph.getOutEnd(u); i++) {
+				int e = compactGraph.getOutEdge(i);
+				int v = compactGraph.getToNode(e);
+				if (lowerBounds[v] == INFINITY || lowerBounds[v] > maxTravelTime || settled.contains(v)) {
+					continue;
+				}
+				int newTravelTime = travelTime + compactCosts.getCost(e, arrival);
+				if (newTravelTime < travelTimes.get(v)) {
+					travelTimes.put(v, newTravelTime);
+					parentEdges.put(v, e);
+					queue.offer(new QueueEntry(v, newTravelTime + lowerBounds[v]));
+				}
+			}
+		}
+		return candidate;
+	}
+
+	private ArrayList<Long> path(int customer, Int2IntOpenHashMap parentEdges) {
+		ArrayList<Long> path = new ArrayList<Long>();
+		for (int v = customer, e = parentEdges.get(v); ; v = compactGraph.getFromNode(e), e = parentEdges.get(v)) {
+			path.add((long) v);
+			if (e == -1) {
+				break;
+			}
+		}
+		Collections.reverse(path);
+		return path;
+	}
+
+	private NearestNeighbor createNN(Candidate candidate, int numberVisitedNodes) {
+		NearestNeighbor nearestNeighbor = new NearestNeighbor();
+		nearestNeighbor.setTravelTime(candidate.travelTime * Math.pow(10, 6));
+		nearestNeighbor.setId(candidate.poi);
+		nearestNeighbor.setNumberVisitedNodes(numberVisitedNodes);
+		nearestNeighbor.setPath(candidate.path);
+		return nearestNeighbor;
+	}
+
+	private static final Comparator<Candidate> BY_TRAVEL_TIME = new Comparator<Candidate>() {
+		@Override
+		public int compare(Candidate a, Candidate b) {
+			if (a.travelTime != b.travelTime) {
+				return a.travelTime < b.travelTime ? -1 : 1;
+			}
+			return a.order > b.order ? -1 : a.order < b.order ? 1 : 0;
+		}
+	};
+
+	private static class Candidate {
+
+		private int poi;
+		private int travelTime = INFINITY;
+		private ArrayList<Long> path;
+		private int visited;
+		private int order;
+
+		private Candidate(int poi) {
+			this.poi = poi;
+		}
+	}
+
+}
@@ -0,0 +1,176 @@
+package org.graphast.query.route.matrix;
+
+import static org.graphast.util.NumberUtils.convertToInt;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import org.graphast.model.CompactCosts;
+import org.graphast.model.CompactGraph;
+import org.graphast.model.Graph;
+import org.graphast.query.route.shortestpath.dijkstra.DijkstraWorkspace;
+import org.graphast.query.route.shortestpath.model.Path;
+import org.graphast.util.DateUtils;
+import org.graphast.util.ThreadUtils;
+
+/**
+ * Many-to-many travel times. Instead of one point to point query per pair, a single search
+ * runs from each source and stops once every target is settled. Searches of different
+ * sources are independent and run in parallel on a pool kept by the service, each thread
+ * reusing its own {@link DijkstraWorkspace} from one call to the next. Call
+ * {@link #shutdown()} once the service is no longer used.
+ *
+ * Only the costs are computed; {@link Path} objects are built only by
+ * {@link #getPaths(long[], long[], Date)}.
+ */
+public class DistanceMatrixService {
+
+	public static final int UNREACHABLE = DijkstraWorkspace.UNREACHABLE;
+
+	private Graph graph;
+	private CompactGraph compactGraph;
+	private CompactCosts compactCosts;
+	private ExecutorService executor;
+
+	private ThreadLocal<DijkstraWorkspace> workspaces = new ThreadLocal<DijkstraWorkspace>() {
+		@Override
+		protected DijkstraWorkspace initialValue() {
+			return new DijkstraWorkspace(compactGraph, compactCosts);
+		}
+	};
+
+	public DistanceMatrixService(Graph graph) {
+		this(graph, Runtime.getRuntime().availableProcessors());
+	}
+
+	public DistanceMatrixService(Graph graph, int numberOfThreads) {
+		this.graph = graph;
+		this.compactGraph = new CompactGraph(graph);
+		this.compactCosts = new CompactCosts(graph);
+		this.executor = ThreadUtils.newFixedPool(numberOfThreads);
+	}
+
+	/**
+	 * Time-dependent travel times leaving every source at the given time.
+	 *
+	 * @return matrix[i][j] is the travel time from sources[i] to targets[j], or
+	 * 		   {@link #UNREACHABLE} if there is no path
+	 */
+	public int[][] getTravelTimes(final long[] sources, long[] targets, Date time) {
+		final int departureTime = DateUtils.dateToMilli(time);
+		final int[] targetNodes = toIntArray(targets);
+		final int[][] matrix = new int[sources.length][];
+		execute(sources.length, new Row() {
+			@Override
+			public void compute(int i) {
+				DijkstraWorkspace workspace = workspaces.get();
+				workspace.search(convertToInt(sources[i]), departureTime, null, false, targetNodes);
+				matrix[i] = getCosts(workspace, targetNodes);
+			}
+		});
+		return matrix;
+	}
+
+	/**
+	 * Same as {@link #getTravelTimes(long[], long[], Date)}, but also builds the path of
+	 * every pair (null if there is no path).
+	 */
+	public Path[][] getPaths(final long[] sources, long[] targets, Date time) {
+		final int departureTime = DateUtils.dateToMilli(time);
+		final int[] targetNodes = toIntArray(targets);
+		final Path[][] paths = new Path[sources.length][targets.length];
+		execute(sources.length, new Row() {
+			@Override
+			public void compute(int i) {
+				DijkstraWorkspace workspace = workspaces.get();
+				int source = convertToInt(sources[i]);
+				workspace.search(source, departureTime, null, false, targetNodes);
+				for (int j = 0; j < targetNodes.length; j++) {
+					paths[i][j] = workspace.buildPath(graph, source, targetNodes[j]);
+				}
+			}
+		});
+		return paths;
+	}
+
+	/**
+	 * Costs for a static metric (e.g. the distances or the costs of one time slot, see
+	 * {@link CompactGraph#getEdgeCosts}). When there are fewer targets than sources the
+	 * searches run backwards, one from each target.
+	 *
+	 * @param edgeCosts cost of each edge, indexed by edge id
+	 */
+	public int[][] getCosts(long[] sources, long[] targets, final int[] edgeCosts) {
+		final int[] sourceNodes = toIntArray(sources);
+		final int[] targetNodes = toIntArray(targets);
+		final int[][] matrix = new int[sources.length][targets.length];
+		if (targets.length < sources.length) {
+			execute(targets.length, new Row() {
+				@Override
+				public void compute(int j) {
+					DijkstraWorkspace workspace = workspaces.get();
+					workspace.search(targetNodes[j], 0, edgeCosts, true, sourceNodes);
+					for (int i = 0; i < sourceNodes.length; i++) {
+						matrix[i][j] = workspace.getCost(sourceNodes[i]);
+					}
+				}
+			});
+		} else {
+			execute(sources.length, new Row() {
+				@Override
+				public void compute(int i) {
+					DijkstraWorkspace workspace = workspaces.get();
+					workspace.search(sourceNodes[i], 0, edgeCosts, false, targetNodes);
+					matrix[i] = getCosts(workspace, targetNodes);
+				}
+			});
+		}
+		return matrix;
+	}
+
+	private void execute(int numberOfRows, final Row row) {
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		for (int i = 0; i < numberOfRows; i++) {
+			final int index = i;
+			tasks.add(new Callable<Object>() {
+				@Override
+				public Object call() {
+					row.compute(index);
+					return null;
+				}
+			});
+		}
+		ThreadUtils.runAll(tasks, executor);
+	}
+
+	private interface Row {
+		void compute(int index);
+	}
+
+	private static int[] toIntArray(long[] nodes) {
+		int[] result = new int[nodes.length];
+		for (int i = 0; i < nodes.length; i++) {
+			result[i] = convertToInt(nodes[i]);
+		}
+		return result;
+	}
+
+	private int[] getCosts(DijkstraWorkspace workspace, int[] nodes) {
+		int[] result = new int[nodes.length];
+		for (int i = 0; i < nodes.length; i++) {
+			result[i] = workspace.getCost(nodes[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Stops the worker threads of the service.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+}
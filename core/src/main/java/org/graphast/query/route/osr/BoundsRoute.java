@@ -1,32 +1,69 @@
 package org.graphast.query.route.osr;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.Serializable;
-import java.util.Collection;
+import static org.graphast.util.NumberUtils.convertToInt;
+
+import java.io.File;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.graphast.enums.CompressionType;
+import org.graphast.enums.GraphBoundsType;
 import org.graphast.exception.GraphastException;
+import org.graphast.model.CompactGraph;
 import org.graphast.model.GraphBounds;
+import org.graphast.model.Node;
 import org.graphast.query.model.AbstractBoundsSearchPoI;
 import org.graphast.query.model.Bound;
-import org.graphast.query.route.shortestpath.dijkstra.DijkstraLinearFunction;
+import org.graphast.query.model.QueueEntry;
+import org.graphast.query.route.shortestpath.dijkstra.DijkstraCompact;
+import org.graphast.util.FileUtils;
+import org.graphast.util.ThreadUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 
-import it.unimi.dsi.fastutil.ints.IntSet;
+/**
+ * Cost from each node to its nearest PoI of each category, plus the waiting time at the PoI.
+ *
+ * The bounds are kept as a node by category matrix, in two columns of ints (the cost and
+ * the PoI), so a bound is read by its position. The matrices are saved without compression
+ * and loaded by mapping the files into memory.
+ */
+public class BoundsRoute extends AbstractBoundsSearchPoI {
 
-public class BoundsRoute extends AbstractBoundsSearchPoI implements Serializable {
+	private static final int BLOCK_SIZE = 4096;
+	private static final int INFINITY = DijkstraCompact.INFINITY;
 
-	private static final long serialVersionUID = 3156968902457731581L;
+	private static Logger log = LoggerFactory.getLogger(BoundsRoute.class);
 
 	private GraphBounds graph;
 	private short graphType;
-	
+
+	// categories in the order of the columns, and the column of each category
+	private int[] categories = new int[0];
+	private Int2IntOpenHashMap columns = new Int2IntOpenHashMap();
+
+	// cost and PoI of each node and category, at node * categories.length + column
+	private IntBuffer costs;
+	private IntBuffer pois;
+
+	// kept for the repairs when PoIs change
+	private CompactGraph compactGraph;
+	private int[] edgeCosts;
+
 	/**
-	 * @param	graph	graph that will be used to find all paths according 
+	 * @param	graph	graph that will be used to find all paths according
 	 * 					to the above description
 	 * @param graphType description of the graph type, 0 = normal graph, 1 = lower bound graph
 	 * 					2 = upper bound graph.
@@ -35,86 +72,421 @@ public class BoundsRoute extends AbstractBoundsSearchPoI implements Serializable
 		super();
 		this.graph = graph;
 		this.graphType = graphType;
+		this.columns.defaultReturnValue(-1);
+		this.bounds = null;
+		setCategories(new int[0]);
 	}
 
 	/**
-	 * Calculates the minimum path (we call this bound) from each vertex 
+	 * Calculates the minimum path (we call this bound) from each vertex
 	 * passing by one PoI of each category.
 	 */
 	public void createBounds() {
-		DijkstraLinearFunction d = new DijkstraLinearFunction(graph);
-		IntSet categoriesIds = graph.getCategories();
+		createBounds(Runtime.getRuntime().availableProcessors());
+	}
 
-		for(int i = 0; i < graph.getNumberOfNodes(); i++){
+	/**
+	 * Calculates the bounds of each category with a single search from all of its PoIs,
+	 * over the reversed edges, one category per thread. Each category is saved as soon as
+	 * it is done, and a new call after a failure reuses the categories already saved if
+	 * the edges, their costs, the PoIs and their waiting times did not change.
+	 */
+	public void createBounds(int numberOfThreads) {
+		int[] sortedCategories = graph.getCategories().toIntArray();
+		IntArrays.quickSort(sortedCategories);
+		setCategories(sortedCategories);
+		// the costs of the graph may have changed since the last repair
+		compactGraph = null;
+		createCompactGraph();
+		prepareCheckpoint();
 
-			long nodeId = graph.getNode(i).getId();
+		final AtomicInteger done = new AtomicInteger();
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (final int category : categories) {
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					createColumn(category);
+					log.info("Bounds of category {} done ({} of {})", category, done.incrementAndGet(), categories.length);
+					return null;
+				}
+			});
+		}
+		ThreadUtils.runAll(tasks, numberOfThreads);
+		FileUtils.deleteDir(getCheckpointDirectory());
+	}
 
-			/*
-			 * The next line is going to return a collection of Bound containing the distance from this vid to 
-			 * the set of categories passed by argument on the variable 'categories'.
-			 */
-			List<Bound> bound = d.shortestPathCategories(nodeId, categoriesIds, graphType);
+	/**
+	 * Keeps the saved categories only if they were created over the same edges and costs.
+	 * The edges and their costs are saved with the categories, and compared in full.
+	 */
+	private void prepareCheckpoint() {
+		int[] edges = new int[3 * compactGraph.getNumberOfEdges()];
+		for (int e = 0; e < compactGraph.getNumberOfEdges(); e++) {
+			edges[3 * e] = compactGraph.getFromNode(e);
+			edges[3 * e + 1] = compactGraph.getToNode(e);
+			edges[3 * e + 2] = edgeCosts[e];
+		}
+		String path = getCheckpointDirectory() + "/edges";
+		if (!new File(path).exists()
+				|| !Arrays.equals(edges, FileUtils.loadIntArray(path, BLOCK_SIZE, CompressionType.NO_COMPRESSION))) {
+			FileUtils.deleteDir(getCheckpointDirectory());
+			FileUtils.saveIntArray(path, edges, BLOCK_SIZE, CompressionType.NO_COMPRESSION);
+		}
+	}
+
+	private void createColumn(int category) {
+		IntArrayList categoryPoIs = new IntArrayList();
+		for (int v = 0; v < graph.getNumberOfNodes(); v++) {
+			if (getCategory(v) == category) {
+				categoryPoIs.add(v);
+			}
+		}
+		int[] sources = categoryPoIs.toIntArray();
+		int[] waitingTimes = new int[sources.length];
+		for (int i = 0; i < sources.length; i++) {
+			waitingTimes[i] = graph.poiGetCost(sources[i], graphType);
+		}
+		// PoIs and their waiting times
+		int[] key = Arrays.copyOf(sources, 2 * sources.length);
+		System.arraycopy(waitingTimes, 0, key, sources.length, waitingTimes.length);
+
+		String dir = getCheckpointDirectory() + "/" + category;
+		int[] columnCosts;
+		int[] columnPois;
+		if (new File(dir + "/sources").exists()
+				&& Arrays.equals(key, FileUtils.loadIntArray(dir + "/sources", BLOCK_SIZE, CompressionType.NO_COMPRESSION))) {
+			columnCosts = FileUtils.loadIntArray(dir + "/costs", BLOCK_SIZE, CompressionType.NO_COMPRESSION);
+			columnPois = FileUtils.loadIntArray(dir + "/pois", BLOCK_SIZE, CompressionType.NO_COMPRESSION);
+		} else {
+			DijkstraCompact dijkstra = new DijkstraCompact(compactGraph, edgeCosts);
+			columnCosts = dijkstra.run(sources, waitingTimes, true, INFINITY);
+			columnPois = dijkstra.getOrigins();
 
-			//The next line is going to associate the current vid to the bounds of the previous line.
-			bounds.put(nodeId,  bound);
-		} 
+			// the sources are saved last, so they are only there if the category is complete
+			FileUtils.saveIntArray(dir + "/costs", columnCosts, BLOCK_SIZE, CompressionType.NO_COMPRESSION);
+			FileUtils.saveIntArray(dir + "/pois", columnPois, BLOCK_SIZE, CompressionType.NO_COMPRESSION);
+			FileUtils.saveIntArray(dir + "/sources", key, BLOCK_SIZE, CompressionType.NO_COMPRESSION);
+		}
+
+		int column = columns.get(category);
+		for (int v = 0; v < columnCosts.length; v++) {
+			put(v, column, columnPois[v], columnCosts[v]);
+		}
+	}
+
+	/**
+	 * Empty matrices for the given categories.
+	 */
+	private void setCategories(int[] sortedCategories) {
+		categories = sortedCategories;
+		columns.clear();
+		for (int c = 0; c < categories.length; c++) {
+			columns.put(categories[c], c);
+		}
+		int[] newCosts = new int[convertToInt(graph.getNumberOfNodes() * categories.length)];
+		int[] newPois = new int[newCosts.length];
+		Arrays.fill(newCosts, INFINITY);
+		Arrays.fill(newPois, -1);
+		costs = IntBuffer.wrap(newCosts);
+		pois = IntBuffer.wrap(newPois);
+		bounds = null;
 	}
-	
+
 	public Bound getBound(int id, int category){
-		if(bounds.containsKey(id)){
+		int column = columns.get(category);
+		int position = id * categories.length + column;
+		if (column == -1 || pois.get(position) == -1) {
+			return new Bound();
+		}
+		return new Bound(pois.get(position), costs.get(position));
+	}
 
-			Collection<Bound> bound = bounds.get(id);
+	/**
+	 * Same as the cost of {@link #getBound(int, int)}, without creating the bound.
+	 */
+	public int getCost(int id, int category) {
+		int column = columns.get(category);
+		return column == -1 ? INFINITY : costs.get(id * categories.length + column);
+	}
 
-			for(Bound boundIterator : bound) {
-				if(boundIterator.getId() == category) {
-					return boundIterator;
+	public int[] getCategories() {
+		return categories.clone();
+	}
+
+	/**
+	 * Bounds in the form of {@link AbstractBoundsSearchPoI}, in the order of the categories.
+	 * The map is only created when this method is called.
+	 */
+	@Override
+	public Map<Long, List<Bound>> getBounds() {
+		if (bounds == null) {
+			bounds = new HashMap<Long, List<Bound>>();
+			for (int v = 0; v < graph.getNumberOfNodes(); v++) {
+				List<Bound> bound = new ArrayList<Bound>();
+				for (int c = 0; c < categories.length; c++) {
+					int position = v * categories.length + c;
+					if (pois.get(position) != -1) {
+						bound.add(new Bound(pois.get(position), costs.get(position)));
+					}
 				}
+				bounds.put((long) v, bound);
 			}
+		}
+		return bounds;
+	}
 
+	@Override
+	public void setBounds(Map<Long, List<Bound>> bounds) {
+		IntOpenHashSet boundCategories = new IntOpenHashSet();
+		for (List<Bound> bound : bounds.values()) {
+			for (Bound b : bound) {
+				boundCategories.add(getCategory(b.getId()));
+			}
+		}
+		int[] sortedCategories = boundCategories.toIntArray();
+		IntArrays.quickSort(sortedCategories);
+		setCategories(sortedCategories);
+		for (Map.Entry<Long, List<Bound>> entry : bounds.entrySet()) {
+			for (Bound b : entry.getValue()) {
+				put(entry.getKey().intValue(), columns.get(getCategory(b.getId())), (int) b.getId(), b.getCost());
+			}
 		}
-		return new Bound();
 	}
-	
-	@SuppressWarnings("unchecked")
-	public void load() {
-		ObjectInputStream in = null;
-		try {
-			String dir = graph.getAbsoluteDirectory();
-			in = new ObjectInputStream(new FileInputStream(dir + "/bounds" + graphType));
-			this.bounds = (Map<Long, List<Bound>>) in.readObject();
-			in.close();	
-		} catch (Exception e) {
-			throw new GraphastException(e.getMessage(), e);
-		} finally {
-			if (in != null) {
-				try {
-					in.close();
-				} catch (IOException e) {
-					throw new GraphastException(e.getMessage(), e);
+
+	private void put(int vid, int column, int poi, int cost) {
+		int position = vid * categories.length + column;
+		costs.put(position, cost);
+		pois.put(position, poi);
+	}
+
+	/**
+	 * Updates the bounds after the node became a PoI of the graph. The search from the new
+	 * PoI, over the reversed edges, only goes on through nodes that are strictly nearer to
+	 * it than to the PoIs of the same category.
+	 */
+	public void addPoI(long nodeId) {
+		int poi = (int) nodeId;
+		int category = getCategory(poi);
+		if (category < 0) {
+			throw new GraphastException("The node " + nodeId + " is not a PoI.");
+		}
+		prepareRepair();
+		if (columns.get(category) == -1) {
+			addColumn(category);
+		}
+		int column = columns.get(category);
+		Int2IntOpenHashMap distances = new Int2IntOpenHashMap();
+		distances.defaultReturnValue(INFINITY);
+		IntOpenHashSet settled = new IntOpenHashSet();
+		PriorityQueue<QueueEntry> queue = new PriorityQueue<QueueEntry>();
+		int waitingTime = graph.poiGetCost(poi, graphType);
+		if (waitingTime < getCost(poi, category)) {
+			distances.put(poi, waitingTime);
+			queue.offer(new QueueEntry(poi, waitingTime));
+		}
+
+		while (!queue.isEmpty()) {
+			QueueEntry removed = queue.poll();
+			int u = (int) removed.getId();
+			int cost = distances.get(u);
+			if (settled.contains(u) || removed.getTravelTime() != cost) {
+				continue;
+			}
+			settled.add(u);
+			put(u, column, poi, cost);
+
+			for (int i = compactGraph.getInBegin(u); i < compactGraph.getInEnd(u); i++) {
+				int e = compactGraph.getInEdge(i);
+				int v = compactGraph.getFromNode(e);
+				long newCost = (long) cost + edgeCosts[e];
+				if (!settled.contains(v) && newCost < distances.get(v) && newCost < getCost(v, category)) {
+					distances.put(v, (int) newCost);
+					queue.offer(new QueueEntry(v, (int) newCost));
 				}
 			}
 		}
-		
+		bounds = null;
 	}
-	
-	public void save() {
-		ObjectOutputStream out = null;
-		try {
-			String dir = graph.getAbsoluteDirectory();
-			out = new ObjectOutputStream(new FileOutputStream(dir + "/bounds" + graphType));
-			out.writeObject(bounds);
-			out.close();	
-		} catch (IOException e) {
-			throw new GraphastException(e.getMessage(), e);
-		} finally {
-			if (out != null) {
-				try {
-					out.close();
-				} catch (IOException e) {
-					throw new GraphastException(e.getMessage(), e);
+
+	/**
+	 * Updates the bounds after the node stopped being a PoI of the category. Only the nodes
+	 * that had it as their bound are searched again, starting from the nodes around them
+	 * and from the other PoIs of the category among them.
+	 */
+	public void removePoI(long nodeId, int category) {
+		int poi = (int) nodeId;
+		int column = columns.get(category);
+		if (column == -1 || pois.get(poi * categories.length + column) != poi) {
+			// no node has it as its bound
+			return;
+		}
+		prepareRepair();
+
+		// the nodes bounded by a PoI are connected to it by their shortest paths
+		IntArrayList zone = new IntArrayList();
+		IntOpenHashSet inZone = new IntOpenHashSet();
+		zone.add(poi);
+		inZone.add(poi);
+		for (int z = 0; z < zone.size(); z++) {
+			int u = zone.getInt(z);
+			for (int i = compactGraph.getInBegin(u); i < compactGraph.getInEnd(u); i++) {
+				int v = compactGraph.getFromNode(compactGraph.getInEdge(i));
+				if (pois.get(v * categories.length + column) == poi && inZone.add(v)) {
+					zone.add(v);
 				}
 			}
 		}
+		for (int v : zone) {
+			put(v, column, -1, INFINITY);
+		}
+
+		PriorityQueue<QueueEntry> queue = new PriorityQueue<QueueEntry>();
+		for (int v : zone) {
+			if (v != poi && getCategory(v) == category) {
+				put(v, column, v, graph.poiGetCost(v, graphType));
+			}
+			for (int i = compactGraph.getOutBegin(v); i < compactGraph.getOutEnd(v); i++) {
+				int e = compactGraph.getOutEdge(i);
+				int w = compactGraph.getToNode(e);
+				int position = w * categories.length + column;
+				if (!inZone.contains(w) && pois.get(position) != -1) {
+					long cost = (long) costs.get(position) + edgeCosts[e];
+					if (cost < getCost(v, category)) {
+						put(v, column, pois.get(position), (int) cost);
+					}
+				}
+			}
+			if (pois.get(v * categories.length + column) != -1) {
+				queue.offer(new QueueEntry(v, getCost(v, category)));
+			}
+		}
+
+		IntOpenHashSet settled = new IntOpenHashSet();
+		while (!queue.isEmpty()) {
+			QueueEntry removed = queue.poll();
+			int u = (int) removed.getId();
+			int cost = getCost(u, category);
+			if (settled.contains(u) || removed.getTravelTime() != cost) {
+				continue;
+			}
+			settled.add(u);
+
+			for (int i = compactGraph.getInBegin(u); i < compactGraph.getInEnd(u); i++) {
+				int e = compactGraph.getInEdge(i);
+				int v = compactGraph.getFromNode(e);
+				long newCost = (long) cost + edgeCosts[e];
+				if (inZone.contains(v) && !settled.contains(v) && newCost < getCost(v, category)) {
+					put(v, column, pois.get(u * categories.length + column), (int) newCost);
+					queue.offer(new QueueEntry(v, (int) newCost));
+				}
+			}
+		}
+		bounds = null;
+	}
+
+	/**
+	 * Updates the bounds after a PoI moved from one node to another, e.g. a taxi. The graph
+	 * must already have the PoI in its new node.
+	 */
+	public void movePoI(long from, long to) {
+		removePoI(from, getCategory((int) to));
+		addPoI(to);
+	}
+
+	private void prepareRepair() {
+		copyToHeap();
+		createCompactGraph();
+	}
+
+	private void createCompactGraph() {
+		if (compactGraph == null) {
+			compactGraph = new CompactGraph(graph);
+			edgeCosts = getEdgeCosts(graph, graphType);
+		}
+	}
+
+	/**
+	 * Cost of each edge in the given graph type, indexed by edge id.
+	 */
+	static int[] getEdgeCosts(GraphBounds graph, short graphType) {
+		if (graphType == 0) {
+			return CompactGraph.getEdgeCosts(graph, 0);
+		}
+		return CompactGraph.getEdgeCosts(graph, graphType == 1 ? GraphBoundsType.LOWER : GraphBoundsType.UPPER);
+	}
+
+	/**
+	 * Copies the matrices to the heap if they were mapped from the files.
+	 */
+	private void copyToHeap() {
+		if (costs.isReadOnly()) {
+			int[] newCosts = new int[costs.capacity()];
+			int[] newPois = new int[pois.capacity()];
+			costs.duplicate().get(newCosts);
+			pois.duplicate().get(newPois);
+			costs = IntBuffer.wrap(newCosts);
+			pois = IntBuffer.wrap(newPois);
+		}
+	}
+
+	private void addColumn(int category) {
+		IntBuffer oldCosts = costs;
+		IntBuffer oldPois = pois;
+		int[] oldCategories = categories;
+		int[] newCategories = Arrays.copyOf(categories, categories.length + 1);
+		newCategories[categories.length] = category;
+		IntArrays.quickSort(newCategories);
+		setCategories(newCategories);
+		for (int v = 0; v < graph.getNumberOfNodes(); v++) {
+			for (int c = 0; c < oldCategories.length; c++) {
+				int position = v * oldCategories.length + c;
+				put(v, columns.get(oldCategories[c]), oldPois.get(position), oldCosts.get(position));
+			}
+		}
+	}
+
+	private int getCategory(long poi) {
+		return graph.getNodes().getInt(poi * Node.NODE_BLOCKSIZE + 2);
+	}
+
+	public void load() {
+		String dir = getDirectory();
+		int[] loadedCategories = FileUtils.loadIntArray(dir + "/categories", BLOCK_SIZE, CompressionType.NO_COMPRESSION);
+		IntBuffer loadedCosts = FileUtils.mapIntArray(dir + "/costs");
+		IntBuffer loadedPois = FileUtils.mapIntArray(dir + "/pois");
+		long size = graph.getNumberOfNodes() * loadedCategories.length;
+		if (loadedCosts.capacity() != size || loadedPois.capacity() != size) {
+			throw new GraphastException("The bounds in " + dir + " were not created for this graph.");
+		}
+		categories = loadedCategories;
+		columns.clear();
+		for (int c = 0; c < categories.length; c++) {
+			columns.put(categories[c], c);
+		}
+		costs = loadedCosts;
+		pois = loadedPois;
+		bounds = null;
+	}
+
+	public void save() {
+		String dir = getDirectory();
+		FileUtils.saveIntArray(dir + "/categories", categories, BLOCK_SIZE, CompressionType.NO_COMPRESSION);
+		// a mapped file cannot be written over while it is mapped
+		copyToHeap();
+		FileUtils.saveIntArray(dir + "/costs", costs.array(), BLOCK_SIZE, CompressionType.NO_COMPRESSION);
+		FileUtils.saveIntArray(dir + "/pois", pois.array(), BLOCK_SIZE, CompressionType.NO_COMPRESSION);
+	}
+
+	/**
+	 * Directory, inside the graph directory, where the bounds are saved.
+	 */
+	private String getDirectory() {
+		return graph.getAbsoluteDirectory() + "/osr/bounds/" + graphType;
+	}
+
+	private String getCheckpointDirectory() {
+		return getDirectory() + "/checkpoint";
 	}
 
 }
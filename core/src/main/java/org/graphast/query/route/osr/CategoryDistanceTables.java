@@ -0,0 +1,243 @@
+package org.graphast.query.route.osr;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.graphast.enums.CompressionType;
+import org.graphast.exception.GraphastException;
+import org.graphast.model.CompactGraph;
+import org.graphast.model.GraphBounds;
+import org.graphast.model.Node;
+import org.graphast.query.route.shortestpath.dijkstra.DijkstraCompact;
+import org.graphast.util.FileUtils;
+import org.graphast.util.ThreadUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+
+/**
+ * Cost of the shortest path between every two PoIs, grouped in one table for each pair of
+ * categories. The table of the categories a and b has a row for each PoI of a and a column
+ * for each PoI of b, both in the order of their ids. It is used by {@link OSRTableSearch},
+ * which only has to search the graph for the legs from the origin and to the destination.
+ */
+public class CategoryDistanceTables {
+
+	private static final int BLOCK_SIZE = 4096;
+	private static final int INFINITY = DijkstraCompact.INFINITY;
+
+	private static Logger log = LoggerFactory.getLogger(CategoryDistanceTables.class);
+
+	private GraphBounds graph;
+	private short graphType;
+
+	// categories in the order of the tables, and the index of each category
+	private int[] categories = new int[0];
+	private Int2IntOpenHashMap indexes = new Int2IntOpenHashMap();
+
+	// PoIs and waiting times of each category, by the index of the category
+	private int[][] pois = new int[0][];
+	private int[][] waitingTimes = new int[0][];
+
+	// table of the categories a and b at a * categories.length + b
+	private int[][] tables = new int[0][];
+
+	private CompactGraph compactGraph;
+	private int[] edgeCosts;
+
+	/**
+	 * @param graph graph of the PoIs
+	 * @param graphType description of the graph type, 0 = normal graph, 1 = lower bound graph
+	 * 					2 = upper bound graph.
+	 */
+	public CategoryDistanceTables(GraphBounds graph, short graphType) {
+		this.graph = graph;
+		this.graphType = graphType;
+		this.indexes.defaultReturnValue(-1);
+	}
+
+	public void createTables() {
+		createTables(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Calculates the tables with one search from each PoI, which fills its row in the tables
+	 * of its category. The PoIs of a category are searched by the same thread.
+	 */
+	public void createTables(int numberOfThreads) {
+		setPoIs();
+		tables = new int[categories.length * categories.length][];
+		for (int a = 0; a < categories.length; a++) {
+			for (int b = 0; b < categories.length; b++) {
+				tables[a * categories.length + b] = new int[pois[a].length * pois[b].length];
+			}
+		}
+
+		final AtomicInteger done = new AtomicInteger();
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int a = 0; a < categories.length; a++) {
+			final int from = a;
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					createRows(from);
+					log.info("Tables of category {} done ({} of {})", categories[from], done.incrementAndGet(), categories.length);
+					return null;
+				}
+			});
+		}
+		ThreadUtils.runAll(tasks, numberOfThreads);
+	}
+
+	private void createRows(int a) {
+		DijkstraCompact dijkstra = new DijkstraCompact(getCompactGraph(), getEdgeCosts());
+		for (int i = 0; i < pois[a].length; i++) {
+			int[] distances = dijkstra.run(new int[] { pois[a][i] }, new int[] { 0 }, false, INFINITY);
+			for (int b = 0; b < categories.length; b++) {
+				int[] table = tables[a * categories.length + b];
+				for (int j = 0; j < pois[b].length; j++) {
+					table[i * pois[b].length + j] = distances[pois[b][j]];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads the categories, PoIs and waiting times from the graph.
+	 */
+	private void setPoIs() {
+		int[] sortedCategories = graph.getCategories().toIntArray();
+		IntArrays.quickSort(sortedCategories);
+		categories = sortedCategories;
+		indexes.clear();
+		for (int c = 0; c < categories.length; c++) {
+			indexes.put(categories[c], c);
+		}
+
+		IntArrayList[] categoryPoIs = new IntArrayList[categories.length];
+		for (int c = 0; c < categories.length; c++) {
+			categoryPoIs[c] = new IntArrayList();
+		}
+		for (int v = 0; v < graph.getNumberOfNodes(); v++) {
+			int c = indexes.get(getCategory(v));
+			if (c != -1) {
+				categoryPoIs[c].add(v);
+			}
+		}
+		pois = new int[categories.length][];
+		waitingTimes = new int[categories.length][];
+		for (int c = 0; c < categories.length; c++) {
+			pois[c] = categoryPoIs[c].toIntArray();
+			waitingTimes[c] = new int[pois[c].length];
+			for (int i = 0; i < pois[c].length; i++) {
+				waitingTimes[c][i] = graph.poiGetCost(pois[c][i], graphType);
+			}
+		}
+	}
+
+	/**
+	 * Cost from the i-th PoI of the category a to the j-th PoI of the category b, INFINITY
+	 * if there is no path.
+	 */
+	public int getCost(int a, int i, int b, int j) {
+		int from = indexes.get(a);
+		int to = indexes.get(b);
+		if (from == -1 || to == -1) {
+			return INFINITY;
+		}
+		return tables[from * categories.length + to][i * pois[to].length + j];
+	}
+
+	/**
+	 * PoIs of the category in the order of the rows and columns of its tables.
+	 */
+	public int[] getPoIs(int category) {
+		int c = indexes.get(category);
+		return c == -1 ? new int[0] : pois[c];
+	}
+
+	/**
+	 * Waiting time at the i-th PoI of the category.
+	 */
+	public int getWaitingTime(int category, int i) {
+		return waitingTimes[indexes.get(category)][i];
+	}
+
+	public int[] getCategories() {
+		return categories.clone();
+	}
+
+	public GraphBounds getGraph() {
+		return graph;
+	}
+
+	synchronized CompactGraph getCompactGraph() {
+		if (compactGraph == null) {
+			compactGraph = new CompactGraph(graph);
+		}
+		return compactGraph;
+	}
+
+	synchronized int[] getEdgeCosts() {
+		if (edgeCosts == null) {
+			edgeCosts = BoundsRoute.getEdgeCosts(graph, graphType);
+		}
+		return edgeCosts;
+	}
+
+	private int getCategory(long id) {
+		return graph.getNodes().getInt(id * Node.NODE_BLOCKSIZE + 2);
+	}
+
+	/**
+	 * Loads the tables saved for the graph. The PoIs of the graph must be the same they were
+	 * when the tables were created.
+	 */
+	public void load() {
+		String dir = getDirectory();
+		int[] loadedCategories = FileUtils.loadIntArray(dir + "/categories", BLOCK_SIZE, CompressionType.NO_COMPRESSION);
+		setPoIs();
+		if (!Arrays.equals(categories, loadedCategories)) {
+			throw new GraphastException("The tables in " + dir + " were not created for the PoIs of this graph.");
+		}
+		for (int c = 0; c < categories.length; c++) {
+			int[] loadedPoIs = FileUtils.loadIntArray(dir + "/pois/" + categories[c], BLOCK_SIZE, CompressionType.NO_COMPRESSION);
+			if (!Arrays.equals(pois[c], loadedPoIs)) {
+				throw new GraphastException("The tables in " + dir + " were not created for the PoIs of this graph.");
+			}
+		}
+		tables = new int[categories.length * categories.length][];
+		for (int a = 0; a < categories.length; a++) {
+			for (int b = 0; b < categories.length; b++) {
+				tables[a * categories.length + b] = FileUtils.loadIntArray(dir + "/" + categories[a] + "-" + categories[b],
+						BLOCK_SIZE, CompressionType.NO_COMPRESSION);
+			}
+		}
+	}
+
+	public void save() {
+		String dir = getDirectory();
+		FileUtils.saveIntArray(dir + "/categories", categories, BLOCK_SIZE, CompressionType.NO_COMPRESSION);
+		for (int a = 0; a < categories.length; a++) {
+			FileUtils.saveIntArray(dir + "/pois/" + categories[a], pois[a], BLOCK_SIZE, CompressionType.NO_COMPRESSION);
+			for (int b = 0; b < categories.length; b++) {
+				FileUtils.saveIntArray(dir + "/" + categories[a] + "-" + categories[b], tables[a * categories.length + b],
+						BLOCK_SIZE, CompressionType.NO_COMPRESSION);
+			}
+		}
+	}
+
+	/**
+	 * Directory, inside the graph directory, where the tables are saved.
+	 */
+	private String getDirectory() {
+		return graph.getAbsoluteDirectory() + "/osr/tables/" + graphType;
+	}
+
+}
@@ -0,0 +1,97 @@
+package org.graphast.query.route.osr;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+
+import java.util.PriorityQueue;
+
+import org.graphast.model.CompactCosts;
+import org.graphast.model.CompactGraph;
+import org.graphast.query.model.QueueEntry;
+
+/**
+ * Costs from every node to a destination, used as lower bounds by {@link OSRSearch}. The
+ * backward Dijkstra behind it is incremental: it only runs until the node asked for is
+ * settled and continues from there on the next call, so a query that stays close to the
+ * destination does not sweep the whole graph. Costs are taken at time 0, as in the
+ * one-to-all search over the reverse graph that it replaces.
+ *
+ * This class is not thread safe.
+ */
+public class DestinationTree {
+
+	// rough size of an entry of the fastutil maps and of the priority queue
+	private static final int MAP_ENTRY_BYTES = 12;
+	private static final int QUEUE_ENTRY_BYTES = 40;
+
+	private CompactGraph graph;
+	private CompactCosts costs;
+	private int destination;
+
+	private Int2IntOpenHashMap settled = new Int2IntOpenHashMap();
+	private Int2IntOpenHashMap tentative = new Int2IntOpenHashMap();
+	private PriorityQueue<QueueEntry> queue = new PriorityQueue<QueueEntry>();
+
+	public DestinationTree(CompactGraph graph, CompactCosts costs, int destination) {
+		this.graph = graph;
+		this.costs = costs;
+		this.destination = destination;
+		tentative.defaultReturnValue(Integer.MAX_VALUE);
+		tentative.put(destination, 0);
+		queue.offer(new QueueEntry(destination, 0));
+	}
+
+	/**
+	 * Cost of the shortest path from the node to the destination, or 0 if the
+	 * destination cannot be reached from it.
+	 */
+	public int getCost(int node) {
+		while (!settled.containsKey(node) && !queue.isEmpty()) {
+			settleNext();
+		}
+		return settled.get(node);
+	}
+
+	private void settleNext() {
+		QueueEntry removed = queue.poll();
+		int u = (int) removed.getId();
+		if (settled.containsKey(u) || removed.getTravelTime() > tentative.get(u)) {
+			return;
+		}
+		int cost = removed.getTravelTime();
+		settled.put(u, cost);
+		tentative.remove(u);
+
+		for (int i = graph.getInBegin(u); i < graph.getInEnd(u); i++) {
+			int e = graph.getInEdge(i);
+			int v = graph.getFromNode(e);
+			int newCost = cost + costs.getCost(e, 0);
+			if (!settled.containsKey(v) && newCost < tentative.get(v)) {
+				tentative.put(v, newCost);
+				queue.offer(new QueueEntry(v, newCost));
+			}
+		}
+	}
+
+	public int getDestination() {
+		return destination;
+	}
+
+	public int getNumberOfSettledNodes() {
+		return settled.size();
+	}
+
+	/**
+	 * True when every node that reaches the destination is already settled.
+	 */
+	public boolean isComplete() {
+		return queue.isEmpty();
+	}
+
+	/**
+	 * Estimate, in bytes, of the memory held by the tree.
+	 */
+	public long getMemoryUsage() {
+		return (long) (settled.size() + tentative.size()) * MAP_ENTRY_BYTES + (long) queue.size() * QUEUE_ENTRY_BYTES;
+	}
+
+}
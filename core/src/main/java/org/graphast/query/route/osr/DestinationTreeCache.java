@@ -0,0 +1,97 @@
+package org.graphast.query.route.osr;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.graphast.model.CompactCosts;
+import org.graphast.model.CompactGraph;
+import org.graphast.model.Graph;
+
+/**
+ * Least recently used {@link DestinationTree}s, so repeated queries to the same destination
+ * continue the search already done instead of starting a new one. Trees grow while they are
+ * used, so the memory budget is checked by {@link #trim()} after each query; the tree used
+ * last is always kept.
+ *
+ * This class is not thread safe.
+ */
+public class DestinationTreeCache {
+
+	public static final long DEFAULT_MAX_MEMORY = 64L * 1024 * 1024;
+
+	private CompactGraph graph;
+	private CompactCosts costs;
+	private long maxMemory;
+
+	private LinkedHashMap<Integer, DestinationTree> trees = new LinkedHashMap<Integer, DestinationTree>(16, 0.75f, true);
+
+	public DestinationTreeCache(Graph graph) {
+		this(graph, DEFAULT_MAX_MEMORY);
+	}
+
+	/**
+	 * @param graph graph searched by the trees
+	 * @param maxMemory memory budget, in bytes, of all the trees together
+	 */
+	public DestinationTreeCache(Graph graph, long maxMemory) {
+		this(new CompactGraph(graph), new CompactCosts(graph), maxMemory);
+	}
+
+	public DestinationTreeCache(CompactGraph graph, CompactCosts costs, long maxMemory) {
+		this.graph = graph;
+		this.costs = costs;
+		this.maxMemory = maxMemory;
+	}
+
+	public DestinationTree get(int destination) {
+		DestinationTree tree = trees.get(destination);
+		if (tree == null) {
+			tree = new DestinationTree(graph, costs, destination);
+			trees.put(destination, tree);
+		}
+		return tree;
+	}
+
+	/**
+	 * Drops the least recently used trees until the cache fits in its memory budget.
+	 */
+	public void trim() {
+		long memory = getMemoryUsage();
+		Iterator<DestinationTree> iterator = trees.values().iterator();
+		while (memory > maxMemory && trees.size() > 1) {
+			DestinationTree eldest = iterator.next();
+			memory -= eldest.getMemoryUsage();
+			iterator.remove();
+		}
+	}
+
+	public long getMemoryUsage() {
+		long memory = 0;
+		for (DestinationTree tree : trees.values()) {
+			memory += tree.getMemoryUsage();
+		}
+		return memory;
+	}
+
+	public long getMaxMemory() {
+		return maxMemory;
+	}
+
+	public void setMaxMemory(long maxMemory) {
+		this.maxMemory = maxMemory;
+		trim();
+	}
+
+	public boolean contains(int destination) {
+		return trees.containsKey(destination);
+	}
+
+	public int size() {
+		return trees.size();
+	}
+
+	public void clear() {
+		trees.clear();
+	}
+
+}
@@ -5,257 +5,254 @@ import static org.graphast.util.NumberUtils.convertToInt;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
-import java.util.PriorityQueue;
 
+import org.graphast.exception.GraphastException;
+import org.graphast.exception.PathNotFoundException;
 import org.graphast.geometry.PoI;
 import org.graphast.geometry.PoICategory;
+import org.graphast.model.CompactCosts;
+import org.graphast.model.CompactGraph;
 import org.graphast.model.Graph;
 import org.graphast.model.GraphBounds;
 import org.graphast.model.Node;
-import org.graphast.query.route.shortestpath.AbstractShortestPathService;
-import org.graphast.query.route.shortestpath.dijkstra.DijkstraConstantWeight;
-import org.graphast.query.route.shortestpath.dijkstra.DijkstraLinearFunction;
+import org.graphast.query.route.shortestpath.dijkstra.DijkstraCompact;
 import org.graphast.query.route.shortestpath.model.Path;
 import org.graphast.util.DateUtils;
 
-import com.graphhopper.util.StopWatch;
-
-import it.unimi.dsi.fastutil.longs.Long2DoubleMap;
-import it.unimi.dsi.fastutil.longs.Long2DoubleOpenHashMap;
-import it.unimi.dsi.fastutil.longs.Long2IntMap;
-
 public class OSRSearch {
 
-	protected static AbstractShortestPathService serviceGraph;
-	
+	private static final int INFINITY = DijkstraCompact.INFINITY;
+
 	private GraphBounds graphBounds;
-	private DijkstraLinearFunction dijkstra;
+	private DestinationTreeCache destinationTrees;
 	private BoundsRoute bounds;
 	private short graphType;
-	
-	protected static int wasRemoved = -1;
 
+	// state of the searches, reused from one to the next
+	private CompactGraph compactGraph;
+	private CompactCosts compactCosts;
+	private OSRWorkspace workspace;
+	// last label of the route found by the last search, NONE if there was none
+	private int resultLabel = OSRWorkspace.NONE;
 
 	public OSRSearch(GraphBounds graphBounds, short graphType){
 		this.graphBounds = graphBounds;
 		this.graphType = graphType;
-		//Double check this instantiation
-		this.dijkstra = new DijkstraLinearFunction(this.graphBounds.getReverseGraph());
 	}
 
-	public ArrayList<Long> reconstructPath(Node origin, Node destination, RouteQueueEntry route, 
-			HashMap<Integer, HashMap<Integer, Integer>> parents){
-		ArrayList<Long> path = new ArrayList<Long>();
-		//ArrayList<Integer> path = new ArrayList<Integer>();
-		int qId = convertToInt(origin.getId());
-		int size = route.getRoute().size();
-		for(int id = 0; id < size; id++){
-			path.addAll(pathToPoi(id, qId, convertToInt(route.getRoute().get(id).getId()), parents));
-			qId = convertToInt(route.getRoute().get(id).getId());
-		}
-
-		path.addAll(pathToDestination(destination, size, convertToInt(route.getRoute().get(size - 1).getId()), parents));
-		path.add(destination.getId());
-		return path;
+	public Sequence search(Node origin, Node destination, Date time, List<Integer> categories){
+		return search(origin, destination, time, categories, 0);
 	}
 
-	private ArrayList<Long> pathToPoi(int pos, int id, int poiId, HashMap<Integer, HashMap<Integer, Integer>> parents){
-
-		ArrayList<Long> path = new ArrayList<Long>();
-		long parent = parents.get(pos + 1).get(poiId);
-
-		while(parent != id && parent != -1){
-			path.add(parent);
-			parent = parents.get(pos).get((int)parent);
+	/**
+	 * Approximate search, whose route has a travel time of at most (1 + epsilon) times the
+	 * one of the exact search. The lower bounds in the queue are multiplied by (1 + epsilon)
+	 * and a label is dropped when another one at the node is at most (1 + epsilon) times
+	 * slower. The factor achieved is given by {@link Sequence#getSuboptimalityBound()}, which
+	 * also counts the labels that reach a node after it left the queue with a greater
+	 * travel time, as the weighted keys allow. When it is above 1 + epsilon because of the
+	 * dropped labels, the search runs again without dropping any. The exact search drops
+	 * none, so it always runs once.
+	 *
+	 * @param epsilon 0 for the exact search
+	 */
+	public Sequence search(Node origin, Node destination, Date time, List<Integer> categories, double epsilon){
+		if(epsilon < 0){
+			throw new GraphastException("The epsilon of the search cannot be negative: " + epsilon);
 		}
-		path.add((long)id);
-		Collections.reverse(path);
-		return path;
-	}
-
-	private ArrayList<Long> pathToDestination(Node d, int pos, int id, 	HashMap<Integer, HashMap<Integer, Integer>> parents){
-		int did = convertToInt(d.getId());
-		ArrayList<Long> path = new ArrayList<Long>();
-		long parent = parents.get(pos).get(did);
-		while(parent != id && parent != -1){
-			path.add(parent);
-			parent = parents.get(pos).get((int)parent);
+		try {
+			DestinationTree destinationPaths = getDestinationTrees().get(convertToInt(destination.getId()));
+			double factor = 1 + epsilon;
+			Sequence result = search(origin, destination, time, categories, destinationPaths, factor, factor);
+			if(epsilon > 0 && result.getSuboptimalityBound() > factor){
+				// a dropped label may have led to a better route, so only the queue is relaxed
+				result = search(origin, destination, time, categories, destinationPaths, factor, 1);
+			}
+			return result;
+		} finally {
+			destinationTrees.trim();
 		}
-		path.add((long)id);
-		Collections.reverse(path);
-		return path;
 	}
 
-	public Sequence search(Node origin, Node destination, Date time, List<Integer> categories){
-
-		PriorityQueue<RouteQueueEntry> queue = new PriorityQueue<RouteQueueEntry>();
-		HashMap<Integer, HashMap<Integer, Integer>> parents = new HashMap<Integer, HashMap<Integer, Integer>>();
-		HashMap<Integer, HashMap<Integer, Integer>> wasTraversed = new HashMap<Integer, HashMap<Integer, Integer>>();
-
-		// Is this 'destinationPaths' keeping all shortest paths 
-		// from the destination node of OSR to all other nodes?
-		Long2DoubleMap destinationPaths = new Long2DoubleOpenHashMap();
-		destinationPaths = dijkstra.shortestPath(destination.getId());
-
-		Sequence seq = new Sequence();
-		int t = DateUtils.dateToMinutes(time);
-		int wt, ts, upper = Integer.MAX_VALUE;
-		int nextCat, nextId;
-		init(origin, destination, categories, t, queue, destinationPaths);
-		RouteQueueEntry removed = null;
-		ArrayList<NearestNeighborTC> reachedNN;
-
-		while(!queue.isEmpty()){
-			removed = queue.poll();
-			addWasTraversed(removed.getRoute().size(), convertToInt(removed.getId()), wasRemoved, wasTraversed);
-			addParent(removed.getRoute().size(), convertToInt(removed.getId()), convertToInt(removed.getParent()), parents);
-
-			if(removed.getId() == convertToInt(destination.getId())){
-				if(removed.getRoute().size() >= categories.size()){
-					return new Sequence(removed.getId(), removed.getTravelTime(), reconstructPath(origin, destination, removed, parents), removed.getRoute());
-				}
+	/**
+	 * @param weight factor of the lower bounds in the keys of the queue
+	 * @param dominance a label is dropped if another label at the node has a travel time of
+	 * 					at most dominance times its own
+	 */
+	private Sequence search(Node origin, Node destination, Date time, List<Integer> categories, DestinationTree destinationPaths,
+			double weight, double dominance){
+
+		OSRWorkspace workspace = getWorkspace();
+		workspace.reset(categories.size() + 1);
+		resultLabel = OSRWorkspace.NONE;
+		int[] sequence = new int[categories.size()];
+		for(int i = 0; i < sequence.length; i++){
+			sequence[i] = categories.get(i);
+		}
+		int destinationId = convertToInt(destination.getId());
+		init(origin, sequence, DateUtils.dateToMinutes(time), workspace, destinationPaths, weight);
+
+		// smallest travel time plus lower bound of the labels dropped by the dominance, or
+		// because their node was already removed with a greater travel time
+		long dropped = Long.MAX_VALUE;
+
+		while(!workspace.isEmpty()){
+			int label = workspace.poll();
+			int u = workspace.getNode(label);
+			int layer = workspace.getLayer(label);
+			if(workspace.isRemoved(layer, u) || workspace.getLabel(layer, u) != label){
+				// a better label of the node was found after this one was queued
+				continue;
 			}
-
-			if(removed.getLowerBound() > upper) {
-
-				return seq;
-
+			workspace.remove(layer, u);
+
+			if(u == destinationId && layer >= sequence.length){
+				Sequence result = createSequence(label, workspace);
+				resultLabel = label;
+				// every route left in the queue has a travel time of at least its key divided by the weight
+				double lowerBound = Math.min(workspace.getTravelTime(label), Math.min(dropped, workspace.peekKey() / weight));
+				if(lowerBound > 0){
+					result.setSuboptimalityBound(workspace.getTravelTime(label) / lowerBound);
+				}
+				return result;
 			}
 
-			Long2IntMap neig = graphBounds.accessNeighborhood(graphBounds.getNode(removed.getId()),(short)0, removed.getArrivalTime());
-
-			for (long v : neig.keySet()) {
-				int vid = convertToInt(v);
-				nextId = removed.getRoute().size();
-				int tt = removed.getTravelTime() + neig.get(v);
-				wt = 0;
-				reachedNN = new ArrayList<NearestNeighborTC>(removed.getRoute());
-
-				if(nextId < categories.size()){
-					nextCat = categories.get(nextId);
-					Node poi = ((Graph) graphBounds).getPoi(vid);
-					if(poi != null){
-						if(poi.getCategory() == nextCat){
-							wt = ((Graph) graphBounds).poiGetCost(vid, removed.getArrivalTime());
-							ts = wt + tt;
-							NearestNeighborTC nn = new NearestNeighborTC(vid, tt, wt, ts);
-							reachedNN.add(nn);
-							nextId++;
-						}
-					}
+			int arrival = workspace.getArrival(label);
+			for(int i = compactGraph.getOutBegin(u); i < compactGraph.getOutEnd(u); i++){
+				int e = compactGraph.getOutEdge(i);
+				int v = compactGraph.getToNode(e);
+				int cost = compactCosts.getCost(e, arrival);
+				int tt = workspace.getTravelTime(label) + cost;
+				int nextLayer = layer;
+				int wt = 0;
+
+				if(nextLayer < sequence.length && getCategory(v) == sequence[nextLayer]){
+					wt = ((Graph) graphBounds).poiGetCost(v, arrival);
+					nextLayer++;
 				}
-				int at = graphBounds.getArrival(removed.getArrivalTime() + wt, neig.get(v));
-				int lb = (int) lowerBound(vid, nextId, categories, destinationPaths);
-				RouteQueueEntry newEntry = new RouteQueueEntry(	vid, tt, at, convertToInt(removed.getId()), tt + lb, reachedNN);
-
-				int pos = newEntry.getRoute().size();
-				if(!wasRemoved(vid, pos, categories, wasTraversed)){
-					if(!isInQ(vid, pos, tt, wasTraversed, categories)){
-						if(isInQ(vid, pos, wasTraversed)){
-							int cost = wasTraversed.get(pos).get(vid);
-							if(cost>newEntry.getTravelTime()){
-								queue.remove(newEntry);
-								queue.offer(newEntry);
-								wasTraversed.get(pos).remove(vid);
-							}
-						}else{
-							queue.offer(newEntry);
-							addWasTraversed(pos, vid, tt, wasTraversed);
+				if(isDominated(v, nextLayer, tt, 1, workspace)){
+					if(isImprovedAfterRemoval(v, nextLayer, tt, workspace)){
+						// the weighted keys removed the node before its best label was found
+						int lb = lowerBound(v, nextLayer, sequence, destinationPaths);
+						if(lb != INFINITY){
+							dropped = Math.min(dropped, (long) tt + lb);
 						}
 					}
+					continue;
 				}
-			}	
-		}
-		return seq;
-	}
-
-	private boolean wasRemoved(int id, int pos, List<Integer> c, 
-			HashMap<Integer, HashMap<Integer, Integer>> wasTraversed){
-		for(int i = pos; i <= c.size(); i++){
-			if(wasTraversed.containsKey(i)){
-				if(wasTraversed.get(i).containsKey(id)){
-					if(wasTraversed.get(i).get(id).equals(wasRemoved))	return true;
+				int lb = lowerBound(v, nextLayer, sequence, destinationPaths);
+				if(lb == INFINITY){
+					// some category cannot be reached from the node
+					continue;
 				}
+				if(dominance > 1 && isDominated(v, nextLayer, tt, dominance, workspace)){
+					dropped = Math.min(dropped, (long) tt + lb);
+					continue;
+				}
+				int at = compactCosts.getArrival(arrival + wt, cost);
+				int next = workspace.addLabel(v, nextLayer, label, e, tt, at, nextLayer > layer ? wt : OSRWorkspace.NONE);
+				workspace.setLabel(nextLayer, v, next);
+				workspace.offer(next, key(tt, lb, weight));
 			}
 		}
-		return false;
+		Sequence result = new Sequence();
+		if(dropped != Long.MAX_VALUE){
+			// the route may have gone through a dropped label
+			result.setSuboptimalityBound(Double.POSITIVE_INFINITY);
+		}
+		return result;
 	}
 
-	private boolean isInQ(int id, int pos, HashMap<Integer, HashMap<Integer, Integer>> wasTraversed){
-		if(wasTraversed.containsKey(pos)){
-			if(wasTraversed.get(pos).containsKey(id))	return true;
-		}
-		return false;
+	private static long key(int tt, int lb, double weight){
+		return tt + (long) (weight * lb);
 	}
 
-	private boolean isInQ(int id, int pos, int newCost, HashMap<Integer, HashMap<Integer, Integer>> wasTraversed,
-			List<Integer> c){
-		for(int i = pos; i <= c.size(); i++){
-			if(wasTraversed.containsKey(i)){
-				if(wasTraversed.get(i).containsKey(id)){
-					if(!wasTraversed.get(i).get(id).equals(wasRemoved)){
-						int cost = wasTraversed.get(i).get(id);
-						if(cost <= newCost)	return true;
-					}
-				}
+	/**
+	 * A route to the node that visited at least as many categories is already settled, or
+	 * was found with a travel time that is at most factor times the given one.
+	 */
+	private boolean isDominated(int id, int layer, int tt, double factor, OSRWorkspace workspace){
+		for(int i = layer; i < workspace.getNumberOfLayers(); i++){
+			if(workspace.isRemoved(i, id) || workspace.getCost(i, id) <= factor * tt){
+				return true;
 			}
 		}
 		return false;
 	}
 
-	private int lowerBound(int id, int pos, List<Integer> categories, Long2DoubleMap destination){
-		int max = (int) destination.get(id);
-		if(pos < categories.size()){
-			int distance;
-			for(int i = pos; i < categories.size(); i++){
-				distance = getBoundsRoute().getBound(id, (int)categories.get(i)).getCost();
-				if(distance > max)	max = distance;
+	/**
+	 * Only routes that were already removed from the queue with a greater travel time
+	 * dominate the given one.
+	 */
+	private boolean isImprovedAfterRemoval(int id, int layer, int tt, OSRWorkspace workspace){
+		for(int i = layer; i < workspace.getNumberOfLayers(); i++){
+			if(workspace.getCost(i, id) <= tt){
+				return false;
 			}
 		}
-		return max;
-	}
-
-	private void addWasTraversed(int pos, int id, int cost, HashMap<Integer, HashMap<Integer, Integer>> wasTraversed){
-		if(!wasTraversed.containsKey(pos)){
-			wasTraversed.put(pos, new HashMap<Integer, Integer>());
-		}
-		wasTraversed.get(pos).put(id, cost);
+		return true;
 	}
 
-	private void addParent(int pos, int id, int parent, HashMap<Integer, HashMap<Integer, Integer>> parents){
-		if(!parents.containsKey(pos)){
-			parents.put(pos, new HashMap<Integer, Integer>());
+	private int lowerBound(int id, int pos, int[] sequence, DestinationTree destination){
+		int max = destination.getCost(id);
+		for(int i = pos; i < sequence.length; i++){
+			int distance = getBoundsRoute().getCost(id, sequence[i]);
+			if(distance > max)	max = distance;
 		}
-		parents.get(pos).put(id, parent);
+		return max;
 	}
 
-	private void init(Node origin, Node d, List<Integer> categories, int t, PriorityQueue<RouteQueueEntry> queue, 
-			Long2DoubleMap destinationPaths){
+	private void init(Node origin, int[] sequence, int t, OSRWorkspace workspace, DestinationTree destinationPaths, double weight){
 
 		int pos = 0;
-		ArrayList<NearestNeighborTC> reached = new ArrayList<NearestNeighborTC>();
-		int travelTime, waitingTime, timeToService;
-		travelTime = 0;
+		int waitingTime = OSRWorkspace.NONE;
 		int originId = convertToInt(origin.getId());
 
-		Node poi = ((Graph) graphBounds).getPoi(originId);
+		if(sequence.length > 0 && getCategory(originId) == sequence[0]){
+			pos++;
+			waitingTime = ((Graph) graphBounds).poiGetCost(originId, t);
+		}
 
-		if(poi != null) {
+		int lb = lowerBound(originId, pos, sequence, destinationPaths);
+		if(lb == INFINITY){
+			return;
+		}
+		int label = workspace.addLabel(originId, pos, OSRWorkspace.NONE, OSRWorkspace.NONE, 0, t, waitingTime);
+		workspace.setLabel(pos, originId, label);
+		workspace.offer(label, key(0, lb, weight));
+	}
 
-			if(poi.getCategory() == categories.get(0)){
-				pos++;
-				waitingTime = ((Graph) graphBounds).poiGetCost(originId, t);
-				timeToService = travelTime + waitingTime;
-				NearestNeighborTC nn = new NearestNeighborTC(originId, travelTime, waitingTime, timeToService);
-				reached.add(nn);
+	/**
+	 * Path and PoIs of the route that ends at the label, following the parents of the labels.
+	 */
+	private Sequence createSequence(int label, OSRWorkspace workspace){
+		ArrayList<Long> path = new ArrayList<Long>();
+		ArrayList<NearestNeighborTC> pois = new ArrayList<NearestNeighborTC>();
+		for(int l = label; l != OSRWorkspace.NONE; l = workspace.getParent(l)){
+			path.add((long) workspace.getNode(l));
+			int wt = workspace.getWaitingTime(l);
+			if(wt != OSRWorkspace.NONE){
+				int tt = workspace.getTravelTime(l);
+				pois.add(new NearestNeighborTC(workspace.getNode(l), tt, wt, tt + wt));
 			}
 		}
+		Collections.reverse(path);
+		Collections.reverse(pois);
+		return new Sequence(workspace.getNode(label), workspace.getTravelTime(label), path, pois);
+	}
 
-		int lb = lowerBound(originId, pos, categories, destinationPaths);
+	private int getCategory(int id){
+		return graphBounds.getNodes().getInt((long) id * Node.NODE_BLOCKSIZE + 2);
+	}
 
-		queue.offer(new RouteQueueEntry(originId, travelTime, t, -1, t + lb, reached));
+	private OSRWorkspace getWorkspace(){
+		if(this.workspace == null){
+			this.compactGraph = new CompactGraph(graphBounds);
+			this.compactCosts = new CompactCosts(graphBounds);
+			this.workspace = new OSRWorkspace(compactGraph.getNumberOfNodes());
+		}
+		return this.workspace;
 	}
 
 	public Graph getGraphAdapter() {
@@ -264,53 +261,74 @@ public class OSRSearch {
 
 	public void setGraphAdapter(GraphBounds graphAdapter) {
 		this.graphBounds = graphAdapter;
+		this.workspace = null;
 	}
 
-	//TODO URGENT REFACTOR IN THIS METHOD
+	/**
+	 * Route of {@link #search(Node, Node, Date, List)} with its instructions, geometry and
+	 * PoIs.
+	 */
 	public Path getFullPath(Node origin, Node destination, Date time, List<Integer> categories) {
-		
-		List<Long> result = this.search(origin, destination, time, categories).getPath();
-
-		List<Path> allPaths = new ArrayList<Path>();
+		return getFullPath(origin, destination, time, categories, 0);
+	}
 
-		serviceGraph = new DijkstraConstantWeight(graphBounds);
+	/**
+	 * Route of {@link #search(Node, Node, Date, List, double)} with its instructions, geometry
+	 * and PoIs, built from the edges kept in the labels of the search.
+	 */
+	public Path getFullPath(Node origin, Node destination, Date time, List<Integer> categories, double epsilon) {
+		search(origin, destination, time, categories, epsilon);
+		if(resultLabel == OSRWorkspace.NONE){
+			throw new PathNotFoundException("There is no route from " + origin.getId() + " to " + destination.getId()
+					+ " through the categories " + categories);
+		}
+		return createPath(resultLabel, workspace);
+	}
 
-		for(int i=0; i<result.size(); i++) {
-			if(i==result.size()-1) {
-				break;
+	private Path createPath(int label, OSRWorkspace workspace){
+		int size = 0;
+		for(int l = label; workspace.getEdge(l) != OSRWorkspace.NONE; l = workspace.getParent(l)){
+			size++;
+		}
+		long[] edgeIds = new long[size];
+		int[] edgeCosts = new int[size];
+		List<PoI> pois = new ArrayList<PoI>();
+		int i = size;
+		for(int l = label; l != OSRWorkspace.NONE; l = workspace.getParent(l)){
+			if(workspace.getWaitingTime(l) != OSRWorkspace.NONE){
+				Node node = graphBounds.getNode(workspace.getNode(l));
+				pois.add(new PoI(node.getLabel(), node.getLatitude(), node.getLongitude(), new PoICategory(node.getCategory())));
 			}
-
-			Long source = graphBounds.getNodeId(graphBounds.getNode(result.get(i)).getLatitude(),graphBounds.getNode(result.get(i)).getLongitude());
-			Long target = graphBounds.getNodeId(graphBounds.getNode(result.get(i+1)).getLatitude(),graphBounds.getNode(result.get(i+1)).getLongitude());
-
-			StopWatch sw = new StopWatch();
-
-			sw.start();
-			Path shortestPath = serviceGraph.shortestPath(source, target);
-			sw.stop();
-
-			Node possiblePoI = graphBounds.getNode(source);
-			List<PoI> temporaryListOfPoIs = new ArrayList<PoI>();
-			
-			List<Integer> listOfPois = categories;
-			
-			if(possiblePoI.getCategory()>0) {
-				if(listOfPois.contains(possiblePoI.getCategory())) {
-					PoICategory poiCategory = new PoICategory(possiblePoI.getCategory());
-					PoI temporaryPoI = new PoI(possiblePoI.getLabel(), 
-							possiblePoI.getLatitude(), possiblePoI.getLongitude(), poiCategory);
-					temporaryListOfPoIs.add(temporaryPoI);
-					
-					listOfPois.remove((Integer)possiblePoI.getCategory());
-				}
+			if(workspace.getEdge(l) != OSRWorkspace.NONE){
+				i--;
+				edgeIds[i] = workspace.getEdge(l);
+				edgeCosts[i] = workspace.getTravelTime(l) - workspace.getTravelTime(workspace.getParent(l));
 			}
-			shortestPath.setListOfPoIs(temporaryListOfPoIs);
-			allPaths.add(shortestPath);
 		}
-		Path resultPath = Path.pathsConcatanation(allPaths);
-		return resultPath;
+		Collections.reverse(pois);
+
+		Path path = new Path();
+		path.constructPath(graphBounds, edgeIds, edgeCosts);
+		path.setListOfPoIs(pois);
+		return path;
+	}
+
+	/**
+	 * Cache of the costs to the destinations of previous queries. It may be shared by
+	 * searches over the same graph.
+	 */
+	public DestinationTreeCache getDestinationTrees() {
+		if (this.destinationTrees == null) {
+			getWorkspace();
+			this.destinationTrees = new DestinationTreeCache(compactGraph, compactCosts, DestinationTreeCache.DEFAULT_MAX_MEMORY);
+		}
+		return this.destinationTrees;
+	}
+
+	public void setDestinationTrees(DestinationTreeCache destinationTrees) {
+		this.destinationTrees = destinationTrees;
 	}
-	
+
 	private BoundsRoute getBoundsRoute() {
 		if (this.bounds == null) {
 			this.bounds = new BoundsRoute(this.graphBounds, this.graphType);
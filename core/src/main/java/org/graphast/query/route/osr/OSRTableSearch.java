@@ -0,0 +1,221 @@
+package org.graphast.query.route.osr;
+
+import static org.graphast.util.NumberUtils.convertToInt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.graphast.model.CompactGraph;
+import org.graphast.model.Node;
+import org.graphast.query.model.QueueEntry;
+import org.graphast.query.route.shortestpath.dijkstra.DijkstraCompact;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+
+/**
+ * Optimal sequenced route over the static costs of {@link CategoryDistanceTables}. The
+ * route is a shortest path in a layered graph with the PoIs of the i-th category in the
+ * i-th layer: the first layer is reached by a search from the origin, the last one by a
+ * search to the destination, and the layers in between only read the tables. The route
+ * with the smallest time to service (travel and waiting times) is returned.
+ */
+public class OSRTableSearch {
+
+	private static final int INFINITY = DijkstraCompact.INFINITY;
+
+	private CategoryDistanceTables tables;
+	private CompactGraph compactGraph;
+	private int[] edgeCosts;
+
+	public OSRTableSearch(CategoryDistanceTables tables) {
+		this.tables = tables;
+		this.compactGraph = tables.getCompactGraph();
+		this.edgeCosts = tables.getEdgeCosts();
+	}
+
+	public Sequence search(Node origin, Node destination, List<Integer> categories) {
+		int originId = convertToInt(origin.getId());
+		int destinationId = convertToInt(destination.getId());
+		int k = categories.size();
+		if (k == 0) {
+			Leg leg = new Leg(originId, false, new int[] { destinationId });
+			if (!leg.isReached(destinationId)) {
+				return new Sequence();
+			}
+			return new Sequence(destinationId, leg.getCost(destinationId), leg.getPath(destinationId),
+					new ArrayList<NearestNeighborTC>());
+		}
+
+		// time to service and travel time of the best route to each PoI of each layer
+		int[][] layers = new int[k][];
+		int[][] travelTimes = new int[k][];
+		int[][] parents = new int[k][];
+
+		int[] first = tables.getPoIs(categories.get(0));
+		Leg originLeg = new Leg(originId, false, first);
+		layers[0] = new int[first.length];
+		travelTimes[0] = new int[first.length];
+		parents[0] = new int[first.length];
+		for (int j = 0; j < first.length; j++) {
+			layers[0][j] = originLeg.getCost(first[j]);
+			travelTimes[0][j] = layers[0][j];
+		}
+
+		for (int i = 1; i < k; i++) {
+			int a = categories.get(i - 1);
+			int b = categories.get(i);
+			int[] from = tables.getPoIs(a);
+			int[] to = tables.getPoIs(b);
+			layers[i] = new int[to.length];
+			travelTimes[i] = new int[to.length];
+			parents[i] = new int[to.length];
+			Arrays.fill(layers[i], INFINITY);
+			for (int q = 0; q < to.length; q++) {
+				for (int p = 0; p < from.length; p++) {
+					int cost = tables.getCost(a, p, b, q);
+					if (layers[i - 1][p] == INFINITY || cost == INFINITY || from[p] == to[q]) {
+						continue;
+					}
+					long timeToService = (long) layers[i - 1][p] + tables.getWaitingTime(a, p) + cost;
+					if (timeToService < layers[i][q]) {
+						layers[i][q] = (int) timeToService;
+						travelTimes[i][q] = travelTimes[i - 1][p] + cost;
+						parents[i][q] = p;
+					}
+				}
+			}
+		}
+
+		int last = categories.get(k - 1);
+		int[] lastPoIs = tables.getPoIs(last);
+		Leg destinationLeg = new Leg(destinationId, true, lastPoIs);
+		long best = INFINITY;
+		int end = -1;
+		for (int p = 0; p < lastPoIs.length; p++) {
+			if (layers[k - 1][p] == INFINITY || !destinationLeg.isReached(lastPoIs[p])) {
+				continue;
+			}
+			long timeToService = (long) layers[k - 1][p] + tables.getWaitingTime(last, p) + destinationLeg.getCost(lastPoIs[p]);
+			if (timeToService < best) {
+				best = timeToService;
+				end = p;
+			}
+		}
+		if (end == -1) {
+			return new Sequence();
+		}
+
+		int[] sequence = new int[k];
+		sequence[k - 1] = end;
+		for (int i = k - 1; i > 0; i--) {
+			sequence[i - 1] = parents[i][sequence[i]];
+		}
+		return createSequence(categories, sequence, travelTimes, originLeg, destinationLeg);
+	}
+
+	/**
+	 * Path and PoIs of the route through the given PoI of each layer. Only the legs between
+	 * PoIs have to be searched again, since the tables keep no paths.
+	 */
+	private Sequence createSequence(List<Integer> categories, int[] sequence, int[][] travelTimes,
+			Leg originLeg, Leg destinationLeg) {
+		int k = sequence.length;
+		ArrayList<NearestNeighborTC> pois = new ArrayList<NearestNeighborTC>();
+		ArrayList<Long> path = new ArrayList<Long>();
+		int previous = -1;
+		for (int i = 0; i < k; i++) {
+			int category = categories.get(i);
+			int poi = tables.getPoIs(category)[sequence[i]];
+			ArrayList<Long> leg = i == 0 ? originLeg.getPath(poi) : new Leg(previous, false, new int[] { poi }).getPath(poi);
+			path.addAll(i == 0 ? leg : leg.subList(1, leg.size()));
+
+			int tt = travelTimes[i][sequence[i]];
+			int wt = tables.getWaitingTime(category, sequence[i]);
+			pois.add(new NearestNeighborTC(poi, tt, wt, tt + wt));
+			previous = poi;
+		}
+		ArrayList<Long> leg = destinationLeg.getPath(previous);
+		path.addAll(leg.subList(1, leg.size()));
+		int travelTime = travelTimes[k - 1][sequence[k - 1]] + destinationLeg.getCost(previous);
+		return new Sequence(path.get(path.size() - 1), travelTime, path, pois);
+	}
+
+	/**
+	 * Search from one node that stops when all the targets are settled. Over the reversed
+	 * edges, the costs and paths are from the targets to the node.
+	 */
+	private class Leg {
+
+		private int source;
+		private boolean reverse;
+		private Int2IntOpenHashMap costs = new Int2IntOpenHashMap();
+		private Int2IntOpenHashMap parentEdges = new Int2IntOpenHashMap();
+
+		Leg(int source, boolean reverse, int[] targets) {
+			this.source = source;
+			this.reverse = reverse;
+			costs.defaultReturnValue(INFINITY);
+			parentEdges.defaultReturnValue(-1);
+
+			IntOpenHashSet remaining = new IntOpenHashSet(targets);
+			IntOpenHashSet settled = new IntOpenHashSet();
+			PriorityQueue<QueueEntry> queue = new PriorityQueue<QueueEntry>();
+			costs.put(source, 0);
+			queue.offer(new QueueEntry(source, 0));
+			while (!queue.isEmpty() && !remaining.isEmpty()) {
+				QueueEntry removed = queue.poll();
+				int u = (int) removed.getId();
+				int cost = costs.get(u);
+				if (settled.contains(u) || removed.getTravelTime() != cost) {
+					continue;
+				}
+				settled.add(u);
+				remaining.remove(u);
+
+				int begin = reverse ? compactGraph.getInBegin(u) : compactGraph.getOutBegin(u);
+				int end = reverse ? compactGraph.getInEnd(u) : compactGraph.getOutEnd(u);
+				for (int i = begin; i < end; i++) {
+					int e = reverse ? compactGraph.getInEdge(i) : compactGraph.getOutEdge(i);
+					int v = reverse ? compactGraph.getFromNode(e) : compactGraph.getToNode(e);
+					long newCost = (long) cost + edgeCosts[e];
+					if (!settled.contains(v) && newCost < costs.get(v)) {
+						costs.put(v, (int) newCost);
+						parentEdges.put(v, e);
+						queue.offer(new QueueEntry(v, (int) newCost));
+					}
+				}
+			}
+		}
+
+		boolean isReached(int target) {
+			return costs.get(target) != INFINITY;
+		}
+
+		int getCost(int target) {
+			return costs.get(target);
+		}
+
+		/**
+		 * Nodes of the path between the source and the target, in the direction of the edges.
+		 */
+		ArrayList<Long> getPath(int target) {
+			ArrayList<Long> path = new ArrayList<Long>();
+			path.add((long) target);
+			for (int v = target; v != source; ) {
+				int e = parentEdges.get(v);
+				v = reverse ? compactGraph.getToNode(e) : compactGraph.getFromNode(e);
+				path.add((long) v);
+			}
+			if (!reverse) {
+				Collections.reverse(path);
+			}
+			return path;
+		}
+
+	}
+
+}
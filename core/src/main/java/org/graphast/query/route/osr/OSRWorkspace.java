@@ -0,0 +1,183 @@
+package org.graphast.query.route.osr;
+
+import it.unimi.dsi.fastutil.longs.LongHeapPriorityQueue;
+
+import java.util.Arrays;
+
+/**
+ * State of an {@link OSRSearch}, kept in arrays that are reused by the next search.
+ *
+ * Layer i holds the labels of the routes that already visited i categories: for each
+ * node, the best travel time found and its label. Labels live in an arena and point to
+ * the label they were reached from, so a route is shared by all the labels that extend
+ * it instead of being copied. Stamps tell which entries of the layers belong to the
+ * current search, so they are not cleared between searches.
+ */
+class OSRWorkspace {
+
+	static final int NONE = -1;
+
+	private int numberOfNodes;
+	private int numberOfLayers;
+
+	private int stamp;
+	private int[][] stamps = new int[0][];
+	private int[][] costs = new int[0][];
+	private int[][] labels = new int[0][];
+	private boolean[][] removed = new boolean[0][];
+
+	private int size;
+	private int[] labelNodes = new int[16];
+	private int[] labelLayers = new int[16];
+	private int[] labelParents = new int[16];
+	private int[] labelEdges = new int[16];
+	private int[] labelTravelTimes = new int[16];
+	private int[] labelArrivals = new int[16];
+	private int[] labelWaitingTimes = new int[16];
+
+	// lower bound in the high bits and label in the low bits
+	private LongHeapPriorityQueue queue = new LongHeapPriorityQueue();
+
+	OSRWorkspace(int numberOfNodes) {
+		this.numberOfNodes = numberOfNodes;
+	}
+
+	/**
+	 * Starts a new search with the given number of layers.
+	 */
+	void reset(int numberOfLayers) {
+		if (numberOfLayers > stamps.length) {
+			int old = stamps.length;
+			stamps = Arrays.copyOf(stamps, numberOfLayers);
+			costs = Arrays.copyOf(costs, numberOfLayers);
+			labels = Arrays.copyOf(labels, numberOfLayers);
+			removed = Arrays.copyOf(removed, numberOfLayers);
+			for (int layer = old; layer < numberOfLayers; layer++) {
+				stamps[layer] = new int[numberOfNodes];
+				costs[layer] = new int[numberOfNodes];
+				labels[layer] = new int[numberOfNodes];
+				removed[layer] = new boolean[numberOfNodes];
+			}
+		}
+		this.numberOfLayers = numberOfLayers;
+		if (++stamp == Integer.MAX_VALUE) {
+			for (int[] layer : stamps) {
+				Arrays.fill(layer, 0);
+			}
+			stamp = 1;
+		}
+		size = 0;
+		queue.clear();
+	}
+
+	int getNumberOfLayers() {
+		return numberOfLayers;
+	}
+
+	boolean isReached(int layer, int node) {
+		return stamps[layer][node] == stamp;
+	}
+
+	boolean isRemoved(int layer, int node) {
+		return isReached(layer, node) && removed[layer][node];
+	}
+
+	/**
+	 * Best travel time to the node in the layer, Integer.MAX_VALUE if it was not reached.
+	 */
+	int getCost(int layer, int node) {
+		return isReached(layer, node) ? costs[layer][node] : Integer.MAX_VALUE;
+	}
+
+	int getLabel(int layer, int node) {
+		return isReached(layer, node) ? labels[layer][node] : NONE;
+	}
+
+	void setLabel(int layer, int node, int label) {
+		stamps[layer][node] = stamp;
+		costs[layer][node] = labelTravelTimes[label];
+		labels[layer][node] = label;
+		removed[layer][node] = false;
+	}
+
+	void remove(int layer, int node) {
+		removed[layer][node] = true;
+	}
+
+	/**
+	 * @param edge edge from the node of the parent, NONE for the origin
+	 * @param waitingTime waiting time at the node if a PoI was visited there, NONE otherwise
+	 */
+	int addLabel(int node, int layer, int parent, int edge, int travelTime, int arrival, int waitingTime) {
+		if (size == labelNodes.length) {
+			int capacity = size * 2;
+			labelNodes = Arrays.copyOf(labelNodes, capacity);
+			labelLayers = Arrays.copyOf(labelLayers, capacity);
+			labelParents = Arrays.copyOf(labelParents, capacity);
+			labelEdges = Arrays.copyOf(labelEdges, capacity);
+			labelTravelTimes = Arrays.copyOf(labelTravelTimes, capacity);
+			labelArrivals = Arrays.copyOf(labelArrivals, capacity);
+			labelWaitingTimes = Arrays.copyOf(labelWaitingTimes, capacity);
+		}
+		labelNodes[size] = node;
+		labelLayers[size] = layer;
+		labelParents[size] = parent;
+		labelEdges[size] = edge;
+		labelTravelTimes[size] = travelTime;
+		labelArrivals[size] = arrival;
+		labelWaitingTimes[size] = waitingTime;
+		return size++;
+	}
+
+	int getNode(int label) {
+		return labelNodes[label];
+	}
+
+	int getLayer(int label) {
+		return labelLayers[label];
+	}
+
+	int getParent(int label) {
+		return labelParents[label];
+	}
+
+	int getEdge(int label) {
+		return labelEdges[label];
+	}
+
+	int getTravelTime(int label) {
+		return labelTravelTimes[label];
+	}
+
+	int getArrival(int label) {
+		return labelArrivals[label];
+	}
+
+	int getWaitingTime(int label) {
+		return labelWaitingTimes[label];
+	}
+
+	int getNumberOfLabels() {
+		return size;
+	}
+
+	void offer(int label, long lowerBound) {
+		queue.enqueue((Math.min(lowerBound, Integer.MAX_VALUE) << 32) | label);
+	}
+
+	boolean isEmpty() {
+		return queue.isEmpty();
+	}
+
+	/**
+	 * Smallest key in the queue, Integer.MAX_VALUE if it is empty.
+	 */
+	long peekKey() {
+		return queue.isEmpty() ? Integer.MAX_VALUE : queue.firstLong() >>> 32;
+	}
+
+	int poll() {
+		return (int) queue.dequeueLong();
+	}
+
+}
@@ -5,6 +5,8 @@ import java.util.ArrayList;
 public class Sequence extends NearestNeighborTC {
 
 	private ArrayList<NearestNeighborTC> pois;
+	// the travel time is at most this factor of the one of the exact search
+	private double suboptimalityBound = 1;
 
 	public Sequence(){
 		super(-1, Integer.MAX_VALUE, null, Integer.MAX_VALUE, Integer.MAX_VALUE);
@@ -30,6 +32,14 @@ public class Sequence extends NearestNeighborTC {
 		this.pois = pois;
 	}
 
+	public double getSuboptimalityBound() {
+		return suboptimalityBound;
+	}
+
+	public void setSuboptimalityBound(double suboptimalityBound) {
+		this.suboptimalityBound = suboptimalityBound;
+	}
+
 	public String toString(){
 		return "(Travel Time: " + super.getDistance() + " Waiting Time: " + super.getWaitingTime() + " Time to Service: " + super.getTimeToService() + " Path: " + super.getPath() + " POIs:" + pois + ")";
 	}
@@ -0,0 +1,110 @@
+package org.graphast.query.route.profile;
+
+import static org.graphast.util.NumberUtils.convertToInt;
+
+import java.util.PriorityQueue;
+
+import org.graphast.exception.PathNotFoundException;
+import org.graphast.model.CompactCosts;
+import org.graphast.model.CompactGraph;
+import org.graphast.model.Graph;
+import org.graphast.model.TravelTimeFunction;
+import org.graphast.query.model.QueueEntry;
+
+/**
+ * Profile search: the travel time from a source to a target for every departure time of
+ * the day, computed in a single search instead of one query per departure time.
+ *
+ * Each node is labeled with a {@link TravelTimeFunction} instead of a single travel time.
+ * The search is label correcting: a node is scanned again whenever its function improves
+ * for some departure time. Nodes are scanned in order of the minimum of their functions,
+ * and the search stops when that minimum is not smaller than the maximum of the target
+ * function, since no path through the remaining nodes can improve it.
+ */
+public class ProfileSearch {
+
+	private Graph graph;
+	private CompactGraph compactGraph;
+	private CompactCosts compactCosts;
+	private int tolerance;
+
+	private int numberOfScannedNodes;
+
+	public ProfileSearch(Graph graph) {
+		this(graph, 0);
+	}
+
+	/**
+	 * @param tolerance travel times (in milliseconds) of adjacent pieces of the functions that
+	 * 					differ by at most this value are merged after each edge, bounding the size of
+	 * 					the functions. The resulting travel times are approximate
+	 */
+	public ProfileSearch(Graph graph, int tolerance) {
+		this.graph = graph;
+		this.compactGraph = new CompactGraph(graph);
+		this.compactCosts = new CompactCosts(graph);
+		this.tolerance = tolerance;
+	}
+
+	public TravelTimeFunction travelTimes(long source, long target) {
+		TravelTimeFunction[] functions = search(convertToInt(source), convertToInt(target));
+		TravelTimeFunction result = functions[convertToInt(target)];
+		if (result == null) {
+			throw new PathNotFoundException("Path not found between " + source + " and " + target);
+		}
+		return result;
+	}
+
+	/**
+	 * Travel time functions from the source to every node, null for nodes not reachable.
+	 */
+	public TravelTimeFunction[] travelTimes(long source) {
+		return search(convertToInt(source), -1);
+	}
+
+	private TravelTimeFunction[] search(int source, int target) {
+		int numberOfNodes = compactGraph.getNumberOfNodes();
+		TravelTimeFunction[] functions = new TravelTimeFunction[numberOfNodes];
+		boolean[] queued = new boolean[numberOfNodes];
+		PriorityQueue<QueueEntry> queue = new PriorityQueue<QueueEntry>();
+		numberOfScannedNodes = 0;
+
+		functions[source] = TravelTimeFunction.constant(graph.getMaxTime(), 0);
+		queued[source] = true;
+		queue.offer(new QueueEntry(source, 0));
+
+		while (!queue.isEmpty()) {
+			QueueEntry removed = queue.poll();
+			int u = (int) removed.getId();
+			if (!queued[u]) {
+				continue;
+			}
+			if (target >= 0 && functions[target] != null && removed.getTravelTime() >= functions[target].getMaximum()) {
+				break;
+			}
+			queued[u] = false;
+			numberOfScannedNodes++;
+
+			for (int i = compactGraph.getOutBegin(u); i < compactGraph.getOutEnd(u); i++) {
+				int e = compactGraph.getOutEdge(i);
+				int v = compactGraph.getToNode(e);
+				TravelTimeFunction linked = functions[u].link(compactCosts, e).simplify(tolerance);
+				TravelTimeFunction merged = functions[v] == null ? linked : functions[v].min(linked);
+				if (!merged.equals(functions[v])) {
+					functions[v] = merged;
+					queued[v] = true;
+					queue.offer(new QueueEntry(v, merged.getMinimum()));
+				}
+			}
+		}
+		return functions;
+	}
+
+	/**
+	 * Number of node scans of the last search (a node may be scanned more than once).
+	 */
+	public int getNumberOfScannedNodes() {
+		return numberOfScannedNodes;
+	}
+
+}
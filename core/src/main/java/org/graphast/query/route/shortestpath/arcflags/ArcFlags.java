@@ -0,0 +1,186 @@
+package org.graphast.query.route.shortestpath.arcflags;
+
+import static org.graphast.util.NumberUtils.convertToInt;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.graphast.enums.GraphBoundsType;
+import org.graphast.exception.GraphastException;
+import org.graphast.model.CompactGraph;
+import org.graphast.model.GraphBounds;
+import org.graphast.partition.Partition;
+import org.graphast.query.route.shortestpath.dijkstra.DijkstraCompact;
+import org.graphast.util.FileUtils;
+import org.graphast.util.ThreadUtils;
+
+/**
+ * Arc flags: for every edge and every cell of a {@link Partition}, one bit telling whether
+ * the edge lies on some shortest path to a node of that cell. A search towards a target
+ * only needs the edges flagged for the cell of the target.
+ *
+ * Edges are flagged using the boundary nodes of each cell (nodes with an edge coming from
+ * another cell). With type NORMAL the costs are the edge distances. With type LOWER the
+ * costs are time-dependent and an edge (u,v) is flagged for the cell of a boundary node b
+ * when lower(u,v) + lowerDistance(v,b) <= upperDistance(u,b): an edge that fails this test
+ * can not be in a shortest path to b at any time of the day, so the flags are valid for
+ * every departure time.
+ */
+public class ArcFlags {
+
+	private static final int INFINITY = DijkstraCompact.INFINITY;
+	private static final int BLOCK_SIZE = 4096;
+
+	private GraphBounds graph;
+	private Partition partition;
+	private GraphBoundsType type;
+
+	private int wordsPerEdge;
+	// bit c of flags[e * wordsPerEdge + c / 32] is set if edge e is flagged for cell c
+	private int[] flags = new int[0];
+
+	/**
+	 * @param graph graph whose edges will be flagged
+	 * @param partition partition of the nodes of the graph
+	 * @param type NORMAL for static (distance) searches or LOWER for time-dependent searches
+	 */
+	public ArcFlags(GraphBounds graph, Partition partition, GraphBoundsType type) {
+		if (type == GraphBoundsType.UPPER) {
+			throw new GraphastException("Arc flags must be created over the distances or the lower bound graph.");
+		}
+		this.graph = graph;
+		this.partition = partition;
+		this.type = type;
+		this.wordsPerEdge = (partition.getNumberOfCells() + 31) / 32;
+	}
+
+	public void createFlags() {
+		createFlags(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Computes the flags of all edges. Cells are processed independently, one task per cell.
+	 *
+	 * @param numberOfThreads threads used to process the cells
+	 */
+	public void createFlags(int numberOfThreads) {
+
+		if (type == GraphBoundsType.LOWER && graph.getEdgesLowerBound().isEmpty()) {
+			graph.createBounds();
+		}
+
+		final CompactGraph compactGraph = new CompactGraph(graph);
+		final int[] lowerCosts = CompactGraph.getEdgeCosts(graph, type);
+		final int[] upperCosts = type == GraphBoundsType.NORMAL ? lowerCosts
+				: CompactGraph.getEdgeCosts(graph, GraphBoundsType.UPPER);
+
+		int numberOfEdges = compactGraph.getNumberOfEdges();
+		flags = new int[convertToInt((long) numberOfEdges * wordsPerEdge)];
+
+		List<List<Integer>> boundaryNodes = new ArrayList<List<Integer>>();
+		for (int c = 0; c < partition.getNumberOfCells(); c++) {
+			boundaryNodes.add(new ArrayList<Integer>());
+		}
+		for (int v = 0; v < compactGraph.getNumberOfNodes(); v++) {
+			for (int i = compactGraph.getInBegin(v); i < compactGraph.getInEnd(v); i++) {
+				if (partition.getCell(compactGraph.getFromNode(compactGraph.getInEdge(i))) != partition.getCell(v)) {
+					boundaryNodes.get(partition.getCell(v)).add(v);
+					break;
+				}
+			}
+		}
+
+		for (int e = 0; e < numberOfEdges; e++) {
+			int cell = partition.getCell(compactGraph.getToNode(e));
+			if (partition.getCell(compactGraph.getFromNode(e)) == cell) {
+				setFlag(e, cell);
+			}
+		}
+
+		List<Callable<BitSet>> tasks = new ArrayList<Callable<BitSet>>();
+		for (final List<Integer> boundary : boundaryNodes) {
+			tasks.add(new Callable<BitSet>() {
+				@Override
+				public BitSet call() {
+					return flagEdges(compactGraph, lowerCosts, upperCosts, boundary);
+				}
+			});
+		}
+		List<BitSet> results = ThreadUtils.runAll(tasks, numberOfThreads);
+		for (int c = 0; c < results.size(); c++) {
+			BitSet edges = results.get(c);
+			for (int e = edges.nextSetBit(0); e >= 0; e = edges.nextSetBit(e + 1)) {
+				setFlag(e, c);
+			}
+		}
+	}
+
+	/**
+	 * Edges that may be in a shortest path to any of the given boundary nodes of a cell.
+	 */
+	private BitSet flagEdges(CompactGraph compactGraph, int[] lowerCosts, int[] upperCosts, List<Integer> boundary) {
+		BitSet edges = new BitSet(compactGraph.getNumberOfEdges());
+		DijkstraCompact lower = new DijkstraCompact(compactGraph, lowerCosts);
+		DijkstraCompact upper = new DijkstraCompact(compactGraph, upperCosts);
+
+		for (int b : boundary) {
+			int[] lowerDistances = lower.run(b, true);
+			int[] upperDistances = lowerCosts == upperCosts ? lowerDistances : upper.run(b, true);
+			for (int e = 0; e < compactGraph.getNumberOfEdges(); e++) {
+				int u = compactGraph.getFromNode(e);
+				int v = compactGraph.getToNode(e);
+				if (lowerDistances[v] != INFINITY && upperDistances[u] != INFINITY
+						&& (long) lowerCosts[e] + lowerDistances[v] <= upperDistances[u]) {
+					edges.set(e);
+				}
+			}
+		}
+		return edges;
+	}
+
+	private void setFlag(int edgeId, int cell) {
+		flags[edgeId * wordsPerEdge + (cell >>> 5)] |= 1 << (cell & 31);
+	}
+
+	public boolean hasFlag(long edgeId, int cell) {
+		return (flags[(int) edgeId * wordsPerEdge + (cell >>> 5)] & (1 << (cell & 31))) != 0;
+	}
+
+	public int getCell(long nodeId) {
+		return partition.getCell(nodeId);
+	}
+
+	public void save() {
+		FileUtils.saveIntArray(getFlagsPath(), flags, BLOCK_SIZE, graph.getCompressionType());
+		partition.save(getCellsPath(), graph.getCompressionType());
+	}
+
+	public void load() {
+		partition = Partition.load(getCellsPath(), graph.getCompressionType());
+		wordsPerEdge = (partition.getNumberOfCells() + 31) / 32;
+		flags = FileUtils.loadIntArray(getFlagsPath(), BLOCK_SIZE, graph.getCompressionType());
+	}
+
+	private String getFlagsPath() {
+		return graph.getAbsoluteDirectory() + "/edgesArcFlags" + getSuffix();
+	}
+
+	private String getCellsPath() {
+		return graph.getAbsoluteDirectory() + "/nodesArcFlagsCells" + getSuffix();
+	}
+
+	private String getSuffix() {
+		return type == GraphBoundsType.LOWER ? "Lower" : "Normal";
+	}
+
+	public Partition getPartition() {
+		return partition;
+	}
+
+	public GraphBoundsType getType() {
+		return type;
+	}
+
+}
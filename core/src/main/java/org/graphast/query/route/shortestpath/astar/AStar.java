@@ -76,10 +76,17 @@ public abstract class AStar extends AbstractShortestPathService{
 			HashMap<Long, RouteEntry> parents, int t) {
 		int sid = convertToInt(source.getId());
 		
-		queue.offer(new LowerBoundEntry(sid, 0, t, -1,	(int) DistanceUtils.timeCost(source, target)));
+		queue.offer(new LowerBoundEntry(sid, 0, t, -1, lowerBound(source.getId(), target)));
 
 //		parents.put(sourceId, null);		
 	}
+
+	/**
+	 * Estimate of the cost from vid to the target. It must never overestimate the real cost.
+	 */
+	protected int lowerBound(long vid, Node target) {
+		return (int) DistanceUtils.timeCost(graph.getNode(vid), target);
+	}
 	
 	public abstract void expandVertex(Node target, TimeEntry removed, HashMap<Long, Integer> wasTraversed, 
 			PriorityQueue<LowerBoundEntry> queue, HashMap<Long, RouteEntry> parents);
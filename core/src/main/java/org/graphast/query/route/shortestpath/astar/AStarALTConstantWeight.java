@@ -0,0 +1,32 @@
+package org.graphast.query.route.shortestpath.astar;
+
+import org.graphast.enums.GraphBoundsType;
+import org.graphast.exception.GraphastException;
+import org.graphast.model.Graph;
+import org.graphast.model.Node;
+
+/**
+ * A* guided by landmark lower bounds (ALT) on the edge distances.
+ */
+public class AStarALTConstantWeight extends AStarConstantWeight {
+
+	private Landmarks landmarks;
+
+	/**
+	 * @param graph	graph used in the search
+	 * @param landmarks	landmarks created over the same graph with {@link GraphBoundsType#NORMAL}
+	 */
+	public AStarALTConstantWeight(Graph graph, Landmarks landmarks) {
+		super(graph);
+		if (landmarks.getType() != GraphBoundsType.NORMAL) {
+			throw new GraphastException("Landmarks for constant weights must be created over the edge distances.");
+		}
+		this.landmarks = landmarks;
+	}
+
+	@Override
+	protected int lowerBound(long vid, Node target) {
+		return landmarks.getLowerBound(vid, target.getId());
+	}
+
+}
@@ -0,0 +1,33 @@
+package org.graphast.query.route.shortestpath.astar;
+
+import org.graphast.enums.GraphBoundsType;
+import org.graphast.exception.GraphastException;
+import org.graphast.model.Graph;
+import org.graphast.model.Node;
+
+/**
+ * Time-dependent A* guided by landmark lower bounds (ALT). The landmarks are computed over
+ * the lower bound of the edge costs, so the potentials are valid at any departure time.
+ */
+public class AStarALTLinearFunction extends AStarLinearFunction {
+
+	private Landmarks landmarks;
+
+	/**
+	 * @param graph	graph used in the search
+	 * @param landmarks	landmarks created over the same graph with {@link GraphBoundsType#LOWER}
+	 */
+	public AStarALTLinearFunction(Graph graph, Landmarks landmarks) {
+		super(graph);
+		if (landmarks.getType() != GraphBoundsType.LOWER) {
+			throw new GraphastException("Time-dependent landmarks must be created over the lower bound graph.");
+		}
+		this.landmarks = landmarks;
+	}
+
+	@Override
+	protected int lowerBound(long vid, Node target) {
+		return landmarks.getLowerBound(vid, target.getId());
+	}
+
+}
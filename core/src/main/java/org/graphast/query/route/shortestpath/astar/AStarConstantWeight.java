@@ -1,7 +1,5 @@
 package org.graphast.query.route.shortestpath.astar;
 
-import it.unimi.dsi.fastutil.longs.Long2IntMap;
-
 import java.util.HashMap;
 import java.util.PriorityQueue;
 
@@ -26,12 +24,14 @@ public class AStarConstantWeight extends AStar{
 	public void expandVertex(Node target, TimeEntry removed, HashMap<Long, Integer> wasTraversed, 
 			PriorityQueue<LowerBoundEntry> queue, HashMap<Long, RouteEntry> parents){
 		
-		Long2IntMap neig = graph.accessNeighborhood(graph.getNode(removed.getId()));
-		
-		for (long vid : neig.keySet()) {
+		for (long e : graph.getOutEdges(removed.getId())) {
 			
-			int arrivalTime = graph.getArrival(removed.getArrivalTime(), neig.get(vid));
-			int travelTime = removed.getTravelTime() + neig.get(vid);
+			Edge edge = graph.getEdge(e);
+			long vid = edge.getToNode();
+			int distance = edge.getDistance();
+			
+			int arrivalTime = graph.getArrival(removed.getArrivalTime(), distance);
+			int travelTime = removed.getTravelTime() + distance;
 
 			//TODO The problem is in this calculation of lower bound! When we add the distance between 
 			//     two points, the priority changes!
@@ -40,28 +40,14 @@ public class AStarConstantWeight extends AStar{
 					
 			
 			
-			int lowerBound = travelTime + (int)(distance.calcDist( (double)graph.getNode(vid).getLatitude(), (double) graph.getNode(vid).getLongitude(),
-					(double) target.getLatitude(), (double) target.getLongitude()))*100;
+			int lowerBound = travelTime + lowerBound(vid, target);
 			LowerBoundEntry newEntry = new LowerBoundEntry(vid, travelTime, arrivalTime, removed.getId(), lowerBound);
 			
-			String label = null;
-			Edge edge = null;
-			long edgeId = -1;
-			int distance = -1;
-			
 			if(!wasTraversed.containsKey(vid)){					
 				queue.offer(newEntry);
 				wasTraversed.put(newEntry.getId(), newEntry.getTravelTime());
 				
-				for(Long outEdges : graph.getOutEdges(removed.getId())) {
-					edge = graph.getEdge(outEdges);
-					if ((int) edge.getToNode() == vid) {
-						label = edge.getLabel();
-						edgeId = edge.getId();
-						distance = neig.get(vid);
-					}
-				}
-				parents.put(vid, new RouteEntry(removed.getId(), neig.get(vid)/17, edgeId, label));
+				parents.put(vid, new RouteEntry(removed.getId(), distance/17, e, edge.getLabel()));
 				
 			} else {
 				
@@ -76,12 +62,17 @@ public class AStarConstantWeight extends AStar{
 						wasTraversed.remove(newEntry.getId());
 						wasTraversed.put(newEntry.getId(), newEntry.getTravelTime());
 						
-						parents.remove(vid);
-						distance = neig.get(vid);
-						parents.put(vid, new RouteEntry(removed.getId(), distance/17, edgeId, label));
+						parents.put(vid, new RouteEntry(removed.getId(), distance/17, e, edge.getLabel()));
 					}
 				}
 			}
 		}
 	}
+
+	@Override
+	protected int lowerBound(long vid, Node target) {
+		Node v = graph.getNode(vid);
+		return (int)(distance.calcDist((double) v.getLatitude(), (double) v.getLongitude(),
+				(double) target.getLatitude(), (double) target.getLongitude()))*100;
+	}
 }
@@ -0,0 +1,247 @@
+package org.graphast.query.route.shortestpath.astar;
+
+import static org.graphast.util.NumberUtils.convertToInt;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.PriorityQueue;
+
+import org.graphast.enums.GraphBoundsType;
+import org.graphast.exception.PathNotFoundException;
+import org.graphast.model.CompactGraph;
+import org.graphast.model.GraphBounds;
+import org.graphast.model.Node;
+import org.graphast.query.model.QueueEntry;
+import org.graphast.query.route.shortestpath.AbstractShortestPathService;
+import org.graphast.query.route.shortestpath.model.Path;
+import org.graphast.util.DateUtils;
+
+/**
+ * Time-dependent bidirectional A*. The arrival time at the target is unknown, so the
+ * backward search runs from the target over the lower bound costs while the forward
+ * search runs with the real time-dependent costs.
+ *
+ * The query works in three phases:
+ * 1. both searches run alternately until a node is settled by both of them. The
+ *    forward path to that node plus the backward path from it, evaluated at the real
+ *    times, gives an upper bound for the travel time;
+ * 2. the backward search continues until its radius is greater than the upper bound.
+ *    Nodes not settled by it cannot be in a shortest path;
+ * 3. the forward search continues as an A* restricted to the nodes settled by the
+ *    backward search, which are also its (exact lower bound) potentials.
+ */
+public class BidirectionalAStarLinearFunction extends AbstractShortestPathService {
+
+	private static final int INFINITY = Integer.MAX_VALUE;
+
+	private CompactGraph compactGraph;
+	private int[] lowerCosts;
+
+	public BidirectionalAStarLinearFunction(GraphBounds graphBounds) {
+		super(graphBounds);
+		if (graphBounds.getEdgesLowerBound().isEmpty()) {
+			graphBounds.createBounds();
+		}
+		this.compactGraph = new CompactGraph(graphBounds);
+		this.lowerCosts = CompactGraph.getEdgeCosts(graphBounds, GraphBoundsType.LOWER);
+	}
+
+	public Path shortestPath(Node source, Node target, Date time) {
+		int s = convertToInt(source.getId());
+		int t = convertToInt(target.getId());
+		Query query = new Query(compactGraph.getNumberOfNodes());
+
+		query.travelTime[s] = 0;
+		query.arrivalTime[s] = DateUtils.dateToMilli(time);
+		query.forward.offer(new QueueEntry(s, 0));
+		query.lowerBound[t] = 0;
+		query.backward.offer(new QueueEntry(t, 0));
+
+		// phase 1: alternate until the searches meet
+		int meeting = -1;
+		while (meeting < 0 && !query.forward.isEmpty() && !query.backward.isEmpty()) {
+			int u = settleForward(query, false, INFINITY);
+			if (u == t) {
+				return buildPath(query, s, t);
+			}
+			if (u >= 0 && query.backwardSettled[u]) {
+				meeting = u;
+			} else {
+				int v = settleBackward(query);
+				if (v >= 0 && query.forwardSettled[v]) {
+					meeting = v;
+				}
+			}
+		}
+
+		if (meeting < 0) {
+			throw new PathNotFoundException("Path not found between (" + source.getLatitude() + "," + source.getLongitude() + ") and ("
+					+ target.getLatitude() + "," + target.getLongitude() + ")");
+		}
+
+		// phase 2: every node with lower bound up to the upper bound is settled by the backward search
+		int upperBound = upperBound(query, meeting);
+		while (!query.backward.isEmpty() && query.backward.peek().getTravelTime() <= upperBound) {
+			settleBackward(query);
+		}
+
+		// phase 3: forward A* inside the corridor
+		PriorityQueue<QueueEntry> corridor = new PriorityQueue<QueueEntry>();
+		for (int v = 0; v < query.travelTime.length; v++) {
+			if (query.travelTime[v] != INFINITY && !query.forwardSettled[v] && query.backwardSettled[v]) {
+				corridor.offer(new QueueEntry(v, query.travelTime[v] + query.lowerBound[v]));
+			}
+		}
+		query.forward = corridor;
+
+		while (!query.forward.isEmpty()) {
+			int u = settleForward(query, true, upperBound);
+			if (u == t) {
+				return buildPath(query, s, t);
+			}
+		}
+
+		throw new PathNotFoundException("Path not found between (" + source.getLatitude() + "," + source.getLongitude() + ") and ("
+				+ target.getLatitude() + "," + target.getLongitude() + ")");
+	}
+
+	/**
+	 * Settles the next node of the forward search.
+	 *
+	 * @param corridor if true only nodes settled by the backward search are reached and
+	 * 				   the queue is ordered by travel time plus lower bound
+	 * @param upperBound nodes that cannot be reached within this travel time are not queued
+	 * @return the settled node or -1 if the polled entry was outdated
+	 */
+	private int settleForward(Query query, boolean corridor, int upperBound) {
+		QueueEntry removed = query.forward.poll();
+		int u = (int) removed.getId();
+		int key = query.travelTime[u] + (corridor ? query.lowerBound[u] : 0);
+		if (query.forwardSettled[u] || removed.getTravelTime() != key) {
+			return -1;
+		}
+		query.forwardSettled[u] = true;
+		query.visited++;
+
+		for (int i = compactGraph.getOutBegin(u); i < compactGraph.getOutEnd(u); i++) {
+			int e = compactGraph.getOutEdge(i);
+			int v = compactGraph.getToNode(e);
+			if (query.forwardSettled[v] || (corridor && !query.backwardSettled[v])) {
+				continue;
+			}
+			Integer cost = graph.getEdgeCost(graph.getEdge(e), query.arrivalTime[u]);
+			int travelTime = query.travelTime[u] + (cost == null ? 0 : cost);
+			if (travelTime < query.travelTime[v] && (!corridor || travelTime + query.lowerBound[v] <= upperBound)) {
+				query.travelTime[v] = travelTime;
+				query.arrivalTime[v] = graph.getArrival(query.arrivalTime[u], travelTime - query.travelTime[u]);
+				query.parentEdge[v] = e;
+				query.forward.offer(new QueueEntry(v, travelTime + (corridor ? query.lowerBound[v] : 0)));
+			}
+		}
+		return u;
+	}
+
+	private int settleBackward(Query query) {
+		QueueEntry removed = query.backward.poll();
+		int u = (int) removed.getId();
+		if (query.backwardSettled[u] || removed.getTravelTime() != query.lowerBound[u]) {
+			return -1;
+		}
+		query.backwardSettled[u] = true;
+
+		for (int i = compactGraph.getInBegin(u); i < compactGraph.getInEnd(u); i++) {
+			int e = compactGraph.getInEdge(i);
+			int v = compactGraph.getFromNode(e);
+			int lowerBound = query.lowerBound[u] + lowerCosts[e];
+			if (!query.backwardSettled[v] && lowerBound < query.lowerBound[v]) {
+				query.lowerBound[v] = lowerBound;
+				query.backwardParentEdge[v] = e;
+				query.backward.offer(new QueueEntry(v, lowerBound));
+			}
+		}
+		return u;
+	}
+
+	/**
+	 * Travel time of the forward path to the meeting node followed by the backward
+	 * path to the target, evaluated with the real costs.
+	 */
+	private int upperBound(Query query, int meeting) {
+		int travelTime = query.travelTime[meeting];
+		int arrivalTime = query.arrivalTime[meeting];
+		int e = query.backwardParentEdge[meeting];
+		while (e >= 0) {
+			Integer cost = graph.getEdgeCost(graph.getEdge(e), arrivalTime);
+			int c = cost == null ? 0 : cost;
+			travelTime += c;
+			arrivalTime = graph.getArrival(arrivalTime, c);
+			e = query.backwardParentEdge[compactGraph.getToNode(e)];
+		}
+		return travelTime;
+	}
+
+	private Path buildPath(Query query, int s, int t) {
+		int size = 0;
+		for (int v = t; v != s; v = compactGraph.getFromNode(query.parentEdge[v])) {
+			size++;
+		}
+		long[] edgeIds = new long[size];
+		int[] edgeCosts = new int[size];
+		for (int v = t; v != s; v = compactGraph.getFromNode(query.parentEdge[v])) {
+			int e = query.parentEdge[v];
+			size--;
+			edgeIds[size] = e;
+			edgeCosts[size] = query.travelTime[v] - query.travelTime[compactGraph.getFromNode(e)];
+		}
+		Path path = new Path();
+		path.constructPath(graph, edgeIds, edgeCosts);
+		path.setNumberVisitedNodes(query.visited);
+		return path;
+	}
+
+	@Override
+	public Path shortestPath(Node source, Node target) {
+		return shortestPath(source, target, null);
+	}
+
+	@Override
+	public Path shortestPath(long source, long target) {
+		return shortestPath(source, target, null);
+	}
+
+	@Override
+	public Path shortestPath(long source, long target, Date time) {
+		return shortestPath(graph.getNode(source), graph.getNode(target), time);
+	}
+
+	private static class Query {
+
+		private int[] travelTime;
+		private int[] arrivalTime;
+		private int[] parentEdge;
+		private boolean[] forwardSettled;
+		private PriorityQueue<QueueEntry> forward = new PriorityQueue<QueueEntry>();
+
+		private int[] lowerBound;
+		private int[] backwardParentEdge;
+		private boolean[] backwardSettled;
+		private PriorityQueue<QueueEntry> backward = new PriorityQueue<QueueEntry>();
+
+		private int visited;
+
+		private Query(int numberOfNodes) {
+			travelTime = new int[numberOfNodes];
+			arrivalTime = new int[numberOfNodes];
+			parentEdge = new int[numberOfNodes];
+			forwardSettled = new boolean[numberOfNodes];
+			lowerBound = new int[numberOfNodes];
+			backwardParentEdge = new int[numberOfNodes];
+			backwardSettled = new boolean[numberOfNodes];
+			Arrays.fill(travelTime, INFINITY);
+			Arrays.fill(lowerBound, INFINITY);
+			Arrays.fill(parentEdge, -1);
+			Arrays.fill(backwardParentEdge, -1);
+		}
+	}
+
+}
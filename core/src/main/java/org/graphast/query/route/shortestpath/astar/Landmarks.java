@@ -0,0 +1,238 @@
+package org.graphast.query.route.shortestpath.astar;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.graphast.enums.GraphBoundsType;
+import org.graphast.enums.LandmarkSelectionType;
+import org.graphast.model.CompactGraph;
+import org.graphast.model.GraphBounds;
+import org.graphast.query.route.shortestpath.dijkstra.DijkstraCompact;
+import org.graphast.util.FileUtils;
+
+/**
+ * Landmarks used by the ALT algorithm (A*, Landmarks and Triangle inequality).
+ *
+ * For each landmark L we keep the cost from L to every node and from every node to L.
+ * By the triangle inequality, d(v,t) >= d(L,t) - d(L,v) and d(v,t) >= d(v,L) - d(t,L),
+ * which gives a lower bound much tighter than the geographic distance.
+ *
+ * The tables are built on the costs of the chosen {@link GraphBoundsType}: NORMAL uses
+ * the edge distances and LOWER the lower bound of the time-dependent costs, so the
+ * bounds are still valid at any time of the day.
+ */
+public class Landmarks {
+
+	private static final int INFINITY = DijkstraCompact.INFINITY;
+	private static final long SEED = 42;
+	private static final int BLOCK_SIZE = 4096;
+
+	private GraphBounds graph;
+	private GraphBoundsType type;
+
+	private int numberOfNodes;
+	private int[] landmarks = new int[0];
+
+	// fromLandmark[i * numberOfNodes + v] is the cost from landmark i to v
+	private int[] fromLandmark = new int[0];
+	// toLandmark[i * numberOfNodes + v] is the cost from v to landmark i
+	private int[] toLandmark = new int[0];
+
+	public Landmarks(GraphBounds graph, GraphBoundsType type) {
+		this.graph = graph;
+		this.type = type;
+		this.numberOfNodes = (int) graph.getNumberOfNodes();
+	}
+
+	/**
+	 * Selects the landmarks and computes the distance tables.
+	 *
+	 * @param numberOfLandmarks	how many landmarks will be selected
+	 * @param selection FARTHEST picks, at each step, the node farthest from the landmarks already
+	 * 					selected. AVOID picks nodes in regions of the shortest path tree where the
+	 * 					current bounds are worst (Goldberg and Werneck).
+	 */
+	public void createLandmarks(int numberOfLandmarks, LandmarkSelectionType selection) {
+
+		if (type != GraphBoundsType.NORMAL && graph.getEdgesLowerBound().isEmpty()) {
+			graph.createBounds();
+		}
+
+		CompactGraph compactGraph = new CompactGraph(graph);
+		DijkstraCompact dijkstra = new DijkstraCompact(compactGraph, CompactGraph.getEdgeCosts(graph, type));
+		numberOfNodes = compactGraph.getNumberOfNodes();
+
+		int k = Math.min(numberOfLandmarks, numberOfNodes);
+		landmarks = new int[0];
+		fromLandmark = new int[k * numberOfNodes];
+		toLandmark = new int[k * numberOfNodes];
+
+		Random random = new Random(SEED);
+		for (int i = 0; i < k; i++) {
+			int landmark;
+			if (selection == LandmarkSelectionType.AVOID) {
+				landmark = selectAvoid(dijkstra, compactGraph, random);
+			} else {
+				landmark = selectFarthest(dijkstra, random);
+			}
+
+			if (landmark < 0) {
+				break;
+			}
+
+			System.arraycopy(dijkstra.run(landmark, false), 0, fromLandmark, i * numberOfNodes, numberOfNodes);
+			System.arraycopy(dijkstra.run(landmark, true), 0, toLandmark, i * numberOfNodes, numberOfNodes);
+			landmarks = Arrays.copyOf(landmarks, i + 1);
+			landmarks[i] = landmark;
+		}
+
+		fromLandmark = Arrays.copyOf(fromLandmark, landmarks.length * numberOfNodes);
+		toLandmark = Arrays.copyOf(toLandmark, landmarks.length * numberOfNodes);
+	}
+
+	private int selectFarthest(DijkstraCompact dijkstra, Random random) {
+
+		if (landmarks.length == 0) {
+			return farthest(dijkstra.run(random.nextInt(numberOfNodes), false));
+		}
+
+		int[] score = new int[numberOfNodes];
+		Arrays.fill(score, INFINITY);
+		for (int i = 0; i < landmarks.length; i++) {
+			int offset = i * numberOfNodes;
+			for (int v = 0; v < numberOfNodes; v++) {
+				int d = Math.min(fromLandmark[offset + v], toLandmark[offset + v]);
+				if (d < score[v]) {
+					score[v] = d;
+				}
+			}
+		}
+		for (int l : landmarks) {
+			score[l] = INFINITY;
+		}
+		return farthest(score);
+	}
+
+	private int farthest(int[] costs) {
+		int selected = -1;
+		int max = -1;
+		for (int v = 0; v < numberOfNodes; v++) {
+			if (costs[v] != INFINITY && costs[v] > max && !isLandmark(v)) {
+				max = costs[v];
+				selected = v;
+			}
+		}
+		return selected;
+	}
+
+	private int selectAvoid(DijkstraCompact dijkstra, CompactGraph compactGraph, Random random) {
+
+		int root = random.nextInt(numberOfNodes);
+		int[] distances = dijkstra.run(root, false);
+		int[] parentEdges = dijkstra.getParentEdges();
+		int[] order = dijkstra.getSettledOrder();
+
+		long[] size = new long[numberOfNodes];
+		long[] bestChildSize = new long[numberOfNodes];
+		int[] bestChild = new int[numberOfNodes];
+		boolean[] hasLandmark = new boolean[numberOfNodes];
+		Arrays.fill(bestChild, -1);
+
+		// subtrees are processed before their roots because the nodes are visited in reverse settled order
+		for (int i = dijkstra.getNumberOfSettledNodes() - 1; i >= 0; i--) {
+			int v = order[i];
+			if (isLandmark(v)) {
+				hasLandmark[v] = true;
+			}
+			if (hasLandmark[v]) {
+				size[v] = 0;
+			} else {
+				size[v] += distances[v] - getLowerBound(root, v);
+			}
+
+			int e = parentEdges[v];
+			if (e >= 0) {
+				int parent = compactGraph.getFromNode(e);
+				if (hasLandmark[v]) {
+					hasLandmark[parent] = true;
+				} else {
+					size[parent] += size[v];
+					if (size[v] > bestChildSize[parent]) {
+						bestChildSize[parent] = size[v];
+						bestChild[parent] = v;
+					}
+				}
+			}
+		}
+
+		if (hasLandmark[root] && bestChild[root] < 0) {
+			return selectFarthest(dijkstra, random);
+		}
+
+		int leaf = root;
+		while (bestChild[leaf] >= 0) {
+			leaf = bestChild[leaf];
+		}
+		return isLandmark(leaf) ? selectFarthest(dijkstra, random) : leaf;
+	}
+
+	private boolean isLandmark(int v) {
+		for (int l : landmarks) {
+			if (l == v) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Lower bound of the cost from v to t given by the triangle inequality over all landmarks.
+	 */
+	public int getLowerBound(long v, long t) {
+		return getLowerBound((int) v, (int) t);
+	}
+
+	private int getLowerBound(int v, int t) {
+		int bound = 0;
+		for (int offset = 0; offset < fromLandmark.length; offset += numberOfNodes) {
+			int fromT = fromLandmark[offset + t];
+			int fromV = fromLandmark[offset + v];
+			if (fromT != INFINITY && fromV != INFINITY && fromT - fromV > bound) {
+				bound = fromT - fromV;
+			}
+			int toV = toLandmark[offset + v];
+			int toT = toLandmark[offset + t];
+			if (toV != INFINITY && toT != INFINITY && toV - toT > bound) {
+				bound = toV - toT;
+			}
+		}
+		return bound;
+	}
+
+	public void save() {
+		String dir = getDirectory();
+		FileUtils.saveIntArray(dir + "/ids", landmarks, BLOCK_SIZE, graph.getCompressionType());
+		FileUtils.saveIntArray(dir + "/from", fromLandmark, BLOCK_SIZE, graph.getCompressionType());
+		FileUtils.saveIntArray(dir + "/to", toLandmark, BLOCK_SIZE, graph.getCompressionType());
+	}
+
+	public void load() {
+		String dir = getDirectory();
+		landmarks = FileUtils.loadIntArray(dir + "/ids", BLOCK_SIZE, graph.getCompressionType());
+		fromLandmark = FileUtils.loadIntArray(dir + "/from", BLOCK_SIZE, graph.getCompressionType());
+		toLandmark = FileUtils.loadIntArray(dir + "/to", BLOCK_SIZE, graph.getCompressionType());
+	}
+
+	private String getDirectory() {
+		return graph.getAbsoluteDirectory() + "/landmarks/" + type.name().toLowerCase();
+	}
+
+	public int[] getLandmarks() {
+		return landmarks;
+	}
+
+	public GraphBoundsType getType() {
+		return type;
+	}
+
+}
@@ -0,0 +1,154 @@
+package org.graphast.query.route.shortestpath.batch;
+
+import static org.graphast.util.NumberUtils.convertToInt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.graphast.model.CompactCosts;
+import org.graphast.model.CompactGraph;
+import org.graphast.model.Graph;
+import org.graphast.query.route.shortestpath.dijkstra.DijkstraWorkspace;
+import org.graphast.util.DateUtils;
+
+/**
+ * Runs many time-dependent shortest path queries in parallel on a {@link ForkJoinPool}.
+ * Each worker thread keeps its own {@link DijkstraWorkspace}, so queries do not allocate
+ * per node state. Unless paths are requested, only the cost and the distance of each
+ * query are computed, without building instructions and geometry.
+ *
+ * Requests read from an iterator are processed in chunks, and the results of each chunk
+ * are written to the sink in the order of the requests.
+ */
+public class BatchShortestPathService {
+
+	public static final int DEFAULT_CHUNK_SIZE = 4096;
+	private static final int SEQUENTIAL_THRESHOLD = 16;
+
+	private Graph graph;
+	private CompactGraph compactGraph;
+	private CompactCosts compactCosts;
+	private int[] distances;
+	private ForkJoinPool pool;
+	private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+	private ThreadLocal<DijkstraWorkspace> workspaces = new ThreadLocal<DijkstraWorkspace>() {
+		@Override
+		protected DijkstraWorkspace initialValue() {
+			return new DijkstraWorkspace(compactGraph, compactCosts);
+		}
+	};
+
+	public BatchShortestPathService(Graph graph) {
+		this(graph, new ForkJoinPool());
+	}
+
+	public BatchShortestPathService(Graph graph, int parallelism) {
+		this(graph, new ForkJoinPool(parallelism));
+	}
+
+	public BatchShortestPathService(Graph graph, ForkJoinPool pool) {
+		this.graph = graph;
+		this.compactGraph = new CompactGraph(graph);
+		this.compactCosts = new CompactCosts(graph);
+		this.distances = CompactGraph.getDistances(graph);
+		this.pool = pool;
+	}
+
+	/**
+	 * @param withPaths if true each result also has its {@link org.graphast.query.route.shortestpath.model.Path}
+	 * @return the results in the same order of the requests
+	 */
+	public List<ShortestPathResult> shortestPaths(List<ShortestPathRequest> requests, boolean withPaths) {
+		ShortestPathRequest[] chunk = requests.toArray(new ShortestPathRequest[requests.size()]);
+		ShortestPathResult[] results = new ShortestPathResult[chunk.length];
+		pool.invoke(new Queries(chunk, results, 0, chunk.length, withPaths));
+		return Arrays.asList(results);
+	}
+
+	/**
+	 * Processes all the requests of the iterator, writing the results to the sink in the
+	 * order of the requests. At most {@link #getChunkSize()} requests are kept in memory.
+	 */
+	public void shortestPaths(Iterator<ShortestPathRequest> requests, boolean withPaths, ShortestPathResultSink sink) {
+		List<ShortestPathRequest> chunk = new ArrayList<ShortestPathRequest>(chunkSize);
+		while (requests.hasNext()) {
+			chunk.add(requests.next());
+			if (chunk.size() == chunkSize || !requests.hasNext()) {
+				for (ShortestPathResult result : shortestPaths(chunk, withPaths)) {
+					sink.accept(result);
+				}
+				chunk.clear();
+			}
+		}
+	}
+
+	private ShortestPathResult query(ShortestPathRequest request, boolean withPaths) {
+		DijkstraWorkspace workspace = workspaces.get();
+		int source = convertToInt(request.getSource());
+		int target = convertToInt(request.getTarget());
+		workspace.search(source, DateUtils.dateToMilli(request.getDeparture()), null, false, target);
+
+		if (!workspace.isSettled(target)) {
+			return new ShortestPathResult(request, ShortestPathResult.UNREACHABLE, -1, null);
+		}
+		return new ShortestPathResult(request, workspace.getCost(target), workspace.sumAlongPath(target, distances, false),
+				withPaths ? workspace.buildPath(graph, source, target) : null);
+	}
+
+	private class Queries extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private ShortestPathRequest[] requests;
+		private ShortestPathResult[] results;
+		private int from;
+		private int to;
+		private boolean withPaths;
+
+		private Queries(ShortestPathRequest[] requests, ShortestPathResult[] results, int from, int to, boolean withPaths) {
+			this.requests = requests;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+			this.withPaths = withPaths;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= SEQUENTIAL_THRESHOLD) {
+				for (int i = from; i < to; i++) {
+					results[i] = query(requests[i], withPaths);
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new Queries(requests, results, from, middle, withPaths),
+					new Queries(requests, results, middle, to, withPaths));
+		}
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	public void setChunkSize(int chunkSize) {
+		this.chunkSize = Math.max(1, chunkSize);
+	}
+
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * Stops the worker threads of the pool.
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+}
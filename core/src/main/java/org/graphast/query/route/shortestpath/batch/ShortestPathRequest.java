@@ -0,0 +1,34 @@
+package org.graphast.query.route.shortestpath.batch;
+
+import java.util.Date;
+
+public class ShortestPathRequest {
+
+	private long source;
+	private long target;
+	private Date departure;
+
+	public ShortestPathRequest(long source, long target, Date departure) {
+		this.source = source;
+		this.target = target;
+		this.departure = departure;
+	}
+
+	public long getSource() {
+		return source;
+	}
+
+	public long getTarget() {
+		return target;
+	}
+
+	public Date getDeparture() {
+		return departure;
+	}
+
+	@Override
+	public String toString() {
+		return "ShortestPathRequest [source=" + source + ", target=" + target + ", departure=" + departure + "]";
+	}
+
+}
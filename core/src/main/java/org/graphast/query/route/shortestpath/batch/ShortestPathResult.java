@@ -0,0 +1,59 @@
+package org.graphast.query.route.shortestpath.batch;
+
+import org.graphast.query.route.shortestpath.model.Path;
+
+/**
+ * Summary of one batch query: the travel time and distance of the shortest path and,
+ * only when requested, the {@link Path} itself.
+ */
+public class ShortestPathResult {
+
+	public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+	private ShortestPathRequest request;
+	private int cost;
+	private long distance;
+	private Path path;
+
+	public ShortestPathResult(ShortestPathRequest request, int cost, long distance, Path path) {
+		this.request = request;
+		this.cost = cost;
+		this.distance = distance;
+		this.path = path;
+	}
+
+	public ShortestPathRequest getRequest() {
+		return request;
+	}
+
+	/**
+	 * Travel time in milliseconds, or {@link #UNREACHABLE} if there is no path.
+	 */
+	public int getCost() {
+		return cost;
+	}
+
+	/**
+	 * Sum of the distances of the edges of the path, -1 if there is no path.
+	 */
+	public long getDistance() {
+		return distance;
+	}
+
+	public boolean isReachable() {
+		return cost != UNREACHABLE;
+	}
+
+	/**
+	 * The path, or null if it was not requested or there is no path.
+	 */
+	public Path getPath() {
+		return path;
+	}
+
+	@Override
+	public String toString() {
+		return "ShortestPathResult [request=" + request + ", cost=" + cost + ", distance=" + distance + "]";
+	}
+
+}
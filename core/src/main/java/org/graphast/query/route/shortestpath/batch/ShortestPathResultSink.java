@@ -0,0 +1,10 @@
+package org.graphast.query.route.shortestpath.batch;
+
+/**
+ * Receives the results of a batch, one by one and in the order of the requests.
+ */
+public interface ShortestPathResultSink {
+
+	public void accept(ShortestPathResult result);
+
+}
@@ -0,0 +1,194 @@
+package org.graphast.query.route.shortestpath.crp;
+
+import static org.graphast.util.NumberUtils.convertToInt;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.graphast.exception.PathNotFoundException;
+import org.graphast.model.CompactGraph;
+import org.graphast.model.Graph;
+import org.graphast.model.Node;
+import org.graphast.query.model.QueueEntry;
+import org.graphast.query.route.shortestpath.AbstractShortestPathService;
+import org.graphast.query.route.shortestpath.model.Path;
+
+/**
+ * Dijkstra over the multi-level overlay (Customizable Route Planning). Around the source
+ * and the target the original edges are used; everywhere else the search jumps over whole
+ * cells through their cliques, using the coarsest level whose cell contains neither the
+ * source nor the target. Clique arcs of the result are unpacked into original edges.
+ *
+ * Costs are the static costs given to {@link OverlayMetric#customize}, so the departure time
+ * is ignored. After the costs of the graph change, a new metric can be customized and set
+ * with {@link #setMetric(OverlayMetric)}.
+ */
+public class MultiLevelDijkstra extends AbstractShortestPathService {
+
+	private static final int INFINITY = OverlayMetric.INFINITY;
+
+	// parent arcs below -1 are clique arcs of level -(arc + 2)
+	private static final int SOURCE = -1;
+
+	private OverlayMetric metric;
+
+	public MultiLevelDijkstra(Graph graph, OverlayMetric metric) {
+		super(graph);
+		this.metric = metric;
+	}
+
+	public Path shortestPath(Node source, Node target, Date time) {
+		int s = convertToInt(source.getId());
+		int t = convertToInt(target.getId());
+		Overlay overlay = metric.getOverlay();
+		CompactGraph compactGraph = overlay.getGraph();
+		int[] costs = metric.getCosts();
+
+		Int2IntOpenHashMap distances = new Int2IntOpenHashMap();
+		distances.defaultReturnValue(INFINITY);
+		Int2IntOpenHashMap parents = new Int2IntOpenHashMap();
+		Int2IntOpenHashMap parentArcs = new Int2IntOpenHashMap();
+		IntOpenHashSet settled = new IntOpenHashSet();
+		PriorityQueue<QueueEntry> queue = new PriorityQueue<QueueEntry>();
+
+		distances.put(s, 0);
+		parentArcs.put(s, SOURCE);
+		queue.offer(new QueueEntry(s, 0));
+
+		while (!queue.isEmpty()) {
+			QueueEntry removed = queue.poll();
+			int u = (int) removed.getId();
+			if (settled.contains(u) || removed.getTravelTime() > distances.get(u)) {
+				continue;
+			}
+			settled.add(u);
+			if (u == t) {
+				Path path = buildPath(s, t, parents, parentArcs);
+				path.setNumberVisitedNodes(settled.size());
+				return path;
+			}
+
+			int distance = distances.get(u);
+			int level = queryLevel(overlay, u, s, t);
+
+			if (level < 0) {
+				for (int i = compactGraph.getOutBegin(u); i < compactGraph.getOutEnd(u); i++) {
+					int e = compactGraph.getOutEdge(i);
+					relax(compactGraph.getToNode(e), distance, costs[e], u, e, settled, distances, parents, parentArcs, queue);
+				}
+				continue;
+			}
+
+			int cell = overlay.getCell(level, u);
+			int entry = overlay.getEntryIndex(level, u);
+			if (entry >= 0) {
+				for (int j = 0; j < overlay.getNumberOfExits(level, cell); j++) {
+					relax(overlay.getExit(level, cell, j), distance, metric.getCliqueCost(level, cell, entry, j), u,
+							-(level + 2), settled, distances, parents, parentArcs, queue);
+				}
+			}
+			if (overlay.getExitIndex(level, u) >= 0) {
+				for (int i = compactGraph.getOutBegin(u); i < compactGraph.getOutEnd(u); i++) {
+					int e = compactGraph.getOutEdge(i);
+					int v = compactGraph.getToNode(e);
+					if (overlay.getCell(level, v) != cell) {
+						relax(v, distance, costs[e], u, e, settled, distances, parents, parentArcs, queue);
+					}
+				}
+			}
+		}
+
+		throw new PathNotFoundException("Path not found between (" + source.getLatitude() + "," + source.getLongitude() + ") and ("
+				+ target.getLatitude() + "," + target.getLongitude() + ")");
+	}
+
+	/**
+	 * Coarsest level in which the cell of v contains neither s nor t, or -1 if v shares
+	 * its level 0 cell with one of them.
+	 */
+	private int queryLevel(Overlay overlay, int v, int s, int t) {
+		for (int level = overlay.getNumberOfLevels() - 1; level >= 0; level--) {
+			int cell = overlay.getCell(level, v);
+			if (cell != overlay.getCell(level, s) && cell != overlay.getCell(level, t)) {
+				return level;
+			}
+		}
+		return -1;
+	}
+
+	private void relax(int v, int distance, int cost, int parent, int arc, IntOpenHashSet settled,
+			Int2IntOpenHashMap distances, Int2IntOpenHashMap parents, Int2IntOpenHashMap parentArcs,
+			PriorityQueue<QueueEntry> queue) {
+		if (cost == INFINITY || settled.contains(v)) {
+			return;
+		}
+		int newDistance = distance + cost;
+		if (newDistance < distances.get(v)) {
+			distances.put(v, newDistance);
+			parents.put(v, parent);
+			parentArcs.put(v, arc);
+			queue.offer(new QueueEntry(v, newDistance));
+		}
+	}
+
+	private Path buildPath(int s, int t, Int2IntOpenHashMap parents, Int2IntOpenHashMap parentArcs) {
+		Overlay overlay = metric.getOverlay();
+		List<Integer> nodes = new ArrayList<Integer>();
+		for (int v = t; v != s; v = parents.get(v)) {
+			nodes.add(v);
+		}
+		Collections.reverse(nodes);
+
+		IntArrayList edges = new IntArrayList();
+		for (int v : nodes) {
+			int u = parents.get(v);
+			int arc = parentArcs.get(v);
+			if (arc >= 0) {
+				edges.add(arc);
+			} else {
+				int level = -(arc + 2);
+				metric.unpack(level, overlay.getCell(level, u), u, v, edges);
+			}
+		}
+
+		long[] edgeIds = new long[edges.size()];
+		int[] edgeCosts = new int[edges.size()];
+		for (int i = 0; i < edges.size(); i++) {
+			edgeIds[i] = edges.getInt(i);
+			edgeCosts[i] = metric.getCosts()[edges.getInt(i)];
+		}
+		Path path = new Path();
+		path.constructPath(graph, edgeIds, edgeCosts);
+		return path;
+	}
+
+	public OverlayMetric getMetric() {
+		return metric;
+	}
+
+	public void setMetric(OverlayMetric metric) {
+		this.metric = metric;
+	}
+
+	@Override
+	public Path shortestPath(Node source, Node target) {
+		return shortestPath(source, target, null);
+	}
+
+	@Override
+	public Path shortestPath(long source, long target) {
+		return shortestPath(source, target, null);
+	}
+
+	@Override
+	public Path shortestPath(long source, long target, Date time) {
+		return shortestPath(graph.getNode(source), graph.getNode(target), time);
+	}
+
+}
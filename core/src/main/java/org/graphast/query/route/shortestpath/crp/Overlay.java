@@ -0,0 +1,161 @@
+package org.graphast.query.route.shortestpath.crp;
+
+import java.util.Arrays;
+
+import org.graphast.model.CompactGraph;
+import org.graphast.partition.MultiLevelPartition;
+
+/**
+ * Metric independent part of the multi-level overlay: for every level and every cell,
+ * its entry nodes (heads of edges coming from another cell) and exit nodes (tails of edges
+ * going to another cell). It depends only on the topology and on the partition, so it is
+ * built once and shared by every {@link OverlayMetric}.
+ */
+public class Overlay {
+
+	private CompactGraph graph;
+	private MultiLevelPartition partition;
+	private int numberOfLevels;
+
+	// entries of cell c at level l are entries[l][entryOffsets[l][c]] ... entries[l][entryOffsets[l][c + 1] - 1]
+	private int[][] entryOffsets;
+	private int[][] entries;
+	private int[][] exitOffsets;
+	private int[][] exits;
+
+	// position of each node among the entries (exits) of its cell, -1 if it is not an entry (exit)
+	private int[][] entryIndex;
+	private int[][] exitIndex;
+
+	// the clique of cell c at level l starts at cliqueOffsets[l][c], row by entry and column by exit
+	private int[][] cliqueOffsets;
+
+	public Overlay(CompactGraph graph, MultiLevelPartition partition) {
+		this.graph = graph;
+		this.partition = partition;
+		this.numberOfLevels = partition.getNumberOfLevels();
+
+		entryOffsets = new int[numberOfLevels][];
+		entries = new int[numberOfLevels][];
+		exitOffsets = new int[numberOfLevels][];
+		exits = new int[numberOfLevels][];
+		entryIndex = new int[numberOfLevels][];
+		exitIndex = new int[numberOfLevels][];
+		cliqueOffsets = new int[numberOfLevels][];
+
+		for (int level = 0; level < numberOfLevels; level++) {
+			buildLevel(level);
+		}
+	}
+
+	private void buildLevel(int level) {
+		int numberOfNodes = graph.getNumberOfNodes();
+		int numberOfCells = partition.getNumberOfCells(level);
+
+		boolean[] isEntry = new boolean[numberOfNodes];
+		boolean[] isExit = new boolean[numberOfNodes];
+		for (int e = 0; e < graph.getNumberOfEdges(); e++) {
+			int u = graph.getFromNode(e);
+			int v = graph.getToNode(e);
+			if (partition.getCell(level, u) != partition.getCell(level, v)) {
+				isExit[u] = true;
+				isEntry[v] = true;
+			}
+		}
+
+		entryOffsets[level] = new int[numberOfCells + 1];
+		exitOffsets[level] = new int[numberOfCells + 1];
+		entryIndex[level] = new int[numberOfNodes];
+		exitIndex[level] = new int[numberOfNodes];
+		Arrays.fill(entryIndex[level], -1);
+		Arrays.fill(exitIndex[level], -1);
+
+		for (int v = 0; v < numberOfNodes; v++) {
+			int cell = partition.getCell(level, v);
+			if (isEntry[v]) {
+				entryIndex[level][v] = entryOffsets[level][cell + 1]++;
+			}
+			if (isExit[v]) {
+				exitIndex[level][v] = exitOffsets[level][cell + 1]++;
+			}
+		}
+
+		cliqueOffsets[level] = new int[numberOfCells + 1];
+		for (int c = 0; c < numberOfCells; c++) {
+			cliqueOffsets[level][c + 1] = cliqueOffsets[level][c] + entryOffsets[level][c + 1] * exitOffsets[level][c + 1];
+			entryOffsets[level][c + 1] += entryOffsets[level][c];
+			exitOffsets[level][c + 1] += exitOffsets[level][c];
+		}
+
+		entries[level] = new int[entryOffsets[level][numberOfCells]];
+		exits[level] = new int[exitOffsets[level][numberOfCells]];
+		for (int v = 0; v < numberOfNodes; v++) {
+			int cell = partition.getCell(level, v);
+			if (isEntry[v]) {
+				entries[level][entryOffsets[level][cell] + entryIndex[level][v]] = v;
+			}
+			if (isExit[v]) {
+				exits[level][exitOffsets[level][cell] + exitIndex[level][v]] = v;
+			}
+		}
+	}
+
+	public CompactGraph getGraph() {
+		return graph;
+	}
+
+	public MultiLevelPartition getPartition() {
+		return partition;
+	}
+
+	public int getNumberOfLevels() {
+		return numberOfLevels;
+	}
+
+	public int getNumberOfCells(int level) {
+		return partition.getNumberOfCells(level);
+	}
+
+	public int getCell(int level, int node) {
+		return partition.getCell(level, node);
+	}
+
+	public int getNumberOfEntries(int level, int cell) {
+		return entryOffsets[level][cell + 1] - entryOffsets[level][cell];
+	}
+
+	public int getEntry(int level, int cell, int i) {
+		return entries[level][entryOffsets[level][cell] + i];
+	}
+
+	public int getNumberOfExits(int level, int cell) {
+		return exitOffsets[level][cell + 1] - exitOffsets[level][cell];
+	}
+
+	public int getExit(int level, int cell, int j) {
+		return exits[level][exitOffsets[level][cell] + j];
+	}
+
+	/**
+	 * Position of the node among the entries of its cell, or -1 if it is not an entry.
+	 */
+	public int getEntryIndex(int level, int node) {
+		return entryIndex[level][node];
+	}
+
+	/**
+	 * Position of the node among the exits of its cell, or -1 if it is not an exit.
+	 */
+	public int getExitIndex(int level, int node) {
+		return exitIndex[level][node];
+	}
+
+	public int getCliqueOffset(int level, int cell) {
+		return cliqueOffsets[level][cell];
+	}
+
+	public int getCliqueSize(int level) {
+		return cliqueOffsets[level][partition.getNumberOfCells(level)];
+	}
+
+}
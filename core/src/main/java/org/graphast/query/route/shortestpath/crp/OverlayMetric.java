@@ -0,0 +1,205 @@
+package org.graphast.query.route.shortestpath.crp;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+
+import org.graphast.model.CompactGraph;
+import org.graphast.query.model.QueueEntry;
+import org.graphast.util.ThreadUtils;
+
+/**
+ * Metric dependent part of the overlay: for every cell, the cost from each of its entries
+ * to each of its exits using only nodes inside the cell (the cell clique).
+ *
+ * Customization runs bottom-up. Cliques of level 0 are computed on the original edges and
+ * cliques of level l on the overlay of level l - 1, so each level reuses the work of the
+ * level below. Cells of the same level are independent and are customized in parallel.
+ */
+public class OverlayMetric {
+
+	public static final int INFINITY = Integer.MAX_VALUE;
+
+	private Overlay overlay;
+	private CompactGraph graph;
+	private int[] costs;
+	private int[][] cliques;
+
+	private OverlayMetric(Overlay overlay, int[] costs) {
+		this.overlay = overlay;
+		this.graph = overlay.getGraph();
+		this.costs = costs;
+		this.cliques = new int[overlay.getNumberOfLevels()][];
+	}
+
+	public static OverlayMetric customize(Overlay overlay, int[] costs) {
+		return customize(overlay, costs, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Computes the cliques of all cells for the given metric.
+	 *
+	 * @param costs cost of each edge, indexed by edge id (e.g. {@link CompactGraph#getEdgeCosts})
+	 * @param numberOfThreads threads used to customize the cells of each level
+	 */
+	public static OverlayMetric customize(Overlay overlay, int[] costs, int numberOfThreads) {
+		final OverlayMetric metric = new OverlayMetric(overlay, costs);
+		for (int level = 0; level < overlay.getNumberOfLevels(); level++) {
+			metric.cliques[level] = new int[overlay.getCliqueSize(level)];
+			List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+			for (int cell = 0; cell < overlay.getNumberOfCells(level); cell++) {
+				final int l = level;
+				final int c = cell;
+				tasks.add(new Callable<Object>() {
+					@Override
+					public Object call() {
+						metric.customizeCell(l, c);
+						return null;
+					}
+				});
+			}
+			ThreadUtils.runAll(tasks, numberOfThreads);
+		}
+		return metric;
+	}
+
+	private void customizeCell(int level, int cell) {
+		int numberOfExits = overlay.getNumberOfExits(level, cell);
+		int offset = overlay.getCliqueOffset(level, cell);
+		for (int i = 0; i < overlay.getNumberOfEntries(level, cell); i++) {
+			Int2IntOpenHashMap distances = new Int2IntOpenHashMap();
+			distances.defaultReturnValue(INFINITY);
+			search(level, cell, overlay.getEntry(level, cell, i), -1, distances, null, null);
+			for (int j = 0; j < numberOfExits; j++) {
+				cliques[level][offset + i * numberOfExits + j] = distances.get(overlay.getExit(level, cell, j));
+			}
+		}
+	}
+
+	/**
+	 * Dijkstra restricted to a cell. At level 0 it follows the original edges inside the
+	 * cell; at upper levels it follows the cliques of the sub cells and the edges between
+	 * sub cells of the same cell.
+	 *
+	 * @param target the search stops when this node is settled, -1 to settle the whole cell
+	 * @param parentEdges if not null, receives the edge used to reach each node (-1 for clique arcs)
+	 */
+	private void search(int level, int cell, int source, int target, Int2IntOpenHashMap distances,
+			Int2IntOpenHashMap parents, Int2IntOpenHashMap parentEdges) {
+
+		IntOpenHashSet settled = new IntOpenHashSet();
+		PriorityQueue<QueueEntry> queue = new PriorityQueue<QueueEntry>();
+		distances.put(source, 0);
+		queue.offer(new QueueEntry(source, 0));
+
+		while (!queue.isEmpty()) {
+			QueueEntry removed = queue.poll();
+			int u = (int) removed.getId();
+			if (settled.contains(u) || removed.getTravelTime() > distances.get(u)) {
+				continue;
+			}
+			settled.add(u);
+			if (u == target) {
+				return;
+			}
+			int distance = distances.get(u);
+
+			if (level == 0) {
+				for (int i = graph.getOutBegin(u); i < graph.getOutEnd(u); i++) {
+					int e = graph.getOutEdge(i);
+					int v = graph.getToNode(e);
+					if (overlay.getCell(0, v) == cell) {
+						relax(v, distance, costs[e], u, e, settled, distances, parents, parentEdges, queue);
+					}
+				}
+				continue;
+			}
+
+			int subLevel = level - 1;
+			int subCell = overlay.getCell(subLevel, u);
+			int entry = overlay.getEntryIndex(subLevel, u);
+			if (entry >= 0) {
+				int numberOfExits = overlay.getNumberOfExits(subLevel, subCell);
+				int offset = overlay.getCliqueOffset(subLevel, subCell) + entry * numberOfExits;
+				for (int j = 0; j < numberOfExits; j++) {
+					relax(overlay.getExit(subLevel, subCell, j), distance, cliques[subLevel][offset + j], u, -1,
+							settled, distances, parents, parentEdges, queue);
+				}
+			}
+			if (overlay.getExitIndex(subLevel, u) >= 0) {
+				for (int i = graph.getOutBegin(u); i < graph.getOutEnd(u); i++) {
+					int e = graph.getOutEdge(i);
+					int v = graph.getToNode(e);
+					if (overlay.getCell(subLevel, v) != subCell && overlay.getCell(level, v) == cell) {
+						relax(v, distance, costs[e], u, e, settled, distances, parents, parentEdges, queue);
+					}
+				}
+			}
+		}
+	}
+
+	private void relax(int v, int distance, int cost, int parent, int edge, IntOpenHashSet settled,
+			Int2IntOpenHashMap distances, Int2IntOpenHashMap parents, Int2IntOpenHashMap parentEdges,
+			PriorityQueue<QueueEntry> queue) {
+		if (cost == INFINITY || settled.contains(v)) {
+			return;
+		}
+		int newDistance = distance + cost;
+		if (newDistance < distances.get(v)) {
+			distances.put(v, newDistance);
+			if (parents != null) {
+				parents.put(v, parent);
+				parentEdges.put(v, edge);
+			}
+			queue.offer(new QueueEntry(v, newDistance));
+		}
+	}
+
+	/**
+	 * Cost of the clique arc from an entry to an exit of a cell.
+	 */
+	public int getCliqueCost(int level, int cell, int entryIndex, int exitIndex) {
+		int numberOfExits = overlay.getNumberOfExits(level, cell);
+		return cliques[level][overlay.getCliqueOffset(level, cell) + entryIndex * numberOfExits + exitIndex];
+	}
+
+	/**
+	 * Appends to edges the original edges of the clique arc from one entry to one exit of a cell.
+	 */
+	public void unpack(int level, int cell, int from, int to, IntArrayList edges) {
+		Int2IntOpenHashMap distances = new Int2IntOpenHashMap();
+		distances.defaultReturnValue(INFINITY);
+		Int2IntOpenHashMap parents = new Int2IntOpenHashMap();
+		Int2IntOpenHashMap parentEdges = new Int2IntOpenHashMap();
+		search(level, cell, from, to, distances, parents, parentEdges);
+
+		List<int[]> arcs = new ArrayList<int[]>();
+		for (int v = to; v != from; v = parents.get(v)) {
+			arcs.add(new int[] { parents.get(v), v, parentEdges.get(v) });
+		}
+		Collections.reverse(arcs);
+
+		for (int[] arc : arcs) {
+			if (arc[2] >= 0) {
+				edges.add(arc[2]);
+			} else {
+				unpack(level - 1, overlay.getCell(level - 1, arc[0]), arc[0], arc[1], edges);
+			}
+		}
+	}
+
+	public Overlay getOverlay() {
+		return overlay;
+	}
+
+	public int[] getCosts() {
+		return costs;
+	}
+
+}
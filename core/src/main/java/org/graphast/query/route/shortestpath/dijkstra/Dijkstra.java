@@ -16,6 +16,7 @@ import org.graphast.model.Graph;
 import org.graphast.model.GraphBounds;
 import org.graphast.model.Node;
 import org.graphast.query.route.shortestpath.AbstractShortestPathService;
+import org.graphast.query.route.shortestpath.arcflags.ArcFlags;
 import org.graphast.query.route.shortestpath.model.Path;
 import org.graphast.query.route.shortestpath.model.RouteEntry;
 import org.graphast.query.route.shortestpath.model.TimeEntry;
@@ -25,6 +26,8 @@ public abstract class Dijkstra extends AbstractShortestPathService {
 
 	//private Logger logger = LoggerFactory.getLogger(this.getClass());
 
+	protected ArcFlags arcFlags;
+
 	public Dijkstra(GraphBounds graphBounds) {
 		super(graphBounds);
 	}
@@ -33,6 +36,19 @@ public abstract class Dijkstra extends AbstractShortestPathService {
 		super(graph);
 	}
 	
+	/**
+	 * Restricts the search to the edges flagged for the cell of the target.
+	 * 
+	 * @param arcFlags flags created over the same graph, or null to search all edges
+	 */
+	public void setArcFlags(ArcFlags arcFlags) {
+		this.arcFlags = arcFlags;
+	}
+
+	public ArcFlags getArcFlags() {
+		return arcFlags;
+	}
+
 	//TODO Double check this method!!
 	//TODO Create tests!!
 	protected List<RouteEntry> reconstructPath(long id, HashMap<Long, RouteEntry> parents){
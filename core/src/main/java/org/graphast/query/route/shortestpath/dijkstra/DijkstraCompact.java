@@ -0,0 +1,135 @@
+package org.graphast.query.route.shortestpath.dijkstra;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+import org.graphast.model.CompactGraph;
+import org.graphast.query.model.QueueEntry;
+
+/**
+ * One-to-all (or many-to-all) Dijkstra over a {@link CompactGraph} with a static
+ * cost per edge. It is meant for preprocessing, where the whole graph is swept
+ * several times, and keeps its results in plain arrays indexed by node id.
+ */
+public class DijkstraCompact {
+
+	public static final int INFINITY = Integer.MAX_VALUE;
+
+	private CompactGraph graph;
+	private int[] costs;
+
+	private int[] distances;
+	private int[] parentEdges;
+	private int[] origins;
+	private int[] settledOrder;
+	private int numberOfSettledNodes;
+
+	/**
+	 * @param graph topology of the graph
+	 * @param costs cost of each edge, indexed by edge id
+	 */
+	public DijkstraCompact(CompactGraph graph, int[] costs) {
+		this.graph = graph;
+		this.costs = costs;
+	}
+
+	public int[] run(int source, boolean reverse) {
+		return run(new int[] { source }, new int[] { 0 }, reverse, INFINITY);
+	}
+
+	/**
+	 * Runs a search seeded by several sources at once. Each node ends up labeled
+	 * with the source that reaches it first (see {@link #getOrigins()}).
+	 *
+	 * @param sources nodes where the search starts
+	 * @param initialCosts initial cost of each source
+	 * @param reverse if true the in edges are followed, so distances are measured
+	 * 				  from each node to the sources
+	 * @param maxCost the search stops once the next node is farther than this cost. Nodes
+	 * 				  that were not settled keep a tentative cost greater than maxCost or INFINITY
+	 * @return the cost of every node
+	 */
+	public int[] run(int[] sources, int[] initialCosts, boolean reverse, int maxCost) {
+		int n = graph.getNumberOfNodes();
+		distances = new int[n];
+		parentEdges = new int[n];
+		origins = new int[n];
+		settledOrder = new int[n];
+		numberOfSettledNodes = 0;
+		Arrays.fill(distances, INFINITY);
+		Arrays.fill(parentEdges, -1);
+		Arrays.fill(origins, -1);
+
+		boolean[] settled = new boolean[n];
+		PriorityQueue<QueueEntry> queue = new PriorityQueue<QueueEntry>();
+
+		for (int i = 0; i < sources.length; i++) {
+			int s = sources[i];
+			if (initialCosts[i] < distances[s]) {
+				distances[s] = initialCosts[i];
+				origins[s] = s;
+				queue.offer(new QueueEntry(s, initialCosts[i]));
+			}
+		}
+
+		while (!queue.isEmpty()) {
+			QueueEntry removed = queue.poll();
+			int u = (int) removed.getId();
+			if (settled[u] || removed.getTravelTime() > distances[u]) {
+				continue;
+			}
+			if (removed.getTravelTime() > maxCost) {
+				break;
+			}
+			settled[u] = true;
+			settledOrder[numberOfSettledNodes++] = u;
+
+			int begin = reverse ? graph.getInBegin(u) : graph.getOutBegin(u);
+			int end = reverse ? graph.getInEnd(u) : graph.getOutEnd(u);
+			for (int i = begin; i < end; i++) {
+				int e = reverse ? graph.getInEdge(i) : graph.getOutEdge(i);
+				int v = reverse ? graph.getFromNode(e) : graph.getToNode(e);
+				long newCost = (long) distances[u] + costs[e];
+				if (!settled[v] && newCost < distances[v]) {
+					distances[v] = (int) newCost;
+					parentEdges[v] = e;
+					origins[v] = origins[u];
+					queue.offer(new QueueEntry(v, distances[v]));
+				}
+			}
+		}
+		return distances;
+	}
+
+	public int[] getDistances() {
+		return distances;
+	}
+
+	/**
+	 * Edge used to reach each node in the last search, -1 for the sources
+	 * and for nodes not reached.
+	 */
+	public int[] getParentEdges() {
+		return parentEdges;
+	}
+
+	/**
+	 * Source that reached each node in the last search, -1 if not reached.
+	 */
+	public int[] getOrigins() {
+		return origins;
+	}
+
+	/**
+	 * Nodes of the last search in the order they were settled; only the first
+	 * {@link #getNumberOfSettledNodes()} positions are used.
+	 */
+	public int[] getSettledOrder() {
+		return settledOrder;
+	}
+
+	public int getNumberOfSettledNodes() {
+		return numberOfSettledNodes;
+	}
+
+}
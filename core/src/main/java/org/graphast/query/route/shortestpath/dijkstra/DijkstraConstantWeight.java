@@ -1,15 +1,16 @@
 package org.graphast.query.route.shortestpath.dijkstra;
 
-import it.unimi.dsi.fastutil.longs.Long2IntMap;
-
 import java.util.HashMap;
 import java.util.PriorityQueue;
 import java.util.Set;
 
+import org.graphast.enums.GraphBoundsType;
+import org.graphast.exception.GraphastException;
 import org.graphast.model.Edge;
 import org.graphast.model.Graph;
 import org.graphast.model.GraphBounds;
 import org.graphast.model.Node;
+import org.graphast.query.route.shortestpath.arcflags.ArcFlags;
 import org.graphast.query.route.shortestpath.model.RouteEntry;
 import org.graphast.query.route.shortestpath.model.TimeEntry;
 
@@ -23,28 +24,39 @@ public class DijkstraConstantWeight extends Dijkstra {
 		super(graphBounds);
 	}
 	
+	@Override
+	public void setArcFlags(ArcFlags arcFlags) {
+		if (arcFlags != null && arcFlags.getType() != GraphBoundsType.NORMAL) {
+			throw new GraphastException("Arc flags for constant weights must be created over the edge distances.");
+		}
+		super.setArcFlags(arcFlags);
+	}
+
 	public void expandVertex(Node target, TimeEntry removed, HashMap<Long, Integer> wasTraversed, Set<Long> wasVisited,
 			PriorityQueue<TimeEntry> queue, HashMap<Long, RouteEntry> parents){
 		
-		Long2IntMap neig = graph.accessNeighborhood(graph.getNode(removed.getId()));
+		int cell = arcFlags == null ? -1 : arcFlags.getCell(target.getId());
 		
-		for (long vid : neig.keySet()) {
+		for (long e : graph.getOutEdges(removed.getId())) {
+			
+			if (arcFlags != null && !arcFlags.hasFlag(e, cell)) {
+				continue;
+			}
 			
-			int arrivalTime = graph.getArrival(removed.getArrivalTime(), neig.get(vid));
-			int travelTime = removed.getTravelTime() + neig.get(vid);
+			Edge edge = graph.getEdge(e);
+			long vid = edge.getToNode();
+			int distance = edge.getDistance();
+			
+			int arrivalTime = graph.getArrival(removed.getArrivalTime(), distance);
+			int travelTime = removed.getTravelTime() + distance;
 			TimeEntry newEntry = new TimeEntry(	vid, travelTime, arrivalTime, removed.getId());
-
-			Edge edge = null;
-			int distance = -1;
 			
 			if (!wasTraversed.containsKey(vid)) {		
 				
 				queue.offer(newEntry);
 				wasTraversed.put(newEntry.getId(), newEntry.getTravelTime());
 				
-				distance = neig.get(vid);
-				edge = getEdge(removed.getId(), vid, distance);
-				parents.put(vid, new RouteEntry(removed.getId(), distance/17, edge.getId(), edge.getLabel()));
+				parents.put(vid, new RouteEntry(removed.getId(), distance/17, e, edge.getLabel()));
 			} else {
 				
 				int cost = wasTraversed.get(vid);
@@ -56,25 +68,11 @@ public class DijkstraConstantWeight extends Dijkstra {
 						wasTraversed.remove(newEntry.getId());
 						wasTraversed.put(newEntry.getId(), newEntry.getTravelTime());
 						
-						parents.remove(vid);
-						distance = neig.get(vid);
-						edge = getEdge(removed.getId(), vid, distance);
-						parents.put(vid, new RouteEntry(removed.getId(), distance/17, edge.getId(), edge.getLabel()));
+						parents.put(vid, new RouteEntry(removed.getId(), distance/17, e, edge.getLabel()));
 					}
 				}
 			}
 		}
 	}
 
-	private Edge getEdge(long fromNodeId, long toNodeId, int distance) {
-		Edge edge = null;
-		for(Long outEdge : graph.getOutEdges(fromNodeId)) {
-			edge = graph.getEdge(outEdge);
-			if ((int) edge.getToNode() == toNodeId && edge.getDistance() == distance) {
-				break;
-			}
-		}
-		return edge;
-	}
-
 }
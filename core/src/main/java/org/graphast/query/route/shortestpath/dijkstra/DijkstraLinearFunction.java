@@ -7,12 +7,15 @@ import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.Set;
 
+import org.graphast.enums.GraphBoundsType;
+import org.graphast.exception.GraphastException;
 import org.graphast.model.Edge;
 import org.graphast.model.Graph;
 import org.graphast.model.GraphBounds;
 import org.graphast.model.Node;
 import org.graphast.query.model.Bound;
 import org.graphast.query.model.QueueEntry;
+import org.graphast.query.route.shortestpath.arcflags.ArcFlags;
 import org.graphast.query.route.shortestpath.model.RouteEntry;
 import org.graphast.query.route.shortestpath.model.TimeEntry;
 
@@ -33,28 +36,38 @@ public class DijkstraLinearFunction extends Dijkstra {
 		super(graphBounds);
 	}
 	
+	@Override
+	public void setArcFlags(ArcFlags arcFlags) {
+		if (arcFlags != null && arcFlags.getType() != GraphBoundsType.LOWER) {
+			throw new GraphastException("Time-dependent arc flags must be created over the lower bound graph.");
+		}
+		super.setArcFlags(arcFlags);
+	}
+
 	public void expandVertex(Node target, TimeEntry removed, HashMap<Long, Integer> wasTraversed, Set<Long> allWasViseted, 
 			PriorityQueue<TimeEntry> queue, HashMap<Long, RouteEntry> parents){
 		
-		HashMap<Node, Integer> neighbors = graph.accessNeighborhood(graph.getNode(removed.getId()), removed.getArrivalTime());
+		int cell = arcFlags == null ? -1 : arcFlags.getCell(target.getId());
 		
-		for (Node node : neighbors.keySet()) {
-			long vid = node.getId();
+		for (long e : graph.getOutEdges(removed.getId())) {
+			if (arcFlags != null && !arcFlags.hasFlag(e, cell)) {
+				continue;
+			}
+			
+			Edge edge = graph.getEdge(e);
+			long vid = edge.getToNode();
+			int edgeCost = graph.getEdgeCost(edge, removed.getArrivalTime());
+			
 			allWasViseted.add(vid);
-			int at = graph.getArrival(removed.getArrivalTime(), neighbors.get(node));
-			int tt = removed.getTravelTime() + neighbors.get(node);
+			int at = graph.getArrival(removed.getArrivalTime(), edgeCost);
+			int tt = removed.getTravelTime() + edgeCost;
 			TimeEntry newEntry = new TimeEntry(	vid, tt, at, removed.getId());
 			
-			Edge edge = null;
-			int distance = -1;
-			
 			if(!wasTraversed.containsKey(vid)){					
 				queue.offer(newEntry);
 				wasTraversed.put(newEntry.getId(), newEntry.getTravelTime());
 				
-				distance = neighbors.get(node);
-				edge = getEdge(removed.getId(), vid, distance);
-				parents.put(vid, new RouteEntry(removed.getId(), distance, edge.getId(), edge.getLabel()));
+				parents.put(vid, new RouteEntry(removed.getId(), edgeCost, e, edge.getLabel()));
 			}else{
 				int cost = wasTraversed.get(vid);
 				if(cost != wasRemoved){
@@ -65,27 +78,13 @@ public class DijkstraLinearFunction extends Dijkstra {
 						wasTraversed.remove(idNewEntry);
 						wasTraversed.put(idNewEntry, newEntry.getTravelTime());
 						
-						parents.remove(node);
-						distance = neighbors.get(node);
-						edge = getEdge(removed.getId(), vid, distance);
-						parents.put(vid, new RouteEntry(removed.getId(), distance, edge.getId(), edge.getLabel()));
+						parents.put(vid, new RouteEntry(removed.getId(), edgeCost, e, edge.getLabel()));
 					}
 				}
 			}
 		}
 	}
 	
-	private Edge getEdge(long fromNodeId, long toNodeId, int distance) {
-		Edge edge = null;
-		for(Long outEdge : graph.getOutEdges(fromNodeId)) {
-			edge = graph.getEdge(outEdge);
-			if ((int) edge.getToNode() == toNodeId && edge.getDistance() == distance) {
-				break;
-			}
-		}
-		return edge;
-	}
-	
 	public List<Bound> shortestPathCategories(long nodeId, Set<Integer> categoriesIds, short graphType){
 
 		//TODO Change this PriorityQueue to some FastUtil structure
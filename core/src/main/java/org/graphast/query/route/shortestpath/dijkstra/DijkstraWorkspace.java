@@ -0,0 +1,171 @@
+package org.graphast.query.route.shortestpath.dijkstra;
+
+import java.util.PriorityQueue;
+
+import org.graphast.model.CompactCosts;
+import org.graphast.model.CompactGraph;
+import org.graphast.model.Graph;
+import org.graphast.query.model.QueueEntry;
+import org.graphast.query.route.shortestpath.model.Path;
+
+/**
+ * Reusable arrays for repeated Dijkstra searches over a {@link CompactGraph}. Entries are
+ * valid only while their stamp matches the stamp of the current search, so nothing is
+ * cleared or allocated between searches. A workspace is not thread safe; concurrent
+ * searches should each use their own.
+ */
+public class DijkstraWorkspace {
+
+	public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+	private CompactGraph graph;
+	private CompactCosts costs;
+
+	private int stamp;
+	private int[] reached;
+	private int[] settled;
+	private int[] target;
+	private int[] travelTimes;
+	private int[] arrivals;
+	private int[] parentEdges;
+	private PriorityQueue<QueueEntry> queue = new PriorityQueue<QueueEntry>();
+
+	private int numberOfSettledNodes;
+
+	/**
+	 * @param costs time-dependent costs, only needed for time-dependent searches
+	 */
+	public DijkstraWorkspace(CompactGraph graph, CompactCosts costs) {
+		this.graph = graph;
+		this.costs = costs;
+		int numberOfNodes = graph.getNumberOfNodes();
+		reached = new int[numberOfNodes];
+		settled = new int[numberOfNodes];
+		target = new int[numberOfNodes];
+		travelTimes = new int[numberOfNodes];
+		arrivals = new int[numberOfNodes];
+		parentEdges = new int[numberOfNodes];
+	}
+
+	/**
+	 * Runs a search from source until all targets are settled.
+	 *
+	 * @param departureTime departure time in milliseconds, used by time-dependent searches
+	 * @param edgeCosts static cost of each edge, or null to use the time-dependent costs
+	 * @param reverse if true the in edges are followed (static costs only)
+	 * @param targets nodes that must be settled; if empty the whole graph is searched
+	 */
+	public void search(int source, int departureTime, int[] edgeCosts, boolean reverse, int... targets) {
+		stamp++;
+		queue.clear();
+		numberOfSettledNodes = 0;
+
+		int remainingTargets = 0;
+		for (int t : targets) {
+			if (target[t] != stamp) {
+				target[t] = stamp;
+				remainingTargets++;
+			}
+		}
+		boolean allNodes = targets.length == 0;
+
+		reach(source, 0, departureTime, -1);
+		queue.offer(new QueueEntry(source, 0));
+
+		while (!queue.isEmpty() && (allNodes || remainingTargets > 0)) {
+			QueueEntry removed = queue.poll();
+			int u = (int) removed.getId();
+			if (settled[u] == stamp || removed.getTravelTime() > travelTimes[u]) {
+				continue;
+			}
+			settled[u] = stamp;
+			numberOfSettledNodes++;
+			if (target[u] == stamp) {
+				remainingTargets--;
+			}
+
+			int begin = reverse ? graph.getInBegin(u) : graph.getOutBegin(u);
+			int end = reverse ? graph.getInEnd(u) : graph.getOutEnd(u);
+			for (int i = begin; i < end; i++) {
+				int e = reverse ? graph.getInEdge(i) : graph.getOutEdge(i);
+				int v = reverse ? graph.getFromNode(e) : graph.getToNode(e);
+				if (settled[v] == stamp) {
+					continue;
+				}
+				int cost = edgeCosts == null ? costs.getCost(e, arrivals[u]) : edgeCosts[e];
+				int travelTime = travelTimes[u] + cost;
+				if (reached[v] != stamp || travelTime < travelTimes[v]) {
+					int arrival = edgeCosts == null ? costs.getArrival(arrivals[u], cost) : 0;
+					reach(v, travelTime, arrival, e);
+					queue.offer(new QueueEntry(v, travelTime));
+				}
+			}
+		}
+	}
+
+	private void reach(int v, int travelTime, int arrival, int parentEdge) {
+		reached[v] = stamp;
+		travelTimes[v] = travelTime;
+		arrivals[v] = arrival;
+		parentEdges[v] = parentEdge;
+	}
+
+	public boolean isSettled(int v) {
+		return settled[v] == stamp;
+	}
+
+	/**
+	 * Cost of the last search to the node, or {@link #UNREACHABLE} if it was not settled.
+	 */
+	public int getCost(int v) {
+		return isSettled(v) ? travelTimes[v] : UNREACHABLE;
+	}
+
+	/**
+	 * Edge used to reach the node in the last search, -1 for the source.
+	 */
+	public int getParentEdge(int v) {
+		return parentEdges[v];
+	}
+
+	/**
+	 * Sum of the given edge values (e.g. distances) along the path to the node.
+	 */
+	public long sumAlongPath(int v, int[] edgeValues, boolean reverse) {
+		long sum = 0;
+		for (int e = parentEdges[v]; e >= 0; e = parentEdges[reverse ? graph.getToNode(e) : graph.getFromNode(e)]) {
+			sum += edgeValues[e];
+		}
+		return sum;
+	}
+
+	/**
+	 * Path of the last (forward) search to the target, or null if it was not settled.
+	 */
+	public Path buildPath(Graph g, int source, int target) {
+		if (!isSettled(target)) {
+			return null;
+		}
+		int size = 0;
+		for (int v = target; v != source; v = graph.getFromNode(parentEdges[v])) {
+			size++;
+		}
+		long[] edgeIds = new long[size];
+		int[] edgeCosts = new int[size];
+		for (int v = target; v != source; v = graph.getFromNode(parentEdges[v])) {
+			int e = parentEdges[v];
+			size--;
+			edgeIds[size] = e;
+			edgeCosts[size] = travelTimes[v] - travelTimes[graph.getFromNode(e)];
+		}
+		Path path = new Path();
+		path.constructPath(g, edgeIds, edgeCosts);
+		path.setNumberVisitedNodes(numberOfSettledNodes);
+		return path;
+	}
+
+	public int getNumberOfSettledNodes() {
+		return numberOfSettledNodes;
+	}
+
+}
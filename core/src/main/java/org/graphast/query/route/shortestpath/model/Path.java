@@ -1,20 +1,25 @@
 package org.graphast.query.route.shortestpath.model;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntBigArrayBigList;
 
 import org.graphast.geometry.PoI;
 import org.graphast.geometry.Point;
 import org.graphast.model.Edge;
 import org.graphast.model.Graph;
+import org.graphast.model.Node;
 import org.graphast.query.route.osr.Sequence;
 import org.graphast.query.route.shortestpath.AbstractShortestPathService;
 import org.graphast.query.route.shortestpath.dijkstra.DijkstraLinearFunction;
 import org.graphast.util.DistanceUtils;
+import org.graphast.util.GeoUtils;
 
 public class Path {
 
@@ -26,140 +31,181 @@ public class Path {
 	private double totalCost;
 	private int numberVisitedNodes;
 
+	// edges from the source to the target; instructions and geometry are built from
+	// them on first use
+	private Graph graph;
+	private long[] edgeIds;
+	private int[] edgeCosts;
+	private String[] labels;
+	private boolean built = true;
+
 	public Path() {
 
 	}
 
 
-	//TODO MAJOR REFACTOR NEEDED IN THIS METHOD!
+	/**
+	 * Builds the path that ends at id following the parents. Only the edge sequence is
+	 * kept; instructions and geometry are built when they are first requested.
+	 */
 	public void constructPath(long id, HashMap<Long, RouteEntry> parents, Graph graph) {
-		Instruction oldInstruction, newInstruction;
-		LinkedList<Instruction> verificationQueue = new LinkedList<Instruction>();
-		if (parents.get(id) == null) {
-			instructions = new ArrayList<Instruction>();
-			newInstruction = new Instruction(0, "On Start", 0, 0);
-			instructions.add(newInstruction);
-			return;
+		int size = 0;
+		for (RouteEntry re = parents.get(id); re != null; re = re.getId() == -1 ? null : parents.get(re.getId())) {
+			size++;
 		}
-		RouteEntry re = parents.get(id);
-
-		long parent = re.getId();
-
-		instructions = new ArrayList<Instruction>();
-		edges = new ArrayList<Long>();
-		geometry = new ArrayList<Point>();
-
-		List<Point> listOfGeometries;
-
-		Edge newEdge;
-
-		if(re.getEdgeId()!=-1) {
-			newEdge = graph.getEdge(re.getEdgeId());
-			newInstruction = new Instruction(0, re.getLabel(), re.getCost(), newEdge.getDistance());
-			edges.add(re.getEdgeId());
-
-			if (newEdge.getGeometry() != null) {
-
-				listOfGeometries = graph.getEdge(re.getEdgeId()).getGeometry();
-
-				if(DistanceUtils.distanceLatLong(listOfGeometries.get(0).getLatitude(), listOfGeometries.get(0).getLongitude(), graph.getNode(graph.getEdge(re.getEdgeId()).getFromNode()).getLatitude(), graph.getNode(graph.getEdge(re.getEdgeId()).getFromNode()).getLongitude()) > 0) {
-					Collections.reverse(listOfGeometries);
-				}
 
+		long[] edgeIds = new long[size];
+		int[] edgeCosts = new int[size];
+		String[] labels = new String[size];
+		int i = size;
+		for (RouteEntry re = parents.get(id); re != null; re = re.getId() == -1 ? null : parents.get(re.getId())) {
+			i--;
+			edgeIds[i] = re.getEdgeId();
+			edgeCosts[i] = re.getCost();
+			labels[i] = re.getLabel();
+		}
+		setEdgeSequence(graph, edgeIds, edgeCosts, labels);
+	}
 
-				Collections.reverse(listOfGeometries);
-				newInstruction.setStartGeometry(geometry.size());
+	/**
+	 * Builds the path from the ids of its edges, from the source to the target, and the
+	 * cost of each edge.
+	 */
+	public void constructPath(Graph graph, long[] edgeIds, int[] edgeCosts) {
+		setEdgeSequence(graph, edgeIds, edgeCosts, null);
+	}
 
-				for (Point point : listOfGeometries) {
-					if(geometry.contains(point)) {
-						continue;
-					} else {
-						geometry.add(point);
-					}
-				}
-				newInstruction.setEndGeometry(geometry.size()-1);
-			}
+	private void setEdgeSequence(Graph graph, long[] edgeIds, int[] edgeCosts, String[] labels) {
+		this.edges = null;
+		this.geometry = null;
+		if (edgeIds.length == 0) {
+			this.graph = null;
+			this.edgeIds = null;
+			this.edgeCosts = null;
+			this.labels = null;
+			instructions = new ArrayList<Instruction>();
+			instructions.add(new Instruction(0, "On Start", 0, 0));
+			built = true;
 		} else {
-			newInstruction = new Instruction(0, re.getLabel(), re.getCost(), 0);
-			edges.add(re.getEdgeId());
+			this.graph = graph;
+			this.edgeIds = edgeIds;
+			this.edgeCosts = edgeCosts;
+			this.labels = labels;
+			instructions = null;
+			built = false;
 		}
+	}
 
+	/**
+	 * Builds instructions and geometry from the edge sequence. Consecutive edges with the
+	 * same label are merged in one instruction and the geometry of each edge is oriented
+	 * to continue from the end of the previous one. Both are built from the target back to
+	 * the source, so repeated points keep their last position in the path.
+	 */
+	private void build() {
+		if (built) {
+			return;
+		}
+		built = true;
+
+		int size = edgeIds.length;
+		Edge[] pathEdges = new Edge[size];
+		String[] pathLabels = labels == null ? new String[size] : labels;
+		for (int i = 0; i < size; i++) {
+			pathEdges[i] = edgeIds[i] == -1 ? null : graph.getEdge(edgeIds[i]);
+			if (labels == null && pathEdges[i] != null) {
+				pathLabels[i] = pathEdges[i].getLabel();
+			}
+		}
 
+		List<Point> reversedGeometry = new ArrayList<Point>();
+		Set<Point> points = new HashSet<Point>();
+		List<Instruction> reversedInstructions = new ArrayList<Instruction>();
+		// geometry positions of each instruction while the geometry is reversed
+		IntArrayList starts = new IntArrayList();
+		IntArrayList ends = new IntArrayList();
+
+		for (int i = size - 1; i >= 0; i--) {
+			Edge edge = pathEdges[i];
+			int distance = edge == null ? 0 : edge.getDistance();
+
+			Instruction current = reversedInstructions.isEmpty() ? null : reversedInstructions.get(reversedInstructions.size() - 1);
+			if (current != null && sameLabel(current.getLabel(), pathLabels[i])) {
+				current.setCost(current.getCost() + edgeCosts[i]);
+				current.setDistance(edge == null ? 0 : current.getDistance() + distance);
+			} else {
+				reversedInstructions.add(new Instruction(0, pathLabels[i], edgeCosts[i], distance));
+				starts.add(Math.max(reversedGeometry.size() - 1, 0));
+				ends.add(-1);
+			}
 
-		verificationQueue.add(newInstruction);
-
-		while (parent != -1) {
-			re = parents.get(parent);
+			if (edge == null || (edge.getGeometry() == null && i == size - 1)) {
+				continue;
+			}
 
-			if (re != null) {
-				String predecessorLabel = verificationQueue.peek().getLabel();
-				if(re.getEdgeId()!=-1) {
-					newEdge = graph.getEdge(re.getEdgeId());
+			List<Point> edgeGeometry = edge.getGeometry();
+			if (edgeGeometry != null && !edgeGeometry.isEmpty()) {
+				boolean reverse;
+				if (i == size - 1) {
+					// the last edge is walked back from its to node
+					Node from = graph.getNode(edge.getFromNode());
+					reverse = edgeGeometry.get(0).equals(new Point(from.getLatitude(), from.getLongitude()));
 				} else {
-					newEdge = null;
+					reverse = isReversed(edgeGeometry, reversedGeometry);
 				}
-				if ((predecessorLabel == null && re.getLabel() == null)
-						|| (predecessorLabel != null && predecessorLabel.equals(re.getLabel()))
-						|| (predecessorLabel != null && (predecessorLabel.isEmpty() && re.getLabel() == null))) {
-					oldInstruction = verificationQueue.poll();
-					if(re.getEdgeId()!=-1) {
-						newInstruction = new Instruction(0, oldInstruction.getLabel(),
-								oldInstruction.getCost() + re.getCost(), oldInstruction.getDistance() + newEdge.getDistance());
-					} else {
-						newInstruction = new Instruction(0, oldInstruction.getLabel(),
-								oldInstruction.getCost() + re.getCost(), 0);
-					}
-					newInstruction.setStartGeometry(oldInstruction.getStartGeometry());	
-				} else {
-					if(re.getEdgeId()!=-1) {
-						newInstruction = new Instruction(0, re.getLabel(), re.getCost(), newEdge.getDistance());
-					} else {
-						newInstruction = new Instruction(0, re.getLabel(), re.getCost(), 0);
+				int n = edgeGeometry.size();
+				for (int j = 0; j < n; j++) {
+					Point point = edgeGeometry.get(reverse ? n - 1 - j : j);
+					if (points.add(point)) {
+						reversedGeometry.add(point);
 					}
-					newInstruction.setStartGeometry(geometry.size()-1);
 				}
-				edges.add(re.getEdgeId());
-
-				if(re.getEdgeId()!=-1) {
-					if (newEdge.getGeometry() != null) {
-
-						listOfGeometries = graph.getEdge(re.getEdgeId()).getGeometry();
-
-						if(geometry.size()!=0) {
-							if(DistanceUtils.distanceLatLong(listOfGeometries.get(0).getLatitude(), listOfGeometries.get(0).getLongitude(), geometry.get(geometry.size()-1).getLatitude(), geometry.get(geometry.size()-1).getLongitude()) > 
-							DistanceUtils.distanceLatLong(listOfGeometries.get(listOfGeometries.size()-1).getLatitude(), listOfGeometries.get(listOfGeometries.size()-1).getLongitude(), geometry.get(geometry.size()-1).getLatitude(), geometry.get(geometry.size()-1).getLongitude()) ) {
-								Collections.reverse(listOfGeometries);
-							}
-						}
-
-						for (Point point : listOfGeometries) {
-							if(geometry.contains(point)) {
-								//							if(previousLatitude==point.getLatitude() && previousLongitude==point.getLongitude()) {
-								continue;
-							} else {
-								geometry.add(point);
-							}
-						}
-					}
-					newInstruction.setEndGeometry(geometry.size()-1);
-				}
-
-				verificationQueue.addFirst(newInstruction);
-				parent = re.getId();
-			} else {
-				break;
 			}
+			ends.set(ends.size() - 1, reversedGeometry.size() - 1);
+		}
+
+		int last = reversedGeometry.size() - 1;
+		geometry = new ArrayList<Point>(reversedGeometry.size());
+		for (int i = last; i >= 0; i--) {
+			geometry.add(reversedGeometry.get(i));
 		}
 
-		Collections.reverse(edges);
-		Collections.reverse(geometry);
-		while (!verificationQueue.isEmpty()) {
-			instructions.add(verificationQueue.poll());
+		instructions = new ArrayList<Instruction>(reversedInstructions.size());
+		for (int i = reversedInstructions.size() - 1; i >= 0; i--) {
+			Instruction instruction = reversedInstructions.get(i);
+			int start = starts.getInt(i);
+			int end = Math.max(ends.getInt(i), start);
+			instruction.setStartGeometry(Math.max(last - end, 0));
+			instruction.setEndGeometry(Math.max(last - start, 0));
+			instructions.add(instruction);
 		}
-		Collections.reverse(instructions);
 	}
 
+	private static boolean sameLabel(String label, String previousLabel) {
+		return (label == null && previousLabel == null)
+				|| (label != null && label.equals(previousLabel))
+				|| (label != null && label.isEmpty() && previousLabel == null);
+	}
 
+	/**
+	 * Whether the edge geometry must be reversed to continue from the last point added.
+	 */
+	private static boolean isReversed(List<Point> edgeGeometry, List<Point> reversedGeometry) {
+		if (reversedGeometry.isEmpty()) {
+			return false;
+		}
+		Point lastPoint = reversedGeometry.get(reversedGeometry.size() - 1);
+		Point first = edgeGeometry.get(0);
+		Point last = edgeGeometry.get(edgeGeometry.size() - 1);
+		if (first.equals(lastPoint)) {
+			return false;
+		}
+		if (last.equals(lastPoint)) {
+			return true;
+		}
+		return DistanceUtils.distanceLatLong(first.getLatitude(), first.getLongitude(), lastPoint.getLatitude(), lastPoint.getLongitude())
+				> DistanceUtils.distanceLatLong(last.getLatitude(), last.getLongitude(), lastPoint.getLatitude(), lastPoint.getLongitude());
+	}
 
 	public static Path pathsConcatanation(List<Path> paths) {
 
@@ -254,7 +300,7 @@ public class Path {
 		StringBuilder sb = new StringBuilder();
 		sb.append("\n");
 
-		Iterator<Instruction> instructionIterator = instructions.iterator();
+		Iterator<Instruction> instructionIterator = getInstructions().iterator();
 
 		while (instructionIterator.hasNext()) {
 
@@ -275,14 +321,22 @@ public class Path {
 	}
 
 	public List<Instruction> getPath() {
+		build();
 		return instructions;
 	}
 
 	public void setPath(List<Instruction> path) {
+		build();
 		this.instructions = path;
 	}
 
 	public List<Long> getEdges() {
+		if (edges == null && edgeIds != null) {
+			edges = new ArrayList<Long>(edgeIds.length);
+			for (long edgeId : edgeIds) {
+				edges.add(edgeId);
+			}
+		}
 		return edges;
 	}
 
@@ -291,27 +345,49 @@ public class Path {
 	}
 
 	public List<Instruction> getInstructions() {
+		build();
 		return instructions;
 	}
 
 
 	public void setInstructions(List<Instruction> instructions) {
+		build();
 		this.instructions = instructions;
 	}
 
 
 	public List<Point> getGeometry() {
+		build();
 		return geometry;
 	}
 
 	public void setGeometry(List<Point> geometry) {
+		build();
 		this.geometry = geometry;
 	}
 
+	/**
+	 * Geometry of the path in the encoded polyline format, see {@link GeoUtils#encodePolyline(List)}.
+	 */
+	public String getEncodedPolyline() {
+		List<Point> points = getGeometry();
+		return GeoUtils.encodePolyline(points == null ? new ArrayList<Point>() : points);
+	}
+
 	public long getTotalDistance() {
 
 		totalDistance = 0;
 
+		if (!built) {
+			IntBigArrayBigList graphEdges = graph.getEdges();
+			for (long edgeId : edgeIds) {
+				if (edgeId != -1) {
+					totalDistance = totalDistance + graphEdges.getInt(edgeId * Edge.EDGE_BLOCKSIZE + 10);
+				}
+			}
+			return totalDistance;
+		}
+
 		for (Instruction instruction : instructions) {
 			totalDistance = totalDistance + instruction.getDistance();
 		}
@@ -323,6 +399,13 @@ public class Path {
 
 		totalCost = 0;
 
+		if (!built) {
+			for (int cost : edgeCosts) {
+				totalCost = totalCost + cost;
+			}
+			return totalCost;
+		}
+
 		for (Instruction instruction : instructions) {
 			totalCost = totalCost + instruction.getCost();
 		}
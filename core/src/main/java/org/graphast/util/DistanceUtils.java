@@ -7,6 +7,9 @@ import org.graphast.model.Node;
 
 public class DistanceUtils {
 
+	// meters per unit of travel time used by timeCost
+	public static final double MAX_SPEED = 88.51392;
+
 	public static double distanceLatLong(double latitudeFrom, double longitudeFrom,
 			double latitudeTo, double longitudeTo) {
 
@@ -49,7 +52,7 @@ public class DistanceUtils {
 	
 	
 	public static int timeCost(Node fromNode, Node toNode){
-		return (int) ((int) distanceLatLong(fromNode, toNode)/88.51392);
+		return (int) ((int) distanceLatLong(fromNode, toNode)/MAX_SPEED);
 	}
 	
 	
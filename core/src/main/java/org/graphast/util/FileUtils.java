@@ -7,8 +7,10 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
 import java.net.URL;
 import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
 import java.nio.channels.Channel;
 import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
@@ -23,6 +25,7 @@ import org.graphast.exception.GraphastException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.ints.IntBigArrayBigList;
 import it.unimi.dsi.fastutil.longs.Long2IntMap;
 import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
@@ -150,6 +153,31 @@ public class FileUtils {
 		}
 	}
 
+	public static void saveIntArray(String path, int[] array, int blockSize, CompressionType compressionType) {
+		try {
+			String dir = path.substring(0, path.lastIndexOf("/"));
+			createDir(dir);
+			Channel channel = getOutputChannel(path, compressionType);
+
+			ByteBuffer buf = ByteBuffer.allocate(4 * blockSize);
+			for(int i = 0; i < array.length; i++){
+				buf.putInt(array[i]);
+				if(!buf.hasRemaining()){
+					buf.flip();
+					write(channel, buf);
+					buf.clear();
+				}
+			}
+			if(buf.position() > 0){
+				buf.flip();
+				write(channel, buf);
+			}
+			channel.close();
+		} catch (IOException e) {
+			throw new GraphastException(e.getMessage(), e);
+		}
+	}
+
 	public static void saveShortList(String path, ShortBigArrayBigList list, int blockSize, CompressionType compressionType) {
 		try {
 			String dir = path.substring(0, path.lastIndexOf("/"));
@@ -278,6 +306,50 @@ public class FileUtils {
 		}
 	}
 
+	public static int[] loadIntArray(String path, int blockSize, CompressionType compressionType) {
+		try {
+			IntArrayList list = new IntArrayList();
+			Channel channel = getInputChannel(path, compressionType);
+
+			ByteBuffer buf = ByteBuffer.allocate(4 * blockSize);
+			while (read(channel, buf) > 0) {
+				buf.flip();
+				while (buf.remaining() >= 4) {
+					list.add(buf.getInt());
+				}
+				buf.compact();
+			}
+			channel.close();
+			return list.toIntArray();
+		} catch (IOException e) {
+			throw new GraphastException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Maps into memory, read only, an array saved by {@link #saveIntArray} without
+	 * compression. The array is read from the file as it is used.
+	 */
+	public static IntBuffer mapIntArray(String path) {
+		RandomAccessFile file = null;
+		try {
+			file = new RandomAccessFile(path, "r");
+			FileChannel channel = file.getChannel();
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asIntBuffer();
+		} catch (IOException e) {
+			throw new GraphastException(e.getMessage(), e);
+		} finally {
+			if (file != null) {
+				try {
+					// the mapping stays valid after the file is closed
+					file.close();
+				} catch (IOException e) {
+					throw new GraphastException(e.getMessage(), e);
+				}
+			}
+		}
+	}
+
 	public static ShortBigArrayBigList loadShortList(String path, int blockSize, CompressionType compressionType) {
 		try {
 			ShortBigArrayBigList list = new ShortBigArrayBigList();
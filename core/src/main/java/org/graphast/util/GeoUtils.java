@@ -1,6 +1,14 @@
 package org.graphast.util;
 
+import it.unimi.dsi.fastutil.ints.AbstractIntComparator;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.graphast.geometry.Point;
 import org.graphast.model.Edge;
+import org.graphast.model.Graph;
 import org.graphast.model.GraphBounds;
 import org.graphast.model.Node;
 
@@ -100,4 +108,126 @@ public class GeoUtils {
 		return DistanceUtils.distanceLatLong(start, point)+DistanceUtils.distanceLatLong(point, end)-DistanceUtils.distanceLatLong(start, end)<=0.1;
 	}	
 
+
+	/**
+	 * Encodes the points in the Google encoded polyline format (5 decimal places).
+	 */
+	public static String encodePolyline(List<Point> points) {
+		StringBuilder sb = new StringBuilder();
+		long previousLatitude = 0;
+		long previousLongitude = 0;
+		for (Point point : points) {
+			long latitude = Math.round(point.getLatitude() * 1e5);
+			long longitude = Math.round(point.getLongitude() * 1e5);
+			encodePolylineValue(latitude - previousLatitude, sb);
+			encodePolylineValue(longitude - previousLongitude, sb);
+			previousLatitude = latitude;
+			previousLongitude = longitude;
+		}
+		return sb.toString();
+	}
+
+	private static void encodePolylineValue(long value, StringBuilder sb) {
+		long v = value < 0 ? ~(value << 1) : value << 1;
+		while (v >= 0x20) {
+			sb.append((char) ((0x20 | (v & 0x1f)) + 63));
+			v >>= 5;
+		}
+		sb.append((char) (v + 63));
+	}
+
+	public static List<Point> decodePolyline(String polyline) {
+		List<Point> points = new ArrayList<Point>();
+		int index = 0;
+		long latitude = 0;
+		long longitude = 0;
+		while (index < polyline.length()) {
+			long[] value = new long[2];
+			for (int i = 0; i < 2; i++) {
+				long result = 0;
+				int shift = 0;
+				int b;
+				do {
+					b = polyline.charAt(index++) - 63;
+					result |= (long) (b & 0x1f) << shift;
+					shift += 5;
+				} while (b >= 0x20);
+				value[i] = (result & 1) != 0 ? ~(result >> 1) : result >> 1;
+			}
+			latitude += value[0];
+			longitude += value[1];
+			points.add(new Point(latitude / 1e5, longitude / 1e5));
+		}
+		return points;
+	}
+
+	/**
+	 * Order of the nodes of the graph along a Hilbert curve over their bounding box, so
+	 * nodes close to each other tend to be close in the order.
+	 *
+	 * @return the ids of the nodes, in the order of the curve
+	 */
+	public static int[] hilbertOrder(Graph graph) {
+		int n = (int) graph.getNumberOfNodes();
+		double[] latitudes = new double[n];
+		double[] longitudes = new double[n];
+		double minLatitude = Double.MAX_VALUE, maxLatitude = -Double.MAX_VALUE;
+		double minLongitude = Double.MAX_VALUE, maxLongitude = -Double.MAX_VALUE;
+		for (int v = 0; v < n; v++) {
+			Node node = graph.getNode(v);
+			latitudes[v] = node.getLatitude();
+			longitudes[v] = node.getLongitude();
+			minLatitude = Math.min(minLatitude, latitudes[v]);
+			maxLatitude = Math.max(maxLatitude, latitudes[v]);
+			minLongitude = Math.min(minLongitude, longitudes[v]);
+			maxLongitude = Math.max(maxLongitude, longitudes[v]);
+		}
+
+		int side = 1 << 16;
+		double latitudeScale = (side - 1) / Math.max(maxLatitude - minLatitude, 1e-9);
+		double longitudeScale = (side - 1) / Math.max(maxLongitude - minLongitude, 1e-9);
+		final long[] keys = new long[n];
+		for (int v = 0; v < n; v++) {
+			int x = (int) ((longitudes[v] - minLongitude) * longitudeScale);
+			int y = (int) ((latitudes[v] - minLatitude) * latitudeScale);
+			keys[v] = hilbertIndex(x, y, side);
+		}
+
+		int[] order = new int[n];
+		for (int v = 0; v < n; v++) {
+			order[v] = v;
+		}
+		IntArrays.quickSort(order, new AbstractIntComparator() {
+			@Override
+			public int compare(int a, int b) {
+				return keys[a] < keys[b] ? -1 : keys[a] > keys[b] ? 1 : a - b;
+			}
+		});
+		return order;
+	}
+
+	/**
+	 * Position of the cell (x, y) along a Hilbert curve that fills a square with the given
+	 * side, which must be a power of two.
+	 */
+	public static long hilbertIndex(int x, int y, int side) {
+		long index = 0;
+		for (int s = side / 2; s > 0; s /= 2) {
+			int rx = (x & s) > 0 ? 1 : 0;
+			int ry = (y & s) > 0 ? 1 : 0;
+			index += (long) s * s * ((3 * rx) ^ ry);
+			// rotate the quadrant so the curve continues from the previous one
+			if (ry == 0) {
+				if (rx == 1) {
+					x = s - 1 - x;
+					y = s - 1 - y;
+				}
+				int t = x;
+				x = y;
+				y = t;
+			}
+		}
+		return index;
+	}
+
 }
@@ -75,7 +75,11 @@ public class NumberUtils {
 
 	public static int convertToInt(Object obj){
 		if(obj instanceof Long){
-			return (int) ((long) obj);
+			long number = (long) obj;
+			if(number < Integer.MIN_VALUE || number > Integer.MAX_VALUE){
+				throw new GraphastException(number + " does not fit in an int");
+			}
+			return (int) number;
 		}else if(obj instanceof String){
 			return Integer.parseInt((String) obj);
 		}else{
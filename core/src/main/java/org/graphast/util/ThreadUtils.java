@@ -0,0 +1,76 @@
+package org.graphast.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.graphast.exception.GraphastException;
+
+public class ThreadUtils {
+
+	/**
+	 * Runs the tasks in a pool of the given number of threads, at least one and at most one
+	 * per task, and waits for all of them. If a task fails, its exception is rethrown as the
+	 * cause of a GraphastException.
+	 *
+	 * @param tasks tasks to run
+	 * @param numberOfThreads maximum number of tasks running at the same time
+	 * @return the results of the tasks, in the same order as the tasks
+	 */
+	public static <T> List<T> runAll(List<? extends Callable<T>> tasks, int numberOfThreads) {
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(numberOfThreads, tasks.size())));
+		try {
+			return runAll(tasks, executor);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Same as {@link #runAll(List, int)}, but on an executor that is kept by the caller and
+	 * is not shut down.
+	 */
+	public static <T> List<T> runAll(List<? extends Callable<T>> tasks, ExecutorService executor) {
+		try {
+			List<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
+			for (Callable<T> task : tasks) {
+				futures.add(executor.submit(task));
+			}
+			List<T> results = new ArrayList<T>(tasks.size());
+			for (Future<T> future : futures) {
+				results.add(future.get());
+			}
+			return results;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new GraphastException(e.getMessage(), e);
+		} catch (ExecutionException e) {
+			throw new GraphastException(e.getCause().getMessage(), e.getCause());
+		}
+	}
+
+	/**
+	 * Fixed pool of at least one thread for services that run tasks many times. The threads
+	 * live until the pool is shut down, so state kept per thread is reused between calls,
+	 * and they are daemon threads, so a pool that is not shut down does not keep the JVM
+	 * running.
+	 */
+	public static ExecutorService newFixedPool(int numberOfThreads) {
+		return Executors.newFixedThreadPool(Math.max(1, numberOfThreads), new ThreadFactory() {
+			private ThreadFactory factory = Executors.defaultThreadFactory();
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = factory.newThread(runnable);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+}
@@ -0,0 +1,120 @@
+package org.graphast.knn;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.graphast.config.Configuration;
+import org.graphast.exception.PathNotFoundException;
+import org.graphast.graphgenerator.GraphGeneratorGridTester;
+import org.graphast.model.EdgeImpl;
+import org.graphast.model.GraphBounds;
+import org.graphast.model.GraphImpl;
+import org.graphast.model.Node;
+import org.graphast.model.NodeImpl;
+import org.graphast.query.knn.NearestNeighbor;
+import org.graphast.query.rnn.BatchRNNSearch;
+import org.graphast.query.rnn.RNNBacktrackingSearch;
+import org.graphast.util.DateUtils;
+import org.graphast.util.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class BatchRNNSearchTest {
+
+	private static final String PATH_GRAPH = Configuration.USER_HOME + "/graphast/test/rnnBatch";
+	private static final String PATH_TIE_GRAPH = Configuration.USER_HOME + "/graphast/test/rnnBatchTie";
+
+	private static GraphBounds graph;
+
+	@BeforeClass
+	public static void setUp() {
+		GraphGeneratorGridTester generator = new GraphGeneratorGridTester(PATH_GRAPH, 10, 10, 5);
+		generator.generateGraph();
+		graph = generator.getGraph();
+	}
+
+	@Test
+	public void sameResultAsOneSearchPerCustomerTest() {
+		RNNBacktrackingSearch backtracking = new RNNBacktrackingSearch(graph);
+		BatchRNNSearch batch = new BatchRNNSearch(graph);
+		Date timestamp = DateUtils.parseDate(8, 30, 0);
+
+		for (Date timeout : new Date[] { DateUtils.parseDate(0, 5, 0), DateUtils.parseDate(0, 20, 0) }) {
+			List<Node> customers = new ArrayList<Node>();
+			for (long c = 0; c < graph.getNumberOfNodes(); c += 3) {
+				customers.add(graph.getNode(c));
+			}
+			Map<Long, NearestNeighbor> result = batch.search(customers, timeout, timestamp);
+
+			for (Node customer : customers) {
+				NearestNeighbor expected = null;
+				try {
+					expected = backtracking.search(customer, timeout, timestamp);
+				} catch (PathNotFoundException e) {
+				}
+				NearestNeighbor nn = result.get(customer.getId());
+				if (expected == null) {
+					assertFalse(result.containsKey(customer.getId()));
+				} else {
+					assertEquals(expected.getId(), nn.getId());
+					assertEquals(expected.getTravelTime(), nn.getTravelTime(), 0);
+					assertTrue(graph.isPoi(nn.getId()));
+					assertEquals(nn.getId(), nn.getPath().get(0).longValue());
+					assertEquals(customer.getId().longValue(), nn.getPath().get(nn.getPath().size() - 1).longValue());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Three PoIs reach the customer 0 at the same time, and the customer 4 through it.
+	 */
+	@Test
+	public void tieTest() throws PathNotFoundException {
+		GraphBounds tieGraph = new GraphImpl(PATH_TIE_GRAPH);
+		tieGraph.addNode(new NodeImpl(0l, 1.0d, 0.0d));
+		for (int i = 1; i <= 3; i++) {
+			Node poi = new NodeImpl(i, i, 1.0d);
+			poi.setCategory(i);
+			poi.setLabel("CATEGORY " + i);
+			poi.setCosts(new int[] { 0 });
+			tieGraph.addNode(poi);
+		}
+		tieGraph.addNode(new NodeImpl(4l, 1.0d, -1.0d));
+		int[] costs = new int[24];
+		Arrays.fill(costs, 600000);
+		for (int i = 1; i <= 3; i++) {
+			tieGraph.addEdge(new EdgeImpl(i, 0l, 10, costs));
+		}
+		tieGraph.addEdge(new EdgeImpl(0l, 4l, 10, costs));
+		tieGraph.createBounds();
+
+		RNNBacktrackingSearch backtracking = new RNNBacktrackingSearch(tieGraph);
+		Date timeout = DateUtils.parseDate(0, 30, 0);
+		Date timestamp = DateUtils.parseDate(8, 0, 0);
+		List<Node> customers = Arrays.asList(tieGraph.getNode(0l), tieGraph.getNode(4l));
+		Map<Long, NearestNeighbor> result = new BatchRNNSearch(tieGraph).search(customers, timeout, timestamp);
+		for (Node customer : customers) {
+			NearestNeighbor expected = backtracking.search(customer, timeout, timestamp);
+			NearestNeighbor nn = result.get(customer.getId());
+			assertEquals(expected.getId(), nn.getId());
+			assertEquals(expected.getTravelTime(), nn.getTravelTime(), 0);
+			assertEquals(nn.getId(), nn.getPath().get(0).longValue());
+		}
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		FileUtils.deleteDir(PATH_GRAPH);
+		FileUtils.deleteDir(PATH_TIE_GRAPH);
+	}
+
+}
@@ -0,0 +1,140 @@
+package org.graphast.knn;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.graphast.config.Configuration;
+import org.graphast.enums.GraphBoundsType;
+import org.graphast.graphgenerator.GraphGenerator;
+import org.graphast.model.GraphBounds;
+import org.graphast.query.knn.AbstractBoundsKNN;
+import org.graphast.query.knn.BoundsKNN;
+import org.graphast.query.knn.BoundsKNNTC;
+import org.graphast.query.route.shortestpath.dijkstra.DijkstraGeneric;
+import org.graphast.util.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class BoundsKNNTest {
+
+	private static GraphBounds graphPoI;
+
+	@BeforeClass
+	public static void setUp() {
+		graphPoI = new GraphGenerator().generateExamplePoI();
+		graphPoI.createBounds();
+	}
+
+	@Test
+	public void sameCostsAsSearchFromEachNodeTest() {
+		DijkstraGeneric dijkstra = new DijkstraGeneric(graphPoI);
+		for (GraphBoundsType type : GraphBoundsType.values()) {
+			BoundsKNN bounds = new BoundsKNN(graphPoI, type);
+			for (int v = 0; v < graphPoI.getNumberOfNodes(); v++) {
+				assertEquals(dijkstra.shortestPathPoi(v, -1, type).getCost(), bounds.getCost(v));
+				if (type == GraphBoundsType.NORMAL) {
+					// the distance to the PoI found is the distance of the bound
+					assertEquals(bounds.getCost(v), dijkstra.shortestPath(v).get(bounds.getPoI(v)).intValue());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void categoriesTest() {
+		DijkstraGeneric dijkstra = new DijkstraGeneric(graphPoI);
+		Map<Integer, BoundsKNN> categories = BoundsKNN.createBounds(graphPoI, GraphBoundsType.NORMAL, 2);
+		assertEquals(graphPoI.getCategories().size(), categories.size());
+		for (int category : categories.keySet()) {
+			BoundsKNN bounds = categories.get(category);
+			for (int v = 0; v < graphPoI.getNumberOfNodes(); v++) {
+				assertEquals(dijkstra.shortestPathPoi(v, category, GraphBoundsType.NORMAL).getCost(), bounds.getCost(v));
+				if (bounds.getPoI(v) != -1) {
+					assertEquals(category, graphPoI.getNode(bounds.getPoI(v)).getCategory());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void timeToServiceTest() {
+		BoundsKNNTC bounds = new BoundsKNNTC(graphPoI, GraphBoundsType.NORMAL);
+		DijkstraGeneric dijkstra = new DijkstraGeneric(graphPoI);
+		for (int v = 0; v < graphPoI.getNumberOfNodes(); v++) {
+			int best = Integer.MAX_VALUE;
+			Map<Long, Integer> distances = dijkstra.shortestPath(v);
+			for (long poi : graphPoI.getPoiIds()) {
+				if (distances.containsKey(poi)) {
+					best = Math.min(best, distances.get(poi) + graphPoI.poiGetCost(poi));
+				}
+			}
+			assertEquals(best, bounds.getCost(v));
+		}
+	}
+
+	@Test
+	public void repairTest() {
+		for (GraphBoundsType type : GraphBoundsType.values()) {
+			BoundsKNN bounds = new BoundsKNN(graphPoI, type);
+			BoundsKNN category = new BoundsKNN(graphPoI, type, 2);
+			BoundsKNNTC timeToService = new BoundsKNNTC(graphPoI, type);
+
+			graphPoI.setNodeCategory(4, -1);
+			bounds.removePoI(4);
+			category.removePoI(4);
+			timeToService.removePoI(4);
+			assertSameBounds(new BoundsKNN(graphPoI, type), bounds);
+			assertSameBounds(new BoundsKNN(graphPoI, type, 2), category);
+			assertSameBounds(new BoundsKNNTC(graphPoI, type), timeToService);
+
+			graphPoI.setNodeCategory(4, 2);
+			bounds.addPoI(4);
+			category.addPoI(4);
+			timeToService.addPoI(4);
+			assertSameBounds(new BoundsKNN(graphPoI, type), bounds);
+			assertSameBounds(new BoundsKNN(graphPoI, type, 2), category);
+			assertSameBounds(new BoundsKNNTC(graphPoI, type), timeToService);
+
+			graphPoI.setNodeCategory(1, -1);
+			graphPoI.setNodeCategory(7, 1);
+			bounds.movePoI(1, 7);
+			category.movePoI(1, 7);
+			assertSameBounds(new BoundsKNN(graphPoI, type), bounds);
+			assertSameBounds(new BoundsKNN(graphPoI, type, 2), category);
+
+			graphPoI.setNodeCategory(7, -1);
+			graphPoI.setNodeCategory(1, 1);
+		}
+	}
+
+	private static void assertSameBounds(AbstractBoundsKNN expected, AbstractBoundsKNN actual) {
+		for (int v = 0; v < graphPoI.getNumberOfNodes(); v++) {
+			assertEquals(expected.getCost(v), actual.getCost(v));
+			if (expected.getPoI(v) == -1) {
+				assertEquals(-1, actual.getPoI(v));
+			}
+		}
+	}
+
+	@Test
+	public void saveAndLoadTest() {
+		BoundsKNN bounds = new BoundsKNN(graphPoI, GraphBoundsType.LOWER);
+		bounds.save();
+		BoundsKNN loaded = BoundsKNN.load(graphPoI, GraphBoundsType.LOWER);
+		for (int v = 0; v < graphPoI.getNumberOfNodes(); v++) {
+			assertEquals(bounds.getPoI(v), loaded.getPoI(v));
+			assertEquals(bounds.getCost(v), loaded.getCost(v));
+		}
+		assertArrayEquals(bounds.getBounds().get(3L).toArray(), loaded.getBounds().get(3L).toArray());
+	}
+
+	@AfterClass
+	public static void shutdown() throws IOException {
+		FileUtils.deleteDir(Configuration.USER_HOME + "/graphast/test/examplePoI");
+	}
+
+}
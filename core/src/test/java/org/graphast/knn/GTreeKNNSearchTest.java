@@ -0,0 +1,118 @@
+package org.graphast.knn;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.graphast.config.Configuration;
+import org.graphast.enums.GraphBoundsType;
+import org.graphast.graphgenerator.GraphGenerator;
+import org.graphast.model.CompactGraph;
+import org.graphast.model.GraphBounds;
+import org.graphast.partition.CoordinatePartitioner;
+import org.graphast.partition.TopologicalPartitioner;
+import org.graphast.query.knn.GTree;
+import org.graphast.query.knn.GTreeKNNSearch;
+import org.graphast.query.knn.NearestNeighbor;
+import org.graphast.query.route.shortestpath.dijkstra.DijkstraCompact;
+import org.graphast.util.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class GTreeKNNSearchTest {
+
+	private static GraphBounds graphPoI;
+
+	@BeforeClass
+	public static void setUp() {
+		graphPoI = new GraphGenerator().generateExamplePoI();
+		graphPoI.createBounds();
+	}
+
+	@Test
+	public void sameCostsAsDijkstraTest() {
+		for (GraphBoundsType type : GraphBoundsType.values()) {
+			GTree tree = GTree.create(graphPoI, type, new CoordinatePartitioner(), 2, 2, 2);
+			assertTrue(tree.getNumberOfTreeNodes() > 1);
+			check(tree, type, -1);
+			for (int category : graphPoI.getCategories()) {
+				check(tree, type, category);
+			}
+		}
+	}
+
+	@Test
+	public void rangeSearchTest() {
+		GTree tree = GTree.create(graphPoI, GraphBoundsType.NORMAL, new TopologicalPartitioner(), 3, 3, 1);
+		GTreeKNNSearch search = new GTreeKNNSearch(tree);
+		for (int v = 0; v < graphPoI.getNumberOfNodes(); v++) {
+			List<Integer> expected = poiCosts(GraphBoundsType.NORMAL, v, -1);
+			int radius = expected.isEmpty() ? 0 : expected.get(expected.size() / 2);
+			List<NearestNeighbor> result = search.rangeSearch(graphPoI.getNode(v), radius);
+			int inRange = 0;
+			for (int cost : expected) {
+				if (cost <= radius) {
+					inRange++;
+				}
+			}
+			assertEquals(inRange, result.size());
+			for (NearestNeighbor nn : result) {
+				assertTrue(nn.getDistance() <= radius);
+			}
+		}
+	}
+
+	@Test
+	public void saveAndLoadTest() {
+		GTree tree = GTree.create(graphPoI, GraphBoundsType.LOWER, new TopologicalPartitioner(), 2, 3, 2);
+		tree.save();
+		GTree loaded = GTree.load(graphPoI, GraphBoundsType.LOWER);
+		assertEquals(tree.getNumberOfTreeNodes(), loaded.getNumberOfTreeNodes());
+		for (int v = 0; v < graphPoI.getNumberOfNodes(); v++) {
+			assertEquals(tree.getLeaf(v), loaded.getLeaf(v));
+		}
+		check(loaded, GraphBoundsType.LOWER, -1);
+	}
+
+	private void check(GTree tree, GraphBoundsType type, int category) {
+		GTreeKNNSearch search = new GTreeKNNSearch(tree, category);
+		for (int v = 0; v < graphPoI.getNumberOfNodes(); v++) {
+			List<Integer> expected = poiCosts(type, v, category);
+			for (int k = 1; k <= expected.size() + 1; k++) {
+				List<NearestNeighbor> result = search.search(graphPoI.getNode(v), null, k);
+				assertEquals(Math.min(k, expected.size()), result.size());
+				for (int i = 0; i < result.size(); i++) {
+					assertEquals(expected.get(i).intValue(), result.get(i).getDistance());
+					if (category != -1) {
+						assertEquals(category, graphPoI.getNode(result.get(i).getId()).getCategory());
+					}
+				}
+			}
+		}
+	}
+
+	private List<Integer> poiCosts(GraphBoundsType type, int v, int category) {
+		DijkstraCompact dijkstra = new DijkstraCompact(new CompactGraph(graphPoI), CompactGraph.getEdgeCosts(graphPoI, type));
+		int[] costs = dijkstra.run(v, false);
+		List<Integer> result = new ArrayList<Integer>();
+		for (int u = 0; u < graphPoI.getNumberOfNodes(); u++) {
+			int c = graphPoI.getNode(u).getCategory();
+			if (costs[u] != DijkstraCompact.INFINITY && c >= 0 && (category == -1 || c == category)) {
+				result.add(costs[u]);
+			}
+		}
+		Collections.sort(result);
+		return result;
+	}
+
+	@AfterClass
+	public static void shutdown() throws IOException {
+		FileUtils.deleteDir(Configuration.USER_HOME + "/graphast/test/examplePoI");
+	}
+
+}
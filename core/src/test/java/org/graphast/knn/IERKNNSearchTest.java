@@ -0,0 +1,94 @@
+package org.graphast.knn;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.graphast.config.Configuration;
+import org.graphast.exception.PathNotFoundException;
+import org.graphast.graphgenerator.GraphGenerator;
+import org.graphast.model.Edge;
+import org.graphast.model.GraphBounds;
+import org.graphast.query.knn.IERKNNSearch;
+import org.graphast.query.knn.NearestNeighbor;
+import org.graphast.query.route.shortestpath.dijkstra.DijkstraLinearFunction;
+import org.graphast.util.DateUtils;
+import org.graphast.util.DistanceUtils;
+import org.graphast.util.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class IERKNNSearchTest {
+
+	private static GraphBounds graphPoI;
+	private static double maxSpeed;
+
+	@BeforeClass
+	public static void setUp() {
+		graphPoI = new GraphGenerator().generateExamplePoI();
+		graphPoI.createBounds();
+
+		// the speed of the fastest edge keeps the straight line distance a lower bound of the cost
+		for (int e = 0; e < graphPoI.getNumberOfEdges(); e++) {
+			Edge edge = graphPoI.getEdge(e);
+			double meters = DistanceUtils.distanceLatLong(graphPoI.getNode(edge.getFromNode()), graphPoI.getNode(edge.getToNode()));
+			maxSpeed = Math.max(maxSpeed, meters / Math.max(graphPoI.getEdgeLowerCost(e), 1));
+		}
+	}
+
+	@Test
+	public void sameCostsAsSearchToEachPoITest() {
+		Date[] times = { DateUtils.parseDate(0, 0, 0), DateUtils.parseDate(8, 15, 0) };
+		DijkstraLinearFunction dijkstra = new DijkstraLinearFunction(graphPoI);
+		List<Integer> categories = new ArrayList<Integer>(graphPoI.getCategories());
+		categories.add(-1);
+
+		for (Date time : times) {
+			for (int v = 0; v < graphPoI.getNumberOfNodes(); v++) {
+				Map<Long, Integer> costs = new HashMap<Long, Integer>();
+				for (long poi : graphPoI.getPoiIds()) {
+					try {
+						costs.put(poi, (int) dijkstra.shortestPath(v, poi, time).getTotalCost());
+					} catch (PathNotFoundException e) {
+					}
+				}
+
+				for (int category : categories) {
+					IERKNNSearch search = new IERKNNSearch(graphPoI, dijkstra, category, maxSpeed);
+					List<Integer> expected = new ArrayList<Integer>();
+					for (long poi : costs.keySet()) {
+						if (category == -1 || graphPoI.getNode(poi).getCategory() == category) {
+							expected.add(costs.get(poi));
+						}
+					}
+					Collections.sort(expected);
+
+					for (int k = 1; k <= expected.size() + 1; k++) {
+						List<NearestNeighbor> result = search.search(graphPoI.getNode(v), time, k);
+						assertEquals(Math.min(k, expected.size()), result.size());
+						for (int i = 0; i < result.size(); i++) {
+							NearestNeighbor nn = result.get(i);
+							assertEquals(expected.get(i).intValue(), nn.getDistance());
+							assertEquals(costs.get(nn.getId()).intValue(), nn.getDistance());
+							assertEquals(v, nn.getPath().get(0).longValue());
+							assertEquals(nn.getId(), nn.getPath().get(nn.getPath().size() - 1).longValue());
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@AfterClass
+	public static void shutdown() throws IOException {
+		FileUtils.deleteDir(Configuration.USER_HOME + "/graphast/test/examplePoI");
+	}
+
+}
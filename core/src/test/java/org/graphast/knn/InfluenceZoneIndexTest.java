@@ -0,0 +1,124 @@
+package org.graphast.knn;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.graphast.config.Configuration;
+import org.graphast.enums.GraphBoundsType;
+import org.graphast.graphgenerator.GraphGenerator;
+import org.graphast.model.GraphBounds;
+import org.graphast.query.knn.BoundsKNN;
+import org.graphast.query.knn.InfluenceZoneIndex;
+import org.graphast.util.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class InfluenceZoneIndexTest {
+
+	private static final GraphBoundsType[] TYPES = { GraphBoundsType.LOWER, GraphBoundsType.UPPER };
+
+	private GraphBounds graphPoI;
+
+	@Before
+	public void setUp() {
+		graphPoI = new GraphGenerator().generateExamplePoI();
+		graphPoI.createBounds();
+	}
+
+	@Test
+	public void zonesTest() {
+		InfluenceZoneIndex index = new InfluenceZoneIndex(graphPoI);
+		checkIndex(index);
+		for (int category : graphPoI.getCategories()) {
+			checkIndex(new InfluenceZoneIndex(graphPoI, category));
+		}
+	}
+
+	@Test
+	public void addAndRemovePoITest() {
+		InfluenceZoneIndex index = new InfluenceZoneIndex(graphPoI);
+		int category = graphPoI.getCategories().iterator().next();
+
+		for (long v = 0; v < graphPoI.getNumberOfNodes(); v += 3) {
+			if (graphPoI.isPoi(v)) {
+				index.removePoI(v);
+			} else {
+				index.addPoI(v, category);
+			}
+			checkIndex(index);
+		}
+	}
+
+	@Test
+	public void changeCategoryOfPoITest() {
+		int[] categories = graphPoI.getCategories().toIntArray();
+		assertTrue(categories.length > 1);
+		InfluenceZoneIndex index = new InfluenceZoneIndex(graphPoI, categories[0]);
+
+		for (long poi : graphPoI.getPoiIds()) {
+			if (graphPoI.getNode(poi).getCategory() == categories[0]) {
+				index.addPoI(poi, categories[1]);
+				checkIndex(index);
+				for (GraphBoundsType type : TYPES) {
+					assertEquals(0, index.getZoneSize(poi, type));
+				}
+
+				index.addPoI(poi, categories[0]);
+				checkIndex(index);
+				break;
+			}
+		}
+	}
+
+	private void checkIndex(InfluenceZoneIndex index) {
+		for (GraphBoundsType type : TYPES) {
+			BoundsKNN bounds = new BoundsKNN(graphPoI, type, index.getCategory());
+			int covered = 0;
+			double share = 0;
+			int[] zoneOf = new int[(int) graphPoI.getNumberOfNodes()];
+			for (int v = 0; v < zoneOf.length; v++) {
+				zoneOf[v] = -1;
+				assertEquals(bounds.getCost(v), index.getCost(v, type));
+				if (index.getNearestPoI(v, type) != -1) {
+					covered++;
+				}
+			}
+
+			for (long poi : graphPoI.getPoiIds()) {
+				int[] zone = index.getZone(poi, type);
+				assertEquals(zone.length, index.getZoneSize(poi, type));
+				share += index.getMarketShare(poi, type);
+				for (int v : zone) {
+					assertEquals(-1, zoneOf[v]);
+					zoneOf[v] = (int) poi;
+					assertEquals(poi, index.getNearestPoI(v, type));
+				}
+
+				// runs are sorted, disjoint and not adjacent
+				int[] runs = index.getRuns(poi, type);
+				for (int i = 0; i < runs.length; i += 2) {
+					assertTrue(runs[i] < runs[i + 1]);
+					if (i > 0) {
+						assertTrue(runs[i - 1] < runs[i]);
+					}
+				}
+			}
+
+			for (int v = 0; v < zoneOf.length; v++) {
+				assertEquals(index.getNearestPoI(v, type), zoneOf[v]);
+			}
+			if (covered > 0) {
+				assertEquals(1, share, 1e-9);
+			}
+		}
+	}
+
+	@After
+	public void shutdown() throws IOException {
+		FileUtils.deleteDir(Configuration.USER_HOME + "/graphast/test/examplePoI");
+	}
+
+}
@@ -0,0 +1,193 @@
+package org.graphast.knn;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.graphast.config.Configuration;
+import org.graphast.exception.PathNotFoundException;
+import org.graphast.graphgenerator.GraphGenerator;
+import org.graphast.model.Edge;
+import org.graphast.model.GraphBounds;
+import org.graphast.query.knn.MovingObjectIndex;
+import org.graphast.query.knn.MovingObjectKNNSearch;
+import org.graphast.query.knn.NearestNeighbor;
+import org.graphast.query.rnn.MovingObjectRNNSearch;
+import org.graphast.query.route.shortestpath.dijkstra.DijkstraLinearFunction;
+import org.graphast.util.DateUtils;
+import org.graphast.util.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class MovingObjectIndexTest {
+
+	private static GraphBounds graphPoI;
+
+	@BeforeClass
+	public static void setUp() {
+		graphPoI = new GraphGenerator().generateExamplePoI();
+	}
+
+	@Test
+	public void updateTest() throws InterruptedException {
+		final MovingObjectIndex index = new MovingObjectIndex(graphPoI, 100);
+		index.update(7, 3, 0.25);
+		assertEquals(3, index.getEdge(7));
+		assertEquals(0.25, index.getOffset(7), 0);
+		index.remove(7);
+		assertFalse(index.contains(7));
+		assertEquals(-1, index.getEdge(7));
+
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < 4; t++) {
+			final int thread = t;
+			threads.add(new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 10000; i++) {
+						int object = (i * 4 + thread) % 100;
+						index.update(object, i % graphPoI.getNumberOfEdges(), (i % 5) / 4.0);
+					}
+				}
+			});
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(100, index.snapshot().size());
+		for (int object = 0; object < 100; object++) {
+			assertEquals(0, index.getOffset(object) * 4 % 1, 0);
+		}
+	}
+
+	@Test
+	public void knnTest() throws PathNotFoundException {
+		Date time = DateUtils.parseDate(8, 15, 0);
+		MovingObjectIndex index = createIndex();
+		MovingObjectKNNSearch search = new MovingObjectKNNSearch(index);
+		DijkstraLinearFunction dijkstra = new DijkstraLinearFunction(graphPoI);
+
+		for (int v = 0; v < graphPoI.getNumberOfNodes(); v++) {
+			List<Integer> expected = new ArrayList<Integer>();
+			for (int object = 0; object < index.getCapacity(); object++) {
+				long start = graphPoI.getEdge(index.getEdge(object)).getFromNode();
+				try {
+					expected.add(start == v ? 0 : (int) dijkstra.shortestPath(v, start, time).getTotalCost());
+				} catch (PathNotFoundException e) {
+				}
+			}
+			Collections.sort(expected);
+
+			List<NearestNeighbor> result = search.search(graphPoI.getNode(v), time, 3);
+			assertEquals(Math.min(3, expected.size()), result.size());
+			for (int i = 0; i < result.size(); i++) {
+				assertEquals(expected.get(i).intValue(), result.get(i).getDistance());
+				assertEquals(v, result.get(i).getPath().get(0).longValue());
+			}
+		}
+
+		// halfway along an edge that starts at the query
+		Edge edge = graphPoI.getEdge(0);
+		index = new MovingObjectIndex(graphPoI, 1);
+		index.update(0, 0, 0.5);
+		int cost = graphPoI.getEdgeCost(edge, DateUtils.dateToMilli(time));
+		NearestNeighbor nn = new MovingObjectKNNSearch(index).search(graphPoI.getNode(edge.getFromNode()), time, 1).get(0);
+		assertEquals(Math.round(cost * 0.5), nn.getDistance());
+	}
+
+	@Test
+	public void rnnTest() throws PathNotFoundException {
+		Date timeout = DateUtils.parseDate(23, 59, 59);
+		Date timestamp = DateUtils.parseDate(8, 15, 0);
+		MovingObjectIndex index = createIndex();
+		MovingObjectRNNSearch search = new MovingObjectRNNSearch(index);
+		DijkstraLinearFunction dijkstra = new DijkstraLinearFunction(graphPoI);
+
+		for (int customer = 0; customer < graphPoI.getNumberOfNodes(); customer++) {
+			int expected = Integer.MAX_VALUE;
+			for (int object = 0; object < index.getCapacity(); object++) {
+				long start = graphPoI.getEdge(index.getEdge(object)).getFromNode();
+				try {
+					expected = Math.min(expected, start == customer ? 0
+							: (int) dijkstra.shortestPath(start, customer, timestamp).getTotalCost());
+				} catch (PathNotFoundException e) {
+				}
+			}
+			NearestNeighbor nn = search.search(graphPoI.getNode(customer), timeout, timestamp);
+			assertEquals(expected * Math.pow(10, 6), nn.getTravelTime(), 0);
+			assertEquals(customer, nn.getPath().get(nn.getPath().size() - 1).longValue());
+		}
+	}
+
+	@Test
+	public void rnnInsideEdgesTest() throws PathNotFoundException {
+		Date timeout = DateUtils.parseDate(23, 59, 59);
+		Date timestamp = DateUtils.parseDate(8, 15, 0);
+		int departure = DateUtils.dateToMilli(timestamp);
+		int[] edges = { 0, 5, 9 };
+		double[] offsets = { 0.25, 0.5, 0.75 };
+		MovingObjectIndex index = new MovingObjectIndex(graphPoI, edges.length);
+		for (int i = 0; i < edges.length; i++) {
+			index.update(i, edges[i], offsets[i]);
+		}
+		MovingObjectRNNSearch search = new MovingObjectRNNSearch(index);
+		DijkstraLinearFunction dijkstra = new DijkstraLinearFunction(graphPoI);
+
+		for (int customer = 0; customer < graphPoI.getNumberOfNodes(); customer++) {
+			int expected = Integer.MAX_VALUE;
+			for (int i = 0; i < edges.length; i++) {
+				// the object leaves its edge after the rest of it, at its to node
+				Edge edge = graphPoI.getEdge(edges[i]);
+				int remaining = (int) Math.round((1 - offsets[i]) * graphPoI.getEdgeCost(edge, departure));
+				try {
+					expected = Math.min(expected, edge.getToNode() == customer ? remaining : remaining
+							+ (int) dijkstra.shortestPath(edge.getToNode(), customer, new Date(timestamp.getTime() + remaining)).getTotalCost());
+				} catch (PathNotFoundException e) {
+				}
+			}
+			if (expected == Integer.MAX_VALUE) {
+				continue;
+			}
+			NearestNeighbor nn = search.search(graphPoI.getNode(customer), timeout, timestamp);
+			assertEquals(expected * Math.pow(10, 6), nn.getTravelTime(), 0);
+		}
+
+		// both objects reach the end of the edge, the one further along it first
+		Edge edge = graphPoI.getEdge(0);
+		int cost = graphPoI.getEdgeCost(edge, departure);
+		index = new MovingObjectIndex(graphPoI, 2);
+		index.update(0, 0, 0.25);
+		index.update(1, 0, 0.75);
+		NearestNeighbor nn = new MovingObjectRNNSearch(index).search(graphPoI.getNode(edge.getToNode()), timeout, timestamp);
+		assertEquals(1, nn.getId());
+		assertEquals(Math.round(cost * 0.25) * Math.pow(10, 6), nn.getTravelTime(), 0);
+		assertEquals(edge.getToNode(), nn.getPath().get(0).longValue());
+	}
+
+	/**
+	 * One object at the start of some of the edges.
+	 */
+	private static MovingObjectIndex createIndex() {
+		int[] edges = { 0, 5, 9 };
+		MovingObjectIndex index = new MovingObjectIndex(graphPoI, edges.length);
+		for (int i = 0; i < edges.length; i++) {
+			index.update(i, edges[i], 0);
+		}
+		return index;
+	}
+
+	@AfterClass
+	public static void shutdown() throws IOException {
+		FileUtils.deleteDir(Configuration.USER_HOME + "/graphast/test/examplePoI");
+	}
+
+}
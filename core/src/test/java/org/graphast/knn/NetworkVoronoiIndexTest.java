@@ -0,0 +1,188 @@
+package org.graphast.knn;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.graphast.config.Configuration;
+import org.graphast.enums.GraphBoundsType;
+import org.graphast.graphgenerator.GraphGenerator;
+import org.graphast.model.CompactGraph;
+import org.graphast.model.Edge;
+import org.graphast.model.GraphBounds;
+import org.graphast.query.knn.BoundsKNN;
+import org.graphast.query.knn.NearestNeighbor;
+import org.graphast.query.knn.NetworkVoronoiIndex;
+import org.graphast.query.knn.VoronoiDiagram;
+import org.graphast.query.knn.VoronoiKNNSearch;
+import org.graphast.query.route.shortestpath.dijkstra.DijkstraCompact;
+import org.graphast.util.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class NetworkVoronoiIndexTest {
+
+	private static GraphBounds graphPoI;
+	private static NetworkVoronoiIndex index;
+
+	@BeforeClass
+	public static void setUp() {
+		graphPoI = new GraphGenerator().generateExamplePoI();
+		graphPoI.createBounds();
+		index = new NetworkVoronoiIndex(graphPoI, 4);
+		index.createIndex(2);
+	}
+
+	@Test
+	public void sameNearestPoIAsBoundsTest() {
+		for (GraphBoundsType type : new GraphBoundsType[] { GraphBoundsType.LOWER, GraphBoundsType.UPPER }) {
+			BoundsKNN all = new BoundsKNN(graphPoI, type);
+			for (int v = 0; v < graphPoI.getNumberOfNodes(); v++) {
+				assertEquals(all.getCost(v), index.getCost(-1, v, type));
+			}
+			for (int category : graphPoI.getCategories()) {
+				BoundsKNN bounds = new BoundsKNN(graphPoI, type, category);
+				for (int v = 0; v < graphPoI.getNumberOfNodes(); v++) {
+					assertEquals(bounds.getCost(v), index.getCost(category, v, type));
+					int poi = index.getNearestPoI(category, v, type);
+					if (poi != -1) {
+						assertEquals(category, graphPoI.getNode(poi).getCategory());
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void timeSlotsTest() {
+		for (int time = 0; time < graphPoI.getMaxTime(); time += graphPoI.getMaxTime() / 8) {
+			for (int v = 0; v < graphPoI.getNumberOfNodes(); v++) {
+				int cost = index.getCost(-1, v, time);
+				if (cost != Integer.MAX_VALUE) {
+					assertTrue(cost >= index.getCost(-1, v, GraphBoundsType.LOWER));
+					assertTrue(cost <= index.getCost(-1, v, GraphBoundsType.UPPER));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void borderEdgesTest() {
+		VoronoiDiagram diagram = index.getDiagram(-1, GraphBoundsType.LOWER);
+		int borderEdges = 0;
+		for (int e = 0; e < graphPoI.getNumberOfEdges(); e++) {
+			Edge edge = graphPoI.getEdge(e);
+			int from = diagram.getGenerator(edge.getFromNode());
+			int to = diagram.getGenerator(edge.getToNode());
+			if (from != -1 && to != -1 && from != to) {
+				borderEdges++;
+				assertTrue(contains(diagram.getAdjacentGenerators(from), to));
+				assertTrue(contains(diagram.getAdjacentGenerators(to), from));
+			}
+		}
+		assertEquals(borderEdges, diagram.getBorderEdges().length);
+
+		for (int v = 0; v < graphPoI.getNumberOfNodes(); v++) {
+			int generator = diagram.getGenerator(v);
+			if (generator != -1) {
+				assertArrayEquals(new int[] { generator }, diagram.getCandidates(v, 1));
+				int[] candidates = diagram.getCandidates(v, 2);
+				assertEquals(1 + diagram.getAdjacentGenerators(generator).length, candidates.length);
+				for (int adjacent : diagram.getAdjacentGenerators(generator)) {
+					assertNotEquals(generator, adjacent);
+					assertTrue(contains(candidates, adjacent));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void knnSearchTest() {
+		List<Integer> categories = new ArrayList<Integer>();
+		categories.add(-1);
+		categories.addAll(graphPoI.getCategories());
+		for (GraphBoundsType type : new GraphBoundsType[] { GraphBoundsType.LOWER, GraphBoundsType.UPPER }) {
+			for (int category : categories) {
+				BoundsKNN bounds = new BoundsKNN(graphPoI, type, category);
+				VoronoiKNNSearch search = new VoronoiKNNSearch(index, category, type);
+				for (int v = 0; v < graphPoI.getNumberOfNodes(); v++) {
+					List<NearestNeighbor> nearest = search.search(graphPoI.getNode(v), null, 1);
+					if (bounds.getCost(v) == Integer.MAX_VALUE) {
+						assertTrue(nearest.isEmpty());
+					} else {
+						assertEquals(bounds.getCost(v), nearest.get(0).getDistance());
+					}
+
+					List<Integer> expected = poiCosts(type, v, category);
+					for (int k = 1; k <= expected.size() + 1; k++) {
+						List<NearestNeighbor> result = search.search(graphPoI.getNode(v), null, k);
+						assertEquals(Math.min(k, expected.size()), result.size());
+						for (int i = 0; i < result.size(); i++) {
+							assertEquals(expected.get(i).intValue(), result.get(i).getDistance());
+							if (category != -1) {
+								assertEquals(category, graphPoI.getNode(result.get(i).getId()).getCategory());
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void saveAndLoadTest() {
+		index.save();
+		NetworkVoronoiIndex loaded = NetworkVoronoiIndex.load(graphPoI);
+		assertEquals(index.getNumberOfTimeSlots(), loaded.getNumberOfTimeSlots());
+		for (int v = 0; v < graphPoI.getNumberOfNodes(); v++) {
+			assertEquals(index.getNearestPoI(-1, v, GraphBoundsType.UPPER), loaded.getNearestPoI(-1, v, GraphBoundsType.UPPER));
+			assertEquals(index.getCost(-1, v, 0), loaded.getCost(-1, v, 0));
+			for (int category : graphPoI.getCategories()) {
+				assertEquals(index.getNearestPoI(category, v, GraphBoundsType.LOWER),
+						loaded.getNearestPoI(category, v, GraphBoundsType.LOWER));
+			}
+		}
+		VoronoiDiagram diagram = index.getDiagram(-1, GraphBoundsType.LOWER);
+		VoronoiDiagram loadedDiagram = loaded.getDiagram(-1, GraphBoundsType.LOWER);
+		assertArrayEquals(diagram.getBorderEdges(), loadedDiagram.getBorderEdges());
+		for (int v = 0; v < graphPoI.getNumberOfNodes(); v++) {
+			assertArrayEquals(diagram.getCandidates(v, 3), loadedDiagram.getCandidates(v, 3));
+		}
+	}
+
+	private List<Integer> poiCosts(GraphBoundsType type, int v, int category) {
+		DijkstraCompact dijkstra = new DijkstraCompact(new CompactGraph(graphPoI), CompactGraph.getEdgeCosts(graphPoI, type));
+		int[] costs = dijkstra.run(v, false);
+		List<Integer> result = new ArrayList<Integer>();
+		for (int u = 0; u < graphPoI.getNumberOfNodes(); u++) {
+			int c = graphPoI.getNode(u).getCategory();
+			if (costs[u] != DijkstraCompact.INFINITY && c >= 0 && (category == -1 || c == category)) {
+				result.add(costs[u]);
+			}
+		}
+		Collections.sort(result);
+		return result;
+	}
+
+	private static boolean contains(int[] array, int value) {
+		for (int a : array) {
+			if (a == value) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@AfterClass
+	public static void shutdown() throws IOException {
+		FileUtils.deleteDir(Configuration.USER_HOME + "/graphast/test/examplePoI");
+	}
+
+}
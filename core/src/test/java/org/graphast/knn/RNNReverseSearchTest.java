@@ -0,0 +1,139 @@
+package org.graphast.knn;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.graphast.config.Configuration;
+import org.graphast.exception.PathNotFoundException;
+import org.graphast.graphgenerator.GraphGeneratorGridTester;
+import org.graphast.model.GraphBounds;
+import org.graphast.query.knn.NearestNeighbor;
+import org.graphast.query.rnn.RNNBacktrackingSearch;
+import org.graphast.query.rnn.RNNReverseSearch;
+import org.graphast.query.route.shortestpath.dijkstra.DijkstraLinearFunction;
+import org.graphast.util.DateUtils;
+import org.graphast.util.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class RNNReverseSearchTest {
+
+	private static final String PATH_GRAPH = Configuration.USER_HOME + "/graphast/test/rnnReverse";
+	private static final String PATH_COMPARATOR_GRAPH = Configuration.USER_HOME + "/graphast/test/rnnReverseComparator";
+
+	private static GraphBounds graph;
+	private static Date[] timestamps = { DateUtils.parseDate(0, 0, 0), DateUtils.parseDate(8, 30, 0) };
+	private static Date[] timeouts = { DateUtils.parseDate(0, 5, 0), DateUtils.parseDate(0, 20, 0) };
+
+	@BeforeClass
+	public static void setUp() {
+		GraphGeneratorGridTester generator = new GraphGeneratorGridTester(PATH_GRAPH, 12, 12, 5);
+		generator.generateGraph();
+		graph = generator.getGraph();
+	}
+
+	@Test
+	public void sameResultAsBacktrackingTest() {
+		RNNBacktrackingSearch backtracking = new RNNBacktrackingSearch(graph);
+		RNNReverseSearch reverse = new RNNReverseSearch(graph);
+		int found = 0;
+
+		for (Date timestamp : timestamps) {
+			for (Date timeout : timeouts) {
+				for (long customer = 0; customer < graph.getNumberOfNodes(); customer += 7) {
+					NearestNeighbor expected = null;
+					try {
+						expected = backtracking.search(graph.getNode(customer), timeout, timestamp);
+					} catch (PathNotFoundException e) {
+					}
+					try {
+						NearestNeighbor nn = reverse.search(graph.getNode(customer), timeout, timestamp);
+						assertTrue(expected != null);
+						found++;
+						assertEquals(expected.getId(), nn.getId());
+						assertEquals(expected.getTravelTime(), nn.getTravelTime(), 0);
+						assertEquals(nn.getId(), nn.getPath().get(0).longValue());
+						assertEquals(customer, nn.getPath().get(nn.getPath().size() - 1).longValue());
+					} catch (PathNotFoundException e) {
+						assertEquals(null, expected);
+					}
+				}
+			}
+		}
+		assertTrue(found > 0);
+	}
+
+	/**
+	 * Grid, PoIs, customer and times of RNNComparatorTest.
+	 */
+	@Test
+	public void sameResultOnComparatorGraphTest() {
+		GraphGeneratorGridTester generator = new GraphGeneratorGridTester(PATH_COMPARATOR_GRAPH, 32, 32, 1d);
+		generator.generateGraph();
+		GraphBounds comparatorGraph = generator.getGraph();
+		Date timeout = DateUtils.parseDate(0, 20, 0);
+		Date timestamp = DateUtils.parseDate(0, 0, 0);
+
+		RNNBacktrackingSearch backtracking = new RNNBacktrackingSearch(comparatorGraph);
+		RNNReverseSearch reverse = new RNNReverseSearch(comparatorGraph);
+		for (long customer = 0; customer < comparatorGraph.getNumberOfNodes(); customer += 31) {
+			NearestNeighbor expected = null;
+			try {
+				expected = backtracking.search(comparatorGraph.getNode(customer), timeout, timestamp);
+			} catch (PathNotFoundException e) {
+			}
+			try {
+				NearestNeighbor nn = reverse.search(comparatorGraph.getNode(customer), timeout, timestamp);
+				assertTrue(expected != null);
+				assertEquals(expected.getId(), nn.getId());
+				assertEquals(expected.getTravelTime(), nn.getTravelTime(), 0);
+			} catch (PathNotFoundException e) {
+				assertEquals(null, expected);
+			}
+		}
+	}
+
+	@Test
+	public void topKTest() {
+		DijkstraLinearFunction dijkstra = new DijkstraLinearFunction(graph);
+		RNNReverseSearch reverse = new RNNReverseSearch(graph);
+		Date timestamp = timestamps[1];
+		Date timeout = timeouts[1];
+		int maxTravelTime = DateUtils.dateToMilli(timeout);
+
+		for (long customer = 0; customer < graph.getNumberOfNodes(); customer += 11) {
+			List<Double> expected = new ArrayList<Double>();
+			for (long poi : graph.getPoiIds()) {
+				try {
+					double cost = dijkstra.shortestPath(poi, customer, timestamp).getTotalCost();
+					if (cost <= maxTravelTime) {
+						expected.add(cost * Math.pow(10, 6));
+					}
+				} catch (PathNotFoundException e) {
+				}
+			}
+			Collections.sort(expected);
+
+			for (int k = 1; k <= 3; k++) {
+				List<NearestNeighbor> result = reverse.search(graph.getNode(customer), timeout, timestamp, k);
+				assertEquals(Math.min(k, expected.size()), result.size());
+				for (int i = 0; i < result.size(); i++) {
+					assertEquals(expected.get(i), result.get(i).getTravelTime(), 0);
+				}
+			}
+		}
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		FileUtils.deleteDir(PATH_GRAPH);
+		FileUtils.deleteDir(PATH_COMPARATOR_GRAPH);
+	}
+
+}
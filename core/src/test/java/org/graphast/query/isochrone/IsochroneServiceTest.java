@@ -0,0 +1,105 @@
+package org.graphast.query.isochrone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+import java.util.List;
+
+import org.graphast.config.Configuration;
+import org.graphast.exception.PathNotFoundException;
+import org.graphast.graphgenerator.GraphGenerator;
+import org.graphast.model.Graph;
+import org.graphast.query.route.shortestpath.dijkstra.DijkstraLinearFunction;
+import org.graphast.util.DateUtils;
+import org.graphast.util.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class IsochroneServiceTest {
+
+	private static final int MAX_TRAVEL_TIME = DateUtils.minToMilli(40);
+
+	private static Graph graph;
+	private static IsochroneService service;
+
+	@BeforeClass
+	public static void setup() {
+		graph = new GraphGenerator().generateExamplePoI();
+		service = new IsochroneService(graph, 2);
+	}
+
+	@Test
+	public void forwardIsochroneTest() {
+		DijkstraLinearFunction dijkstra = new DijkstraLinearFunction(graph);
+		Date time = DateUtils.parseDate(8, 0, 0);
+
+		for (long origin = 0; origin < graph.getNumberOfNodes(); origin++) {
+			Isochrone isochrone = service.isochrone(origin, time, MAX_TRAVEL_TIME, false);
+			for (long v = 0; v < graph.getNumberOfNodes(); v++) {
+				int expected = Integer.MAX_VALUE;
+				try {
+					expected = (int) dijkstra.shortestPath(origin, v, time).getTotalCost();
+				} catch (PathNotFoundException e) {
+				}
+				if (expected <= MAX_TRAVEL_TIME) {
+					assertEquals(expected, isochrone.getTravelTimes().get(v));
+				} else {
+					assertFalse(isochrone.isReached(v));
+				}
+			}
+			for (PartialEdge edge : isochrone.getPartialEdges()) {
+				assertTrue(isochrone.isReached(graph.getEdge(edge.getEdgeId()).getFromNode()));
+				assertTrue(edge.getFraction() >= 0 && edge.getFraction() < 1);
+			}
+			for (Integer category : isochrone.getPoisByCategory().keySet()) {
+				for (long poi : isochrone.getPoisByCategory().get(category)) {
+					assertEquals((int) category, graph.getPoi(poi).getCategory());
+					assertTrue(isochrone.isReached(poi));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void reverseIsochroneTest() {
+		DijkstraLinearFunction dijkstra = new DijkstraLinearFunction(graph);
+		int arrival = DateUtils.dateToMilli(DateUtils.parseDate(10, 0, 0));
+
+		for (long origin = 0; origin < graph.getNumberOfNodes(); origin++) {
+			Isochrone isochrone = service.isochrone(origin, DateUtils.parseDate(10, 0, 0), MAX_TRAVEL_TIME, true);
+			for (long v : isochrone.getTravelTimes().keySet()) {
+				// leaving v early enough, the origin is reached by the arrival time
+				int travelTime = isochrone.getTravelTimes().get(v);
+				int departure = arrival - travelTime;
+				Date departureTime = DateUtils.parseDate(departure / 3600000, (departure / 60000) % 60, (departure / 1000) % 60);
+				double cost = v == origin ? 0 : dijkstra.shortestPath(v, origin, departureTime).getTotalCost();
+				assertTrue(cost <= travelTime);
+			}
+			for (PartialEdge edge : isochrone.getPartialEdges()) {
+				assertTrue(isochrone.isReached(graph.getEdge(edge.getEdgeId()).getToNode()));
+			}
+		}
+	}
+
+	@Test
+	public void batchTest() {
+		long[] origins = {0, 3, 5, 9};
+		Date time = DateUtils.parseDate(17, 30, 0);
+		List<Isochrone> isochrones = service.isochrones(origins, time, MAX_TRAVEL_TIME, false);
+		assertEquals(origins.length, isochrones.size());
+		for (int i = 0; i < origins.length; i++) {
+			Isochrone expected = service.isochrone(origins[i], time, MAX_TRAVEL_TIME, false);
+			assertEquals(origins[i], isochrones.get(i).getOrigin());
+			assertEquals(expected.getTravelTimes(), isochrones.get(i).getTravelTimes());
+			assertEquals(expected.getPoisByCategory(), isochrones.get(i).getPoisByCategory());
+		}
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		FileUtils.deleteDir(Configuration.USER_HOME + "/graphast/test");
+	}
+}
@@ -0,0 +1,104 @@
+package org.graphast.query.route.matrix;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Date;
+import java.util.Random;
+
+import org.graphast.config.Configuration;
+import org.graphast.exception.PathNotFoundException;
+import org.graphast.graphgenerator.GraphGenerator;
+import org.graphast.model.CompactGraph;
+import org.graphast.model.Graph;
+import org.graphast.query.route.shortestpath.dijkstra.DijkstraCompact;
+import org.graphast.query.route.shortestpath.dijkstra.DijkstraLinearFunction;
+import org.graphast.query.route.shortestpath.model.Path;
+import org.graphast.util.DateUtils;
+import org.graphast.util.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class DistanceMatrixServiceTest {
+
+	private static Graph graphPoI;
+	private static Graph graphMonaco;
+	private static long[] allPoI;
+
+	@BeforeClass
+	public static void setup() {
+		graphPoI = new GraphGenerator().generateExamplePoI();
+		graphMonaco = new GraphGenerator().generateMonaco();
+		allPoI = new long[(int) graphPoI.getNumberOfNodes()];
+		for (int i = 0; i < allPoI.length; i++) {
+			allPoI[i] = i;
+		}
+	}
+
+	@Test
+	public void travelTimesTest() {
+		DistanceMatrixService service = new DistanceMatrixService(graphPoI, 3);
+		DijkstraLinearFunction dijkstra = new DijkstraLinearFunction(graphPoI);
+		Date[] times = {DateUtils.parseDate(0, 0, 0), DateUtils.parseDate(9, 30, 0), DateUtils.parseDate(18, 0, 0)};
+
+		for (Date time : times) {
+			int[][] matrix = service.getTravelTimes(allPoI, allPoI, time);
+			Path[][] paths = service.getPaths(allPoI, allPoI, time);
+			for (int i = 0; i < allPoI.length; i++) {
+				for (int j = 0; j < allPoI.length; j++) {
+					int expected = DistanceMatrixService.UNREACHABLE;
+					try {
+						expected = (int) dijkstra.shortestPath(allPoI[i], allPoI[j], time).getTotalCost();
+					} catch (PathNotFoundException e) {
+					}
+					assertEquals(expected, matrix[i][j]);
+					if (expected == DistanceMatrixService.UNREACHABLE) {
+						assertNull(paths[i][j]);
+					} else {
+						assertEquals(expected, paths[i][j].getTotalCost(), 0);
+					}
+				}
+			}
+		}
+		service.shutdown();
+	}
+
+	@Test
+	public void staticCostsTest() {
+		int[] distances = CompactGraph.getDistances(graphMonaco);
+		DijkstraCompact dijkstra = new DijkstraCompact(new CompactGraph(graphMonaco), distances);
+		DistanceMatrixService service = new DistanceMatrixService(graphMonaco);
+
+		Random random = new Random(3);
+		long[] many = new long[30];
+		long[] few = new long[5];
+		for (int i = 0; i < many.length; i++) {
+			many[i] = random.nextInt((int) graphMonaco.getNumberOfNodes());
+		}
+		for (int i = 0; i < few.length; i++) {
+			few[i] = random.nextInt((int) graphMonaco.getNumberOfNodes());
+		}
+
+		// forward searches from the sources and backward searches from the targets
+		int[][] forward = service.getCosts(few, many, distances);
+		int[][] backward = service.getCosts(many, few, distances);
+		for (int i = 0; i < few.length; i++) {
+			int[] expected = dijkstra.run((int) few[i], false);
+			for (int j = 0; j < many.length; j++) {
+				assertEquals(expected[(int) many[j]], forward[i][j]);
+			}
+			int[] expectedBackward = dijkstra.run((int) few[i], true);
+			for (int j = 0; j < many.length; j++) {
+				assertEquals(expectedBackward[(int) many[j]], backward[j][i]);
+			}
+		}
+		service.shutdown();
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		FileUtils.deleteDir(Configuration.USER_HOME + "/graphhopper/test");
+		FileUtils.deleteDir(Configuration.USER_HOME + "/graphast/test");
+	}
+}
@@ -1,11 +1,23 @@
 package org.graphast.query.route.osr;
 
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.graphast.enums.CompressionType;
 import org.graphast.graphgenerator.GraphGenerator;
 import org.graphast.model.GraphBounds;
+import org.graphast.query.model.Bound;
+import org.graphast.query.route.shortestpath.dijkstra.DijkstraLinearFunction;
+import org.graphast.util.FileUtils;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
 
 
 public class BoundsRouteTest {
@@ -27,6 +39,123 @@ public class BoundsRouteTest {
 		
 		assertEquals(br.getBounds().get(0l), br2.getBounds().get(0l));
 		assertEquals(br.getBounds().get(1l), br2.getBounds().get(1l));
+		for (int v = 0; v < graphMonaco.getNumberOfNodes(); v += 100) {
+			for (int category : br.getCategories()) {
+				assertEquals(br.getBound(v, category), br2.getBound(v, category));
+			}
+		}
+	}
+
+	@Test
+	public void boundOfNode() {
+		GraphBounds graph = new GraphGenerator().generateExamplePoI();
+		graph.createBounds();
+		BoundsRoute br = new BoundsRoute(graph, (short) 0);
+		br.createBounds();
+		int checked = 0;
+		for (long v = 0; v < graph.getNumberOfNodes(); v++) {
+			for (Bound expected : br.getBounds().get(v)) {
+				int category = graph.getNode(expected.getId()).getCategory();
+				Bound bound = br.getBound((int) v, category);
+				assertNotEquals(Integer.MAX_VALUE, bound.getCost());
+				assertEquals(expected, bound);
+				checked++;
+			}
+		}
+		assertTrue(checked > 0);
+	}
+
+	@Test
+	public void sameCostsAsSearchFromEachNode() {
+		GraphBounds graph = new GraphGenerator().generateExamplePoI();
+		graph.createBounds();
+		for (short graphType = 0; graphType <= 2; graphType++) {
+			BoundsRoute br = new BoundsRoute(graph, graphType);
+			br.createBounds(2);
+			DijkstraLinearFunction d = new DijkstraLinearFunction(graph);
+			for (int v = 0; v < graph.getNumberOfNodes(); v++) {
+				List<Bound> expected = d.shortestPathCategories(v, graph.getCategories(), graphType);
+				assertEquals(expected.size(), br.getBounds().get((long) v).size());
+				for (Bound bound : expected) {
+					int category = graph.getNode(bound.getId()).getCategory();
+					assertEquals(bound.getCost(), br.getCost(v, category));
+					assertEquals(category, graph.getNode(br.getBound(v, category).getId()).getCategory());
+				}
+			}
+			assertFalse(new File(graph.getAbsoluteDirectory() + "/osr/bounds/" + graphType + "/checkpoint").exists());
+		}
+	}
+
+	@Test
+	public void checkpointOfOtherCosts() {
+		GraphBounds graph = new GraphGenerator().generateExamplePoI();
+		graph.createBounds();
+		short graphType = 1;
+		String checkpoint = graph.getAbsoluteDirectory() + "/osr/bounds/" + graphType + "/checkpoint";
+
+		// categories saved by a run over other edge costs, with the same PoIs
+		FileUtils.saveIntArray(checkpoint + "/edges", new int[] { 0, 1, 1 }, 4096, CompressionType.NO_COMPRESSION);
+		for (int category : graph.getCategories()) {
+			int[] pois = new int[(int) graph.getNumberOfNodes()];
+			Arrays.fill(pois, -1);
+			int[] key = new int[0];
+			for (int v = 0; v < graph.getNumberOfNodes(); v++) {
+				if (graph.getNode(v).getCategory() == category) {
+					key = Arrays.copyOf(key, key.length + 1);
+					key[key.length - 1] = v;
+				}
+			}
+			int[] waitingTimes = new int[key.length];
+			for (int i = 0; i < key.length; i++) {
+				waitingTimes[i] = graph.poiGetCost(key[i], graphType);
+			}
+			key = Arrays.copyOf(key, 2 * key.length);
+			System.arraycopy(waitingTimes, 0, key, waitingTimes.length, waitingTimes.length);
+			FileUtils.saveIntArray(checkpoint + "/" + category + "/costs", new int[pois.length], 4096, CompressionType.NO_COMPRESSION);
+			FileUtils.saveIntArray(checkpoint + "/" + category + "/pois", pois, 4096, CompressionType.NO_COMPRESSION);
+			FileUtils.saveIntArray(checkpoint + "/" + category + "/sources", key, 4096, CompressionType.NO_COMPRESSION);
+		}
+
+		BoundsRoute br = new BoundsRoute(graph, graphType);
+		br.createBounds(2);
+		assertSameBounds(graph, graphType, br);
+		assertFalse(new File(checkpoint).exists());
 	}
-	
+
+	@Test
+	public void repair() {
+		GraphBounds graph = new GraphGenerator().generateExamplePoI();
+		graph.createBounds();
+		for (short graphType = 0; graphType <= 2; graphType++) {
+			BoundsRoute br = new BoundsRoute(graph, graphType);
+			br.createBounds();
+
+			graph.setNodeCategory(4, -1);
+			br.removePoI(4, 2);
+			assertSameBounds(graph, graphType, br);
+
+			graph.setNodeCategory(4, 2);
+			br.addPoI(4);
+			assertSameBounds(graph, graphType, br);
+
+			if (graphType != 0) {
+				// only the PoIs have waiting times at a given time
+				graph.setNodeCategory(9, -1);
+				graph.setNodeCategory(2, 3);
+				br.movePoI(9, 2);
+				assertSameBounds(graph, graphType, br);
+				graph.setNodeCategory(2, -1);
+				graph.setNodeCategory(9, 3);
+			}
+		}
+	}
+
+	private static void assertSameBounds(GraphBounds graph, short graphType, BoundsRoute br) {
+		BoundsRoute expected = new BoundsRoute(graph, graphType);
+		expected.createBounds();
+		for (long v = 0; v < graph.getNumberOfNodes(); v++) {
+			assertEquals(new HashSet<Object>(expected.getBounds().get(v)), new HashSet<Object>(br.getBounds().get(v)));
+		}
+	}
+
 }
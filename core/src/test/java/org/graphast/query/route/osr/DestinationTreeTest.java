@@ -0,0 +1,63 @@
+package org.graphast.query.route.osr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import it.unimi.dsi.fastutil.longs.Long2DoubleMap;
+
+import org.graphast.graphgenerator.GraphGenerator;
+import org.graphast.model.GraphBounds;
+import org.graphast.query.route.shortestpath.dijkstra.DijkstraLinearFunction;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class DestinationTreeTest {
+
+	private static GraphBounds graphBoundsPoI;
+
+	@BeforeClass
+	public static void setup() {
+		graphBoundsPoI = new GraphGenerator().generateExamplePoI();
+	}
+
+	@Test
+	public void sameCostsAsReverseSearchTest() {
+		DestinationTreeCache cache = new DestinationTreeCache(graphBoundsPoI);
+		DijkstraLinearFunction dijkstra = new DijkstraLinearFunction(graphBoundsPoI.getReverseGraph());
+
+		for (int destination = 0; destination < graphBoundsPoI.getNumberOfNodes(); destination++) {
+			Long2DoubleMap expected = dijkstra.shortestPath(destination);
+			DestinationTree tree = cache.get(destination);
+			for (int v = 0; v < graphBoundsPoI.getNumberOfNodes(); v++) {
+				assertEquals("from " + v + " to " + destination, (int) expected.get(v), tree.getCost(v));
+			}
+		}
+	}
+
+	@Test
+	public void lazyTest() {
+		DestinationTree tree = new DestinationTreeCache(graphBoundsPoI).get(7);
+		assertEquals(0, tree.getCost(7));
+		assertEquals(1, tree.getNumberOfSettledNodes());
+		assertFalse(tree.isComplete());
+	}
+
+	@Test
+	public void evictionTest() {
+		DestinationTreeCache cache = new DestinationTreeCache(graphBoundsPoI, 0);
+		cache.get(1).getCost(0);
+		cache.get(2).getCost(0);
+		cache.trim();
+		assertEquals(1, cache.size());
+		assertTrue(cache.contains(2));
+
+		cache.setMaxMemory(Long.MAX_VALUE);
+		cache.get(1).getCost(0);
+		cache.get(2);
+		cache.trim();
+		assertEquals(2, cache.size());
+		assertTrue(cache.getMemoryUsage() > 0);
+	}
+
+}
@@ -0,0 +1,129 @@
+package org.graphast.query.route.osr;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.graphast.graphgenerator.GraphGenerator;
+import org.graphast.model.CompactGraph;
+import org.graphast.model.GraphBounds;
+import org.graphast.query.route.shortestpath.dijkstra.DijkstraCompact;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class OSRTableSearchTest {
+
+	private static final int INFINITY = DijkstraCompact.INFINITY;
+
+	private static GraphBounds graph;
+
+	@BeforeClass
+	public static void setup() {
+		graph = new GraphGenerator().generateExamplePoI();
+		graph.createBounds();
+	}
+
+	@Test
+	public void sameResultAsAllSequencesOfPoIs() {
+		for (short graphType = 0; graphType <= 2; graphType++) {
+			CategoryDistanceTables tables = new CategoryDistanceTables(graph, graphType);
+			tables.createTables(2);
+			OSRTableSearch search = new OSRTableSearch(tables);
+			CompactGraph compactGraph = new CompactGraph(graph);
+			int[] edgeCosts = BoundsRoute.getEdgeCosts(graph, graphType);
+			int[][] distances = new int[compactGraph.getNumberOfNodes()][];
+			for (int v = 0; v < distances.length; v++) {
+				distances[v] = new DijkstraCompact(compactGraph, edgeCosts).run(v, false);
+			}
+
+			int[] categories = tables.getCategories();
+			List<List<Integer>> sequences = new ArrayList<List<Integer>>();
+			sequences.add(new ArrayList<Integer>());
+			sequences.add(Arrays.asList(categories[0]));
+			sequences.add(Arrays.asList(categories[0], categories[0]));
+			sequences.add(Arrays.asList(categories[0], categories[categories.length - 1]));
+			sequences.add(Arrays.asList(categories[categories.length - 1], categories[0], categories[0]));
+
+			for (List<Integer> sequence : sequences) {
+				for (int origin = 0; origin < graph.getNumberOfNodes(); origin++) {
+					for (int destination = 0; destination < graph.getNumberOfNodes(); destination++) {
+						long expected = bruteForce(tables, distances, sequence, 0, origin, destination);
+						Sequence seq = search.search(graph.getNode(origin), graph.getNode(destination), sequence);
+						if (expected >= INFINITY) {
+							assertNull(seq.getPath());
+							continue;
+						}
+						assertEquals(expected, seq.getTimeToService());
+						assertEquals(sequence.size(), seq.getPois().size());
+						assertEquals(origin, seq.getPath().get(0).longValue());
+						assertEquals(destination, seq.getPath().get(seq.getPath().size() - 1).longValue());
+						long travelTime = 0;
+						for (int i = 1; i < seq.getPath().size(); i++) {
+							travelTime += edgeCost(compactGraph, edgeCosts, seq.getPath().get(i - 1).intValue(), seq.getPath().get(i).intValue());
+						}
+						assertEquals(travelTime, seq.getDistance());
+						for (int i = 0; i < sequence.size(); i++) {
+							assertEquals(sequence.get(i).intValue(), graph.getNode(seq.getPois().get(i).getId()).getCategory());
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void saveLoad() {
+		CategoryDistanceTables tables = new CategoryDistanceTables(graph, (short) 0);
+		tables.createTables();
+		tables.save();
+
+		CategoryDistanceTables loaded = new CategoryDistanceTables(graph, (short) 0);
+		loaded.load();
+		assertArrayEquals(tables.getCategories(), loaded.getCategories());
+		for (int a : tables.getCategories()) {
+			assertArrayEquals(tables.getPoIs(a), loaded.getPoIs(a));
+			for (int b : tables.getCategories()) {
+				for (int i = 0; i < tables.getPoIs(a).length; i++) {
+					for (int j = 0; j < tables.getPoIs(b).length; j++) {
+						assertEquals(tables.getCost(a, i, b, j), loaded.getCost(a, i, b, j));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Best time to service among all the choices of one PoI of each category.
+	 */
+	private long bruteForce(CategoryDistanceTables tables, int[][] distances, List<Integer> sequence, int i, int from, int destination) {
+		if (i == sequence.size()) {
+			return distances[from][destination];
+		}
+		long best = INFINITY;
+		int[] pois = tables.getPoIs(sequence.get(i));
+		for (int p = 0; p < pois.length; p++) {
+			if (distances[from][pois[p]] == INFINITY || (i > 0 && pois[p] == from)) {
+				continue;
+			}
+			long rest = bruteForce(tables, distances, sequence, i + 1, pois[p], destination);
+			best = Math.min(best, distances[from][pois[p]] + tables.getWaitingTime(sequence.get(i), p) + rest);
+		}
+		return best;
+	}
+
+	private int edgeCost(CompactGraph compactGraph, int[] edgeCosts, int from, int to) {
+		int cost = INFINITY;
+		for (int i = compactGraph.getOutBegin(from); i < compactGraph.getOutEnd(from); i++) {
+			int e = compactGraph.getOutEdge(i);
+			if (compactGraph.getToNode(e) == to) {
+				cost = Math.min(cost, edgeCosts[e]);
+			}
+		}
+		return cost;
+	}
+
+}
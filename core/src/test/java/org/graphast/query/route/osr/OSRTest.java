@@ -1,24 +1,36 @@
 package org.graphast.query.route.osr;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 
+import org.graphast.config.Configuration;
 import org.graphast.graphgenerator.GraphGenerator;
+import org.graphast.model.Edge;
+import org.graphast.model.EdgeImpl;
 import org.graphast.model.Graph;
 import org.graphast.model.GraphBounds;
+import org.graphast.model.GraphImpl;
+import org.graphast.model.NodeImpl;
 import org.graphast.query.route.shortestpath.dijkstra.DijkstraLinearFunction;
 import org.graphast.query.route.shortestpath.model.Path;
 import org.graphast.util.DateUtils;
+import org.graphast.util.FileUtils;
+import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 
 public class OSRTest {
 
+	private static final String PATH_REOPEN_GRAPH = Configuration.USER_HOME + "/graphast/test/osrReopen";
+
 	private static OSRSearch osr;
 	private static GraphBounds graphBoundsPoI;
 //	private static GraphBounds monacoBoundsPoI, monacoBoundsPoIReverse;
@@ -91,6 +103,134 @@ public class OSRTest {
     	
 	}
 	
+	@Test
+	public void sameResultWithReusedState() {
+		ArrayList<Integer> categories = new ArrayList<Integer>();
+		categories.add(2);
+		categories.add(1);
+		Date date = DateUtils.parseDate(0, 550, 0);
+		Graph graph = osr.getGraphAdapter();
+
+		for (int origin = 0; origin < graph.getNumberOfNodes(); origin++) {
+			for (int destination = 0; destination < graph.getNumberOfNodes(); destination++) {
+				Sequence seq = osr.search(graph.getNode(origin), graph.getNode(destination), date, categories);
+				Sequence fresh = new OSRSearch(graphBoundsPoI, (short) 0).search(graph.getNode(origin), graph.getNode(destination), date, categories);
+				assertEquals(fresh.getTimeToService(), seq.getTimeToService());
+				assertEquals(fresh.getPath(), seq.getPath());
+				if (seq.getPath() != null) {
+					assertEquals(origin, seq.getPath().get(0).longValue());
+					assertEquals(destination, seq.getPath().get(seq.getPath().size() - 1).longValue());
+					assertEquals(categories.size(), seq.getPois().size());
+					for (int i = 0; i < categories.size(); i++) {
+						assertEquals(categories.get(i).intValue(), graph.getNode(seq.getPois().get(i).getId()).getCategory());
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void approximateSearch() {
+		ArrayList<Integer> categories = new ArrayList<Integer>();
+		categories.add(2);
+		categories.add(1);
+		Date date = DateUtils.parseDate(0, 550, 0);
+		Graph graph = osr.getGraphAdapter();
+
+		for (double epsilon : new double[] { 0.1, 0.5, 2 }) {
+			for (int origin = 0; origin < graph.getNumberOfNodes(); origin++) {
+				for (int destination = 0; destination < graph.getNumberOfNodes(); destination++) {
+					Sequence exact = osr.search(graph.getNode(origin), graph.getNode(destination), date, categories);
+					Sequence approximate = osr.search(graph.getNode(origin), graph.getNode(destination), date, categories, epsilon);
+					assertEquals(1, exact.getSuboptimalityBound(), 0);
+					Sequence zero = osr.search(graph.getNode(origin), graph.getNode(destination), date, categories, 0);
+					assertEquals(exact.getTimeToService(), zero.getTimeToService());
+					assertEquals(exact.getPath(), zero.getPath());
+					assertEquals(1, zero.getSuboptimalityBound(), 0);
+					if (exact.getPath() == null) {
+						assertNull(approximate.getPath());
+						continue;
+					}
+					assertTrue(approximate.getSuboptimalityBound() >= 1);
+					assertTrue(approximate.getSuboptimalityBound() <= 1 + epsilon);
+					assertTrue(approximate.getDistance() <= (1 + epsilon) * exact.getDistance());
+					assertEquals(destination, approximate.getPath().get(approximate.getPath().size() - 1).longValue());
+					assertEquals(categories.size(), approximate.getPois().size());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void approximateSearchClosesANodeTooEarly() {
+		// a minute: the costs below change every minute of the day
+		int u = 60000;
+		GraphBounds graph = new GraphImpl(PATH_REOPEN_GRAPH);
+		for (int i = 0; i < 5; i++) {
+			graph.addNode(new NodeImpl(i, 1.0d, i));
+		}
+		int[] fastAtMidnight = new int[1440];
+		Arrays.fill(fastAtMidnight, u);
+		fastAtMidnight[0] = u / 2;
+		int[] slowAfterMidnight = new int[1440];
+		Arrays.fill(slowAfterMidnight, 6 * u);
+		slowAfterMidnight[0] = u;
+		// 0 -> 1 -> 3 is faster than 0 -> 2 -> 3, but its lower bound at midnight is greater
+		graph.addEdge(new EdgeImpl(0l, 1l, 10, new int[] { u }));
+		graph.addEdge(new EdgeImpl(1l, 3l, 10, new int[] { u }));
+		graph.addEdge(new EdgeImpl(0l, 2l, 10, new int[] { 2 * u }));
+		graph.addEdge(new EdgeImpl(2l, 3l, 10, fastAtMidnight));
+		graph.addEdge(new EdgeImpl(3l, 4l, 10, slowAfterMidnight));
+
+		OSRSearch search = new OSRSearch(graph, (short) 0);
+		Date date = DateUtils.parseDate(0, 0, 0);
+		ArrayList<Integer> categories = new ArrayList<Integer>();
+		Sequence exact = search.search(graph.getNode(0l), graph.getNode(4l), date, categories);
+		assertEquals(8 * u, exact.getTimeToService());
+
+		// the weighted keys remove node 3 through node 2 before the faster label through node 1
+		Sequence approximate = search.search(graph.getNode(0l), graph.getNode(4l), date, categories, 2);
+		assertEquals(9 * u, approximate.getTimeToService());
+		assertTrue(approximate.getSuboptimalityBound() <= 3);
+		assertTrue(approximate.getSuboptimalityBound() * exact.getTimeToService() >= approximate.getTimeToService());
+	}
+
+	@Test
+	public void fullPath() {
+		ArrayList<Integer> categories = new ArrayList<Integer>();
+		categories.add(2);
+		categories.add(1);
+		Date date = DateUtils.parseDate(0, 550, 0);
+		Graph graph = osr.getGraphAdapter();
+
+		for (int origin = 0; origin < graph.getNumberOfNodes(); origin++) {
+			for (int destination = 0; destination < graph.getNumberOfNodes(); destination++) {
+				Sequence seq = osr.search(graph.getNode(origin), graph.getNode(destination), date, categories);
+				if (seq.getPath() == null) {
+					continue;
+				}
+				Path path = osr.getFullPath(graph.getNode(origin), graph.getNode(destination), date, categories);
+				assertEquals(2, categories.size());
+				assertEquals(seq.getDistance(), path.getTotalCost(), 0);
+				assertEquals(seq.getPath().size() - 1, path.getEdges().size());
+				for (int i = 0; i < path.getEdges().size(); i++) {
+					Edge edge = graph.getEdge(path.getEdges().get(i));
+					assertEquals(seq.getPath().get(i).longValue(), edge.getFromNode());
+					assertEquals(seq.getPath().get(i + 1).longValue(), edge.getToNode());
+				}
+				assertEquals(categories.size(), path.getListOfPoIs().size());
+				for (int i = 0; i < categories.size(); i++) {
+					assertEquals(categories.get(i).intValue(), path.getListOfPoIs().get(i).getPoiCategory().getId().intValue());
+				}
+			}
+		}
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		FileUtils.deleteDir(PATH_REOPEN_GRAPH);
+	}
+
 //	@Test
 //	public void searchMonaco() throws ParseException{
 //		
@@ -0,0 +1,96 @@
+package org.graphast.query.route.profile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+
+import org.graphast.config.Configuration;
+import org.graphast.exception.PathNotFoundException;
+import org.graphast.graphgenerator.GraphGenerator;
+import org.graphast.model.Graph;
+import org.graphast.model.LinearFunction;
+import org.graphast.model.TravelTimeFunction;
+import org.graphast.query.route.shortestpath.dijkstra.DijkstraLinearFunction;
+import org.graphast.util.DateUtils;
+import org.graphast.util.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ProfileSearchTest {
+
+	private static Graph graph;
+
+	@BeforeClass
+	public static void setup() {
+		graph = new GraphGenerator().generateExamplePoI();
+	}
+
+	@Test
+	public void travelTimesTest() {
+		ProfileSearch profileSearch = new ProfileSearch(graph);
+		DijkstraLinearFunction dijkstra = new DijkstraLinearFunction(graph);
+
+		for (long source = 0; source < graph.getNumberOfNodes(); source++) {
+			TravelTimeFunction[] functions = profileSearch.travelTimes(source);
+			for (long target = 0; target < graph.getNumberOfNodes(); target++) {
+				if (source == target) {
+					continue;
+				}
+				// one query for each 15 minutes slot, plus a departure in the middle of each slot
+				for (int minutes = 0; minutes < 24 * 60; minutes += 15) {
+					for (int offset : new int[] {0, 7}) {
+						Date date = DateUtils.parseDate((minutes + offset) / 60, (minutes + offset) % 60, 0);
+						double expected = -1;
+						try {
+							expected = dijkstra.shortestPath(source, target, date).getTotalCost();
+						} catch (PathNotFoundException e) {
+						}
+						if (expected < 0) {
+							assertEquals(null, functions[(int) target]);
+						} else {
+							assertEquals(expected, functions[(int) target].getTravelTime(DateUtils.dateToMilli(date)), 0);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void singleTargetTest() {
+		ProfileSearch profileSearch = new ProfileSearch(graph);
+		TravelTimeFunction all = profileSearch.travelTimes(0)[9];
+		TravelTimeFunction single = profileSearch.travelTimes(0, 9);
+		assertEquals(all, single);
+
+		int best = single.getBestDepartureTime();
+		assertEquals(single.getMinimum(), single.getTravelTime(best));
+
+		LinearFunction[] pieces = single.toLinearFunctions();
+		assertEquals(single.size(), pieces.length);
+		assertEquals(graph.getMaxTime(), pieces[pieces.length - 1].getEndInterval());
+	}
+
+	@Test
+	public void simplifyTest() {
+		int tolerance = DateUtils.minToMilli(5);
+		TravelTimeFunction exact = new ProfileSearch(graph).travelTimes(0, 9);
+		TravelTimeFunction simplified = exact.simplify(tolerance);
+
+		assertTrue(simplified.size() < exact.size());
+		for (int time = 0; time < graph.getMaxTime(); time += DateUtils.minToMilli(5)) {
+			assertTrue(simplified.getTravelTime(time) >= exact.getTravelTime(time));
+			assertTrue(simplified.getTravelTime(time) <= exact.getTravelTime(time) + tolerance);
+		}
+
+		TravelTimeFunction approximate = new ProfileSearch(graph, tolerance).travelTimes(0, 9);
+		assertTrue(approximate.size() <= exact.size());
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		FileUtils.deleteDir(Configuration.USER_HOME + "/graphast/test");
+	}
+}
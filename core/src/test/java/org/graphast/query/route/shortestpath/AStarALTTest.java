@@ -0,0 +1,114 @@
+package org.graphast.query.route.shortestpath;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+
+import org.graphast.config.Configuration;
+import org.graphast.enums.GraphBoundsType;
+import org.graphast.enums.LandmarkSelectionType;
+import org.graphast.exception.PathNotFoundException;
+import org.graphast.graphgenerator.GraphGenerator;
+import org.graphast.model.CompactGraph;
+import org.graphast.model.GraphBounds;
+import org.graphast.query.route.shortestpath.astar.AStarALTConstantWeight;
+import org.graphast.query.route.shortestpath.astar.AStarALTLinearFunction;
+import org.graphast.query.route.shortestpath.astar.Landmarks;
+import org.graphast.query.route.shortestpath.dijkstra.DijkstraCompact;
+import org.graphast.query.route.shortestpath.dijkstra.DijkstraLinearFunction;
+import org.graphast.query.route.shortestpath.model.Path;
+import org.graphast.util.DateUtils;
+import org.graphast.util.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class AStarALTTest {
+
+	private static GraphBounds graphMonaco;
+	private static GraphBounds graphPoI;
+	private static Landmarks landmarksMonaco;
+	private static Landmarks landmarksPoI;
+
+	@BeforeClass
+	public static void setup() {
+		graphMonaco = new GraphGenerator().generateMonaco();
+		landmarksMonaco = new Landmarks(graphMonaco, GraphBoundsType.NORMAL);
+		landmarksMonaco.createLandmarks(8, LandmarkSelectionType.AVOID);
+
+		graphPoI = new GraphGenerator().generateExamplePoI();
+		landmarksPoI = new Landmarks(graphPoI, GraphBoundsType.LOWER);
+		landmarksPoI.createLandmarks(3, LandmarkSelectionType.FARTHEST);
+	}
+
+	@Test
+	public void shortestPathMonacoTest() {
+		AbstractShortestPathService alt = new AStarALTConstantWeight(graphMonaco, landmarksMonaco);
+		DijkstraCompact dijkstra = new DijkstraCompact(new CompactGraph(graphMonaco), CompactGraph.getDistances(graphMonaco));
+
+		Long[][] queries = {
+				{graphMonaco.getNodeId(43.740174, 7.424376), graphMonaco.getNodeId(43.735554, 7.416147)},
+				{graphMonaco.getNodeId(43.72842465479131, 7.414896579419745), graphMonaco.getNodeId(43.7354373276704, 7.4212202598427295)},
+				{graphMonaco.getNodeId(43.72636792197156, 7.417292499928754), graphMonaco.getNodeId(43.74766484829034, 7.430716770083832)}};
+
+		for (Long[] query : queries) {
+			int expected = dijkstra.run(query[0].intValue(), false)[query[1].intValue()];
+			Path path = alt.shortestPath(query[0], query[1]);
+			assertEquals(expected, path.getTotalDistance());
+		}
+	}
+
+	@Test
+	public void shortestPathTimeDependentTest() {
+		AbstractShortestPathService alt = new AStarALTLinearFunction(graphPoI, landmarksPoI);
+		AbstractShortestPathService dijkstra = new DijkstraLinearFunction(graphPoI);
+		Date[] times = {DateUtils.parseDate(0, 0, 0), DateUtils.parseDate(15, 30, 0)};
+
+		for (Date time : times) {
+			for (long source = 0; source < graphPoI.getNumberOfNodes(); source++) {
+				for (long target = 0; target < graphPoI.getNumberOfNodes(); target++) {
+					double expected = -1;
+					try {
+						expected = dijkstra.shortestPath(source, target, time).getTotalCost();
+					} catch (PathNotFoundException e) {
+					}
+					try {
+						assertEquals(expected, alt.shortestPath(source, target, time).getTotalCost(), 0);
+					} catch (PathNotFoundException e) {
+						assertEquals(-1, expected, 0);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void lowerBoundTest() {
+		// the bound from a node to itself is zero and never exceeds the real cost
+		assertEquals(0, landmarksPoI.getLowerBound(4, 4));
+		Path path = new DijkstraLinearFunction(graphPoI).shortestPath(0l, 9l, DateUtils.parseDate(0, 0, 0));
+		assertTrue(landmarksPoI.getLowerBound(0, 9) <= path.getTotalCost());
+	}
+
+	@Test
+	public void saveLoadTest() {
+		landmarksPoI.save();
+		Landmarks loaded = new Landmarks(graphPoI, GraphBoundsType.LOWER);
+		loaded.load();
+
+		assertArrayEquals(landmarksPoI.getLandmarks(), loaded.getLandmarks());
+		for (long v = 0; v < graphPoI.getNumberOfNodes(); v++) {
+			for (long t = 0; t < graphPoI.getNumberOfNodes(); t++) {
+				assertEquals(landmarksPoI.getLowerBound(v, t), loaded.getLowerBound(v, t));
+			}
+		}
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		FileUtils.deleteDir(Configuration.USER_HOME + "/graphhopper/test");
+		FileUtils.deleteDir(Configuration.USER_HOME + "/graphast/test");
+	}
+}
@@ -0,0 +1,130 @@
+package org.graphast.query.route.shortestpath;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+
+import org.graphast.config.Configuration;
+import org.graphast.enums.GraphBoundsType;
+import org.graphast.exception.GraphastException;
+import org.graphast.exception.PathNotFoundException;
+import org.graphast.graphgenerator.GraphGenerator;
+import org.graphast.model.CompactGraph;
+import org.graphast.model.GraphBounds;
+import org.graphast.partition.CoordinatePartitioner;
+import org.graphast.partition.Partition;
+import org.graphast.partition.TopologicalPartitioner;
+import org.graphast.query.route.shortestpath.arcflags.ArcFlags;
+import org.graphast.query.route.shortestpath.dijkstra.DijkstraCompact;
+import org.graphast.query.route.shortestpath.dijkstra.DijkstraConstantWeight;
+import org.graphast.query.route.shortestpath.dijkstra.DijkstraLinearFunction;
+import org.graphast.query.route.shortestpath.model.Path;
+import org.graphast.util.DateUtils;
+import org.graphast.util.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ArcFlagsTest {
+
+	private static GraphBounds graphMonaco;
+	private static GraphBounds graphPoI;
+	private static ArcFlags arcFlagsMonaco;
+	private static ArcFlags arcFlagsPoI;
+
+	@BeforeClass
+	public static void setup() {
+		graphMonaco = new GraphGenerator().generateMonaco();
+		arcFlagsMonaco = new ArcFlags(graphMonaco, Partition.create(graphMonaco, new CoordinatePartitioner(), 16), GraphBoundsType.NORMAL);
+		arcFlagsMonaco.createFlags();
+
+		graphPoI = new GraphGenerator().generateExamplePoI();
+		arcFlagsPoI = new ArcFlags(graphPoI, Partition.create(graphPoI, new TopologicalPartitioner(), 3), GraphBoundsType.LOWER);
+		arcFlagsPoI.createFlags(2);
+	}
+
+	@Test
+	public void partitionTest() {
+		Partition partition = arcFlagsMonaco.getPartition();
+		int[] sizes = new int[partition.getNumberOfCells()];
+		for (int v = 0; v < partition.getNumberOfNodes(); v++) {
+			sizes[partition.getCell(v)]++;
+		}
+		int expected = partition.getNumberOfNodes() / partition.getNumberOfCells();
+		for (int size : sizes) {
+			assertTrue(Math.abs(size - expected) <= 1);
+		}
+	}
+
+	@Test
+	public void shortestPathMonacoTest() {
+		DijkstraConstantWeight dijkstra = new DijkstraConstantWeight(graphMonaco);
+		dijkstra.setArcFlags(arcFlagsMonaco);
+		DijkstraCompact oracle = new DijkstraCompact(new CompactGraph(graphMonaco), CompactGraph.getDistances(graphMonaco));
+
+		Long[][] queries = {
+				{graphMonaco.getNodeId(43.740174, 7.424376), graphMonaco.getNodeId(43.735554, 7.416147)},
+				{graphMonaco.getNodeId(43.72842465479131, 7.414896579419745), graphMonaco.getNodeId(43.7354373276704, 7.4212202598427295)},
+				{graphMonaco.getNodeId(43.72636792197156, 7.417292499928754), graphMonaco.getNodeId(43.74766484829034, 7.430716770083832)}};
+
+		for (Long[] query : queries) {
+			int expected = oracle.run(query[0].intValue(), false)[query[1].intValue()];
+			Path path = dijkstra.shortestPath(query[0], query[1]);
+			assertEquals(expected, path.getTotalDistance());
+			assertTrue(path.getNumberVisitedNodes() < graphMonaco.getNumberOfNodes());
+		}
+	}
+
+	@Test
+	public void shortestPathTimeDependentTest() {
+		DijkstraLinearFunction flagged = new DijkstraLinearFunction(graphPoI);
+		flagged.setArcFlags(arcFlagsPoI);
+		DijkstraLinearFunction dijkstra = new DijkstraLinearFunction(graphPoI);
+		Date[] times = {DateUtils.parseDate(0, 0, 0), DateUtils.parseDate(8, 15, 0), DateUtils.parseDate(16, 0, 0)};
+
+		for (Date time : times) {
+			for (long source = 0; source < graphPoI.getNumberOfNodes(); source++) {
+				for (long target = 0; target < graphPoI.getNumberOfNodes(); target++) {
+					double expected = -1;
+					try {
+						expected = dijkstra.shortestPath(source, target, time).getTotalCost();
+					} catch (PathNotFoundException e) {
+					}
+					try {
+						assertEquals(expected, flagged.shortestPath(source, target, time).getTotalCost(), 0);
+					} catch (PathNotFoundException e) {
+						assertEquals(-1, expected, 0);
+					}
+				}
+			}
+		}
+	}
+
+	@Test(expected = GraphastException.class)
+	public void wrongTypeTest() {
+		new DijkstraLinearFunction(graphPoI).setArcFlags(arcFlagsMonaco);
+	}
+
+	@Test
+	public void saveLoadTest() {
+		arcFlagsPoI.save();
+		ArcFlags loaded = new ArcFlags(graphPoI, arcFlagsPoI.getPartition(), GraphBoundsType.LOWER);
+		loaded.load();
+
+		for (long v = 0; v < graphPoI.getNumberOfNodes(); v++) {
+			assertEquals(arcFlagsPoI.getCell(v), loaded.getCell(v));
+		}
+		for (long e = 0; e < graphPoI.getNumberOfEdges(); e++) {
+			for (int c = 0; c < arcFlagsPoI.getPartition().getNumberOfCells(); c++) {
+				assertEquals(arcFlagsPoI.hasFlag(e, c), loaded.hasFlag(e, c));
+			}
+		}
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		FileUtils.deleteDir(Configuration.USER_HOME + "/graphhopper/test");
+		FileUtils.deleteDir(Configuration.USER_HOME + "/graphast/test");
+	}
+}
@@ -0,0 +1,101 @@
+package org.graphast.query.route.shortestpath;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.graphast.config.Configuration;
+import org.graphast.exception.PathNotFoundException;
+import org.graphast.graphgenerator.GraphGenerator;
+import org.graphast.model.Graph;
+import org.graphast.query.route.shortestpath.batch.BatchShortestPathService;
+import org.graphast.query.route.shortestpath.batch.ShortestPathRequest;
+import org.graphast.query.route.shortestpath.batch.ShortestPathResult;
+import org.graphast.query.route.shortestpath.batch.ShortestPathResultSink;
+import org.graphast.query.route.shortestpath.dijkstra.DijkstraLinearFunction;
+import org.graphast.query.route.shortestpath.model.Path;
+import org.graphast.util.DateUtils;
+import org.graphast.util.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class BatchShortestPathServiceTest {
+
+	private static Graph graph;
+	private static BatchShortestPathService service;
+	private static List<ShortestPathRequest> requests = new ArrayList<ShortestPathRequest>();
+
+	@BeforeClass
+	public static void setup() {
+		graph = new GraphGenerator().generateExamplePoI();
+		service = new BatchShortestPathService(graph, 4);
+		Date[] times = {DateUtils.parseDate(0, 0, 0), DateUtils.parseDate(8, 15, 0), DateUtils.parseDate(17, 45, 0)};
+		for (Date time : times) {
+			for (long source = 0; source < graph.getNumberOfNodes(); source++) {
+				for (long target = 0; target < graph.getNumberOfNodes(); target++) {
+					requests.add(new ShortestPathRequest(source, target, time));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void costsTest() {
+		DijkstraLinearFunction dijkstra = new DijkstraLinearFunction(graph);
+		List<ShortestPathResult> results = service.shortestPaths(requests, false);
+		assertEquals(requests.size(), results.size());
+
+		for (int i = 0; i < requests.size(); i++) {
+			ShortestPathRequest request = requests.get(i);
+			ShortestPathResult result = results.get(i);
+			assertEquals(request, result.getRequest());
+			assertNull(result.getPath());
+			try {
+				Path path = dijkstra.shortestPath(request.getSource(), request.getTarget(), request.getDeparture());
+				assertEquals(path.getTotalCost(), result.getCost(), 0);
+			} catch (PathNotFoundException e) {
+				assertFalse(result.isReachable());
+			}
+		}
+	}
+
+	@Test
+	public void pathsTest() {
+		for (ShortestPathResult result : service.shortestPaths(requests, true)) {
+			if (result.isReachable() && result.getRequest().getSource() != result.getRequest().getTarget()) {
+				assertEquals(result.getCost(), result.getPath().getTotalCost(), 0);
+				assertEquals(result.getDistance(), result.getPath().getTotalDistance());
+			}
+		}
+	}
+
+	@Test
+	public void sinkTest() {
+		final List<ShortestPathResult> received = new ArrayList<ShortestPathResult>();
+		service.setChunkSize(7);
+		service.shortestPaths(requests.iterator(), false, new ShortestPathResultSink() {
+			@Override
+			public void accept(ShortestPathResult result) {
+				received.add(result);
+			}
+		});
+
+		List<ShortestPathResult> expected = service.shortestPaths(requests, false);
+		assertEquals(expected.size(), received.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(requests.get(i), received.get(i).getRequest());
+			assertEquals(expected.get(i).getCost(), received.get(i).getCost());
+		}
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		service.shutdown();
+		FileUtils.deleteDir(Configuration.USER_HOME + "/graphast/test");
+	}
+}
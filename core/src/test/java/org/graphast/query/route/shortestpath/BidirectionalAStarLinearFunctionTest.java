@@ -0,0 +1,44 @@
+package org.graphast.query.route.shortestpath;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Date;
+
+import org.graphast.exception.PathNotFoundException;
+import org.graphast.query.route.shortestpath.astar.BidirectionalAStarLinearFunction;
+import org.graphast.query.route.shortestpath.dijkstra.DijkstraLinearFunction;
+import org.graphast.util.DateUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class BidirectionalAStarLinearFunctionTest extends AbstractShortestPathLinearFunctionTest {
+
+	@BeforeClass
+	public static void setupService(){
+		serviceExample4 = new BidirectionalAStarLinearFunction(graphExample4);
+		serviceExample4Bounds = new BidirectionalAStarLinearFunction(graphBounds);
+	}
+
+	@Test
+	public void sameCostAsDijkstraTest() {
+		AbstractShortestPathService dijkstra = new DijkstraLinearFunction(graphBounds);
+		Date[] times = {DateUtils.parseDate(0, 0, 0), DateUtils.parseDate(8, 15, 0), DateUtils.parseDate(16, 0, 0)};
+
+		for (Date time : times) {
+			for (long source = 0; source < graphBounds.getNumberOfNodes(); source++) {
+				for (long target = 0; target < graphBounds.getNumberOfNodes(); target++) {
+					double expected = -1;
+					try {
+						expected = dijkstra.shortestPath(source, target, time).getTotalCost();
+					} catch (PathNotFoundException e) {
+					}
+					try {
+						assertEquals(expected, serviceExample4Bounds.shortestPath(source, target, time).getTotalCost(), 0);
+					} catch (PathNotFoundException e) {
+						assertEquals(-1, expected, 0);
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package org.graphast.query.route.shortestpath;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.graphast.config.Configuration;
+import org.graphast.enums.GraphBoundsType;
+import org.graphast.exception.PathNotFoundException;
+import org.graphast.graphgenerator.GraphGenerator;
+import org.graphast.model.CompactGraph;
+import org.graphast.model.GraphBounds;
+import org.graphast.partition.CoordinatePartitioner;
+import org.graphast.partition.MultiLevelPartition;
+import org.graphast.partition.TopologicalPartitioner;
+import org.graphast.query.route.shortestpath.crp.MultiLevelDijkstra;
+import org.graphast.query.route.shortestpath.crp.Overlay;
+import org.graphast.query.route.shortestpath.crp.OverlayMetric;
+import org.graphast.query.route.shortestpath.dijkstra.DijkstraCompact;
+import org.graphast.query.route.shortestpath.model.Path;
+import org.graphast.util.DateUtils;
+import org.graphast.util.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class MultiLevelDijkstraTest {
+
+	private static GraphBounds graphMonaco;
+	private static GraphBounds graphPoI;
+	private static Overlay overlayMonaco;
+	private static Overlay overlayPoI;
+
+	@BeforeClass
+	public static void setup() {
+		graphMonaco = new GraphGenerator().generateMonaco();
+		MultiLevelPartition partition = MultiLevelPartition.create(graphMonaco, new CoordinatePartitioner(), 4, 4, 4);
+		overlayMonaco = new Overlay(new CompactGraph(graphMonaco), partition);
+
+		graphPoI = new GraphGenerator().generateExamplePoI();
+		overlayPoI = new Overlay(new CompactGraph(graphPoI), MultiLevelPartition.create(graphPoI, new TopologicalPartitioner(), 2, 2));
+	}
+
+	@Test
+	public void partitionTest() {
+		MultiLevelPartition partition = overlayMonaco.getPartition();
+		assertEquals(3, partition.getNumberOfLevels());
+		assertEquals(64, partition.getNumberOfCells(0));
+		assertEquals(4, partition.getNumberOfCells(2));
+		for (long v = 0; v < graphMonaco.getNumberOfNodes(); v++) {
+			assertEquals(partition.getCell(1, v), partition.getCell(0, v) / 4);
+			assertEquals(partition.getCell(2, v), partition.getCell(1, v) / 4);
+		}
+	}
+
+	@Test
+	public void shortestPathMonacoTest() {
+		int[] distances = CompactGraph.getDistances(graphMonaco);
+		MultiLevelDijkstra crp = new MultiLevelDijkstra(graphMonaco, OverlayMetric.customize(overlayMonaco, distances));
+		assertSameCosts(graphMonaco, crp, distances, 200);
+	}
+
+	@Test
+	public void customizationTest() {
+		int[] lowerCosts = CompactGraph.getEdgeCosts(graphMonaco, GraphBoundsType.LOWER);
+		MultiLevelDijkstra crp = new MultiLevelDijkstra(graphMonaco, OverlayMetric.customize(overlayMonaco, lowerCosts, 2));
+		assertSameCosts(graphMonaco, crp, lowerCosts, 100);
+
+		int[] costs = CompactGraph.getEdgeCosts(graphMonaco, DateUtils.dateToMilli(DateUtils.parseDate(8, 0, 0)));
+		crp.setMetric(OverlayMetric.customize(overlayMonaco, costs));
+		assertSameCosts(graphMonaco, crp, costs, 100);
+	}
+
+	@Test
+	public void shortestPathPoITest() {
+		for (int hour = 0; hour < 24; hour += 6) {
+			int[] costs = CompactGraph.getEdgeCosts(graphPoI, DateUtils.dateToMilli(DateUtils.parseDate(hour, 0, 0)));
+			MultiLevelDijkstra crp = new MultiLevelDijkstra(graphPoI, OverlayMetric.customize(overlayPoI, costs));
+			DijkstraCompact dijkstra = new DijkstraCompact(new CompactGraph(graphPoI), costs);
+			for (int source = 0; source < graphPoI.getNumberOfNodes(); source++) {
+				int[] expected = dijkstra.run(source, false);
+				for (int target = 0; target < graphPoI.getNumberOfNodes(); target++) {
+					try {
+						assertEquals(expected[target], crp.shortestPath(source, target).getTotalCost(), 0);
+					} catch (PathNotFoundException e) {
+						assertEquals(DijkstraCompact.INFINITY, expected[target]);
+					}
+				}
+			}
+		}
+	}
+
+	private void assertSameCosts(GraphBounds graph, MultiLevelDijkstra crp, int[] costs, int numberOfQueries) {
+		DijkstraCompact dijkstra = new DijkstraCompact(new CompactGraph(graph), costs);
+		Random random = new Random(7);
+		for (int i = 0; i < numberOfQueries; i++) {
+			int source = random.nextInt((int) graph.getNumberOfNodes());
+			int target = random.nextInt((int) graph.getNumberOfNodes());
+			int expected = dijkstra.run(source, false)[target];
+			try {
+				Path path = crp.shortestPath(source, target);
+				assertEquals(expected, path.getTotalCost(), 0);
+			} catch (PathNotFoundException e) {
+				assertEquals(DijkstraCompact.INFINITY, expected);
+			}
+		}
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		FileUtils.deleteDir(Configuration.USER_HOME + "/graphhopper/test");
+		FileUtils.deleteDir(Configuration.USER_HOME + "/graphast/test");
+	}
+}
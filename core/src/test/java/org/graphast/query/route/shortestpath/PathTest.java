@@ -0,0 +1,91 @@
+package org.graphast.query.route.shortestpath;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.graphast.geometry.Point;
+import org.graphast.graphgenerator.GraphGenerator;
+import org.graphast.model.Edge;
+import org.graphast.model.Graph;
+import org.graphast.model.Node;
+import org.graphast.query.route.shortestpath.dijkstra.DijkstraConstantWeight;
+import org.graphast.query.route.shortestpath.model.Instruction;
+import org.graphast.query.route.shortestpath.model.Path;
+import org.graphast.util.DistanceUtils;
+import org.graphast.util.GeoUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class PathTest {
+
+	private static Graph graphMonaco;
+
+	@BeforeClass
+	public static void setup() {
+		graphMonaco = new GraphGenerator().generateMonaco();
+	}
+
+	@Test
+	public void edgeSequenceTest() {
+		long source = graphMonaco.getNodeId(43.740174, 7.424376);
+		long target = graphMonaco.getNodeId(43.735554, 7.416147);
+		Path path = new DijkstraConstantWeight(graphMonaco).shortestPath(source, target);
+
+		// totals are read from the edge sequence before the instructions are built
+		double totalCost = path.getTotalCost();
+		long totalDistance = path.getTotalDistance();
+
+		List<Long> edges = path.getEdges();
+		long node = source;
+		long distance = 0;
+		for (long edgeId : edges) {
+			Edge edge = graphMonaco.getEdge(edgeId);
+			assertEquals(node, edge.getFromNode());
+			node = edge.getToNode();
+			distance += edge.getDistance();
+		}
+		assertEquals(target, node);
+		assertEquals(distance, totalDistance);
+
+		double instructionsCost = 0;
+		long instructionsDistance = 0;
+		for (Instruction instruction : path.getInstructions()) {
+			instructionsCost += instruction.getCost();
+			instructionsDistance += instruction.getDistance();
+		}
+		assertEquals(totalCost, instructionsCost, 0);
+		assertEquals(totalDistance, instructionsDistance);
+		assertEquals(totalCost, path.getTotalCost(), 0);
+		assertEquals(totalDistance, path.getTotalDistance());
+	}
+
+	@Test
+	public void geometryTest() {
+		long source = graphMonaco.getNodeId(43.740174, 7.424376);
+		long target = graphMonaco.getNodeId(43.735554, 7.416147);
+		Path path = new DijkstraConstantWeight(graphMonaco).shortestPath(source, target);
+
+		List<Point> geometry = path.getGeometry();
+		Node sourceNode = graphMonaco.getNode(source);
+		Node targetNode = graphMonaco.getNode(target);
+		Point first = geometry.get(0);
+		Point last = geometry.get(geometry.size() - 1);
+		assertTrue(DistanceUtils.distanceLatLong(first.getLatitude(), first.getLongitude(), sourceNode.getLatitude(), sourceNode.getLongitude()) < 1);
+		assertTrue(DistanceUtils.distanceLatLong(last.getLatitude(), last.getLongitude(), targetNode.getLatitude(), targetNode.getLongitude()) < 1);
+
+		for (Instruction instruction : path.getInstructions()) {
+			assertTrue(instruction.getStartGeometry() <= instruction.getEndGeometry());
+			assertTrue(instruction.getEndGeometry() < geometry.size());
+		}
+
+		List<Point> decoded = GeoUtils.decodePolyline(path.getEncodedPolyline());
+		assertEquals(geometry.size(), decoded.size());
+		for (int i = 0; i < geometry.size(); i++) {
+			assertEquals(geometry.get(i).getLatitude(), decoded.get(i).getLatitude(), 0.00001);
+			assertEquals(geometry.get(i).getLongitude(), decoded.get(i).getLongitude(), 0.00001);
+		}
+	}
+
+}
@@ -1,5 +1,9 @@
 package org.graphast.util;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.graphast.geometry.Point;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
@@ -14,4 +18,37 @@ public class GeoUtilsTest {
 		assertEquals(52.535926d, latLongToDouble(52535926), 0);
 	}
 	
+	@Test
+	public void encodePolylineTest() {
+		List<Point> points = new ArrayList<Point>();
+		points.add(new Point(38.5, -120.2));
+		points.add(new Point(40.7, -120.95));
+		points.add(new Point(43.252, -126.453));
+
+		String polyline = GeoUtils.encodePolyline(points);
+		assertEquals("_p~iF~ps|U_ulLnnqC_mqNvxq`@", polyline);
+		assertEquals(points, GeoUtils.decodePolyline(polyline));
+	}
+
+	@Test
+	public void hilbertIndexTest() {
+		int side = 8;
+		int[] xs = new int[side * side];
+		int[] ys = new int[side * side];
+		boolean[] used = new boolean[side * side];
+		for (int x = 0; x < side; x++) {
+			for (int y = 0; y < side; y++) {
+				int index = (int) GeoUtils.hilbertIndex(x, y, side);
+				assertEquals(false, used[index]);
+				used[index] = true;
+				xs[index] = x;
+				ys[index] = y;
+			}
+		}
+		// consecutive positions of the curve are neighbor cells
+		for (int i = 1; i < side * side; i++) {
+			assertEquals(1, Math.abs(xs[i] - xs[i - 1]) + Math.abs(ys[i] - ys[i - 1]));
+		}
+	}
+
 }
@@ -2,6 +2,7 @@ package org.graphast.util;
 
 import static org.junit.Assert.assertEquals;
 
+import org.graphast.exception.GraphastException;
 import org.junit.Test;
 
 public class NumberUtilsTest {
@@ -55,6 +56,18 @@ public class NumberUtilsTest {
 		
 	}
 	
+	@Test
+	public void convertToIntTest(){
+		assertEquals(Integer.MAX_VALUE, NumberUtils.convertToInt((long) Integer.MAX_VALUE));
+		assertEquals(-1, NumberUtils.convertToInt(-1L));
+		assertEquals(42, NumberUtils.convertToInt("42"));
+	}
+
+	@Test(expected = GraphastException.class)
+	public void convertToIntOverflowTest(){
+		NumberUtils.convertToInt(Integer.MAX_VALUE + 1L);
+	}
+	
 	@Test
 	public void javaRoundingTest(){
 		assertEquals(129520, (int)(129.521d * 1000));
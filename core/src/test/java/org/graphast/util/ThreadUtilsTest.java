@@ -0,0 +1,75 @@
+package org.graphast.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import org.graphast.exception.GraphastException;
+import org.junit.Test;
+
+public class ThreadUtilsTest {
+
+	@Test
+	public void resultsInTheOrderOfTheTasks() {
+		List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+		for (int i = 0; i < 10; i++) {
+			final int value = i;
+			tasks.add(new Callable<Integer>() {
+				@Override
+				public Integer call() {
+					return value * value;
+				}
+			});
+		}
+		assertEquals(Arrays.asList(0, 1, 4, 9, 16, 25, 36, 49, 64, 81), ThreadUtils.runAll(tasks, 3));
+		// no threads means a single one
+		assertEquals(Arrays.asList(0, 1, 4, 9, 16, 25, 36, 49, 64, 81), ThreadUtils.runAll(tasks, 0));
+	}
+
+	@Test
+	public void threadsOfAKeptPool() {
+		List<Callable<Thread>> tasks = new ArrayList<Callable<Thread>>();
+		tasks.add(new Callable<Thread>() {
+			@Override
+			public Thread call() {
+				return Thread.currentThread();
+			}
+		});
+		ExecutorService executor = ThreadUtils.newFixedPool(1);
+		Thread first = ThreadUtils.runAll(tasks, executor).get(0);
+		Thread second = ThreadUtils.runAll(tasks, executor).get(0);
+		// the pool is not shut down and the same thread runs both calls
+		assertFalse(executor.isShutdown());
+		assertSame(first, second);
+		assertTrue(first.isDaemon());
+		executor.shutdown();
+	}
+
+	@Test
+	public void failureOfATask() {
+		final IllegalStateException failure = new IllegalStateException("task failed");
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		tasks.add(new Callable<Void>() {
+			@Override
+			public Void call() {
+				throw failure;
+			}
+		});
+		try {
+			ThreadUtils.runAll(tasks, 2);
+			fail();
+		} catch (GraphastException e) {
+			assertSame(failure, e.getCause());
+			assertEquals("task failed", e.getMessage());
+		}
+	}
+
+}